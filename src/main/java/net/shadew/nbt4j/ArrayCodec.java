@@ -0,0 +1,108 @@
+package net.shadew.nbt4j;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Bulk conversion of {@code int[]} and {@code long[]} payloads from and to {@link DataInput} and {@link DataOutput}.
+ * Instead of one {@code readInt}/{@code writeInt} call per element, this moves the raw bytes through a scratch array in
+ * blocks and converts whole blocks at once through big-endian views of that array, which the JVM compiles to a bulk
+ * byte-swapping copy.
+ */
+final class ArrayCodec {
+    private static final int SCRATCH_SIZE = 8192;
+
+    /**
+     * The size in bytes of the chunks handed to an {@link NbtArrayVisitor}.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    private final byte[] scratch = new byte[SCRATCH_SIZE];
+    private final IntBuffer ints;
+    private final LongBuffer longs;
+
+    // Reused chunks for streaming arrays to an NbtArrayVisitor, lazily created
+    private byte[] byteChunk;
+    private int[] intChunk;
+    private long[] longChunk;
+
+    ArrayCodec() {
+        ByteBuffer buf = ByteBuffer.wrap(scratch); // Big-endian by default
+        ints = buf.asIntBuffer();
+        longs = buf.asLongBuffer();
+    }
+
+    byte[] byteChunk() {
+        if (byteChunk == null)
+            byteChunk = new byte[CHUNK_SIZE];
+        return byteChunk;
+    }
+
+    int[] intChunk() {
+        if (intChunk == null)
+            intChunk = new int[CHUNK_SIZE / 4];
+        return intChunk;
+    }
+
+    long[] longChunk() {
+        if (longChunk == null)
+            longChunk = new long[CHUNK_SIZE / 8];
+        return longChunk;
+    }
+
+    void readInts(DataInput in, int[] dst) throws IOException {
+        readInts(in, dst, 0, dst.length);
+    }
+
+    void readInts(DataInput in, int[] dst, int dstOff, int dstLen) throws IOException {
+        for (int off = dstOff, len = dstOff + dstLen; off < len; ) {
+            int n = Math.min(len - off, SCRATCH_SIZE / 4);
+            in.readFully(scratch, 0, n * 4);
+            ints.get(0, dst, off, n);
+            off += n;
+        }
+    }
+
+    void readLongs(DataInput in, long[] dst) throws IOException {
+        readLongs(in, dst, 0, dst.length);
+    }
+
+    void readLongs(DataInput in, long[] dst, int dstOff, int dstLen) throws IOException {
+        for (int off = dstOff, len = dstOff + dstLen; off < len; ) {
+            int n = Math.min(len - off, SCRATCH_SIZE / 8);
+            in.readFully(scratch, 0, n * 8);
+            longs.get(0, dst, off, n);
+            off += n;
+        }
+    }
+
+    void writeInts(DataOutput out, int[] src) throws IOException {
+        writeInts(out, src, 0, src.length);
+    }
+
+    void writeInts(DataOutput out, int[] src, int srcOff, int srcLen) throws IOException {
+        for (int off = srcOff, len = srcOff + srcLen; off < len; ) {
+            int n = Math.min(len - off, SCRATCH_SIZE / 4);
+            ints.put(0, src, off, n);
+            out.write(scratch, 0, n * 4);
+            off += n;
+        }
+    }
+
+    void writeLongs(DataOutput out, long[] src) throws IOException {
+        writeLongs(out, src, 0, src.length);
+    }
+
+    void writeLongs(DataOutput out, long[] src, int srcOff, int srcLen) throws IOException {
+        for (int off = srcOff, len = srcOff + srcLen; off < len; ) {
+            int n = Math.min(len - off, SCRATCH_SIZE / 8);
+            longs.put(0, src, off, n);
+            out.write(scratch, 0, n * 8);
+            off += n;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package net.shadew.nbt4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.shadew.nbt4j.util.ModifiedUtf8;
+import net.shadew.nbt4j.util.NbtException;
+
+/**
+ * Decodes NBT primitives from a {@link ByteBuffer} using absolute reads. This keeps its own position so that it never
+ * touches the state of the buffer it was given, and it always reads in big-endian order regardless of the order of that
+ * buffer.
+ */
+final class BufferInput {
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+
+    private char[] chars = new char[64];
+    private NbtKeyCache keyCache;
+
+    // Reused chunks for streaming arrays to an NbtArrayVisitor, lazily created
+    private byte[] byteChunk;
+    private int[] intChunk;
+    private long[] longChunk;
+
+    BufferInput(ByteBuffer buf) {
+        this.buf = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+        this.pos = buf.position();
+        this.limit = buf.limit();
+    }
+
+    NbtKeyCache keyCache() {
+        return keyCache;
+    }
+
+    void keyCache(NbtKeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    int remaining() {
+        return limit - pos;
+    }
+
+    private void require(long bytes) throws EOFException {
+        if (limit - pos < bytes)
+            throw new EOFException();
+    }
+
+    // Peeking reads relative to the current position without moving it, callers must check remaining() first
+
+    TagType peekType(int offset) throws IOException {
+        return TagType.readType(buf, pos + offset);
+    }
+
+    byte peekByte(int offset) {
+        return buf.get(pos + offset);
+    }
+
+    long peekLong(int offset) {
+        return buf.getLong(pos + offset);
+    }
+
+    int peekUnsignedShort(int offset) {
+        return buf.getShort(pos + offset) & 0xFFFF;
+    }
+
+    int peekInt(int offset) {
+        return buf.getInt(pos + offset);
+    }
+
+    TagType readType() throws IOException {
+        require(1);
+        return TagType.readType(buf, pos++);
+    }
+
+    byte readByte() throws IOException {
+        require(1);
+        return buf.get(pos++);
+    }
+
+    short readShort() throws IOException {
+        require(2);
+        short v = buf.getShort(pos);
+        pos += 2;
+        return v;
+    }
+
+    int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    int readInt() throws IOException {
+        require(4);
+        int v = buf.getInt(pos);
+        pos += 4;
+        return v;
+    }
+
+    long readLong() throws IOException {
+        require(8);
+        long v = buf.getLong(pos);
+        pos += 8;
+        return v;
+    }
+
+    float readFloat() throws IOException {
+        require(4);
+        float v = buf.getFloat(pos);
+        pos += 4;
+        return v;
+    }
+
+    double readDouble() throws IOException {
+        require(8);
+        double v = buf.getDouble(pos);
+        pos += 8;
+        return v;
+    }
+
+    String readUTF() throws IOException {
+        int len = readUnsignedShort();
+        require(len);
+        if (chars.length < len)
+            chars = new char[Math.max(len, chars.length * 2)];
+
+        String str = ModifiedUtf8.decode(buf, pos, len, chars);
+        pos += len;
+        return str;
+    }
+
+    /**
+     * Reads a compound key, which is like {@link #readUTF} but goes through the key cache if there is one.
+     */
+    String readKey() throws IOException {
+        if (keyCache == null)
+            return readUTF();
+
+        int len = readUnsignedShort();
+        require(len);
+        String key = keyCache.get(buf, pos, len);
+        pos += len;
+        return key;
+    }
+
+    /**
+     * Reads the length prefix of an array tag, and checks whether the buffer has enough bytes for an array of that
+     * length, so that we don't allocate huge arrays for corrupted lengths.
+     */
+    int readArrayLength(TagType type, int elementSize) throws IOException {
+        int len = readInt();
+        if (len < 0)
+            throw new NbtException("Cannot deserialize " + type + " with negative length (" + len + ")");
+        require((long) len * elementSize);
+        return len;
+    }
+
+    int readListLength(TagType elemType) throws IOException {
+        int len = readInt();
+        if (len < 0) {
+            throw new NbtException("Cannot deserialize TAG_List with negative length (" + len + ")");
+        }
+        if (elemType == TagType.END && len != 0) {
+            throw new NbtException("Cannot deserialize nonempty TAG_List with TAG_End element type");
+        }
+        return len;
+    }
+
+    void readBytes(byte[] dst) throws IOException {
+        readBytes(dst, dst.length);
+    }
+
+    void readBytes(byte[] dst, int len) throws IOException {
+        require(len);
+        buf.get(pos, dst, 0, len);
+        pos += len;
+    }
+
+    void readInts(int[] dst) throws IOException {
+        readInts(dst, dst.length);
+    }
+
+    void readInts(int[] dst, int len) throws IOException {
+        int bytes = len * 4;
+        require(bytes);
+        // The slice is big-endian, so its int view converts the whole array in one bulk byte-swapping copy
+        buf.slice(pos, bytes).asIntBuffer().get(dst, 0, len);
+        pos += bytes;
+    }
+
+    void readLongs(long[] dst) throws IOException {
+        readLongs(dst, dst.length);
+    }
+
+    void readLongs(long[] dst, int len) throws IOException {
+        int bytes = len * 8;
+        require(bytes);
+        buf.slice(pos, bytes).asLongBuffer().get(dst, 0, len);
+        pos += bytes;
+    }
+
+    /**
+     * Reads an array of the given length into an array borrowed from the given pool, and passes it to the borrowed
+     * array method of the visitor. The array goes back to the pool afterwards.
+     */
+    void borrowArray(TagType type, NbtArrayPool pool, NbtVisitor visitor, String name, int len) throws IOException {
+        switch (type) {
+            case BYTE_ARRAY -> {
+                byte[] buffer = pool.borrowBytes(len);
+                try {
+                    readBytes(buffer, len);
+                    visitor.visitBorrowedByteArray(buffer, len, name);
+                } finally {
+                    pool.release(buffer);
+                }
+            }
+            case INT_ARRAY -> {
+                int[] buffer = pool.borrowInts(len);
+                try {
+                    readInts(buffer, len);
+                    visitor.visitBorrowedIntArray(buffer, len, name);
+                } finally {
+                    pool.release(buffer);
+                }
+            }
+            case LONG_ARRAY -> {
+                long[] buffer = pool.borrowLongs(len);
+                try {
+                    readLongs(buffer, len);
+                    visitor.visitBorrowedLongArray(buffer, len, name);
+                } finally {
+                    pool.release(buffer);
+                }
+            }
+            default -> throw new IllegalArgumentException(type + " is not an array");
+        }
+    }
+
+    /**
+     * Reads the given amount of array elements in chunks of a fixed size, which are passed to the array visitor one by
+     * one. The chunk arrays are reused, so this never allocates regardless of the length of the array. The array
+     * visitor is not ended.
+     */
+    void streamArray(TagType type, NbtArrayVisitor av, int len) throws IOException {
+        require((long) len * type.arrayElementSize());
+        switch (type) {
+            case BYTE_ARRAY -> {
+                if (byteChunk == null) byteChunk = new byte[ArrayCodec.CHUNK_SIZE];
+                for (int n; len > 0; len -= n) {
+                    n = Math.min(len, byteChunk.length);
+                    buf.get(pos, byteChunk, 0, n);
+                    pos += n;
+                    av.visitBytes(byteChunk, n);
+                }
+            }
+            case INT_ARRAY -> {
+                if (intChunk == null) intChunk = new int[ArrayCodec.CHUNK_SIZE / 4];
+                for (int n; len > 0; len -= n) {
+                    n = Math.min(len, intChunk.length);
+                    buf.slice(pos, n * 4).asIntBuffer().get(intChunk, 0, n);
+                    pos += n * 4;
+                    av.visitInts(intChunk, n);
+                }
+            }
+            case LONG_ARRAY -> {
+                if (longChunk == null) longChunk = new long[ArrayCodec.CHUNK_SIZE / 8];
+                for (int n; len > 0; len -= n) {
+                    n = Math.min(len, longChunk.length);
+                    buf.slice(pos, n * 8).asLongBuffer().get(longChunk, 0, n);
+                    pos += n * 8;
+                    av.visitLongs(longChunk, n);
+                }
+            }
+            default -> throw new IllegalArgumentException(type + " is not an array");
+        }
+    }
+
+    void skip(long bytes) throws IOException {
+        require(bytes);
+        pos += (int) bytes;
+    }
+
+    /**
+     * Skips the payload of a tag that is not a compound or list, without decoding or allocating anything for it. Since
+     * we work on a buffer, skipping is just a matter of moving our position using the length prefixes in the payload.
+     */
+    void skipPrimitive(TagType type) throws IOException {
+        switch (type) {
+            case END -> throw new NbtException("TAG_End cannot be a independent tag");
+            case BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> skip(type.fixedSize());
+            case STRING -> skip(readUnsignedShort());
+            case BYTE_ARRAY -> skip(readArrayLength(type, 1));
+            case INT_ARRAY -> skip(readArrayLength(type, 4) * 4L);
+            case LONG_ARRAY -> skip(readArrayLength(type, 8) * 8L);
+            default -> throw new IllegalArgumentException(type + " is not a primitive");
+        }
+    }
+
+    /**
+     * Skips the payload of a tag of the given type. Compounds and lists of variable-size elements are pushed onto the
+     * given frame stack with a null visitor, their contents are skipped by {@link #skipFrames}.
+     */
+    void skipValue(TagType type, FrameStack stack) throws IOException {
+        if (type == TagType.LIST) {
+            TagType elemType = readType();
+            skipElements(elemType, readListLength(elemType), stack);
+        } else if (type == TagType.COMPOUND) {
+            stack.pushCompound(null);
+        } else {
+            skipPrimitive(type);
+        }
+    }
+
+    void skipElements(TagType elemType, int len, FrameStack stack) throws IOException {
+        int size = elemType.fixedSize();
+        if (size >= 0) {
+            // Primitive elements all have the same size, jump over them at once
+            skip((long) len * size);
+        } else {
+            stack.pushList(null, elemType, len);
+        }
+    }
+
+    /**
+     * Skips the contents of the frames on the given stack until it is back at the given depth. All frames above that
+     * depth must have a null visitor.
+     */
+    void skipFrames(FrameStack stack, int depth) throws IOException {
+        while (stack.depth() > depth) {
+            TagType elemType = stack.elementType();
+            if (elemType == null) {
+                // In a compound
+                TagType entryType = readType();
+                if (entryType == TagType.END) {
+                    stack.end();
+                } else {
+                    skip(readUnsignedShort());
+                    skipValue(entryType, stack);
+                }
+            } else if (stack.nextElement()) {
+                // In a list
+                skipValue(elemType, stack);
+            } else {
+                stack.end();
+            }
+        }
+    }
+}
@@ -2,6 +2,11 @@ package net.shadew.nbt4j;
 
 import net.shadew.nbt4j.tree.StringTag;
 
+/**
+ * A filter visitor that counts the exact amount of bytes an {@link NbtWriter} writes for the events passing through
+ * it. Names are only counted when the counter is created to include them, which is the case for the entries of a
+ * compound but not for the elements of a list.
+ */
 public class ByteCounter extends FilterNbtVisitor {
     private final boolean includeName;
     private long bytes = 0;
@@ -77,27 +82,73 @@ public class ByteCounter extends FilterNbtVisitor {
     @Override
     public void visitByteArray(byte[] value, String name) {
         visitName(name);
-        bytes += value.length;
+        bytes += 4L + value.length;
         super.visitByteArray(value, name);
     }
 
     @Override
     public void visitIntArray(int[] value, String name) {
         visitName(name);
-        bytes += value.length * 4L;
+        bytes += 4L + value.length * 4L;
         super.visitIntArray(value, name);
     }
 
     @Override
     public void visitLongArray(long[] value, String name) {
         visitName(name);
-        bytes += value.length * 8L;
+        bytes += 4L + value.length * 8L;
         super.visitLongArray(value, name);
     }
 
+    // The borrowed arrays are counted here and passed on as they are, rather than copied by the NbtVisitor defaults
+    @Override
+    public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+        visitName(name);
+        bytes += 4L + length;
+        if (visitor != null)
+            visitor.visitBorrowedByteArray(buffer, length, name);
+    }
+
+    @Override
+    public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+        visitName(name);
+        bytes += 4L + length * 4L;
+        if (visitor != null)
+            visitor.visitBorrowedIntArray(buffer, length, name);
+    }
+
+    @Override
+    public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+        visitName(name);
+        bytes += 4L + length * 8L;
+        if (visitor != null)
+            visitor.visitBorrowedLongArray(buffer, length, name);
+    }
+
+    @Override
+    public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+        if (visitor == null) {
+            // We only need the length to count the array, so it doesn't need to be read
+            visitName(name);
+            bytes += 4L + (long) length * type.arrayElementSize();
+            return NbtArrayVisitor.SKIP;
+        }
+
+        // Forward the choice to stream: the array is counted here when streamed, or by visitByteArray, visitIntArray
+        // or visitLongArray when not
+        NbtArrayVisitor v = visitor.visitArray(type, length, name);
+        if (v != null) {
+            // The array is streamed, so visitByteArray, visitIntArray or visitLongArray won't be called to count it
+            visitName(name);
+            bytes += 4L + (long) length * type.arrayElementSize();
+        }
+        return v;
+    }
+
     @Override
     public NbtVisitor visitList(TagType type, int length, String name) {
         visitName(name);
+        bytes += 5; // Element type and length
         return new ByteCounter(super.visitList(type, length, name), false) {
             @Override
             public void visitListEnd() {
@@ -113,8 +164,8 @@ public class ByteCounter extends FilterNbtVisitor {
         return new ByteCounter(super.visitCompound(name), true) {
             @Override
             public void visitEnd() {
+                super.visitEnd(); // Counts the TAG_End first
                 ByteCounter.this.bytes += bytes();
-                super.visitEnd();
             }
         };
     }
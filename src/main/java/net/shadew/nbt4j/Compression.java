@@ -1,38 +1,48 @@
 package net.shadew.nbt4j;
 
 import java.io.*;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-import java.util.zip.InflaterInputStream;
 
-public enum Compression {
+/**
+ * The compression formats of NBT files and region file chunks. The GZIP and zlib streams created by a compression
+ * borrow their {@link java.util.zip.Inflater} or {@link java.util.zip.Deflater} and buffer from {@link
+ * CompressionPool#DEFAULT}, and give them back when they are closed, so streams should always be closed.
+ * <p>
+ * These are the built-in {@link CompressionCodec}s of the {@link CompressionRegistry}.
+ * </p>
+ */
+public enum Compression implements CompressionCodec {
     UNCOMPRESSED(
         3,
         in -> in,
-        out -> out
+        (out, settings) -> out
     ),
     GZIPPED(
         1,
-        GZIPInputStream::new,
-        GZIPOutputStream::new
+        in -> new PooledInflaterInputStream(in, CompressionPool.DEFAULT, true),
+        (out, settings) -> new PooledDeflaterOutputStream(out, CompressionPool.DEFAULT, true, settings)
     ),
     DEFLATED(
         2,
-        InflaterInputStream::new,
-        DeflaterOutputStream::new
+        in -> new PooledInflaterInputStream(in, CompressionPool.DEFAULT, false),
+        (out, settings) -> new PooledDeflaterOutputStream(out, CompressionPool.DEFAULT, false, settings)
     );
 
     private final int regionTypeId;
     private final Factory<InputStream, InputStream> readFactory;
-    private final Factory<OutputStream, OutputStream> writeFactory;
+    private final OutFactory writeFactory;
 
-    Compression(int regionTypeId, Factory<InputStream, InputStream> readFactory, Factory<OutputStream, OutputStream> writeFactory) {
+    Compression(int regionTypeId, Factory<InputStream, InputStream> readFactory, OutFactory writeFactory) {
         this.regionTypeId = regionTypeId;
         this.readFactory = readFactory;
         this.writeFactory = writeFactory;
     }
 
+    /**
+     * Returns the built-in compression with the given ID. Use {@link CompressionRegistry#byId} to also find registered
+     * codecs.
+     *
+     * @throws IllegalArgumentException When the ID is not from 1 to 3
+     */
     public static Compression byRegionTypeId(int id) {
         if (id < 1 || id > 3) {
             throw new IllegalArgumentException("Unknown ID " + id);
@@ -44,16 +54,26 @@ public enum Compression {
         };
     }
 
+    @Override
     public int getRegionTypeId() {
         return regionTypeId;
     }
 
+    @Override
     public InputStream createInStream(InputStream in) throws IOException {
         return readFactory.create(in);
     }
 
+    @Override
     public OutputStream createOutStream(OutputStream out) throws IOException {
-        return writeFactory.create(out);
+        return writeFactory.create(out, CompressionSettings.DEFAULT);
+    }
+
+    @Override
+    public OutputStream createOutStream(OutputStream out, CompressionSettings settings) throws IOException {
+        if (settings == null)
+            throw new NullPointerException("Settings cannot be null");
+        return writeFactory.create(out, settings);
     }
 
     public DataInput createIn(InputStream in) throws IOException {
@@ -61,10 +81,18 @@ public enum Compression {
     }
 
     public DataOutput createOut(OutputStream out) throws IOException {
-        return new DataOutputStream(writeFactory.create(out));
+        return new DataOutputStream(writeFactory.create(out, CompressionSettings.DEFAULT));
+    }
+
+    public DataOutput createOut(OutputStream out, CompressionSettings settings) throws IOException {
+        return new DataOutputStream(createOutStream(out, settings));
     }
 
     private interface Factory<T, U> {
         U create(T t) throws IOException;
     }
+
+    private interface OutFactory {
+        OutputStream create(OutputStream out, CompressionSettings settings) throws IOException;
+    }
 }
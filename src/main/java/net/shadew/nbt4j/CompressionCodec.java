@@ -0,0 +1,44 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression format for region file chunks, identified by the compression type byte in the chunk header. The
+ * formats of vanilla region files are the {@link Compression} constants; other formats can be added to the {@link
+ * CompressionRegistry} to read and write region files that use them, e.g. the LZ4 format under ID 4.
+ * <p>
+ * A codec is used by many threads at once, so it should not keep state between streams.
+ * </p>
+ */
+public interface CompressionCodec {
+    /**
+     * Returns the name of this codec, for diagnostic purposes.
+     */
+    String name();
+
+    /**
+     * Returns the compression type byte of this codec in region file chunk headers, from 1 to 127. The highest bit of
+     * the byte marks an external chunk, and 0 is not a valid type.
+     */
+    int getRegionTypeId();
+
+    /**
+     * Creates a stream that decompresses the given stream. Closing the returned stream closes the given stream.
+     */
+    InputStream createInStream(InputStream in) throws IOException;
+
+    /**
+     * Creates a stream that compresses into the given stream with the given settings, where they apply to this codec.
+     * Closing the returned stream finishes the compressed data and closes the given stream.
+     */
+    OutputStream createOutStream(OutputStream out, CompressionSettings settings) throws IOException;
+
+    /**
+     * Creates a stream that compresses into the given stream with the default settings.
+     */
+    default OutputStream createOutStream(OutputStream out) throws IOException {
+        return createOutStream(out, CompressionSettings.DEFAULT);
+    }
+}
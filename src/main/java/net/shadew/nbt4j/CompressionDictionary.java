@@ -0,0 +1,82 @@
+package net.shadew.nbt4j;
+
+import java.util.Arrays;
+import java.util.zip.Adler32;
+
+/**
+ * A zlib preset dictionary: bytes that compressed data can refer back to as if they preceded it. Small chunks compress
+ * much better when they can refer to the keys, block names and other strings that most chunks share, instead of
+ * spelling them out once in every chunk. Dictionaries are used by {@link DictionaryCodec}, and can be trained from
+ * sample chunks by {@link net.shadew.nbt4j.region.DictionaryTrainer}.
+ * <p>
+ * A dictionary is identified by the Adler-32 checksum of its bytes, which zlib stores in the header of every stream
+ * compressed with it. Dictionaries are immutable.
+ * </p>
+ */
+public final class CompressionDictionary {
+    /**
+     * The maximum size of a dictionary. Deflate cannot refer further back than this, so larger dictionaries would only
+     * be used partially.
+     */
+    public static final int MAX_SIZE = 32768;
+
+    private final byte[] bytes;
+    private final int id;
+
+    private CompressionDictionary(byte[] bytes) {
+        this.bytes = bytes;
+
+        Adler32 adler = new Adler32();
+        adler.update(bytes);
+        this.id = (int) adler.getValue();
+    }
+
+    /**
+     * Creates a dictionary of the given bytes. The most useful strings should be at the end of the dictionary, as
+     * deflate encodes nearer references in fewer bits.
+     *
+     * @throws IllegalArgumentException When the dictionary is empty or larger than {@link #MAX_SIZE}
+     */
+    public static CompressionDictionary of(byte[] bytes) {
+        if (bytes.length == 0 || bytes.length > MAX_SIZE)
+            throw new IllegalArgumentException("Dictionary size must be from 1 to " + MAX_SIZE + " bytes");
+        return new CompressionDictionary(bytes.clone());
+    }
+
+    /**
+     * Returns the ID of this dictionary, which is the Adler-32 checksum of its bytes.
+     */
+    public int id() {
+        return id;
+    }
+
+    public int size() {
+        return bytes.length;
+    }
+
+    public byte[] toByteArray() {
+        return bytes.clone();
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompressionDictionary)) return false;
+        CompressionDictionary other = (CompressionDictionary) o;
+        return id == other.id && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionDictionary[id=" + Integer.toHexString(id) + ", size=" + bytes.length + "]";
+    }
+}
@@ -0,0 +1,193 @@
+package net.shadew.nbt4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of {@link Inflater}s, {@link Deflater}s and stream buffers, from which the streams of {@link
+ * Compression} are created. Every inflater and deflater holds a native zlib context that is only freed when it is ended
+ * or garbage collected, so creating one per chunk causes a lot of native memory churn. The streams created by {@link
+ * Compression} instead borrow them from a pool, and give them back, reset, when the stream is closed. Borrowed
+ * deflaters are set to the {@link CompressionSettings} of the stream that borrows them.
+ * <p>
+ * A pool keeps at most a fixed amount of idle objects of every kind; objects given back when the pool is full are ended
+ * right away. {@link #clear()} ends all idle objects, freeing their native memory deterministically. Streams that are
+ * never closed do not give their objects back, which is harmless apart from the lost reuse. A pool can be shared by
+ * multiple threads.
+ * </p>
+ */
+public final class CompressionPool {
+    /**
+     * The default pool used by {@link Compression}.
+     */
+    public static final CompressionPool DEFAULT = new CompressionPool(Runtime.getRuntime().availableProcessors() * 2);
+
+    static final int BUFFER_SIZE = 8192;
+
+    private final int maxIdle;
+
+    // Zlib wrapped (DEFLATED) and raw (GZIPPED, which writes its own header) objects cannot be mixed
+    private final Bin<Inflater> inflaters;
+    private final Bin<Inflater> rawInflaters;
+    private final Bin<Deflater> deflaters;
+    private final Bin<Deflater> rawDeflaters;
+    private final Bin<byte[]> buffers;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder allocations = new LongAdder();
+
+    /**
+     * Creates a pool that keeps at most the given amount of idle objects of every kind.
+     *
+     * @param maxIdle The maximum amount of idle objects of every kind
+     * @throws IllegalArgumentException When the maximum is negative
+     */
+    public CompressionPool(int maxIdle) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("Maximum idle objects must not be negative");
+        this.maxIdle = maxIdle;
+
+        inflaters = new Bin<>(maxIdle);
+        rawInflaters = new Bin<>(maxIdle);
+        deflaters = new Bin<>(maxIdle);
+        rawDeflaters = new Bin<>(maxIdle);
+        buffers = new Bin<>(maxIdle * 2);
+    }
+
+    public int maxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Returns the amount of idle inflaters in the pool.
+     */
+    public int idleInflaters() {
+        return inflaters.size() + rawInflaters.size();
+    }
+
+    /**
+     * Returns the amount of idle deflaters in the pool.
+     */
+    public int idleDeflaters() {
+        return deflaters.size() + rawDeflaters.size();
+    }
+
+    /**
+     * Returns the amount of idle stream buffers in the pool.
+     */
+    public int idleBuffers() {
+        return buffers.size();
+    }
+
+    /**
+     * Returns the amount of inflaters, deflaters and buffers that were borrowed from the pool.
+     */
+    public long borrows() {
+        return borrows.sum();
+    }
+
+    /**
+     * Returns the amount of borrowed inflaters, deflaters and buffers that had to be created because the pool had none
+     * idle.
+     */
+    public long allocations() {
+        return allocations.sum();
+    }
+
+    public void resetStatistics() {
+        borrows.reset();
+        allocations.reset();
+    }
+
+    /**
+     * Ends all idle inflaters and deflaters, freeing their native memory, and drops all idle buffers. Objects that are
+     * currently borrowed are given back as usual.
+     */
+    public void clear() {
+        for (Inflater inf; (inf = inflaters.poll()) != null; ) inf.end();
+        for (Inflater inf; (inf = rawInflaters.poll()) != null; ) inf.end();
+        for (Deflater def; (def = deflaters.poll()) != null; ) def.end();
+        for (Deflater def; (def = rawDeflaters.poll()) != null; ) def.end();
+        while (buffers.poll() != null) ;
+    }
+
+    Inflater borrowInflater(boolean raw) {
+        Inflater inf = borrow(raw ? rawInflaters : inflaters);
+        return inf != null ? inf : new Inflater(raw);
+    }
+
+    void release(Inflater inf, boolean raw) {
+        inf.reset();
+        if (!(raw ? rawInflaters : inflaters).offer(inf))
+            inf.end();
+    }
+
+    Deflater borrowDeflater(boolean raw, CompressionSettings settings) {
+        Deflater def = borrow(raw ? rawDeflaters : deflaters);
+        if (def == null) {
+            def = new Deflater(settings.level(), raw);
+        } else {
+            // Idle deflaters keep the settings of their last borrower, setting them is free when they did not change
+            def.setLevel(settings.level());
+        }
+        def.setStrategy(settings.strategy());
+        return def;
+    }
+
+    void release(Deflater def, boolean raw) {
+        def.reset();
+        if (!(raw ? rawDeflaters : deflaters).offer(def))
+            def.end();
+    }
+
+    byte[] borrowBuffer() {
+        byte[] buf = borrow(buffers);
+        return buf != null ? buf : new byte[BUFFER_SIZE];
+    }
+
+    void release(byte[] buf) {
+        buffers.offer(buf);
+    }
+
+    private <T> T borrow(Bin<T> bin) {
+        borrows.increment();
+        T obj = bin.poll();
+        if (obj == null)
+            allocations.increment();
+        return obj;
+    }
+
+    private static final class Bin<T> {
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final int max;
+
+        Bin(int max) {
+            this.max = max;
+        }
+
+        int size() {
+            return size.get();
+        }
+
+        T poll() {
+            T obj = idle.poll();
+            if (obj != null)
+                size.decrementAndGet();
+            return obj;
+        }
+
+        boolean offer(T obj) {
+            if (size.incrementAndGet() > max) {
+                size.decrementAndGet();
+                return false;
+            }
+            idle.offer(obj);
+            return true;
+        }
+    }
+}
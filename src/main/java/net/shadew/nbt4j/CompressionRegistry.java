@@ -0,0 +1,100 @@
+package net.shadew.nbt4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of {@link CompressionCodec}s by their compression type byte, through which {@link
+ * net.shadew.nbt4j.region.RegionFile} reads and writes chunks. The {@link Compression} formats are always registered
+ * under their vanilla IDs.
+ * <p>
+ * Other codecs are registered either with {@link #register}, or as a service provider of {@link CompressionCodec}
+ * (listed in {@code META-INF/services/net.shadew.nbt4j.CompressionCodec}), which are loaded when the registry is first
+ * used. A service provider that uses an ID that is already taken is ignored.
+ * </p>
+ * <p>
+ * Codecs are kept in a table indexed by ID, so looking up the codec of a chunk costs a single array access.
+ * </p>
+ */
+public final class CompressionRegistry {
+    /**
+     * The amount of compression type IDs. The highest bit of the compression type byte marks external chunks.
+     */
+    public static final int ID_COUNT = 128;
+
+    private static final Object LOCK = new Object();
+
+    // Copied on write, so lookups need no locking
+    private static volatile CompressionCodec[] codecs;
+
+    static {
+        CompressionCodec[] table = new CompressionCodec[ID_COUNT];
+        for (Compression compression : Compression.values())
+            table[compression.getRegionTypeId()] = compression;
+
+        ClassLoader loader = CompressionRegistry.class.getClassLoader();
+        for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class, loader)) {
+            int id = codec.getRegionTypeId();
+            if (validId(id) && table[id] == null)
+                table[id] = codec;
+        }
+        codecs = table;
+    }
+
+    private CompressionRegistry() {
+    }
+
+    /**
+     * Registers the given codec under its ID.
+     *
+     * @throws IllegalArgumentException When the ID of the codec is not from 1 to 127 or is already taken
+     */
+    public static void register(CompressionCodec codec) {
+        int id = codec.getRegionTypeId();
+        if (!validId(id))
+            throw new IllegalArgumentException("Invalid compression type ID " + id);
+
+        synchronized (LOCK) {
+            CompressionCodec existing = codecs[id];
+            if (existing != null)
+                throw new IllegalArgumentException(
+                    "Compression type ID " + id + " is already taken by " + existing.name()
+                );
+
+            CompressionCodec[] table = codecs.clone();
+            table[id] = codec;
+            codecs = table;
+        }
+    }
+
+    /**
+     * Returns the codec with the given ID, or null when there is none.
+     */
+    public static CompressionCodec byId(int id) {
+        CompressionCodec[] table = codecs;
+        return id >= 0 && id < ID_COUNT ? table[id] : null;
+    }
+
+    /**
+     * Returns whether a codec with the given ID is registered.
+     */
+    public static boolean isRegistered(int id) {
+        return byId(id) != null;
+    }
+
+    /**
+     * Returns all registered codecs, ordered by ID.
+     */
+    public static List<CompressionCodec> codecs() {
+        List<CompressionCodec> list = new ArrayList<>();
+        for (CompressionCodec codec : codecs)
+            if (codec != null)
+                list.add(codec);
+        return list;
+    }
+
+    private static boolean validId(int id) {
+        return id > 0 && id < ID_COUNT;
+    }
+}
@@ -0,0 +1,101 @@
+package net.shadew.nbt4j;
+
+import java.util.zip.Deflater;
+
+/**
+ * The zlib level and strategy with which {@link Compression#GZIPPED} and {@link Compression#DEFLATED} compress data.
+ * Settings are immutable and can be shared freely. They have no effect on {@link Compression#UNCOMPRESSED}, and they
+ * are not needed for decompressing.
+ * <pre>
+ * // Frequently rewritten chunks: favour throughput
+ * new RegionFile(dir, file, RegionFile.DEFLATE, CompressionSettings.FASTEST);
+ *
+ * // Archival conversion: favour size
+ * region.writeChunk(x, z, chunk, CompressionSettings.of(9, Deflater.FILTERED));
+ * </pre>
+ */
+public final class CompressionSettings {
+    /**
+     * The default settings: zlib's default level (6) and default strategy.
+     */
+    public static final CompressionSettings DEFAULT = new CompressionSettings(
+        Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY
+    );
+
+    /**
+     * Level 1 with the default strategy, for data that is written often and must be written fast.
+     */
+    public static final CompressionSettings FASTEST = new CompressionSettings(
+        Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY
+    );
+
+    /**
+     * Level 9 with the {@linkplain Deflater#FILTERED filtered} strategy, for data that is written once and must be as
+     * small as possible.
+     */
+    public static final CompressionSettings ARCHIVAL = new CompressionSettings(
+        Deflater.BEST_COMPRESSION, Deflater.FILTERED
+    );
+
+    private final int level;
+    private final int strategy;
+
+    private CompressionSettings(int level, int strategy) {
+        this.level = level;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Returns settings with the given level and strategy.
+     *
+     * @param level    The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param strategy The compression strategy, one of {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED}
+     *                 and {@link Deflater#HUFFMAN_ONLY}
+     * @throws IllegalArgumentException When the level or strategy is invalid
+     */
+    public static CompressionSettings of(int level, int strategy) {
+        boolean validLevel = level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION;
+        if (!validLevel && level != Deflater.DEFAULT_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY)
+            throw new IllegalArgumentException("Invalid compression strategy " + strategy);
+
+        if (level == DEFAULT.level && strategy == DEFAULT.strategy)
+            return DEFAULT;
+        return new CompressionSettings(level, strategy);
+    }
+
+    public int level() {
+        return level;
+    }
+
+    public int strategy() {
+        return strategy;
+    }
+
+    public CompressionSettings withLevel(int level) {
+        return of(level, strategy);
+    }
+
+    public CompressionSettings withStrategy(int strategy) {
+        return of(level, strategy);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompressionSettings)) return false;
+        CompressionSettings other = (CompressionSettings) o;
+        return level == other.level && strategy == other.strategy;
+    }
+
+    @Override
+    public int hashCode() {
+        return level * 31 + strategy;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionSettings[level=" + level + ", strategy=" + strategy + "]";
+    }
+}
@@ -0,0 +1,93 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link CompressionCodec} that compresses zlib streams, like {@link Compression#DEFLATED}, with a preset {@link
+ * CompressionDictionary}. The ID of the dictionary is stored in the zlib header of every chunk, so a codec can read
+ * chunks written with older dictionaries as long as it is given them, which allows retraining the dictionary without
+ * rewriting all chunks. The compressed data is standard zlib and can be read by any zlib implementation that is given
+ * the dictionary.
+ * <p>
+ * As no vanilla compression type uses a dictionary, the codec must be registered under a custom ID:
+ * </p>
+ * <pre>
+ * CompressionDictionary dict = CompressionDictionary.of(Files.readAllBytes(dictFile));
+ * DictionaryCodec codec = new DictionaryCodec(66, dict);
+ * CompressionRegistry.register(codec);
+ * RegionFile file = new RegionFile(dir, path, flags, codec, CompressionSettings.DEFAULT);
+ * </pre>
+ */
+public final class DictionaryCodec implements CompressionCodec {
+    private final int regionTypeId;
+    private final CompressionDictionary dictionary;
+    private final Map<Integer, CompressionDictionary> dictionaries = new HashMap<>();
+
+    /**
+     * Creates a codec that compresses with the given dictionary, and decompresses with that dictionary or any of the
+     * older dictionaries.
+     *
+     * @param regionTypeId The compression type byte, from 1 to 127
+     * @param dictionary   The dictionary to compress with
+     * @param older        Dictionaries that were compressed with before
+     * @throws IllegalArgumentException When the ID is invalid, or two different dictionaries have the same ID
+     */
+    public DictionaryCodec(int regionTypeId, CompressionDictionary dictionary, CompressionDictionary... older) {
+        if (regionTypeId < 1 || regionTypeId >= CompressionRegistry.ID_COUNT)
+            throw new IllegalArgumentException("Invalid compression type ID " + regionTypeId);
+
+        this.regionTypeId = regionTypeId;
+        this.dictionary = dictionary;
+
+        addDictionary(dictionary);
+        for (CompressionDictionary dict : older)
+            addDictionary(dict);
+    }
+
+    private void addDictionary(CompressionDictionary dict) {
+        CompressionDictionary existing = dictionaries.putIfAbsent(dict.id(), dict);
+        if (existing != null && !existing.equals(dict))
+            throw new IllegalArgumentException("Two dictionaries have the same ID " + Integer.toHexString(dict.id()));
+    }
+
+    @Override
+    public String name() {
+        return "DEFLATED_DICTIONARY";
+    }
+
+    @Override
+    public int getRegionTypeId() {
+        return regionTypeId;
+    }
+
+    /**
+     * Returns the dictionary this codec compresses with.
+     */
+    public CompressionDictionary dictionary() {
+        return dictionary;
+    }
+
+    private byte[] dictionaryBytes(int id) {
+        CompressionDictionary dict = dictionaries.get(id);
+        return dict != null ? dict.bytes() : null;
+    }
+
+    @Override
+    public InputStream createInStream(InputStream in) throws IOException {
+        return new PooledInflaterInputStream(in, CompressionPool.DEFAULT, false, this::dictionaryBytes);
+    }
+
+    @Override
+    public OutputStream createOutStream(OutputStream out, CompressionSettings settings) throws IOException {
+        return new PooledDeflaterOutputStream(out, CompressionPool.DEFAULT, false, settings, dictionary.bytes());
+    }
+
+    @Override
+    public String toString() {
+        return "DictionaryCodec[id=" + regionTypeId + ", " + dictionary + "]";
+    }
+}
@@ -0,0 +1,101 @@
+package net.shadew.nbt4j;
+
+import java.util.Arrays;
+
+/**
+ * The stack of compounds and lists a reader is currently in. Readers use this instead of recursion, so that deeply
+ * nested NBT is read in one loop without growing the call stack. Each frame holds the visitor of the compound or list,
+ * which is null when the compound or list is being skipped, and for lists the element type and the amount of elements
+ * left to read.
+ */
+final class FrameStack {
+    private static final int INITIAL_DEPTH = 16;
+
+    private NbtVisitor[] visitors = new NbtVisitor[INITIAL_DEPTH];
+    private TagType[] elementTypes = new TagType[INITIAL_DEPTH]; // Null for compounds
+    private int[] remaining = new int[INITIAL_DEPTH];
+    private int depth;
+
+    int depth() {
+        return depth;
+    }
+
+    void pushCompound(NbtVisitor visitor) {
+        push(visitor, null, 0);
+    }
+
+    void pushList(NbtVisitor visitor, TagType elementType, int length) {
+        push(visitor, elementType, length);
+    }
+
+    private void push(NbtVisitor visitor, TagType elementType, int length) {
+        if (depth == visitors.length) {
+            int newDepth = depth * 2;
+            visitors = Arrays.copyOf(visitors, newDepth);
+            elementTypes = Arrays.copyOf(elementTypes, newDepth);
+            remaining = Arrays.copyOf(remaining, newDepth);
+        }
+        visitors[depth] = visitor;
+        elementTypes[depth] = elementType;
+        remaining[depth] = length;
+        depth++;
+    }
+
+    /**
+     * Returns the visitor of the top frame, or null when the top frame is being skipped.
+     */
+    NbtVisitor visitor() {
+        return visitors[depth - 1];
+    }
+
+    /**
+     * Returns the element type of the top frame, or null when the top frame is a compound.
+     */
+    TagType elementType() {
+        return elementTypes[depth - 1];
+    }
+
+    /**
+     * Counts off the next element of the list in the top frame. Returns false when there are no elements left.
+     */
+    boolean nextElement() {
+        int top = depth - 1;
+        if (remaining[top] == 0)
+            return false;
+        remaining[top]--;
+        return true;
+    }
+
+    /**
+     * Pops the top frame and lets its visitor know the compound or list has ended.
+     */
+    void end() {
+        int top = --depth;
+        NbtVisitor visitor = visitors[top];
+        visitors[top] = null;
+
+        if (visitor != null) {
+            if (elementTypes[top] == null)
+                visitor.visitEnd();
+            else
+                visitor.visitListEnd();
+        }
+    }
+
+    /**
+     * Ends all frames left on the stack, which happens when reading fails halfway. Every visitor is notified even when
+     * one of them throws, like nested {@code finally} blocks would do.
+     */
+    void unwind() {
+        RuntimeException thrown = null;
+        while (depth > 0) {
+            try {
+                end();
+            } catch (RuntimeException exc) {
+                thrown = exc;
+            }
+        }
+        if (thrown != null)
+            throw thrown;
+    }
+}
@@ -0,0 +1,152 @@
+package net.shadew.nbt4j;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of reusable primitive arrays, which can be given to an {@link NbtReader}, {@link NbtBufferReader} or {@link
+ * NbtPushParser} to read array tags without allocating a new array for every tag. A reader with an array pool borrows
+ * an array at least as long as the array tag, reads the tag into it and passes it to {@link
+ * NbtVisitor#visitBorrowedByteArray}, {@link NbtVisitor#visitBorrowedIntArray} or {@link
+ * NbtVisitor#visitBorrowedLongArray}, after which the array goes back to the pool.
+ * <p>
+ * Arrays are pooled by power-of-two size classes, and every size class holds a few arrays. Arrays longer than the
+ * maximum pooled length are allocated for a single tag and not pooled, so that one huge tag does not keep a huge array
+ * alive. A single pool can be shared by multiple readers, including readers on different threads.
+ * </p>
+ */
+public final class NbtArrayPool {
+    private static final int DEFAULT_MAX_LENGTH = 1 << 16;
+    private static final int MIN_LENGTH = 64;
+    private static final int ARRAYS_PER_CLASS = 4;
+
+    private final int maxLength;
+    private final AtomicReferenceArray<byte[]> bytes;
+    private final AtomicReferenceArray<int[]> ints;
+    private final AtomicReferenceArray<long[]> longs;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder allocations = new LongAdder();
+
+    public NbtArrayPool() {
+        this(DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates an array pool that pools arrays up to the given length. The length is rounded up to a power of two.
+     *
+     * @param maxLength The maximum length of pooled arrays, in elements
+     * @throws IllegalArgumentException When the maximum length is not positive
+     */
+    public NbtArrayPool(int maxLength) {
+        if (maxLength <= 0)
+            throw new IllegalArgumentException("Maximum length must be positive");
+        if (maxLength > 1 << 30)
+            maxLength = 1 << 30;
+
+        this.maxLength = Math.max(MIN_LENGTH, roundUp(maxLength));
+        int slots = (sizeClass(this.maxLength) + 1) * ARRAYS_PER_CLASS;
+        bytes = new AtomicReferenceArray<>(slots);
+        ints = new AtomicReferenceArray<>(slots);
+        longs = new AtomicReferenceArray<>(slots);
+    }
+
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns the amount of arrays that were borrowed from the pool.
+     */
+    public long borrows() {
+        return borrows.sum();
+    }
+
+    /**
+     * Returns the amount of borrowed arrays that had to be allocated because the pool had no array of their size.
+     */
+    public long allocations() {
+        return allocations.sum();
+    }
+
+    public void resetStatistics() {
+        borrows.reset();
+        allocations.reset();
+    }
+
+    public void clear() {
+        for (int i = 0, l = bytes.length(); i < l; i++) {
+            bytes.set(i, null);
+            ints.set(i, null);
+            longs.set(i, null);
+        }
+    }
+
+    byte[] borrowBytes(int length) {
+        byte[] array = take(bytes, length);
+        return array != null ? array : new byte[allocationLength(length)];
+    }
+
+    int[] borrowInts(int length) {
+        int[] array = take(ints, length);
+        return array != null ? array : new int[allocationLength(length)];
+    }
+
+    long[] borrowLongs(int length) {
+        long[] array = take(longs, length);
+        return array != null ? array : new long[allocationLength(length)];
+    }
+
+    void release(byte[] array) {
+        give(bytes, array, array.length);
+    }
+
+    void release(int[] array) {
+        give(ints, array, array.length);
+    }
+
+    void release(long[] array) {
+        give(longs, array, array.length);
+    }
+
+    private <T> T take(AtomicReferenceArray<T> slots, int length) {
+        borrows.increment();
+        if (length <= maxLength) {
+            int base = sizeClass(length) * ARRAYS_PER_CLASS;
+            for (int i = 0; i < ARRAYS_PER_CLASS; i++) {
+                T array = slots.getAndSet(base + i, null);
+                if (array != null)
+                    return array;
+            }
+        }
+        allocations.increment();
+        return null;
+    }
+
+    private <T> void give(AtomicReferenceArray<T> slots, T array, int length) {
+        // Only arrays allocated by the pool have an exact size class length
+        if (length > maxLength || length < MIN_LENGTH || Integer.bitCount(length) != 1)
+            return;
+
+        int base = sizeClass(length) * ARRAYS_PER_CLASS;
+        for (int i = 0; i < ARRAYS_PER_CLASS; i++) {
+            if (slots.compareAndSet(base + i, null, array))
+                return;
+        }
+    }
+
+    private int allocationLength(int length) {
+        return length > maxLength ? length : Math.max(MIN_LENGTH, roundUp(length));
+    }
+
+    private static int sizeClass(int length) {
+        if (length <= MIN_LENGTH)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(length - 1) - Integer.numberOfTrailingZeros(MIN_LENGTH);
+    }
+
+    private static int roundUp(int length) {
+        int size = Integer.highestOneBit(length);
+        return size < length ? size << 1 : size;
+    }
+}
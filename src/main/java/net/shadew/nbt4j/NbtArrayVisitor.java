@@ -0,0 +1,30 @@
+package net.shadew.nbt4j;
+
+/**
+ * Receives the contents of a {@code TAG_Byte_Array}, {@code TAG_Int_Array} or {@code TAG_Long_Array} in chunks, as
+ * returned by {@link NbtVisitor#visitArray}. Readers hand over the array in consecutive chunks of at most a fixed size,
+ * followed by one call to {@link #visitArrayEnd}. Only the method matching the array type is called.
+ * <p>
+ * The chunk arrays are reused by the reader: they are only valid during the call, and only the first {@code length}
+ * elements of the chunk belong to the array. A visitor that needs to keep the elements must copy them.
+ * </p>
+ */
+public interface NbtArrayVisitor {
+    /**
+     * Returned by {@link NbtVisitor#visitArray} to skip an array without decoding it.
+     */
+    NbtArrayVisitor SKIP = new NbtArrayVisitor() {
+    };
+
+    default void visitBytes(byte[] chunk, int length) {
+    }
+
+    default void visitInts(int[] chunk, int length) {
+    }
+
+    default void visitLongs(long[] chunk, int length) {
+    }
+
+    default void visitArrayEnd() {
+    }
+}
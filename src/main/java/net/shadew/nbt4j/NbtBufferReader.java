@@ -0,0 +1,198 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import net.shadew.nbt4j.util.NbtException;
+
+/**
+ * An {@link NbtAcceptor} that reads binary NBT from a {@link ByteBuffer}, which may be a heap buffer, a direct buffer
+ * or a mapped buffer. It emits exactly the same {@link NbtVisitor} events as an {@link NbtReader} reading the same
+ * bytes, but decodes all values with absolute reads on the buffer rather than going through {@link java.io.DataInput}.
+ * <p>
+ * The reader starts reading at the position the buffer had when the reader was created and never reads past its limit.
+ * After reading, the position of the buffer is moved to just after the last byte read. The byte order of the buffer is
+ * irrelevant: NBT is always read in big-endian order. A {@code MemorySegment} can be read by passing its {@code
+ * asByteBuffer()} view.
+ * </p>
+ */
+public class NbtBufferReader implements NbtAcceptor {
+    private final ByteBuffer buf;
+    private final BufferInput in;
+    private final FrameStack stack = new FrameStack();
+    private boolean lenient;
+    private NbtArrayPool arrayPool;
+
+    private IOException ioException;
+
+    public NbtBufferReader(ByteBuffer buf) {
+        this.buf = buf;
+        this.in = new BufferInput(buf);
+    }
+
+    public boolean lenient() {
+        return lenient;
+    }
+
+    public NbtBufferReader lenient(boolean lenient) {
+        this.lenient = lenient;
+        return this;
+    }
+
+    public NbtKeyCache keyCache() {
+        return in.keyCache();
+    }
+
+    /**
+     * Sets the {@link NbtKeyCache} to look up compound keys in, or null to decode every key. The same cache may be
+     * given to multiple readers.
+     */
+    public NbtBufferReader keyCache(NbtKeyCache keyCache) {
+        in.keyCache(keyCache);
+        return this;
+    }
+
+    public NbtArrayPool arrayPool() {
+        return arrayPool;
+    }
+
+    /**
+     * Sets the {@link NbtArrayPool} to borrow arrays from, or null to read every array tag into a new array. With an
+     * array pool, array tags are passed to the borrowed array methods of the visitor. The same pool may be given to
+     * multiple readers.
+     */
+    public NbtBufferReader arrayPool(NbtArrayPool arrayPool) {
+        this.arrayPool = arrayPool;
+        return this;
+    }
+
+    public IOException ioException() {
+        return ioException;
+    }
+
+    public void throwIoException() throws IOException {
+        if (ioException != null)
+            throw ioException;
+    }
+
+    @Override
+    public void accept(NbtVisitor visitor, String name) {
+        try {
+            accept0(visitor);
+        } catch (IOException exc) {
+            ioException = exc;
+        } finally {
+            buf.position(in.position());
+        }
+    }
+
+    private void accept0(NbtVisitor visitor) throws IOException {
+        TagType type = in.readType();
+        if (!lenient && type != TagType.COMPOUND)
+            throw new NbtException("NBT data does not have TAG_Compound as root");
+
+        String name = in.readUTF();
+        acceptTag(type, visitor, name);
+    }
+
+    /**
+     * Reads a tag and everything in it. Nested compounds and lists are not read recursively: they are pushed onto the
+     * frame stack and their contents are read in this loop, so the depth of the NBT does not affect the call stack.
+     */
+    private void acceptTag(TagType type, NbtVisitor visitor, String name) throws IOException {
+        try {
+            acceptValue(type, visitor, name);
+
+            while (stack.depth() > 0) {
+                NbtVisitor v = stack.visitor();
+                TagType elemType = stack.elementType();
+
+                if (v == null) {
+                    // Visitor declined this compound or list, skip it without decoding
+                    in.skipFrames(stack, stack.depth() - 1);
+                } else if (elemType == null) {
+                    // In a compound
+                    TagType entryType = in.readType();
+                    if (entryType == TagType.END)
+                        stack.end();
+                    else
+                        acceptValue(entryType, v, in.readKey());
+                } else if (stack.nextElement()) {
+                    // In a list
+                    acceptValue(elemType, v, null);
+                } else {
+                    stack.end();
+                }
+            }
+        } finally {
+            stack.unwind();
+        }
+    }
+
+    /**
+     * Reads a single value and passes it to the visitor. Compounds and lists are only opened here, their contents are
+     * read by {@link #acceptTag}.
+     */
+    private void acceptValue(TagType type, NbtVisitor visitor, String name) throws IOException {
+        switch (type) {
+            case END -> throw new NbtException("TAG_End cannot be a independent tag");
+            case BYTE -> visitor.visitByte(in.readByte(), name);
+            case SHORT -> visitor.visitShort(in.readShort(), name);
+            case INT -> visitor.visitInt(in.readInt(), name);
+            case LONG -> visitor.visitLong(in.readLong(), name);
+            case FLOAT -> visitor.visitFloat(in.readFloat(), name);
+            case DOUBLE -> visitor.visitDouble(in.readDouble(), name);
+            case STRING -> visitor.visitString(in.readUTF(), name);
+            case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> acceptArray(type, visitor, name);
+            case LIST -> {
+                TagType elemType = in.readType();
+                int len = in.readListLength(elemType);
+
+                NbtVisitor v = visitor.visitList(elemType, len, name);
+                if (v == null) {
+                    // Visitor is not interested, skip the elements without decoding them
+                    in.skipElements(elemType, len, stack);
+                } else {
+                    stack.pushList(v, elemType, len);
+                }
+            }
+            case COMPOUND -> {
+                // If the visitor is not interested, we push a null visitor so the entries are skipped without decoding
+                stack.pushCompound(visitor.visitCompound(name));
+            }
+        }
+    }
+
+    private void acceptArray(TagType type, NbtVisitor visitor, String name) throws IOException {
+        int len = in.readArrayLength(type, type.arrayElementSize());
+        NbtArrayVisitor av = visitor.visitArray(type, len, name);
+
+        if (av == NbtArrayVisitor.SKIP) {
+            in.skip((long) len * type.arrayElementSize());
+        } else if (av != null) {
+            try {
+                in.streamArray(type, av, len);
+            } finally {
+                av.visitArrayEnd();
+            }
+        } else if (arrayPool != null) {
+            in.borrowArray(type, arrayPool, visitor, name, len);
+        } else switch (type) {
+            case BYTE_ARRAY -> {
+                byte[] value = new byte[len];
+                in.readBytes(value);
+                visitor.visitByteArray(value, name);
+            }
+            case INT_ARRAY -> {
+                int[] value = new int[len];
+                in.readInts(value);
+                visitor.visitIntArray(value, name);
+            }
+            default -> {
+                long[] value = new long[len];
+                in.readLongs(value);
+                visitor.visitLongArray(value, name);
+            }
+        }
+    }
+}
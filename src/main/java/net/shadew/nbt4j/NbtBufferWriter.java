@@ -0,0 +1,649 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.shadew.nbt4j.util.ModifiedUtf8;
+import net.shadew.nbt4j.util.NbtException;
+
+/**
+ * An {@link NbtVisitor} that writes binary NBT into a growable {@link ByteBuffer}, which may be a heap buffer or a
+ * direct buffer. It produces exactly the same bytes as an {@link NbtWriter}, but encodes all values straight into the
+ * buffer rather than going through {@link java.io.DataOutput}.
+ * <p>
+ * Compound keys are written from a small cache of their encoded form, so the same few dozen keys that most NBT files
+ * use are only encoded once. Strings are encoded with a fast path for plain ASCII, and primitive arrays are copied into
+ * the buffer in bulk. When the buffer is full, it is replaced by a buffer of twice the size, of the same kind.
+ * </p>
+ * <pre>
+ * NbtBufferWriter writer = new NbtBufferWriter();
+ * tag.accept(writer);
+ * writer.throwIoException();
+ * channel.write(writer.buffer());
+ * </pre>
+ */
+public class NbtBufferWriter implements NbtVisitor {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int NAME_CACHE_SIZE = 256;
+    private static final int MAX_CACHED_NAME_LENGTH = 64;
+
+    private final NamedVisitor namedVisitor = new NamedVisitor();
+    private final NamelessVisitor namelessVisitor = new NamelessVisitor();
+    private final ArrayWriter arrayWriter = new ArrayWriter();
+
+    private ByteBuffer buf;
+    private final int start;
+
+    // Encoded names, including their length prefix, hashed by the name
+    private final EncodedName[] names = new EncodedName[NAME_CACHE_SIZE];
+
+    private IOException ioException;
+
+    /**
+     * Creates a writer that writes into a heap buffer of a default initial capacity.
+     */
+    public NbtBufferWriter() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * Creates a writer that writes into a new buffer of the given initial capacity.
+     *
+     * @param initialCapacity The initial capacity of the buffer
+     * @param direct          Whether to allocate a direct buffer rather than a heap buffer
+     */
+    public NbtBufferWriter(int initialCapacity, boolean direct) {
+        this(direct ? ByteBuffer.allocateDirect(initialCapacity) : ByteBuffer.allocate(initialCapacity));
+    }
+
+    /**
+     * Creates a writer that starts writing at the position of the given buffer. The buffer is only used until it is
+     * full, after which the writer continues in a larger copy of it. The byte order of the buffer is set to big-endian.
+     *
+     * @param buf The buffer to write into
+     */
+    public NbtBufferWriter(ByteBuffer buf) {
+        this.buf = buf.order(ByteOrder.BIG_ENDIAN);
+        this.start = buf.position();
+    }
+
+    public IOException ioException() {
+        return ioException;
+    }
+
+    public void throwIoException() throws IOException {
+        if (ioException != null)
+            throw ioException;
+    }
+
+    /**
+     * Returns the amount of bytes written.
+     */
+    public int size() {
+        return buf.position() - start;
+    }
+
+    /**
+     * Returns a buffer holding the bytes written so far, from position zero to its limit. The returned buffer shares
+     * its content with the buffer of the writer, until the writer has to grow its buffer.
+     */
+    public ByteBuffer buffer() {
+        return buf.slice(start, size());
+    }
+
+    /**
+     * Returns a copy of the bytes written so far.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size()];
+        buf.get(start, bytes);
+        return bytes;
+    }
+
+    /**
+     * Discards all bytes written, so that the writer can be used again, and clears the exception of the last write.
+     */
+    public void reset() {
+        buf.position(start);
+        ioException = null;
+    }
+
+    /**
+     * Returns a visitor that writes values the way they appear as elements of a {@code TAG_List}: without type and
+     * name. This can be used to write list elements separately from the list header.
+     */
+    public NbtVisitor elementVisitor() {
+        return namelessVisitor;
+    }
+
+    private void ensure(long bytes) throws IOException {
+        if (buf.remaining() >= bytes)
+            return;
+
+        long needed = buf.position() + bytes;
+        if (needed > Integer.MAX_VALUE - 8)
+            throw new IOException("NBT output does not fit in a buffer");
+
+        int capacity = (int) Math.max(needed, Math.min(buf.capacity() * 2L, Integer.MAX_VALUE - 8));
+        ByteBuffer grown = buf.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buf.flip();
+        grown.put(buf);
+        buf = grown;
+    }
+
+    private void writeHeader(TagType type, String name) throws IOException {
+        EncodedName encoded = names[name.hashCode() & NAME_CACHE_SIZE - 1];
+        if (encoded == null || !encoded.name.equals(name))
+            encoded = encodeName(name);
+
+        if (encoded == null) {
+            ensure(1);
+            buf.put(type.getId());
+            writeUtf(name);
+        } else {
+            ensure(1 + encoded.bytes.length);
+            buf.put(type.getId());
+            buf.put(encoded.bytes);
+        }
+    }
+
+    private EncodedName encodeName(String name) {
+        if (name.length() > MAX_CACHED_NAME_LENGTH)
+            return null;
+        int len = ModifiedUtf8.encodedLength(name);
+        if (len > MAX_CACHED_NAME_LENGTH)
+            return null;
+
+        ByteBuffer bytes = ByteBuffer.allocate(2 + len);
+        bytes.putShort(0, (short) len);
+        ModifiedUtf8.encode(name, bytes, 2);
+
+        EncodedName encoded = new EncodedName(name, bytes.array());
+        names[name.hashCode() & NAME_CACHE_SIZE - 1] = encoded;
+        return encoded;
+    }
+
+    private void writeUtf(String str) throws IOException {
+        int strlen = str.length();
+        if (strlen > 65535)
+            throw new UTFDataFormatException("encoded string too long: " + strlen + " characters");
+
+        // Encoding takes at most three bytes per character. When there is less room than that, we count the exact
+        // length, so that a buffer of exactly the right size is never replaced
+        if (buf.remaining() < 2 + 3L * strlen)
+            ensure(2 + ModifiedUtf8.encodedLength(str));
+        int pos = buf.position();
+        int utflen = ModifiedUtf8.encode(str, buf, pos + 2);
+        if (utflen > 65535)
+            throw new UTFDataFormatException("encoded string too long: " + utflen + " bytes");
+
+        buf.putShort(pos, (short) utflen);
+        buf.position(pos + 2 + utflen);
+    }
+
+    private void writeBytes(byte[] value, int length) throws IOException {
+        ensure(4L + length);
+        buf.putInt(length);
+        buf.put(value, 0, length);
+    }
+
+    private void writeInts(int[] value, int length) throws IOException {
+        ensure(4 + length * 4L);
+        buf.putInt(length);
+        // The buffer is big-endian, so its int view converts the whole array in one bulk copy
+        buf.asIntBuffer().put(value, 0, length);
+        buf.position(buf.position() + length * 4);
+    }
+
+    private void writeLongs(long[] value, int length) throws IOException {
+        ensure(4 + length * 8L);
+        buf.putInt(length);
+        buf.asLongBuffer().put(value, 0, length);
+        buf.position(buf.position() + length * 8);
+    }
+
+    private void writeByte(byte value, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.BYTE, name);
+            ensure(1);
+            buf.put(value);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeShort(short value, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.SHORT, name);
+            ensure(2);
+            buf.putShort(value);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeInt(int value, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.INT, name);
+            ensure(4);
+            buf.putInt(value);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeLong(long value, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.LONG, name);
+            ensure(8);
+            buf.putLong(value);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeFloat(float value, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.FLOAT, name);
+            ensure(4);
+            buf.putFloat(value);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeDouble(double value, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.DOUBLE, name);
+            ensure(8);
+            buf.putDouble(value);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeString(String value, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.STRING, name);
+            writeUtf(value);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeByteArray(byte[] value, int length, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.BYTE_ARRAY, name);
+            writeBytes(value, length);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeIntArray(int[] value, int length, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.INT_ARRAY, name);
+            writeInts(value, length);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private void writeLongArray(long[] value, int length, String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.LONG_ARRAY, name);
+            writeLongs(value, length);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    private NbtArrayVisitor writeArray(TagType type, int length, String name, boolean named) {
+        try {
+            if (named) writeHeader(type, name);
+            ensure(4);
+            buf.putInt(length);
+            return arrayWriter;
+        } catch (IOException exc) {
+            ioException = exc;
+            return NbtArrayVisitor.SKIP;
+        }
+    }
+
+    private NbtVisitor writeList(TagType type, int length, String name, boolean named) {
+        if (type == TagType.END && length > 0) {
+            ioException = new NbtException("Cannot serialize TAG_List that is not empty but has TAG_End element type");
+            return NbtVisitor.NOOP;
+        }
+        try {
+            if (named) writeHeader(TagType.LIST, name);
+            ensure(5);
+            buf.put(type.getId());
+            buf.putInt(length);
+            return namelessVisitor;
+        } catch (IOException exc) {
+            ioException = exc;
+            return NbtVisitor.NOOP;
+        }
+    }
+
+    private NbtVisitor writeCompound(String name, boolean named) {
+        try {
+            if (named) writeHeader(TagType.COMPOUND, name);
+            return namedVisitor;
+        } catch (IOException exc) {
+            ioException = exc;
+            return NbtVisitor.NOOP;
+        }
+    }
+
+    @Override
+    public void visitByte(byte value, String name) {
+        writeByte(value, name, true);
+    }
+
+    @Override
+    public void visitShort(short value, String name) {
+        writeShort(value, name, true);
+    }
+
+    @Override
+    public void visitInt(int value, String name) {
+        writeInt(value, name, true);
+    }
+
+    @Override
+    public void visitLong(long value, String name) {
+        writeLong(value, name, true);
+    }
+
+    @Override
+    public void visitFloat(float value, String name) {
+        writeFloat(value, name, true);
+    }
+
+    @Override
+    public void visitDouble(double value, String name) {
+        writeDouble(value, name, true);
+    }
+
+    @Override
+    public void visitString(String value, String name) {
+        writeString(value, name, true);
+    }
+
+    @Override
+    public void visitByteArray(byte[] value, String name) {
+        writeByteArray(value, value.length, name, true);
+    }
+
+    @Override
+    public void visitIntArray(int[] value, String name) {
+        writeIntArray(value, value.length, name, true);
+    }
+
+    @Override
+    public void visitLongArray(long[] value, String name) {
+        writeLongArray(value, value.length, name, true);
+    }
+
+    @Override
+    public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+        writeByteArray(buffer, length, name, true);
+    }
+
+    @Override
+    public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+        writeIntArray(buffer, length, name, true);
+    }
+
+    @Override
+    public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+        writeLongArray(buffer, length, name, true);
+    }
+
+    @Override
+    public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+        return writeArray(type, length, name, true);
+    }
+
+    @Override
+    public NbtVisitor visitList(TagType type, int length, String name) {
+        return writeList(type, length, name, true);
+    }
+
+    @Override
+    public NbtVisitor visitCompound(String name) {
+        return writeCompound(name, true);
+    }
+
+    @Override
+    public void visitEnd() {
+        ioException = new NbtException("Cannot export independent TAG_End");
+    }
+
+    protected class NamedVisitor implements NbtVisitor {
+        @Override
+        public void visitByte(byte value, String name) {
+            writeByte(value, name, true);
+        }
+
+        @Override
+        public void visitShort(short value, String name) {
+            writeShort(value, name, true);
+        }
+
+        @Override
+        public void visitInt(int value, String name) {
+            writeInt(value, name, true);
+        }
+
+        @Override
+        public void visitLong(long value, String name) {
+            writeLong(value, name, true);
+        }
+
+        @Override
+        public void visitFloat(float value, String name) {
+            writeFloat(value, name, true);
+        }
+
+        @Override
+        public void visitDouble(double value, String name) {
+            writeDouble(value, name, true);
+        }
+
+        @Override
+        public void visitString(String value, String name) {
+            writeString(value, name, true);
+        }
+
+        @Override
+        public void visitByteArray(byte[] value, String name) {
+            writeByteArray(value, value.length, name, true);
+        }
+
+        @Override
+        public void visitIntArray(int[] value, String name) {
+            writeIntArray(value, value.length, name, true);
+        }
+
+        @Override
+        public void visitLongArray(long[] value, String name) {
+            writeLongArray(value, value.length, name, true);
+        }
+
+        @Override
+        public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+            writeByteArray(buffer, length, name, true);
+        }
+
+        @Override
+        public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+            writeIntArray(buffer, length, name, true);
+        }
+
+        @Override
+        public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+            writeLongArray(buffer, length, name, true);
+        }
+
+        @Override
+        public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+            return writeArray(type, length, name, true);
+        }
+
+        @Override
+        public NbtVisitor visitList(TagType type, int length, String name) {
+            return writeList(type, length, name, true);
+        }
+
+        @Override
+        public NbtVisitor visitCompound(String name) {
+            return writeCompound(name, true);
+        }
+
+        @Override
+        public void visitEnd() {
+            try {
+                ensure(1);
+                buf.put(TagType.END.getId());
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+    }
+
+    protected class NamelessVisitor implements NbtVisitor {
+        @Override
+        public void visitByte(byte value, String name) {
+            writeByte(value, name, false);
+        }
+
+        @Override
+        public void visitShort(short value, String name) {
+            writeShort(value, name, false);
+        }
+
+        @Override
+        public void visitInt(int value, String name) {
+            writeInt(value, name, false);
+        }
+
+        @Override
+        public void visitLong(long value, String name) {
+            writeLong(value, name, false);
+        }
+
+        @Override
+        public void visitFloat(float value, String name) {
+            writeFloat(value, name, false);
+        }
+
+        @Override
+        public void visitDouble(double value, String name) {
+            writeDouble(value, name, false);
+        }
+
+        @Override
+        public void visitString(String value, String name) {
+            writeString(value, name, false);
+        }
+
+        @Override
+        public void visitByteArray(byte[] value, String name) {
+            writeByteArray(value, value.length, name, false);
+        }
+
+        @Override
+        public void visitIntArray(int[] value, String name) {
+            writeIntArray(value, value.length, name, false);
+        }
+
+        @Override
+        public void visitLongArray(long[] value, String name) {
+            writeLongArray(value, value.length, name, false);
+        }
+
+        @Override
+        public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+            writeByteArray(buffer, length, name, false);
+        }
+
+        @Override
+        public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+            writeIntArray(buffer, length, name, false);
+        }
+
+        @Override
+        public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+            writeLongArray(buffer, length, name, false);
+        }
+
+        @Override
+        public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+            return writeArray(type, length, name, false);
+        }
+
+        @Override
+        public NbtVisitor visitList(TagType type, int length, String name) {
+            return writeList(type, length, name, false);
+        }
+
+        @Override
+        public NbtVisitor visitCompound(String name) {
+            return writeCompound(name, false);
+        }
+
+        @Override
+        public void visitEnd() {
+            ioException = new NbtException("Cannot export TAG_End in TAG_List");
+        }
+    }
+
+    protected class ArrayWriter implements NbtArrayVisitor {
+        @Override
+        public void visitBytes(byte[] chunk, int length) {
+            try {
+                ensure(length);
+                buf.put(chunk, 0, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitInts(int[] chunk, int length) {
+            try {
+                ensure(length * 4L);
+                buf.asIntBuffer().put(chunk, 0, length);
+                buf.position(buf.position() + length * 4);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitLongs(long[] chunk, int length) {
+            try {
+                ensure(length * 8L);
+                buf.asLongBuffer().put(chunk, 0, length);
+                buf.position(buf.position() + length * 8);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+    }
+
+    private static final class EncodedName {
+        final String name;
+        final byte[] bytes;
+
+        EncodedName(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package net.shadew.nbt4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import net.shadew.nbt4j.util.NbtException;
+
+/**
+ * A pull-style cursor over binary NBT in a {@link ByteBuffer}, as an alternative to pushing events into an {@link
+ * NbtVisitor}. The cursor moves from tag to tag with {@link #next}, and the current tag can be inspected, read, skipped
+ * or entered. Reading primitive values never allocates, and the cursor shares its decoding and skipping logic with
+ * {@link NbtBufferReader}.
+ * <pre>
+ * NbtCursor cursor = new NbtCursor(buf);
+ * cursor.next();           // The root compound
+ * cursor.enterCompound();
+ * while (cursor.next() != TagType.END) {
+ *     if (cursor.type() == TagType.INT &amp;&amp; cursor.name().equals("xPos"))
+ *         xPos = cursor.intValue();
+ *     // Anything we don't read is skipped by the next call to next()
+ * }
+ * </pre>
+ * <p>
+ * Like {@link NbtBufferReader}, the cursor starts reading at the position of the buffer, never reads past its limit and
+ * does not depend on its byte order. The cursor does not modify the position of the buffer, use {@link #position} to
+ * find out how far it has read.
+ * </p>
+ */
+public class NbtCursor {
+    private final BufferInput in;
+    private final FrameStack stack = new FrameStack();
+    private boolean lenient;
+
+    private boolean started;
+    private TagType type; // Null when there is no current tag
+    private String name;
+    private boolean consumed; // Whether the payload of the current tag has been read, skipped or entered
+    private String stringValue;
+
+    public NbtCursor(ByteBuffer buf) {
+        this.in = new BufferInput(buf);
+    }
+
+    public boolean lenient() {
+        return lenient;
+    }
+
+    public NbtCursor lenient(boolean lenient) {
+        this.lenient = lenient;
+        return this;
+    }
+
+    public NbtKeyCache keyCache() {
+        return in.keyCache();
+    }
+
+    public NbtCursor keyCache(NbtKeyCache keyCache) {
+        in.keyCache(keyCache);
+        return this;
+    }
+
+    /**
+     * Returns the absolute position in the buffer up to where the cursor has read.
+     */
+    public int position() {
+        return in.position();
+    }
+
+    /**
+     * Returns the amount of compounds and lists the cursor has entered and not yet left.
+     */
+    public int depth() {
+        return stack.depth();
+    }
+
+    /**
+     * Moves to the next tag. The first call moves to the root tag. After that, it moves to the next entry of the
+     * compound or the next element of the list the cursor is in, skipping the current tag if it was not read or
+     * entered. When there are no more tags in the compound or list, {@link TagType#END} is returned and the cursor
+     * leaves the compound or list, so that there is no current tag. After the root tag, {@link TagType#END} is always
+     * returned.
+     *
+     * @return The type of the tag moved to, or {@link TagType#END} when there is no next tag
+     *
+     * @throws NbtException When the NBT is malformed
+     * @throws IOException  When the buffer ends unexpectedly
+     */
+    public TagType next() throws IOException {
+        if (type != null && !consumed)
+            skipCurrent();
+
+        type = null;
+        name = null;
+        stringValue = null;
+
+        if (stack.depth() == 0) {
+            if (started)
+                return TagType.END;
+            started = true;
+
+            TagType rootType = in.readType();
+            if (!lenient && rootType != TagType.COMPOUND)
+                throw new NbtException("NBT data does not have TAG_Compound as root");
+            if (rootType == TagType.END)
+                throw new NbtException("TAG_End cannot be a independent tag");
+
+            name = in.readUTF();
+            return current(rootType);
+        }
+
+        TagType elemType = stack.elementType();
+        if (elemType == null) {
+            // In a compound
+            TagType entryType = in.readType();
+            if (entryType == TagType.END) {
+                stack.end();
+                return TagType.END;
+            }
+            name = in.readKey();
+            return current(entryType);
+        }
+
+        // In a list
+        if (!stack.nextElement()) {
+            stack.end();
+            return TagType.END;
+        }
+        return current(elemType);
+    }
+
+    private TagType current(TagType type) {
+        this.type = type;
+        this.consumed = false;
+        return type;
+    }
+
+    /**
+     * Returns the type of the current tag, or null when there is no current tag.
+     */
+    public TagType type() {
+        return type;
+    }
+
+    /**
+     * Returns the name of the current tag. Elements of lists have no name, for those this returns null.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Skips the current tag without decoding it.
+     */
+    public void skipValue() throws IOException {
+        require(null);
+        skipCurrent();
+    }
+
+    private void skipCurrent() throws IOException {
+        int depth = stack.depth();
+        in.skipValue(type, stack);
+        in.skipFrames(stack, depth);
+        consumed = true;
+    }
+
+    /**
+     * Enters the current compound tag. Subsequent calls to {@link #next} move through the entries of the compound.
+     */
+    public void enterCompound() throws IOException {
+        require(TagType.COMPOUND);
+        consumed = true;
+        stack.pushCompound(null);
+    }
+
+    /**
+     * Enters the current list tag. Subsequent calls to {@link #next} move through the elements of the list.
+     */
+    public void enterList() throws IOException {
+        require(TagType.LIST);
+        consumed = true;
+        TagType elemType = in.readType();
+        stack.pushList(null, elemType, in.readListLength(elemType));
+    }
+
+    /**
+     * Skips the rest of the compound or list the cursor is in, and leaves it.
+     */
+    public void exit() throws IOException {
+        if (stack.depth() == 0)
+            throw new IllegalStateException("Not in a compound or list");
+        if (type != null && !consumed)
+            skipCurrent();
+        type = null;
+        name = null;
+        stringValue = null;
+        in.skipFrames(stack, stack.depth() - 1);
+    }
+
+    /**
+     * Returns the element type of the current list tag, without entering it.
+     */
+    public TagType listElementType() throws IOException {
+        require(TagType.LIST);
+        return in.peekType(0);
+    }
+
+    /**
+     * Returns the length of the current list tag, without entering it.
+     */
+    public int listLength() throws IOException {
+        require(TagType.LIST);
+        return in.peekInt(1);
+    }
+
+    /**
+     * Returns the length of the current array tag, without reading it.
+     */
+    public int arrayLength() throws IOException {
+        if (type != TagType.BYTE_ARRAY && type != TagType.INT_ARRAY && type != TagType.LONG_ARRAY)
+            throw new IllegalStateException("Current tag is " + type + ", not an array");
+        require(type);
+        return in.peekInt(0);
+    }
+
+    // Primitive values are peeked, so they can be read any number of times and next() skips them
+
+    public byte byteValue() throws IOException {
+        require(TagType.BYTE);
+        return in.peekByte(0);
+    }
+
+    public short shortValue() throws IOException {
+        require(TagType.SHORT);
+        return (short) in.peekUnsignedShort(0);
+    }
+
+    public int intValue() throws IOException {
+        require(TagType.INT);
+        return in.peekInt(0);
+    }
+
+    public long longValue() throws IOException {
+        require(TagType.LONG);
+        return in.peekLong(0);
+    }
+
+    public float floatValue() throws IOException {
+        require(TagType.FLOAT);
+        return Float.intBitsToFloat(in.peekInt(0));
+    }
+
+    public double doubleValue() throws IOException {
+        require(TagType.DOUBLE);
+        return Double.longBitsToDouble(in.peekLong(0));
+    }
+
+    public String stringValue() throws IOException {
+        if (type == TagType.STRING && consumed && stringValue != null)
+            return stringValue;
+        require(TagType.STRING);
+        consumed = true;
+        return stringValue = in.readUTF();
+    }
+
+    public byte[] byteArrayValue() throws IOException {
+        require(TagType.BYTE_ARRAY);
+        consumed = true;
+        byte[] value = new byte[in.readArrayLength(type, 1)];
+        in.readBytes(value);
+        return value;
+    }
+
+    public int[] intArrayValue() throws IOException {
+        require(TagType.INT_ARRAY);
+        consumed = true;
+        int[] value = new int[in.readArrayLength(type, 4)];
+        in.readInts(value);
+        return value;
+    }
+
+    public long[] longArrayValue() throws IOException {
+        require(TagType.LONG_ARRAY);
+        consumed = true;
+        long[] value = new long[in.readArrayLength(type, 8)];
+        in.readLongs(value);
+        return value;
+    }
+
+    /**
+     * Checks that there is a current tag of the given type (any type when null) whose payload has not been consumed,
+     * and whose fixed-size payload is fully available.
+     */
+    private void require(TagType required) throws IOException {
+        if (type == null)
+            throw new IllegalStateException("No current tag");
+        if (required != null && type != required)
+            throw new IllegalStateException("Current tag is " + type + ", not " + required);
+        if (consumed)
+            throw new IllegalStateException("Current tag has already been read");
+
+        int size = switch (type) {
+            case LIST -> 5;
+            case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> 4;
+            case STRING -> 2;
+            case COMPOUND -> 0;
+            default -> type.fixedSize();
+        };
+        if (in.remaining() < size)
+            throw new EOFException();
+    }
+}
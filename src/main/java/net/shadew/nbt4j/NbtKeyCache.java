@@ -0,0 +1,182 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.shadew.nbt4j.util.ModifiedUtf8;
+
+/**
+ * A bounded cache of decoded compound keys, which can be given to an {@link NbtReader} or {@link NbtBufferReader}.
+ * Chunk data and most other NBT files use the same few dozen keys over and over again, so instead of decoding a new
+ * {@link String} for every key read, the reader matches the raw modified UTF-8 bytes of a key against the keys it has
+ * already decoded and reuses the canonical {@link String} when one matches. A cache hit does not allocate anything.
+ * <p>
+ * The cache is a fixed-size hash table where every key can live in one of two adjacent slots. A newly decoded key
+ * pushes out the older of the two keys in its slots, so the cache never grows beyond its capacity. Keys longer than
+ * {@link #MAX_KEY_LENGTH} bytes are never cached. A single cache can be shared by multiple readers, including readers
+ * on different threads.
+ * </p>
+ */
+public final class NbtKeyCache {
+    /**
+     * The maximum length, in encoded bytes, of keys that are cached.
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // Entries are immutable, so a racing thread either sees a complete entry or an older one, which is fine for a cache
+    private final Entry[] table;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public NbtKeyCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a key cache that holds at most the given amount of keys. The capacity is rounded up to a power of two.
+     *
+     * @param capacity The capacity of the cache
+     * @throws IllegalArgumentException When the capacity is not positive
+     */
+    public NbtKeyCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        if (capacity > 1 << 30)
+            capacity = 1 << 30;
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        table = new Entry[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    /**
+     * Returns the amount of keys that were served from the cache.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the amount of keys that had to be decoded because they were not in the cache.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of keys that were served from the cache, or 0 when no keys were looked up yet.
+     */
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+
+    public void clear() {
+        Arrays.fill(table, null);
+    }
+
+    /**
+     * Returns the key encoded by the given bytes, decoding it only when it is not cached.
+     */
+    String get(byte[] bytes, int off, int len) throws IOException {
+        if (len > MAX_KEY_LENGTH)
+            return decode(ByteBuffer.wrap(bytes), off, len);
+
+        int hash = 1;
+        for (int i = off, end = off + len; i < end; i++)
+            hash = 31 * hash + bytes[i];
+
+        int slot = spread(hash) & mask;
+        for (int i = 0; i < 2; i++) {
+            Entry entry = table[slot + i & mask];
+            if (entry != null && Arrays.equals(entry.bytes, 0, entry.bytes.length, bytes, off, off + len)) {
+                hits.increment();
+                return entry.key;
+            }
+        }
+
+        return put(slot, Arrays.copyOfRange(bytes, off, off + len), ByteBuffer.wrap(bytes), off);
+    }
+
+    /**
+     * Returns the key encoded by the bytes at the given absolute index in the given buffer, decoding it only when it
+     * is not cached.
+     */
+    String get(ByteBuffer buf, int off, int len) throws IOException {
+        if (len > MAX_KEY_LENGTH)
+            return decode(buf, off, len);
+
+        int hash = 1;
+        for (int i = off, end = off + len; i < end; i++)
+            hash = 31 * hash + buf.get(i);
+
+        int slot = spread(hash) & mask;
+        for (int i = 0; i < 2; i++) {
+            Entry entry = table[slot + i & mask];
+            if (entry != null && entry.matches(buf, off, len)) {
+                hits.increment();
+                return entry.key;
+            }
+        }
+
+        byte[] bytes = new byte[len];
+        buf.get(off, bytes);
+        return put(slot, bytes, buf, off);
+    }
+
+    private String put(int slot, byte[] bytes, ByteBuffer buf, int off) throws IOException {
+        String key = decode(buf, off, bytes.length);
+
+        // The newest key goes in the first slot, the key that was there moves to the second slot
+        Entry old = table[slot];
+        if (old != null)
+            table[slot + 1 & mask] = old;
+        table[slot] = new Entry(bytes, key);
+        return key;
+    }
+
+    private String decode(ByteBuffer buf, int off, int len) throws IOException {
+        misses.increment();
+        return ModifiedUtf8.decode(buf, off, len, new char[len]);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    private static final class Entry {
+        final byte[] bytes;
+        final String key;
+
+        Entry(byte[] bytes, String key) {
+            this.bytes = bytes;
+            this.key = key;
+        }
+
+        boolean matches(ByteBuffer buf, int off, int len) {
+            if (bytes.length != len)
+                return false;
+            for (int i = 0; i < len; i++)
+                if (bytes[i] != buf.get(off + i))
+                    return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package net.shadew.nbt4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import net.shadew.nbt4j.util.NbtException;
+
+/**
+ * A non-blocking NBT parser that is fed with fragments of binary NBT as they arrive, for example from network frames.
+ * Every value is passed to the visitor as soon as all of its bytes have been fed, so the visitor receives exactly the
+ * same events as it would receive from an {@link NbtReader} reading the whole payload at once.
+ * <p>
+ * The parser only holds on to bytes that belong to a value that is not complete yet, it never buffers the whole
+ * payload. Subtrees declined by the visitor are skipped as their bytes arrive, without being buffered at all.
+ * </p>
+ * <pre>
+ * NbtPushParser parser = new NbtPushParser(visitor);
+ * while (!parser.feed(nextFrame()))
+ *     ;
+ * </pre>
+ */
+public class NbtPushParser {
+    private static final int INITIAL_CARRY_SIZE = 256;
+
+    private final NbtVisitor visitor;
+    private final FrameStack stack = new FrameStack();
+    private boolean lenient;
+    private NbtKeyCache keyCache;
+    private NbtArrayPool arrayPool;
+
+    // Bytes of an incomplete value, carried over to the next feed
+    private byte[] carry = new byte[INITIAL_CARRY_SIZE];
+    private int carryLen;
+
+    private boolean started;
+    private boolean done;
+    private TagType pendingType; // Type of the value we're waiting for, or null when we're waiting for a tag header
+    private String pendingName;
+    private long skipRemaining; // Bytes of a declined value that still need to be skipped
+    private int arrayRemaining = -1; // Elements of the pending array still to be read, or -1 before its length is read
+    private NbtArrayVisitor arrayVisitor; // Receives the pending array in chunks, or null if it is read as a whole
+
+    private IOException failure;
+
+    public NbtPushParser(NbtVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    public boolean lenient() {
+        return lenient;
+    }
+
+    public NbtPushParser lenient(boolean lenient) {
+        this.lenient = lenient;
+        return this;
+    }
+
+    public NbtKeyCache keyCache() {
+        return keyCache;
+    }
+
+    public NbtPushParser keyCache(NbtKeyCache keyCache) {
+        this.keyCache = keyCache;
+        return this;
+    }
+
+    public NbtArrayPool arrayPool() {
+        return arrayPool;
+    }
+
+    /**
+     * Sets the {@link NbtArrayPool} to borrow arrays from, or null to read every array tag into a new array. With an
+     * array pool, array tags are passed to the borrowed array methods of the visitor. The same pool may be given to
+     * multiple readers.
+     */
+    public NbtPushParser arrayPool(NbtArrayPool arrayPool) {
+        this.arrayPool = arrayPool;
+        return this;
+    }
+
+    /**
+     * Returns whether the root tag has been parsed completely.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns the amount of bytes the parser holds on to because the value they belong to is not complete yet.
+     */
+    public int bufferedBytes() {
+        return carryLen;
+    }
+
+    /**
+     * Feeds the remaining bytes of the given fragment to the parser, which passes every value that is complete to the
+     * visitor. When the root tag is completed by this fragment, the position of the fragment is moved to the first byte
+     * after the root tag, so that any further bytes in the fragment can be used for something else. Otherwise all the
+     * bytes of the fragment are consumed.
+     *
+     * @param fragment The next bytes of binary NBT
+     * @return True when the root tag has been parsed completely
+     *
+     * @throws NbtException When the NBT is malformed
+     * @throws IOException  When an earlier feed failed
+     */
+    public boolean feed(ByteBuffer fragment) throws IOException {
+        if (failure != null)
+            throw failure;
+        if (done)
+            return true;
+
+        try {
+            if (carryLen == 0) {
+                // Nothing carried over, parse straight from the fragment
+                BufferInput in = input(fragment);
+                parse(in);
+                fragment.position(in.position());
+                if (!done)
+                    stash(fragment);
+            } else {
+                int carried = carryLen;
+                int start = fragment.position();
+                stash(fragment);
+
+                BufferInput in = input(ByteBuffer.wrap(carry, 0, carryLen));
+                parse(in);
+                int consumed = in.position();
+
+                if (done) {
+                    carryLen = 0;
+                    fragment.position(start + Math.max(0, consumed - carried));
+                } else {
+                    System.arraycopy(carry, consumed, carry, 0, carryLen - consumed);
+                    carryLen -= consumed;
+                }
+            }
+        } catch (IOException exc) {
+            fail(exc);
+            throw exc;
+        } catch (RuntimeException exc) {
+            fail(new NbtException("Visitor failed", exc));
+            throw exc;
+        }
+        return done;
+    }
+
+    /**
+     * Checks that the root tag has been parsed completely, which is to be called when no more bytes will be fed.
+     *
+     * @throws EOFException When the root tag is incomplete
+     * @throws IOException  When an earlier feed failed
+     */
+    public void finish() throws IOException {
+        if (failure != null)
+            throw failure;
+        if (!done) {
+            fail(new EOFException("NBT input ended before the root tag was complete"));
+            throw failure;
+        }
+    }
+
+    /**
+     * Resets the parser so that it can parse a new root tag, with the same visitor.
+     */
+    public void reset() {
+        try {
+            endArray();
+        } finally {
+            stack.unwind();
+        }
+        carryLen = 0;
+        started = false;
+        done = false;
+        pendingType = null;
+        pendingName = null;
+        skipRemaining = 0;
+        failure = null;
+    }
+
+    private void fail(IOException exc) {
+        failure = exc;
+        carryLen = 0;
+        try {
+            endArray();
+        } finally {
+            stack.unwind();
+        }
+    }
+
+    private void endArray() {
+        NbtArrayVisitor av = arrayVisitor;
+        arrayVisitor = null;
+        arrayRemaining = -1;
+        if (av != null)
+            av.visitArrayEnd();
+    }
+
+    private BufferInput input(ByteBuffer buf) {
+        BufferInput in = new BufferInput(buf);
+        in.keyCache(keyCache);
+        return in;
+    }
+
+    private void stash(ByteBuffer fragment) {
+        int len = fragment.remaining();
+        if (carry.length < carryLen + len)
+            carry = Arrays.copyOf(carry, Math.max(carryLen + len, carry.length * 2));
+        fragment.get(carry, carryLen, len);
+        carryLen += len;
+    }
+
+    /**
+     * Parses as many complete values as possible. Every step first checks whether all bytes it needs are available, and
+     * if not, returns without consuming anything so that the step can be retried when more bytes arrive.
+     */
+    private void parse(BufferInput in) throws IOException {
+        while (!done) {
+            if (skipRemaining > 0) {
+                int n = (int) Math.min(skipRemaining, in.remaining());
+                if (n == 0) return;
+                in.skip(n);
+                skipRemaining -= n;
+            } else if (pendingType != null) {
+                if (!parseValue(in)) return;
+            } else if (!started) {
+                if (!parseHeader(in, true)) return;
+                if (!lenient && pendingType != TagType.COMPOUND)
+                    throw new NbtException("NBT data does not have TAG_Compound as root");
+                started = true;
+            } else if (stack.depth() == 0) {
+                done = true;
+            } else if (stack.elementType() == null) {
+                // In a compound
+                if (!parseHeader(in, stack.visitor() != null)) return;
+            } else if (stack.nextElement()) {
+                // In a list
+                pendingType = stack.elementType();
+                pendingName = null;
+            } else {
+                stack.end();
+            }
+        }
+    }
+
+    /**
+     * Parses the type and name of a tag. A {@code TAG_End} ends the compound we're in.
+     */
+    private boolean parseHeader(BufferInput in, boolean decodeName) throws IOException {
+        if (in.remaining() < 1) return false;
+        TagType type = in.peekType(0);
+        if (type == TagType.END && started) {
+            in.skip(1);
+            stack.end();
+            return true;
+        }
+
+        if (in.remaining() < 3) return false;
+        int nameLen = in.peekUnsignedShort(1);
+        if (in.remaining() < 3 + nameLen) return false;
+
+        in.skip(1);
+        if (decodeName) {
+            pendingName = started ? in.readKey() : in.readUTF();
+        } else {
+            in.skip(2 + nameLen);
+            pendingName = null;
+        }
+        pendingType = type;
+        return true;
+    }
+
+    /**
+     * Parses the payload of the pending value and passes it to the visitor, or skips it when the visitor is not
+     * interested. Compounds and lists are only opened here, by pushing a frame onto the stack.
+     */
+    private boolean parseValue(BufferInput in) throws IOException {
+        NbtVisitor v = stack.depth() == 0 ? visitor : stack.visitor();
+        TagType type = pendingType;
+        String name = pendingName;
+        int available = in.remaining();
+
+        switch (type) {
+            case END -> throw new NbtException("TAG_End cannot be a independent tag");
+            case BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> {
+                if (available < type.fixedSize()) return false;
+                if (v == null) {
+                    in.skip(type.fixedSize());
+                } else switch (type) {
+                    case BYTE -> v.visitByte(in.readByte(), name);
+                    case SHORT -> v.visitShort(in.readShort(), name);
+                    case INT -> v.visitInt(in.readInt(), name);
+                    case LONG -> v.visitLong(in.readLong(), name);
+                    case FLOAT -> v.visitFloat(in.readFloat(), name);
+                    default -> v.visitDouble(in.readDouble(), name);
+                }
+            }
+            case STRING -> {
+                if (available < 2) return false;
+                int len = in.peekUnsignedShort(0);
+                if (v == null) {
+                    in.skip(2);
+                    skipRemaining = len;
+                } else {
+                    if (available < 2 + len) return false;
+                    v.visitString(in.readUTF(), name);
+                }
+            }
+            case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> {
+                int elementSize = type.arrayElementSize();
+                if (arrayRemaining < 0) {
+                    if (available < 4) return false;
+                    int len = in.peekInt(0);
+                    if (len < 0)
+                        throw new NbtException("Cannot deserialize " + type + " with negative length (" + len + ")");
+
+                    // The length is consumed here already, so that the visitor decides how to receive the array once
+                    in.skip(4);
+                    available -= 4;
+                    NbtArrayVisitor av = v == null ? NbtArrayVisitor.SKIP : v.visitArray(type, len, name);
+                    if (av == NbtArrayVisitor.SKIP) {
+                        skipRemaining = (long) len * elementSize;
+                        break;
+                    }
+                    arrayRemaining = len;
+                    arrayVisitor = av;
+                }
+
+                if (arrayVisitor != null) {
+                    // Streaming, pass all complete elements we have
+                    int n = Math.min(arrayRemaining, available / elementSize);
+                    if (n > 0) {
+                        in.streamArray(type, arrayVisitor, n);
+                        arrayRemaining -= n;
+                    }
+                    if (arrayRemaining > 0) return false;
+                    endArray();
+                } else {
+                    int len = arrayRemaining;
+                    if (available < (long) len * elementSize) return false;
+                    arrayRemaining = -1;
+                    if (arrayPool != null) {
+                        in.borrowArray(type, arrayPool, v, name, len);
+                    } else switch (type) {
+                        case BYTE_ARRAY -> {
+                            byte[] value = new byte[len];
+                            in.readBytes(value);
+                            v.visitByteArray(value, name);
+                        }
+                        case INT_ARRAY -> {
+                            int[] value = new int[len];
+                            in.readInts(value);
+                            v.visitIntArray(value, name);
+                        }
+                        default -> {
+                            long[] value = new long[len];
+                            in.readLongs(value);
+                            v.visitLongArray(value, name);
+                        }
+                    }
+                }
+            }
+            case LIST -> {
+                if (available < 5) return false;
+                TagType elemType = in.readType();
+                int len = in.readListLength(elemType);
+
+                NbtVisitor lv = v == null ? null : v.visitList(elemType, len, name);
+                int size = elemType.fixedSize();
+                if (lv == null && size >= 0) {
+                    // Primitive elements all have the same size, skip them at once
+                    skipRemaining = (long) len * size;
+                } else {
+                    stack.pushList(lv, elemType, len);
+                }
+            }
+            case COMPOUND -> stack.pushCompound(v == null ? null : v.visitCompound(name));
+        }
+
+        pendingType = null;
+        pendingName = null;
+        return true;
+    }
+}
@@ -8,8 +8,13 @@ import net.shadew.nbt4j.util.NbtException;
 public class NbtReader implements NbtAcceptor {
     private final DataInput in;
     private boolean lenient;
+    private NbtKeyCache keyCache;
+    private byte[] keyBytes;
+    private NbtArrayPool arrayPool;
 
     private IOException ioException;
+    private ArrayCodec arrays; // Lazily created, most compounds have no int or long arrays
+    private final FrameStack stack = new FrameStack();
 
     public NbtReader(DataInput in) {
         this.in = in;
@@ -24,6 +29,33 @@ public class NbtReader implements NbtAcceptor {
         return this;
     }
 
+    public NbtKeyCache keyCache() {
+        return keyCache;
+    }
+
+    /**
+     * Sets the {@link NbtKeyCache} to look up compound keys in, or null to decode every key. The same cache may be
+     * given to multiple readers.
+     */
+    public NbtReader keyCache(NbtKeyCache keyCache) {
+        this.keyCache = keyCache;
+        return this;
+    }
+
+    public NbtArrayPool arrayPool() {
+        return arrayPool;
+    }
+
+    /**
+     * Sets the {@link NbtArrayPool} to borrow arrays from, or null to read every array tag into a new array. With an
+     * array pool, array tags are passed to the borrowed array methods of the visitor. The same pool may be given to
+     * multiple readers.
+     */
+    public NbtReader arrayPool(NbtArrayPool arrayPool) {
+        this.arrayPool = arrayPool;
+        return this;
+    }
+
     public IOException ioException() {
         return ioException;
     }
@@ -51,7 +83,49 @@ public class NbtReader implements NbtAcceptor {
         acceptTag(type, visitor, name);
     }
 
+    /**
+     * Reads a tag and everything in it. Nested compounds and lists are not read recursively: they are pushed onto the
+     * frame stack and their contents are read in this loop, so the depth of the NBT does not affect the call stack.
+     */
     private void acceptTag(TagType type, NbtVisitor visitor, String name) throws IOException {
+        try {
+            acceptValue(type, visitor, name);
+
+            while (stack.depth() > 0) {
+                NbtVisitor v = stack.visitor();
+                TagType elemType = stack.elementType();
+
+                if (elemType == null) {
+                    // In a compound
+                    TagType entryType = TagType.readType(in);
+                    if (entryType == TagType.END) {
+                        stack.end();
+                    } else if (v == null) {
+                        skip(in.readUnsignedShort());
+                        skipValue(entryType);
+                    } else {
+                        acceptValue(entryType, v, readKey());
+                    }
+                } else if (stack.nextElement()) {
+                    // In a list
+                    if (v == null)
+                        skipValue(elemType);
+                    else
+                        acceptValue(elemType, v, null);
+                } else {
+                    stack.end();
+                }
+            }
+        } finally {
+            stack.unwind();
+        }
+    }
+
+    /**
+     * Reads a single value and passes it to the visitor. Compounds and lists are only opened here, their contents are
+     * read by {@link #acceptTag}.
+     */
+    private void acceptValue(TagType type, NbtVisitor visitor, String name) throws IOException {
         switch (type) {
             case END -> throw new NbtException("TAG_End cannot be a independent tag");
             case BYTE -> visitor.visitByte(in.readByte(), name);
@@ -61,62 +135,206 @@ public class NbtReader implements NbtAcceptor {
             case FLOAT -> visitor.visitFloat(in.readFloat(), name);
             case DOUBLE -> visitor.visitDouble(in.readDouble(), name);
             case STRING -> visitor.visitString(in.readUTF(), name);
+            case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> acceptArray(type, visitor, name);
+            case LIST -> {
+                TagType elemType = TagType.readType(in);
+                int len = readListLength(elemType);
+
+                NbtVisitor v = visitor.visitList(elemType, len, name);
+                if (v == null) {
+                    // Visitor is not interested, skip the elements without decoding them
+                    skipElements(elemType, len);
+                } else {
+                    stack.pushList(v, elemType, len);
+                }
+            }
+            case COMPOUND -> {
+                // If the visitor is not interested, we push a null visitor so the entries are skipped without decoding
+                stack.pushCompound(visitor.visitCompound(name));
+            }
+        }
+    }
+
+    private void acceptArray(TagType type, NbtVisitor visitor, String name) throws IOException {
+        int len = readArrayLength(type);
+        NbtArrayVisitor av = visitor.visitArray(type, len, name);
+
+        if (av == NbtArrayVisitor.SKIP) {
+            skip((long) len * type.arrayElementSize());
+        } else if (av != null) {
+            streamArray(type, av, len);
+        } else if (arrayPool != null) {
+            borrowArray(type, visitor, name, len);
+        } else switch (type) {
             case BYTE_ARRAY -> {
-                int len = in.readInt();
                 byte[] value = new byte[len];
                 in.readFully(value);
                 visitor.visitByteArray(value, name);
             }
             case INT_ARRAY -> {
-                int len = in.readInt();
                 int[] value = new int[len];
-                for (int i = 0; i < len; i++)
-                    value[i] = in.readInt();
+                arrays().readInts(in, value);
                 visitor.visitIntArray(value, name);
             }
-            case LONG_ARRAY -> {
-                int len = in.readInt();
+            default -> {
                 long[] value = new long[len];
-                for (int i = 0; i < len; i++)
-                    value[i] = in.readLong();
+                arrays().readLongs(in, value);
                 visitor.visitLongArray(value, name);
             }
-            case LIST -> {
-                TagType elemType = TagType.readType(in);
-                int len = in.readInt();
-                if (len < 0) {
-                    throw new NbtException("Cannot deserialize TAG_List with negative length (" + len + ")");
+        }
+    }
+
+    private void borrowArray(TagType type, NbtVisitor visitor, String name, int len) throws IOException {
+        switch (type) {
+            case BYTE_ARRAY -> {
+                byte[] buffer = arrayPool.borrowBytes(len);
+                try {
+                    in.readFully(buffer, 0, len);
+                    visitor.visitBorrowedByteArray(buffer, len, name);
+                } finally {
+                    arrayPool.release(buffer);
                 }
-                if (elemType == TagType.END && len != 0) {
-                    throw new NbtException("Cannot deserialize nonempty TAG_List with TAG_End element type");
+            }
+            case INT_ARRAY -> {
+                int[] buffer = arrayPool.borrowInts(len);
+                try {
+                    arrays().readInts(in, buffer, 0, len);
+                    visitor.visitBorrowedIntArray(buffer, len, name);
+                } finally {
+                    arrayPool.release(buffer);
                 }
-
-                NbtVisitor v = visitor.visitList(elemType, len, name);
-                if (v == null) v = NbtVisitor.NOOP; // Use dummy so we won't skip reading
-
+            }
+            default -> {
+                long[] buffer = arrayPool.borrowLongs(len);
                 try {
-                    while (len > 0) {
-                        acceptTag(elemType, v, null);
-                        len--;
-                    }
+                    arrays().readLongs(in, buffer, 0, len);
+                    visitor.visitBorrowedLongArray(buffer, len, name);
                 } finally {
-                    v.visitListEnd();
+                    arrayPool.release(buffer);
                 }
             }
-            case COMPOUND -> {
-                NbtVisitor v = visitor.visitCompound(name);
-                if (v == null) v = NbtVisitor.NOOP; // Use dummy so we won't skip reading
+        }
+    }
 
-                try {
-                    TagType elemType;
-                    while ((elemType = TagType.readType(in)) != TagType.END) {
-                        String elemName = in.readUTF();
-                        acceptTag(elemType, v, elemName);
+    /**
+     * Reads an array in chunks of a fixed size, which are passed to the array visitor one by one. The chunk arrays are
+     * reused, so this never allocates regardless of the length of the array.
+     */
+    private void streamArray(TagType type, NbtArrayVisitor av, int len) throws IOException {
+        ArrayCodec arrays = arrays();
+        try {
+            switch (type) {
+                case BYTE_ARRAY -> {
+                    byte[] chunk = arrays.byteChunk();
+                    for (int n; len > 0; len -= n) {
+                        n = Math.min(len, chunk.length);
+                        in.readFully(chunk, 0, n);
+                        av.visitBytes(chunk, n);
+                    }
+                }
+                case INT_ARRAY -> {
+                    int[] chunk = arrays.intChunk();
+                    for (int n; len > 0; len -= n) {
+                        n = Math.min(len, chunk.length);
+                        arrays.readInts(in, chunk, 0, n);
+                        av.visitInts(chunk, n);
                     }
-                } finally {
-                    v.visitEnd();
                 }
+                default -> {
+                    long[] chunk = arrays.longChunk();
+                    for (int n; len > 0; len -= n) {
+                        n = Math.min(len, chunk.length);
+                        arrays.readLongs(in, chunk, 0, n);
+                        av.visitLongs(chunk, n);
+                    }
+                }
+            }
+        } finally {
+            av.visitArrayEnd();
+        }
+    }
+
+    private String readKey() throws IOException {
+        if (keyCache == null)
+            return in.readUTF();
+
+        int len = in.readUnsignedShort();
+        if (keyBytes == null || keyBytes.length < len)
+            keyBytes = new byte[Math.max(len, NbtKeyCache.MAX_KEY_LENGTH)];
+        in.readFully(keyBytes, 0, len);
+        return keyCache.get(keyBytes, 0, len);
+    }
+
+    private ArrayCodec arrays() {
+        if (arrays == null)
+            arrays = new ArrayCodec();
+        return arrays;
+    }
+
+    /**
+     * Skips the payload of a tag of the given type, without decoding or allocating anything for it. The length prefixes
+     * of strings, arrays and lists are used to skip over their contents. Compounds and lists of variable-size elements
+     * are pushed onto the frame stack with a null visitor, so that {@link #acceptTag} skips their contents.
+     */
+    private void skipValue(TagType type) throws IOException {
+        switch (type) {
+            case END -> throw new NbtException("TAG_End cannot be a independent tag");
+            case BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> skip(type.fixedSize());
+            case STRING -> skip(in.readUnsignedShort());
+            case BYTE_ARRAY -> skip(readArrayLength(type));
+            case INT_ARRAY -> skip(readArrayLength(type) * 4L);
+            case LONG_ARRAY -> skip(readArrayLength(type) * 8L);
+            case LIST -> {
+                TagType elemType = TagType.readType(in);
+                skipElements(elemType, readListLength(elemType));
+            }
+            case COMPOUND -> stack.pushCompound(null);
+        }
+    }
+
+    private void skipElements(TagType elemType, int len) throws IOException {
+        int size = elemType.fixedSize();
+        if (size >= 0) {
+            // Primitive elements all have the same size, jump over them at once
+            skip((long) len * size);
+        } else {
+            stack.pushList(null, elemType, len);
+        }
+    }
+
+    private int readListLength(TagType elemType) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            throw new NbtException("Cannot deserialize TAG_List with negative length (" + len + ")");
+        }
+        if (elemType == TagType.END && len != 0) {
+            throw new NbtException("Cannot deserialize nonempty TAG_List with TAG_End element type");
+        }
+        return len;
+    }
+
+    private int readArrayLength(TagType type) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            throw new NbtException("Cannot deserialize " + type + " with negative length (" + len + ")");
+        }
+        return len;
+    }
+
+    /**
+     * Skips the given amount of bytes. This goes through {@link DataInput#skipBytes}, which seeks when the input
+     * supports it (e.g. {@link java.io.RandomAccessFile}, or a {@link java.io.DataInputStream} over a file or byte
+     * array stream). When the input does not make progress we read a byte instead, which either makes progress or
+     * throws an {@link java.io.EOFException} at the end of the input.
+     */
+    private void skip(long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                in.readByte();
+                skipped = 1;
             }
+            bytes -= skipped;
         }
     }
 }
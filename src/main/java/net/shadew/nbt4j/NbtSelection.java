@@ -0,0 +1,75 @@
+package net.shadew.nbt4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.shadew.nbt4j.tree.Tag;
+
+/**
+ * The tags selected by an {@link NbtSelector}. Tags can be looked up by path, or by the index of the path in the list
+ * of paths the selector was compiled from.
+ */
+public final class NbtSelection {
+    private final List<String> paths;
+    private final Map<String, Integer> pathIndices;
+    private final List<List<Tag>> results;
+
+    NbtSelection(List<String> paths, Map<String, Integer> pathIndices, List<List<Tag>> results) {
+        this.paths = paths;
+        this.pathIndices = pathIndices;
+        this.results = results;
+    }
+
+    public List<String> paths() {
+        return paths;
+    }
+
+    /**
+     * Returns the first tag found at the given path, or null when no tag was found.
+     *
+     * @throws IllegalArgumentException When the path was not selected
+     */
+    public Tag get(String path) {
+        return get(indexOf(path));
+    }
+
+    /**
+     * Returns all the tags found at the given path, in document order.
+     *
+     * @throws IllegalArgumentException When the path was not selected
+     */
+    public List<Tag> getAll(String path) {
+        return getAll(indexOf(path));
+    }
+
+    /**
+     * Returns the first tag found at the path with the given index, or null when no tag was found.
+     *
+     * @throws IndexOutOfBoundsException When the index is out of range
+     */
+    public Tag get(int index) {
+        List<Tag> tags = results.get(index);
+        return tags.isEmpty() ? null : tags.get(0);
+    }
+
+    /**
+     * Returns all the tags found at the path with the given index, in document order.
+     *
+     * @throws IndexOutOfBoundsException When the index is out of range
+     */
+    public List<Tag> getAll(int index) {
+        return Collections.unmodifiableList(results.get(index));
+    }
+
+    public boolean contains(String path) {
+        return !results.get(indexOf(path)).isEmpty();
+    }
+
+    private int indexOf(String path) {
+        Integer index = pathIndices.get(path);
+        if (index == null)
+            throw new IllegalArgumentException("Path '" + path + "' was not selected");
+        return index;
+    }
+}
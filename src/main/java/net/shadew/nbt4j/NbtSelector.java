@@ -0,0 +1,531 @@
+package net.shadew.nbt4j;
+
+import java.util.*;
+
+import net.shadew.nbt4j.tree.*;
+
+/**
+ * A compiled set of NBT paths, which extracts only the tags at those paths from an {@link NbtAcceptor}. Everything
+ * outside the requested paths is declined, so that readers like {@link NbtReader} skip it without decoding it. As soon
+ * as all requested paths have been seen, reading stops: the rest of the input is not consumed.
+ * <p>
+ * A path is a sequence of compound keys separated by dots, relative to the root compound. A key may be followed by
+ * list selectors: {@code [n]} selects the element at index {@code n} and {@code [*]} selects all elements. For
+ * example, {@code Level.xPos} selects the {@code xPos} entry in the {@code Level} compound, and {@code
+ * Level.Sections[*].Y} selects the {@code Y} entry of every section. Keys containing dots or brackets cannot be
+ * selected. A list can be selected either by index or by wildcard, but not both.
+ * </p>
+ * <p>
+ * An {@link NbtSelector} is immutable and can be used on multiple threads at once. Note that an {@link NbtReader}
+ * stores I/O errors rather than throwing them, so its {@link NbtReader#throwIoException} should still be checked after
+ * selecting.
+ * </p>
+ */
+public final class NbtSelector {
+    private static final int WILDCARD = -1;
+    private static final Stop STOP = new Stop();
+
+    private final List<String> paths;
+    private final Map<String, Integer> pathIndices = new HashMap<>();
+    private final Node root = new Node(null, true);
+    private int nodeCount = 1;
+
+    private NbtSelector(List<String> paths) {
+        this.paths = List.copyOf(paths);
+
+        for (int i = 0, l = this.paths.size(); i < l; i++) {
+            String path = this.paths.get(i);
+            pathIndices.putIfAbsent(path, i);
+            add(path, i);
+        }
+    }
+
+    /**
+     * Compiles the given paths into a selector.
+     *
+     * @param paths The paths to select
+     * @return The compiled selector
+     *
+     * @throws NullPointerException     When a path is null
+     * @throws IllegalArgumentException When a path is malformed
+     */
+    public static NbtSelector compile(String... paths) {
+        return new NbtSelector(Arrays.asList(paths));
+    }
+
+    /**
+     * Compiles the given paths into a selector.
+     *
+     * @param paths The paths to select
+     * @return The compiled selector
+     *
+     * @throws NullPointerException     When a path is null
+     * @throws IllegalArgumentException When a path is malformed
+     */
+    public static NbtSelector compile(Collection<String> paths) {
+        return new NbtSelector(new ArrayList<>(paths));
+    }
+
+    public List<String> paths() {
+        return paths;
+    }
+
+    /**
+     * Selects the requested paths from the given acceptor. For every path, all matching tags are collected in document
+     * order.
+     *
+     * @param acceptor The acceptor to read from, usually an {@link NbtReader} or {@link NbtBufferReader}
+     * @return The selected tags
+     */
+    public NbtSelection select(NbtAcceptor acceptor) {
+        Run run = new Run();
+        try {
+            acceptor.accept(run);
+        } catch (Stop stop) {
+            // All paths were seen, we stopped reading
+        }
+        return new NbtSelection(paths, pathIndices, run.results);
+    }
+
+
+    // =====================================================
+    // COMPILING
+    // =====================================================
+
+
+    private void add(String path, int index) {
+        Node node = root;
+        int len = path.length();
+        int i = 0;
+
+        do {
+            int start = i;
+            while (i < len && path.charAt(i) != '.' && path.charAt(i) != '[')
+                i++;
+            if (i == start)
+                throw new IllegalArgumentException("Empty key in path '" + path + "'");
+
+            node = node.key(path.substring(start, i));
+
+            while (i < len && path.charAt(i) == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0)
+                    throw new IllegalArgumentException("Unclosed list selector in path '" + path + "'");
+
+                node = node.index(parseIndex(path, path.substring(i + 1, end)));
+                i = end + 1;
+            }
+
+            if (i < len && path.charAt(i) != '.')
+                throw new IllegalArgumentException("Expected '.' at index " + i + " in path '" + path + "'");
+        } while (i++ < len);
+
+        node.terminal.add(index);
+    }
+
+    private static int parseIndex(String path, String selector) {
+        if (selector.equals("*"))
+            return WILDCARD;
+        try {
+            int index = Integer.parseInt(selector);
+            if (index >= 0)
+                return index;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Invalid list selector [" + selector + "] in path '" + path + "'");
+    }
+
+    private final class Node {
+        final Node parent;
+        final boolean tracked; // False for nodes under a wildcard, these can match more than once
+        final int id = nodeCount++;
+        final List<Integer> terminal = new ArrayList<>(1);
+        final Map<String, Node> keys = new HashMap<>();
+        final Map<Integer, Node> indices = new HashMap<>();
+        Node wildcard;
+
+        Node(Node parent, boolean tracked) {
+            this.parent = parent;
+            this.tracked = tracked;
+        }
+
+        Node key(String key) {
+            if (wildcard != null || !indices.isEmpty())
+                throw new IllegalArgumentException("Path selects '" + key + "' in a list");
+            return keys.computeIfAbsent(key, k -> new Node(this, tracked));
+        }
+
+        Node index(int index) {
+            if (!keys.isEmpty())
+                throw new IllegalArgumentException("Path selects a list element in a compound");
+
+            if (index == WILDCARD) {
+                if (!indices.isEmpty())
+                    throw new IllegalArgumentException("Paths select a list both by index and by wildcard");
+                if (wildcard == null)
+                    wildcard = new Node(this, false);
+                return wildcard;
+            }
+
+            if (wildcard != null)
+                throw new IllegalArgumentException("Paths select a list both by index and by wildcard");
+            return indices.computeIfAbsent(index, k -> new Node(this, tracked));
+        }
+
+        boolean isList() {
+            return wildcard != null || !indices.isEmpty();
+        }
+
+        boolean isCompound() {
+            return !keys.isEmpty();
+        }
+    }
+
+
+    // =====================================================
+    // SELECTING
+    // =====================================================
+
+
+    private final class Run implements NbtVisitor {
+        final List<List<Tag>> results = new ArrayList<>();
+        final boolean[] done = new boolean[nodeCount];
+
+        Run() {
+            for (int i = 0, l = paths.size(); i < l; i++)
+                results.add(new ArrayList<>(1));
+        }
+
+        @Override
+        public NbtVisitor visitCompound(String name) {
+            if (!root.isCompound()) {
+                // No paths at all
+                complete(root);
+                return null;
+            }
+            return new CompoundSelector(root);
+        }
+
+        boolean isDone(Node node) {
+            return node.tracked && done[node.id];
+        }
+
+        /**
+         * Marks a node as completely seen. When all tracked children of a node are complete, that node is complete,
+         * and when the root is complete we stop reading.
+         */
+        void complete(Node node) {
+            if (!node.tracked || done[node.id])
+                return;
+            done[node.id] = true;
+
+            Node parent = node.parent;
+            if (parent == null)
+                throw STOP;
+
+            if (parent.terminal.isEmpty() && parent.wildcard == null) {
+                for (Node child : parent.keys.values())
+                    if (!done[child.id]) return;
+                for (Node child : parent.indices.values())
+                    if (!done[child.id]) return;
+                complete(parent);
+            }
+        }
+
+        void captured(Node node, Tag tag) {
+            for (int index : node.terminal)
+                results.get(index).add(tag);
+
+            // Paths that go deeper than this one are already in the captured tag
+            for (Map.Entry<String, Node> entry : node.keys.entrySet())
+                if (tag instanceof CompoundTag compound && compound.contains(entry.getKey()))
+                    resolve(entry.getValue(), compound.get(entry.getKey()));
+            for (Map.Entry<Integer, Node> entry : node.indices.entrySet())
+                if (tag instanceof ListTag list && entry.getKey() < list.size())
+                    resolve(entry.getValue(), list.get(entry.getKey()));
+            if (node.wildcard != null && tag instanceof ListTag list)
+                for (Tag element : list)
+                    resolve(node.wildcard, element);
+
+            complete(node);
+        }
+
+        private void resolve(Node node, Tag tag) {
+            for (int index : node.terminal)
+                results.get(index).add(tag);
+
+            for (Map.Entry<String, Node> entry : node.keys.entrySet())
+                if (tag instanceof CompoundTag compound && compound.contains(entry.getKey()))
+                    resolve(entry.getValue(), compound.get(entry.getKey()));
+            for (Map.Entry<Integer, Node> entry : node.indices.entrySet())
+                if (tag instanceof ListTag list && entry.getKey() < list.size())
+                    resolve(entry.getValue(), list.get(entry.getKey()));
+            if (node.wildcard != null && tag instanceof ListTag list)
+                for (Tag element : list)
+                    resolve(node.wildcard, element);
+        }
+
+        void value(Node node, Tag tag) {
+            if (!node.terminal.isEmpty())
+                captured(node, tag);
+            else
+                complete(node); // Path goes deeper but this is not a compound or list
+        }
+
+        NbtVisitor enterList(Node node, TagType type, int length, String name) {
+            if (!node.terminal.isEmpty()) {
+                TagBuilder builder = new TagBuilder();
+                return new FilterNbtVisitor(builder.visitList(type, length, name)) {
+                    @Override
+                    public void visitListEnd() {
+                        captured(node, builder.tag());
+                    }
+                };
+            }
+            if (node.isList())
+                return new ListSelector(node);
+
+            complete(node);
+            return null;
+        }
+
+        NbtVisitor enterCompound(Node node, String name) {
+            if (!node.terminal.isEmpty()) {
+                TagBuilder builder = new TagBuilder();
+                return new FilterNbtVisitor(builder.visitCompound(name)) {
+                    @Override
+                    public void visitEnd() {
+                        captured(node, builder.tag());
+                    }
+                };
+            }
+            if (node.isCompound())
+                return new CompoundSelector(node);
+
+            complete(node);
+            return null;
+        }
+
+        /**
+         * Visits the entries of a compound on a selected path. Entries that are not on any path are declined.
+         */
+        private final class CompoundSelector implements NbtVisitor {
+            private final Node node;
+
+            CompoundSelector(Node node) {
+                this.node = node;
+            }
+
+            private Node child(String name) {
+                Node child = node.keys.get(name);
+                return child == null || isDone(child) ? null : child;
+            }
+
+            @Override
+            public void visitByte(byte value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, ByteTag.of(value));
+            }
+
+            @Override
+            public void visitShort(short value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, ShortTag.of(value));
+            }
+
+            @Override
+            public void visitInt(int value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, IntTag.of(value));
+            }
+
+            @Override
+            public void visitLong(long value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, LongTag.of(value));
+            }
+
+            @Override
+            public void visitFloat(float value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, FloatTag.of(value));
+            }
+
+            @Override
+            public void visitDouble(double value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, DoubleTag.of(value));
+            }
+
+            @Override
+            public void visitString(String value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, StringTag.of(value));
+            }
+
+            @Override
+            public void visitByteArray(byte[] value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, ByteArrayTag.of(value));
+            }
+
+            @Override
+            public void visitIntArray(int[] value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, IntArrayTag.of(value));
+            }
+
+            @Override
+            public void visitLongArray(long[] value, String name) {
+                Node child = child(name);
+                if (child != null) value(child, LongArrayTag.of(value));
+            }
+
+            @Override
+            public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+                // Arrays that are not selected are skipped without decoding them
+                return child(name) == null ? NbtArrayVisitor.SKIP : null;
+            }
+
+            @Override
+            public NbtVisitor visitList(TagType type, int length, String name) {
+                Node child = child(name);
+                return child == null ? null : enterList(child, type, length, name);
+            }
+
+            @Override
+            public NbtVisitor visitCompound(String name) {
+                Node child = child(name);
+                return child == null ? null : enterCompound(child, name);
+            }
+
+            @Override
+            public void visitEnd() {
+                // Any path we haven't seen yet is absent
+                complete(node);
+            }
+        }
+
+        /**
+         * Visits the elements of a list on a selected path. Elements that are not on any path are declined.
+         */
+        private final class ListSelector implements NbtVisitor {
+            private final Node node;
+            private int index;
+
+            ListSelector(Node node) {
+                this.node = node;
+            }
+
+            private Node child() {
+                Node child = peekChild();
+                index++;
+                return child;
+            }
+
+            private Node peekChild() {
+                Node child = node.wildcard != null ? node.wildcard : node.indices.get(index);
+                return child == null || isDone(child) ? null : child;
+            }
+
+            @Override
+            public void visitByte(byte value, String name) {
+                Node child = child();
+                if (child != null) value(child, ByteTag.of(value));
+            }
+
+            @Override
+            public void visitShort(short value, String name) {
+                Node child = child();
+                if (child != null) value(child, ShortTag.of(value));
+            }
+
+            @Override
+            public void visitInt(int value, String name) {
+                Node child = child();
+                if (child != null) value(child, IntTag.of(value));
+            }
+
+            @Override
+            public void visitLong(long value, String name) {
+                Node child = child();
+                if (child != null) value(child, LongTag.of(value));
+            }
+
+            @Override
+            public void visitFloat(float value, String name) {
+                Node child = child();
+                if (child != null) value(child, FloatTag.of(value));
+            }
+
+            @Override
+            public void visitDouble(double value, String name) {
+                Node child = child();
+                if (child != null) value(child, DoubleTag.of(value));
+            }
+
+            @Override
+            public void visitString(String value, String name) {
+                Node child = child();
+                if (child != null) value(child, StringTag.of(value));
+            }
+
+            @Override
+            public void visitByteArray(byte[] value, String name) {
+                Node child = child();
+                if (child != null) value(child, ByteArrayTag.of(value));
+            }
+
+            @Override
+            public void visitIntArray(int[] value, String name) {
+                Node child = child();
+                if (child != null) value(child, IntArrayTag.of(value));
+            }
+
+            @Override
+            public void visitLongArray(long[] value, String name) {
+                Node child = child();
+                if (child != null) value(child, LongArrayTag.of(value));
+            }
+
+            @Override
+            public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+                // Arrays that are not selected are skipped without decoding them, the array visit methods are not
+                // called for them so we move on to the next index here
+                if (peekChild() != null)
+                    return null;
+                index++;
+                return NbtArrayVisitor.SKIP;
+            }
+
+            @Override
+            public NbtVisitor visitList(TagType type, int length, String name) {
+                Node child = child();
+                return child == null ? null : enterList(child, type, length, name);
+            }
+
+            @Override
+            public NbtVisitor visitCompound(String name) {
+                Node child = child();
+                return child == null ? null : enterCompound(child, name);
+            }
+
+            @Override
+            public void visitListEnd() {
+                // Any index we haven't seen yet is absent
+                complete(node);
+            }
+        }
+    }
+
+    /**
+     * Thrown through the reader to stop reading once all paths are seen. It is always caught in {@link #select}.
+     */
+    private static final class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stop() {
+            super(null, null, false, false);
+        }
+    }
+}
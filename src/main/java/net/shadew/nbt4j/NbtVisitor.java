@@ -1,5 +1,7 @@
 package net.shadew.nbt4j;
 
+import java.util.Arrays;
+
 public interface NbtVisitor {
     NbtVisitor NOOP = new NbtVisitor() {
     };
@@ -44,6 +46,62 @@ public interface NbtVisitor {
 
     }
 
+    /**
+     * Called instead of {@link #visitByteArray} by readers that read arrays into a borrowed array from an {@link
+     * NbtArrayPool}. Only the first {@code length} elements of the buffer belong to the array, and the buffer is only
+     * valid during the call: it is reused for other tags afterwards. By default the elements are copied into a new
+     * array that is passed to {@link #visitByteArray}, visitors that only inspect the array can override this to avoid
+     * that copy.
+     *
+     * @param buffer The borrowed buffer holding the array
+     * @param length The length of the array
+     * @param name   The name of the array tag
+     */
+    default void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+        visitByteArray(Arrays.copyOf(buffer, length), name);
+    }
+
+    /**
+     * Called instead of {@link #visitIntArray} by readers that read arrays into a borrowed array from an {@link
+     * NbtArrayPool}. The buffer is only valid during the call, see {@link #visitBorrowedByteArray}.
+     *
+     * @param buffer The borrowed buffer holding the array
+     * @param length The length of the array
+     * @param name   The name of the array tag
+     */
+    default void visitBorrowedIntArray(int[] buffer, int length, String name) {
+        visitIntArray(Arrays.copyOf(buffer, length), name);
+    }
+
+    /**
+     * Called instead of {@link #visitLongArray} by readers that read arrays into a borrowed array from an {@link
+     * NbtArrayPool}. The buffer is only valid during the call, see {@link #visitBorrowedByteArray}.
+     *
+     * @param buffer The borrowed buffer holding the array
+     * @param length The length of the array
+     * @param name   The name of the array tag
+     */
+    default void visitBorrowedLongArray(long[] buffer, int length, String name) {
+        visitLongArray(Arrays.copyOf(buffer, length), name);
+    }
+
+    /**
+     * Called before an array tag is read, to let the visitor choose how it receives the array. By default this returns
+     * null, in which case the whole array is read into a new array and passed to {@link #visitByteArray}, {@link
+     * #visitIntArray} or {@link #visitLongArray}. Visitors that want to stream large arrays with bounded memory can
+     * return an {@link NbtArrayVisitor} instead, which receives the array in chunks, or {@link NbtArrayVisitor#SKIP} to
+     * skip the array without reading it.
+     *
+     * @param type   The array type: {@link TagType#BYTE_ARRAY}, {@link TagType#INT_ARRAY} or {@link
+     *               TagType#LONG_ARRAY}
+     * @param length The amount of elements in the array
+     * @param name   The name of the array tag
+     * @return The visitor to receive the array in chunks, or null to receive the array as a whole
+     */
+    default NbtArrayVisitor visitArray(TagType type, int length, String name) {
+        return null;
+    }
+
     default NbtVisitor visitList(TagType type, int length, String name) {
         return this;
     }
@@ -9,8 +9,10 @@ public class NbtWriter implements NbtVisitor {
     private final DataOutput out;
     private final NamedVisitor namedVisitor = new NamedVisitor();
     private final NamelessVisitor namelessVisitor = new NamelessVisitor();
+    private final ArrayWriter arrayWriter = new ArrayWriter();
 
     private IOException ioException;
+    private ArrayCodec arrays; // Lazily created, most compounds have no int or long arrays
 
     public NbtWriter(DataOutput out) {
         this.out = out;
@@ -25,6 +27,32 @@ public class NbtWriter implements NbtVisitor {
             throw ioException;
     }
 
+    private void writeInts(int[] value, int length) throws IOException {
+        if (arrays == null)
+            arrays = new ArrayCodec();
+        arrays.writeInts(out, value, 0, length);
+    }
+
+    private void writeLongs(long[] value, int length) throws IOException {
+        if (arrays == null)
+            arrays = new ArrayCodec();
+        arrays.writeLongs(out, value, 0, length);
+    }
+
+    private NbtArrayVisitor arrayHeader(TagType type, int length, String name) {
+        try {
+            if (name != null) {
+                out.writeByte(type.getId());
+                out.writeUTF(name);
+            }
+            out.writeInt(length);
+            return arrayWriter;
+        } catch (IOException exc) {
+            ioException = exc;
+            return NbtArrayVisitor.SKIP;
+        }
+    }
+
     @Override
     public void visitByte(byte value, String name) {
         try {
@@ -120,7 +148,7 @@ public class NbtWriter implements NbtVisitor {
             out.writeByte(TagType.INT_ARRAY.getId());
             out.writeUTF(name);
             out.writeInt(value.length);
-            for (int i : value) out.writeInt(i);
+            writeInts(value, value.length);
         } catch (IOException exc) {
             ioException = exc;
         }
@@ -132,12 +160,53 @@ public class NbtWriter implements NbtVisitor {
             out.writeByte(TagType.LONG_ARRAY.getId());
             out.writeUTF(name);
             out.writeInt(value.length);
-            for (long i : value) out.writeLong(i);
+            writeLongs(value, value.length);
         } catch (IOException exc) {
             ioException = exc;
         }
     }
 
+    @Override
+    public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+        try {
+            out.writeByte(TagType.BYTE_ARRAY.getId());
+            out.writeUTF(name);
+            out.writeInt(length);
+            out.write(buffer, 0, length);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    @Override
+    public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+        try {
+            out.writeByte(TagType.INT_ARRAY.getId());
+            out.writeUTF(name);
+            out.writeInt(length);
+            writeInts(buffer, length);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    @Override
+    public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+        try {
+            out.writeByte(TagType.LONG_ARRAY.getId());
+            out.writeUTF(name);
+            out.writeInt(length);
+            writeLongs(buffer, length);
+        } catch (IOException exc) {
+            ioException = exc;
+        }
+    }
+
+    @Override
+    public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+        return arrayHeader(type, length, name);
+    }
+
     @Override
     public NbtVisitor visitList(TagType type, int length, String name) {
         if (type == TagType.END && length > 0) {
@@ -269,7 +338,7 @@ public class NbtWriter implements NbtVisitor {
                 out.writeByte(TagType.INT_ARRAY.getId());
                 out.writeUTF(name);
                 out.writeInt(value.length);
-                for (int i : value) out.writeInt(i);
+                writeInts(value, value.length);
             } catch (IOException exc) {
                 ioException = exc;
             }
@@ -281,12 +350,53 @@ public class NbtWriter implements NbtVisitor {
                 out.writeByte(TagType.LONG_ARRAY.getId());
                 out.writeUTF(name);
                 out.writeInt(value.length);
-                for (long i : value) out.writeLong(i);
+                writeLongs(value, value.length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+            try {
+                out.writeByte(TagType.BYTE_ARRAY.getId());
+                out.writeUTF(name);
+                out.writeInt(length);
+                out.write(buffer, 0, length);
             } catch (IOException exc) {
                 ioException = exc;
             }
         }
 
+        @Override
+        public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+            try {
+                out.writeByte(TagType.INT_ARRAY.getId());
+                out.writeUTF(name);
+                out.writeInt(length);
+                writeInts(buffer, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+            try {
+                out.writeByte(TagType.LONG_ARRAY.getId());
+                out.writeUTF(name);
+                out.writeInt(length);
+                writeLongs(buffer, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+            return arrayHeader(type, length, name);
+        }
+
         @Override
         public NbtVisitor visitList(TagType type, int length, String name) {
             if (type == TagType.END && length > 0) {
@@ -405,7 +515,7 @@ public class NbtWriter implements NbtVisitor {
         public void visitIntArray(int[] value, String name) {
             try {
                 out.writeInt(value.length);
-                for (int i : value) out.writeInt(i);
+                writeInts(value, value.length);
             } catch (IOException exc) {
                 ioException = exc;
             }
@@ -415,12 +525,47 @@ public class NbtWriter implements NbtVisitor {
         public void visitLongArray(long[] value, String name) {
             try {
                 out.writeInt(value.length);
-                for (long i : value) out.writeLong(i);
+                writeLongs(value, value.length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+            try {
+                out.writeInt(length);
+                out.write(buffer, 0, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+            try {
+                out.writeInt(length);
+                writeInts(buffer, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+            try {
+                out.writeInt(length);
+                writeLongs(buffer, length);
             } catch (IOException exc) {
                 ioException = exc;
             }
         }
 
+        @Override
+        public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+            return arrayHeader(type, length, null);
+        }
+
         @Override
         public NbtVisitor visitList(TagType type, int length, String name) {
             if (type == TagType.END && length > 0) {
@@ -447,4 +592,33 @@ public class NbtWriter implements NbtVisitor {
             ioException = new NbtException("Cannot export TAG_End in TAG_List");
         }
     }
+
+    protected class ArrayWriter implements NbtArrayVisitor {
+        @Override
+        public void visitBytes(byte[] chunk, int length) {
+            try {
+                out.write(chunk, 0, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitInts(int[] chunk, int length) {
+            try {
+                writeInts(chunk, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+
+        @Override
+        public void visitLongs(long[] chunk, int length) {
+            try {
+                writeLongs(chunk, length);
+            } catch (IOException exc) {
+                ioException = exc;
+            }
+        }
+    }
 }
@@ -0,0 +1,247 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A GZIP input stream that decompresses the output of {@link ParallelGzipOutputStream} on multiple threads. The members
+ * written by {@link ParallelGzipOutputStream} record their compressed size, so this stream reads ahead a fixed amount
+ * of members and inflates them concurrently.
+ * <p>
+ * Any other GZIP stream is read as well, but sequentially: from the first member that does not record its size, the
+ * rest of the stream is decompressed by a {@link GZIPInputStream} on the calling thread. The same happens from the
+ * first member that is larger than {@link #MAX_MEMBER_SIZE} compressed or uncompressed, so that a large or corrupt size
+ * field never makes this stream allocate more than that. Like any stream, this stream is not safe for use by multiple
+ * threads.
+ * </p>
+ */
+public class ParallelGzipInputStream extends InputStream {
+    /**
+     * The largest size of a member, compressed or uncompressed, that is read ahead and decompressed in parallel.
+     */
+    public static final int MAX_MEMBER_SIZE = 16 * ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE;
+
+    private static final int HEADER_SIZE = ParallelGzipOutputStream.HEADER_SIZE;
+    private static final int TRAILER_SIZE = ParallelGzipOutputStream.TRAILER_SIZE;
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final PushbackInputStream in;
+    private final Executor executor;
+    private final CompressionPool pool;
+    private final int maxPending;
+
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private InputStream fallback;
+    private boolean eof;
+    private boolean closed;
+
+    private byte[] block = new byte[0];
+    private int pos;
+
+    public ParallelGzipInputStream(InputStream in) {
+        this(in, ForkJoinPool.commonPool());
+    }
+
+    public ParallelGzipInputStream(InputStream in, Executor executor) {
+        if (in == null || executor == null)
+            throw new NullPointerException();
+
+        this.in = new PushbackInputStream(in, HEADER_SIZE);
+        this.executor = executor;
+        this.pool = CompressionPool.DEFAULT;
+        this.maxPending = 2 * (executor instanceof ForkJoinPool fj
+                               ? fj.getParallelism()
+                               : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (pos == block.length && !nextBlock())
+            return fallback != null ? fallback.read() : -1;
+        return block[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len | b.length - off - len) < 0)
+            throw new IndexOutOfBoundsException();
+        if (len == 0)
+            return 0;
+
+        if (pos == block.length && !nextBlock())
+            return fallback != null ? fallback.read(b, off, len) : -1;
+
+        int n = Math.min(len, block.length - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        if (pos < block.length)
+            return block.length - pos;
+        return fallback != null && pending.isEmpty() ? fallback.available() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        pending.clear();
+        block = new byte[0];
+        if (fallback != null)
+            fallback.close();
+        else
+            in.close();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+    /**
+     * Moves to the next decompressed member, and reads ahead more members. Returns false when there are no more members
+     * to decompress in parallel.
+     */
+    private boolean nextBlock() throws IOException {
+        do {
+            fillPending();
+            if (pending.isEmpty())
+                return false;
+
+            try {
+                block = pending.remove().join();
+            } catch (CompletionException exc) {
+                if (exc.getCause() instanceof IOException io)
+                    throw io;
+                throw new IOException("Failed to decompress block", exc.getCause());
+            }
+            pos = 0;
+        } while (block.length == 0);
+
+        fillPending();
+        return true;
+    }
+
+    private void fillPending() throws IOException {
+        while (!eof && fallback == null && pending.size() < maxPending) {
+            byte[] member = readMember();
+            if (member != null)
+                pending.add(CompletableFuture.supplyAsync(() -> inflate(member), executor));
+        }
+    }
+
+    /**
+     * Reads the next member written by {@link ParallelGzipOutputStream}, or switches to sequential decompression when
+     * the next member is of another kind. Returns null when there is no member to decompress in parallel.
+     */
+    private byte[] readMember() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int n = in.readNBytes(header, 0, HEADER_SIZE);
+        if (n == 0) {
+            eof = true;
+            return null;
+        }
+
+        int size = n == HEADER_SIZE && hasSizeField(header) ? getInt(header, 16) : -1;
+        if (size < HEADER_SIZE + TRAILER_SIZE || size > MAX_MEMBER_SIZE) {
+            in.unread(header, 0, n);
+            fallback = new GZIPInputStream(in, CompressionPool.BUFFER_SIZE);
+            return null;
+        }
+
+        byte[] member = new byte[size];
+        System.arraycopy(header, 0, member, 0, HEADER_SIZE);
+        if (in.readNBytes(member, HEADER_SIZE, size - HEADER_SIZE) != size - HEADER_SIZE)
+            throw new EOFException("Unexpected end of GZIP member");
+
+        if (Integer.toUnsignedLong(getInt(member, size - 4)) > MAX_MEMBER_SIZE) {
+            // Too large to decompress into one block, so decompress it and the rest of the stream as a stream
+            InputStream rest = new SequenceInputStream(new ByteArrayInputStream(member), in) {
+                @Override
+                public int available() throws IOException {
+                    // GZIPInputStream only reads the next member when bytes are available after the current one
+                    int n = super.available();
+                    return n > 0 ? n : ParallelGzipInputStream.this.in.available();
+                }
+            };
+            fallback = new GZIPInputStream(rest, CompressionPool.BUFFER_SIZE);
+            return null;
+        }
+        return member;
+    }
+
+    private static boolean hasSizeField(byte[] header) {
+        for (int i = 0; i < 4; i++) // Magic, method and flags
+            if (header[i] != ParallelGzipOutputStream.MEMBER_HEADER[i])
+                return false;
+        return getShort(header, 10) == 8
+                   && header[12] == ParallelGzipOutputStream.SUBFIELD_ID_1
+                   && header[13] == ParallelGzipOutputStream.SUBFIELD_ID_2
+                   && getShort(header, 14) == 4;
+    }
+
+    private byte[] inflate(byte[] member) {
+        int dataEnd = member.length - TRAILER_SIZE;
+        int expectedCrc = getInt(member, dataEnd);
+        long expectedSize = getInt(member, dataEnd + 4) & 0xFFFFFFFFL;
+
+        Inflater inf = pool.borrowInflater(true);
+        try {
+            // Deflate cannot compress more than about 1032 to 1, larger sizes are corrupt and must not be allocated
+            if (expectedSize > (long) (dataEnd - HEADER_SIZE) * MAX_DEFLATE_RATIO + 64)
+                throw new ZipException("Corrupt GZIP member size");
+
+            byte[] data = new byte[(int) expectedSize];
+            inf.setInput(member, HEADER_SIZE, dataEnd - HEADER_SIZE);
+            int len = 0;
+            while (!inf.finished()) {
+                int r = inf.inflate(data, len, data.length - len);
+                len += r;
+                if (r == 0 && (inf.needsInput() || inf.needsDictionary() || len == data.length) && !inf.finished())
+                    throw new ZipException("Corrupt GZIP member");
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, len);
+            if (len != data.length || inf.getRemaining() != 0 || (int) crc.getValue() != expectedCrc)
+                throw new ZipException("Corrupt GZIP trailer");
+            return data;
+        } catch (ZipException exc) {
+            throw new CompletionException(exc);
+        } catch (DataFormatException exc) {
+            throw new CompletionException(new ZipException(exc.getMessage()));
+        } finally {
+            pool.release(inf, true);
+        }
+    }
+
+    private static int getShort(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+    }
+
+    private static int getInt(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,255 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A GZIP output stream that compresses on multiple threads. The written data is split into blocks, and every block is
+ * compressed concurrently into a GZIP member of its own. Multi-member GZIP is standard: {@link
+ * java.util.zip.GZIPInputStream}, {@code gzip -d} and any other GZIP reader decode the stream as the concatenation of
+ * all blocks. Compressing blocks independently loses a little compression ratio, which is negligible for large blocks.
+ * <p>
+ * Every member records its own compressed size in its header (in an extra field with subfield ID {@code NB}), so that
+ * {@link ParallelGzipInputStream} can find the next member without inflating the current one, and can thus decompress
+ * the members on multiple threads as well.
+ * </p>
+ * <p>
+ * At most a fixed amount of blocks is being compressed at any time, so memory use is bounded. Calling {@link #flush()}
+ * ends the current block early, so frequent flushing makes the output larger. Like any stream, this stream is not safe
+ * for use by multiple threads.
+ * </p>
+ * <pre>
+ * try (OutputStream out = new ParallelGzipOutputStream(Files.newOutputStream(path))) {
+ *     out.write(TagSerializer.toByteArray(structure));
+ * }
+ * </pre>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    /**
+     * The default amount of uncompressed bytes per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256 << 10;
+
+    // Magic, deflate method, FEXTRA flag, no modification time, no extra flags, unknown operating system
+    static final byte[] MEMBER_HEADER = {0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF};
+    static final int HEADER_SIZE = 20; // Member header, XLEN and the 8 bytes of the NB subfield
+    static final int TRAILER_SIZE = 8;
+    static final byte SUBFIELD_ID_1 = 'N';
+    static final byte SUBFIELD_ID_2 = 'B';
+
+    private final OutputStream out;
+    private final Executor executor;
+    private final CompressionPool pool;
+    private final CompressionSettings settings;
+    private final int blockSize;
+    private final int maxPending;
+
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private final ConcurrentLinkedQueue<byte[]> freeBlocks = new ConcurrentLinkedQueue<>();
+
+    private byte[] block;
+    private int count;
+    private boolean anyMember;
+    private boolean finished;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, ForkJoinPool.commonPool(), DEFAULT_BLOCK_SIZE, CompressionSettings.DEFAULT);
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, CompressionSettings settings) {
+        this(out, ForkJoinPool.commonPool(), DEFAULT_BLOCK_SIZE, settings);
+    }
+
+    /**
+     * Creates a stream that compresses blocks of the given size with the given settings, on the given executor. Blocks
+     * larger than {@link ParallelGzipInputStream#MAX_MEMBER_SIZE} are read back sequentially.
+     *
+     * @throws IllegalArgumentException When the block size is not positive
+     */
+    public ParallelGzipOutputStream(OutputStream out, Executor executor, int blockSize, CompressionSettings settings) {
+        if (out == null || executor == null || settings == null)
+            throw new NullPointerException();
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Block size must be positive");
+
+        this.out = out;
+        this.executor = executor;
+        this.pool = CompressionPool.DEFAULT;
+        this.settings = settings;
+        this.blockSize = blockSize;
+        this.maxPending = 2 * (executor instanceof ForkJoinPool fj
+                               ? fj.getParallelism()
+                               : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (block == null)
+            block = newBlock();
+
+        block[count++] = (byte) b;
+        if (count == blockSize)
+            submitBlock();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len | b.length - off - len) < 0)
+            throw new IndexOutOfBoundsException();
+
+        while (len > 0) {
+            if (block == null)
+                block = newBlock();
+
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+
+            if (count == blockSize)
+                submitBlock();
+        }
+    }
+
+    /**
+     * Compresses the current block, even when it is not full, and writes all compressed blocks to the underlying
+     * stream before flushing it.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0)
+            submitBlock();
+        while (!pending.isEmpty())
+            writeMember();
+        out.flush();
+    }
+
+    /**
+     * Finishes writing compressed data to the underlying stream without closing it. No data can be written after this.
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        // An empty stream still needs one member to be valid GZIP
+        if (count > 0 || !anyMember)
+            submitBlock();
+        while (!pending.isEmpty())
+            writeMember();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        try {
+            if (!finished)
+                finish();
+        } finally {
+            closed = true;
+            pending.clear();
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (finished)
+            throw new IOException("Stream finished");
+    }
+
+    private byte[] newBlock() {
+        byte[] free = freeBlocks.poll();
+        return free != null ? free : new byte[blockSize];
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block != null ? block : new byte[0];
+        int len = count;
+        block = null;
+        count = 0;
+        anyMember = true;
+
+        pending.add(CompletableFuture.supplyAsync(() -> {
+            byte[] member = compress(data, len);
+            if (data.length == blockSize)
+                freeBlocks.offer(data);
+            return member;
+        }, executor));
+
+        if (pending.size() >= maxPending)
+            writeMember();
+    }
+
+    private void writeMember() throws IOException {
+        byte[] member;
+        try {
+            member = pending.remove().join();
+        } catch (CompletionException exc) {
+            throw new IOException("Failed to compress block", exc.getCause());
+        }
+        out.write(member);
+    }
+
+    /**
+     * Compresses the given data into a complete GZIP member.
+     */
+    private byte[] compress(byte[] data, int len) {
+        Deflater def = pool.borrowDeflater(true, settings);
+        try {
+            byte[] member = new byte[HEADER_SIZE + len + (len >> 10) + 64 + TRAILER_SIZE];
+            System.arraycopy(MEMBER_HEADER, 0, member, 0, MEMBER_HEADER.length);
+            putShort(member, 10, 8); // XLEN
+            member[12] = SUBFIELD_ID_1;
+            member[13] = SUBFIELD_ID_2;
+            putShort(member, 14, 4); // Subfield length
+
+            def.setInput(data, 0, len);
+            def.finish();
+            int size = HEADER_SIZE;
+            while (!def.finished()) {
+                if (size == member.length - TRAILER_SIZE)
+                    member = Arrays.copyOf(member, member.length * 2);
+                size += def.deflate(member, size, member.length - TRAILER_SIZE - size);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, len);
+            putInt(member, size, (int) crc.getValue());
+            putInt(member, size + 4, len);
+            size += TRAILER_SIZE;
+
+            putInt(member, 16, size);
+            return member.length == size ? member : Arrays.copyOf(member, size);
+        } finally {
+            pool.release(def, true);
+        }
+    }
+
+    private static void putShort(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >> 8);
+        b[off + 2] = (byte) (value >> 16);
+        b[off + 3] = (byte) (value >> 24);
+    }
+}
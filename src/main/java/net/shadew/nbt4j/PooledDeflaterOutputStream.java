@@ -0,0 +1,96 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A {@link DeflaterOutputStream} that borrows its deflater and buffer from a {@link CompressionPool}, and gives them
+ * back when closed. In GZIP mode it writes the GZIP header and trailer itself, exactly like {@link
+ * java.util.zip.GZIPOutputStream}, which always creates a new deflater.
+ */
+class PooledDeflaterOutputStream extends DeflaterOutputStream {
+    // Magic, deflate method, no flags, no modification time, no extra flags, unknown operating system
+    private static final byte[] GZIP_HEADER = {0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, (byte) 0xFF};
+
+    private final CompressionPool pool;
+    private final boolean gzip;
+    private final CRC32 crc;
+    private boolean trailerWritten;
+    private boolean released;
+
+    PooledDeflaterOutputStream(
+        OutputStream out, CompressionPool pool, boolean gzip, CompressionSettings settings
+    ) throws IOException {
+        this(out, pool, gzip, settings, null);
+    }
+
+    /**
+     * @param dictionary The preset dictionary, or null to use none
+     */
+    PooledDeflaterOutputStream(
+        OutputStream out, CompressionPool pool, boolean gzip, CompressionSettings settings, byte[] dictionary
+    ) throws IOException {
+        super(out, pool.borrowDeflater(gzip, settings), 1);
+        if (dictionary != null)
+            def.setDictionary(dictionary);
+        this.pool = pool;
+        this.gzip = gzip;
+        this.buf = pool.borrowBuffer();
+        this.crc = gzip ? new CRC32() : null;
+
+        if (gzip) {
+            try {
+                out.write(GZIP_HEADER);
+            } catch (IOException exc) {
+                release();
+                throw exc;
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        if (gzip)
+            crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        super.finish();
+        if (gzip && !trailerWritten) {
+            trailerWritten = true;
+            byte[] trailer = new byte[8];
+            le32(trailer, 0, crc.getValue());
+            le32(trailer, 4, def.getBytesRead());
+            out.write(trailer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (released)
+            return;
+
+        try {
+            super.close();
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        released = true;
+        pool.release(def, gzip);
+        pool.release(buf);
+    }
+
+    private static void le32(byte[] b, int off, long value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >> 8);
+        b[off + 2] = (byte) (value >> 16);
+        b[off + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,195 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * An {@link InflaterInputStream} that borrows its inflater and buffer from a {@link CompressionPool}, and gives them
+ * back when closed. In GZIP mode it reads and checks the GZIP header and trailer itself, like {@link
+ * java.util.zip.GZIPInputStream}, which always creates a new inflater, and reads concatenated GZIP members as one
+ * stream. In zlib mode it supplies preset dictionaries when the stream asks for them.
+ */
+class PooledInflaterInputStream extends InflaterInputStream {
+    private static final int GZIP_MAGIC = 0x8B1F;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final CompressionPool pool;
+    private final boolean gzip;
+    private final CRC32 crc;
+    private final IntFunction<byte[]> dictionaries;
+    private boolean eos;
+    private boolean released;
+
+    PooledInflaterInputStream(InputStream in, CompressionPool pool, boolean gzip) throws IOException {
+        this(in, pool, gzip, null);
+    }
+
+    /**
+     * @param dictionaries Finds preset dictionaries by their Adler-32 ID, returning null for unknown IDs
+     */
+    PooledInflaterInputStream(
+        InputStream in, CompressionPool pool, boolean gzip, IntFunction<byte[]> dictionaries
+    ) throws IOException {
+        super(in, pool.borrowInflater(gzip), 1);
+        this.pool = pool;
+        this.gzip = gzip;
+        this.dictionaries = dictionaries;
+        this.buf = pool.borrowBuffer();
+        this.crc = gzip ? new CRC32() : null;
+
+        if (gzip) {
+            try {
+                readHeader(in);
+            } catch (IOException exc) {
+                release();
+                throw exc;
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (eos)
+            return -1;
+
+        int n = super.read(b, off, len);
+        while (n == -1 && inf.needsDictionary()) {
+            // InflaterInputStream ends the stream when a dictionary is needed, but continues once it is set
+            byte[] dictionary = dictionaries != null ? dictionaries.apply(inf.getAdler()) : null;
+            if (dictionary == null)
+                throw new ZipException("Unknown preset dictionary " + Integer.toHexString(inf.getAdler()));
+            inf.setDictionary(dictionary);
+            n = super.read(b, off, len);
+        }
+        if (!gzip)
+            return n;
+
+        while (n == -1) {
+            if (!readTrailer()) {
+                eos = true;
+                return -1;
+            }
+            n = super.read(b, off, len); // Another member follows
+        }
+        crc.update(b, off, n);
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (released)
+            return;
+
+        try {
+            super.close();
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        released = true;
+        pool.release(inf, gzip);
+        pool.release(buf);
+    }
+
+    private static void readHeader(InputStream in) throws IOException {
+        CRC32 headerCrc = new CRC32();
+        if (readUShort(in, headerCrc) != GZIP_MAGIC)
+            throw new ZipException("Not in GZIP format");
+        if (readUByte(in, headerCrc) != 8)
+            throw new ZipException("Unsupported compression method");
+
+        int flags = readUByte(in, headerCrc);
+        skipBytes(in, headerCrc, 6); // Modification time, extra flags and operating system
+        if ((flags & FEXTRA) != 0)
+            skipBytes(in, headerCrc, readUShort(in, headerCrc));
+        if ((flags & FNAME) != 0)
+            while (readUByte(in, headerCrc) != 0) ;
+        if ((flags & FCOMMENT) != 0)
+            while (readUByte(in, headerCrc) != 0) ;
+        if ((flags & FHCRC) != 0) {
+            int expected = (int) headerCrc.getValue() & 0xFFFF;
+            if (readUShort(in, null) != expected)
+                throw new ZipException("Corrupt GZIP header");
+        }
+    }
+
+    /**
+     * Reads and checks the trailer of the current member, and starts reading the next member if another one follows.
+     *
+     * @return True when another member follows
+     */
+    private boolean readTrailer() throws IOException {
+        // The inflater may have read part of the trailer into the buffer already
+        int remaining = inf.getRemaining();
+        int pos = len - remaining;
+
+        byte[] trailer = new byte[8];
+        int n = Math.min(remaining, 8);
+        System.arraycopy(buf, pos, trailer, 0, n);
+        while (n < 8) {
+            int r = in.read(trailer, n, 8 - n);
+            if (r < 0)
+                throw new EOFException("Unexpected end of GZIP trailer");
+            n += r;
+        }
+
+        long expectedCrc = le32(trailer, 0);
+        long expectedSize = le32(trailer, 4);
+        if (expectedCrc != crc.getValue() || expectedSize != (inf.getBytesWritten() & 0xFFFFFFFFL))
+            throw new ZipException("Corrupt GZIP trailer");
+
+        // Like GZIPInputStream, we read a next member when there are more bytes, and we ignore bytes that don't start
+        // with a valid member header
+        int leftover = Math.max(remaining - 8, 0);
+        if (leftover == 0 && in.available() == 0)
+            return false;
+
+        ByteArrayInputStream leftoverIn = new ByteArrayInputStream(buf, pos + 8, leftover);
+        try {
+            readHeader(leftover > 0 ? new SequenceInputStream(leftoverIn, in) : in);
+        } catch (IOException exc) {
+            return false;
+        }
+
+        inf.reset();
+        crc.reset();
+        int unread = leftoverIn.available();
+        if (unread > 0)
+            inf.setInput(buf, pos + 8 + leftover - unread, unread);
+        return true;
+    }
+
+    private static long le32(byte[] b, int off) {
+        return (b[off] & 0xFFL) | (b[off + 1] & 0xFFL) << 8 | (b[off + 2] & 0xFFL) << 16 | (b[off + 3] & 0xFFL) << 24;
+    }
+
+    private static int readUShort(InputStream in, CRC32 headerCrc) throws IOException {
+        return readUByte(in, headerCrc) | readUByte(in, headerCrc) << 8;
+    }
+
+    private static int readUByte(InputStream in, CRC32 headerCrc) throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException("Unexpected end of GZIP header");
+        if (headerCrc != null)
+            headerCrc.update(b);
+        return b;
+    }
+
+    private static void skipBytes(InputStream in, CRC32 headerCrc, int n) throws IOException {
+        while (n-- > 0)
+            readUByte(in, headerCrc);
+    }
+}
@@ -58,4 +58,30 @@ public class RecursionLimiter extends FilterNbtVisitor {
         depth--;
         super.visitEnd();
     }
+
+    @Override
+    public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+        // Arrays don't add depth, so the delegate may stream them
+        if (visitor != null)
+            return visitor.visitArray(type, length, name);
+        else return null;
+    }
+
+    @Override
+    public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+        if (visitor != null)
+            visitor.visitBorrowedByteArray(buffer, length, name);
+    }
+
+    @Override
+    public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+        if (visitor != null)
+            visitor.visitBorrowedIntArray(buffer, length, name);
+    }
+
+    @Override
+    public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+        if (visitor != null)
+            visitor.visitBorrowedLongArray(buffer, length, name);
+    }
 }
@@ -4,6 +4,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -94,20 +95,21 @@ public enum TagType {
 
 
     private static final Map<Class<? extends Tag>, TagType> BY_CLASS_NAME;
-    private static final Map<Byte, TagType> BY_ID;
+    private static final TagType[] BY_ID;
 
     static {
         // Dynamically fill BY_CLASS_NAME and BY_ID
+        // BY_ID is a plain array indexed by type ID: it is looked up for every tag read, so we avoid boxing the ID
         HashMap<Class<? extends Tag>, TagType> byClassName = new HashMap<>();
-        HashMap<Byte, TagType> byId = new HashMap<>();
+        TagType[] byId = new TagType[values().length];
 
         for (TagType t : values()) {
             byClassName.put(t.type, t);
-            byId.put(t.id, t);
+            byId[t.id] = t;
         }
 
         BY_CLASS_NAME = Collections.unmodifiableMap(byClassName);
-        BY_ID = Collections.unmodifiableMap(byId);
+        BY_ID = byId;
     }
 
     /**
@@ -139,11 +141,10 @@ public enum TagType {
      * @throws IllegalArgumentException When the given type ID is not a supported type ID
      */
     public static TagType forId(int id) {
-        byte byteId = (byte) id;
         if (!isValidId(id)) {
             throw new IllegalArgumentException("No such tag type with ID " + id);
         }
-        return BY_ID.get(byteId);
+        return BY_ID[id];
     }
 
     /**
@@ -166,7 +167,31 @@ public enum TagType {
         if (!isValidId(byteId)) {
             throw new NbtException("Found unknown tag ID " + byteId);
         }
-        return BY_ID.get(byteId);
+        return BY_ID[byteId];
+    }
+
+    /**
+     * Reads a {@link TagType} from the given buffer, at the given absolute index. This reads exactly one byte, without
+     * modifying the position of the buffer, which is then turned into a {@link TagType} like {@link #forId}, but
+     * throwing an {@link NbtException} instead when the ID is unknown.
+     *
+     * @param buf   The buffer to read from
+     * @param index The absolute index of the type ID in the buffer
+     * @return The {@link TagType} read
+     *
+     * @throws NullPointerException      When the given buffer is null
+     * @throws IndexOutOfBoundsException When the index is not within the limit of the buffer
+     * @throws NbtException              When the read type ID is an unknown ID
+     */
+    public static TagType readType(ByteBuffer buf, int index) throws NbtException {
+        if (buf == null) {
+            throw new NullPointerException("Buffer is null");
+        }
+        byte byteId = buf.get(index);
+        if (!isValidId(byteId)) {
+            throw new NbtException("Found unknown tag ID " + byteId);
+        }
+        return BY_ID[byteId];
     }
 
     /**
@@ -180,8 +205,7 @@ public enum TagType {
      * @return True when the given ID is a valid type ID, false otherwise.
      */
     public static boolean isValidId(int id) {
-        if (id < Byte.MIN_VALUE || id > Byte.MAX_VALUE) return false;
-        return BY_ID.containsKey((byte) id);
+        return id >= 0 && id < BY_ID.length;
     }
 
     /**
@@ -242,6 +266,33 @@ public enum TagType {
         out.writeByte(id);
     }
 
+    /**
+     * Returns the amount of payload bytes a tag of this type always takes, or -1 when the payload size of this type is
+     * variable. This is used by readers to skip over tags without decoding them.
+     */
+    int fixedSize() {
+        return switch (this) {
+            case BYTE -> 1;
+            case SHORT -> 2;
+            case INT, FLOAT -> 4;
+            case LONG, DOUBLE -> 8;
+            case END -> 0;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Returns the size in bytes of one element of an array of this type, or -1 when this is not an array type.
+     */
+    int arrayElementSize() {
+        return switch (this) {
+            case BYTE_ARRAY -> 1;
+            case INT_ARRAY -> 4;
+            case LONG_ARRAY -> 8;
+            default -> -1;
+        };
+    }
+
     public boolean isNumeric() {
         return this == BYTE || this == SHORT || this == INT || this == LONG || this == FLOAT || this == DOUBLE;
     }
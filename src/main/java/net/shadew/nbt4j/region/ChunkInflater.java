@@ -0,0 +1,207 @@
+package net.shadew.nbt4j.region;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import net.shadew.nbt4j.Compression;
+
+/**
+ * Decompresses chunks from a {@link ByteBuffer} straight into a reusable buffer, without any stream in between. The
+ * compressed bytes are fed to {@link Inflater#setInput(ByteBuffer)}, which reads heap, direct and mapped buffers
+ * without copying, and are inflated into a buffer that is kept and grown as needed. The result can be read by an
+ * {@link net.shadew.nbt4j.NbtBufferReader} directly.
+ * <pre>
+ * try (ChunkInflater inflater = new ChunkInflater()) {
+ *     ByteBuffer nbt = regionFile.readChunk(x, z, inflater);
+ *     if (nbt != null)
+ *         new NbtBufferReader(nbt).accept(visitor);
+ * }
+ * </pre>
+ * <p>
+ * An inflater holds native zlib contexts and buffers that it reuses for every chunk, so one should be kept per thread
+ * rather than created per chunk. It must be closed to free its native memory. It is not safe for use by multiple
+ * threads.
+ * </p>
+ */
+public final class ChunkInflater implements AutoCloseable {
+    private static final int INITIAL_SIZE = 64 << 10;
+
+    private static final int GZIP_MAGIC = 0x8B1F;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final boolean direct;
+    private final CRC32 crc = new CRC32();
+    private Inflater zlibInflater;
+    private Inflater rawInflater;
+    private ByteBuffer input;
+    private ByteBuffer output;
+    private boolean closed;
+
+    public ChunkInflater() {
+        this(false);
+    }
+
+    /**
+     * @param direct Whether to inflate into a direct buffer rather than a heap buffer
+     */
+    public ChunkInflater(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * Decompresses the remaining bytes of the given buffer, which must hold exactly one compressed chunk payload. The
+     * position of the given buffer is not changed. The returned buffer holds the decompressed bytes from its position
+     * to its limit, and is only valid until the next call on this inflater. Uncompressed payloads are returned as a
+     * slice of the given buffer.
+     *
+     * @throws ZipException When the payload is not properly compressed
+     * @throws EOFException When the payload is truncated
+     * @throws IOException  When an I/O error occurs
+     */
+    public ByteBuffer inflate(ByteBuffer src, Compression compression) throws IOException {
+        if (closed)
+            throw new IOException("Inflater closed");
+
+        switch (compression) {
+            case UNCOMPRESSED:
+                return src.slice();
+            case DEFLATED:
+                return inflate(src.duplicate(), zlib(), false);
+            default:
+                ByteBuffer in = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                skipGzipHeader(in);
+                return inflate(in, raw(), true);
+        }
+    }
+
+    /**
+     * Returns a reusable buffer to read compressed chunk sectors into, cleared and limited to the given size.
+     */
+    ByteBuffer sectorBuffer(int size) {
+        if (input == null || input.capacity() < size)
+            input = ByteBuffer.allocateDirect(Math.max(size, input == null ? 0 : input.capacity() * 2));
+        input.clear().limit(size);
+        return input;
+    }
+
+    /**
+     * Copies the remaining bytes of the given buffer into the output buffer of this inflater.
+     */
+    ByteBuffer copy(ByteBuffer src) {
+        ByteBuffer out = output(src.remaining());
+        out.put(src.duplicate()).flip();
+        return out;
+    }
+
+    private ByteBuffer inflate(ByteBuffer in, Inflater inf, boolean gzip) throws IOException {
+        inf.reset();
+        inf.setInput(in);
+
+        ByteBuffer out = output(Math.max(INITIAL_SIZE, in.remaining() * 4));
+        try {
+            while (!inf.finished()) {
+                if (!out.hasRemaining())
+                    out = grow(out);
+
+                if (inf.inflate(out) == 0 && !inf.finished()) {
+                    if (inf.needsDictionary())
+                        throw new ZipException("Chunk needs a preset dictionary");
+                    if (inf.needsInput())
+                        throw new EOFException("Unexpected end of compressed chunk");
+                }
+            }
+        } catch (DataFormatException exc) {
+            throw new ZipException(exc.getMessage());
+        }
+        out.flip();
+
+        if (gzip) {
+            // The inflater has advanced the input past the deflated data, the trailer follows
+            if (in.remaining() < 8)
+                throw new EOFException("Unexpected end of GZIP trailer");
+
+            crc.reset();
+            crc.update(out.duplicate());
+            if (in.getInt() != (int) crc.getValue() || in.getInt() != out.remaining())
+                throw new ZipException("Corrupt GZIP trailer");
+        }
+        return out;
+    }
+
+    private ByteBuffer output(int minSize) {
+        if (output == null || output.capacity() < minSize)
+            output = allocate(Math.max(minSize, output == null ? 0 : output.capacity()));
+        return output.clear();
+    }
+
+    private ByteBuffer grow(ByteBuffer out) {
+        ByteBuffer grown = allocate(out.capacity() * 2);
+        grown.put(out.flip());
+        output = grown;
+        return grown;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private Inflater zlib() {
+        if (zlibInflater == null)
+            zlibInflater = new Inflater();
+        return zlibInflater;
+    }
+
+    private Inflater raw() {
+        if (rawInflater == null)
+            rawInflater = new Inflater(true);
+        return rawInflater;
+    }
+
+    private static void skipGzipHeader(ByteBuffer in) throws IOException {
+        try {
+            if ((in.getShort() & 0xFFFF) != GZIP_MAGIC)
+                throw new ZipException("Not in GZIP format");
+            if (in.get() != 8)
+                throw new ZipException("Unsupported compression method");
+
+            int flags = in.get() & 0xFF;
+            in.position(in.position() + 6); // Modification time, extra flags and operating system
+            if ((flags & FEXTRA) != 0)
+                in.position(in.position() + (in.getShort() & 0xFFFF));
+            if ((flags & FNAME) != 0)
+                while (in.get() != 0) ;
+            if ((flags & FCOMMENT) != 0)
+                while (in.get() != 0) ;
+            if ((flags & FHCRC) != 0)
+                in.getShort(); // Header CRC, not checked
+        } catch (RuntimeException exc) { // BufferUnderflowException or IllegalArgumentException
+            throw new EOFException("Unexpected end of GZIP header");
+        }
+    }
+
+    /**
+     * Ends the native zlib contexts of this inflater. It can no longer be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+
+        if (zlibInflater != null)
+            zlibInflater.end();
+        if (rawInflater != null)
+            rawInflater.end();
+        input = null;
+        output = null;
+    }
+}
@@ -0,0 +1,103 @@
+package net.shadew.nbt4j.region;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the decisions made by {@linkplain RegionFile#ADAPTIVE adaptive} region files. Every adaptively written
+ * chunk is counted in exactly one of three ways:
+ * <ul>
+ * <li><em>skipped</em>: the uncompressed chunk fits in one sector, so it was stored uncompressed without trying to
+ * compress it;</li>
+ * <li><em>compressed</em>: compressing the chunk made it take fewer sectors, so it was stored compressed;</li>
+ * <li><em>rejected</em>: compressing the chunk did not make it take fewer sectors, so it was stored uncompressed.</li>
+ * </ul>
+ * <p>
+ * Byte counts are of chunk payloads, excluding chunk headers and sector padding. Statistics can be shared by multiple
+ * region files, and are updated by multiple threads.
+ * </p>
+ */
+public final class CompressionStatistics {
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+
+    public long skippedChunks() {
+        return skipped.sum();
+    }
+
+    public long compressedChunks() {
+        return compressed.sum();
+    }
+
+    public long rejectedChunks() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the total uncompressed size of all written chunks.
+     */
+    public long rawBytes() {
+        return rawBytes.sum();
+    }
+
+    /**
+     * Returns the total stored size of all written chunks.
+     */
+    public long storedBytes() {
+        return storedBytes.sum();
+    }
+
+    /**
+     * Returns the amount of bytes saved by compressing chunks.
+     */
+    public long bytesSaved() {
+        return rawBytes() - storedBytes();
+    }
+
+    /**
+     * Returns the total time spent compressing chunks, in nanoseconds, including the time spent on rejected chunks.
+     */
+    public long compressionNanos() {
+        return compressionNanos.sum();
+    }
+
+    public void reset() {
+        skipped.reset();
+        compressed.reset();
+        rejected.reset();
+        rawBytes.reset();
+        storedBytes.reset();
+        compressionNanos.reset();
+    }
+
+    void recordSkipped(int raw) {
+        skipped.increment();
+        rawBytes.add(raw);
+        storedBytes.add(raw);
+    }
+
+    void recordCompressed(int raw, int stored, long nanos) {
+        compressed.increment();
+        rawBytes.add(raw);
+        storedBytes.add(stored);
+        compressionNanos.add(nanos);
+    }
+
+    void recordRejected(int raw, long nanos) {
+        rejected.increment();
+        rawBytes.add(raw);
+        storedBytes.add(raw);
+        compressionNanos.add(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStatistics[skipped=" + skippedChunks()
+                   + ", compressed=" + compressedChunks()
+                   + ", rejected=" + rejectedChunks()
+                   + ", bytesSaved=" + bytesSaved() + "]";
+    }
+}
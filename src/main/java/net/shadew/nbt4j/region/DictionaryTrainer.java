@@ -0,0 +1,355 @@
+package net.shadew.nbt4j.region;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import net.shadew.nbt4j.CompressionCodec;
+import net.shadew.nbt4j.CompressionDictionary;
+import net.shadew.nbt4j.CompressionRegistry;
+
+/**
+ * Trains a {@link CompressionDictionary} for {@link net.shadew.nbt4j.DictionaryCodec} from sample chunks. The trainer
+ * looks for the segments of the samples that contain the most strings shared by many samples, and concatenates the best
+ * of them into a dictionary, the best segments last. It is a simplified form of the cover algorithm used to train
+ * Zstandard dictionaries.
+ * <p>
+ * Samples are uncompressed chunk payloads, added one by one or read from region files. The trainer can be run from the
+ * command line as well, to train a dictionary from the region files of a world:
+ * </p>
+ * <pre>
+ * java net.shadew.nbt4j.region.DictionaryTrainer chunks.dict world/region
+ * </pre>
+ */
+public final class DictionaryTrainer {
+    /**
+     * The default size of the segments that make up a dictionary.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1024;
+
+    /**
+     * The default maximum amount of sample bytes to train from.
+     */
+    public static final long DEFAULT_MAX_SAMPLE_BYTES = 64 << 20;
+
+    private static final int GRAM_SIZE = 8; // Length of the strings that are counted
+    private static final int HASH_BITS = 20;
+    private static final int SECTOR_SIZE = 4096;
+
+    private final List<byte[]> samples = new ArrayList<>();
+    private long sampleBytes;
+
+    private int dictionarySize = CompressionDictionary.MAX_SIZE;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private long maxSampleBytes = DEFAULT_MAX_SAMPLE_BYTES;
+
+    public int dictionarySize() {
+        return dictionarySize;
+    }
+
+    /**
+     * Sets the size of the dictionaries to train. The trained dictionary may be smaller when the samples are small.
+     *
+     * @throws IllegalArgumentException When the size is not from 1 to {@link CompressionDictionary#MAX_SIZE}
+     */
+    public DictionaryTrainer dictionarySize(int dictionarySize) {
+        if (dictionarySize < 1 || dictionarySize > CompressionDictionary.MAX_SIZE)
+            throw new IllegalArgumentException("Dictionary size must be from 1 to " + CompressionDictionary.MAX_SIZE);
+        this.dictionarySize = dictionarySize;
+        return this;
+    }
+
+    public int segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Sets the size of the segments that make up a dictionary. Smaller segments give a dictionary of more, but shorter
+     * strings.
+     *
+     * @throws IllegalArgumentException When the size is smaller than 16 bytes
+     */
+    public DictionaryTrainer segmentSize(int segmentSize) {
+        if (segmentSize < 16)
+            throw new IllegalArgumentException("Segment size must be at least 16");
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    public long maxSampleBytes() {
+        return maxSampleBytes;
+    }
+
+    /**
+     * Sets the maximum amount of sample bytes to train from. Samples beyond this amount are not added.
+     */
+    public DictionaryTrainer maxSampleBytes(long maxSampleBytes) {
+        this.maxSampleBytes = maxSampleBytes;
+        return this;
+    }
+
+    public int sampleCount() {
+        return samples.size();
+    }
+
+    public long sampleBytes() {
+        return sampleBytes;
+    }
+
+    /**
+     * Adds an uncompressed chunk payload to train from. Returns false when the sample was not added because the
+     * maximum amount of sample bytes was reached.
+     */
+    public boolean addSample(byte[] sample) {
+        if (sampleBytes + sample.length > maxSampleBytes)
+            return false;
+        samples.add(sample);
+        sampleBytes += sample.length;
+        return true;
+    }
+
+    /**
+     * Adds all chunks of the given region file as samples, until the maximum amount of sample bytes is reached. The
+     * file is only read, and chunks that are malformed, stored externally or compressed in an unknown way are skipped.
+     *
+     * @return The amount of added samples
+     *
+     * @throws IOException When an I/O error occurs
+     */
+    public int addRegionFile(Path file) throws IOException {
+        int added = 0;
+        try (FileChannel io = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SECTOR_SIZE);
+            if (io.read(header, 0) < SECTOR_SIZE)
+                return 0;
+            header.flip();
+
+            long fileSize = io.size();
+            for (int index = 0; index < SECTOR_SIZE / 4; index++) {
+                int loc = header.getInt(index * 4);
+                long off = (loc >>> 8) * (long) SECTOR_SIZE;
+                if (loc == 0 || off < 2 * SECTOR_SIZE || off >= fileSize)
+                    continue;
+
+                // The last sector may not be padded
+                int len = (int) Math.min((loc & 0xFF) * SECTOR_SIZE, fileSize - off);
+                ByteBuffer buf = ByteBuffer.allocate(len);
+                io.read(buf, off);
+                buf.flip();
+
+                byte[] sample = readChunk(buf);
+                if (sample != null) {
+                    if (!addSample(sample))
+                        break;
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    private static byte[] readChunk(ByteBuffer buf) {
+        if (buf.remaining() < 5)
+            return null;
+
+        int size = buf.getInt();
+        int type = buf.get() & 0xFF;
+        CompressionCodec codec = CompressionRegistry.byId(type);
+        if (size <= 1 || size - 1 > buf.remaining() || codec == null)
+            return null;
+
+        try (InputStream in = codec.createInStream(new ByteArrayInputStream(buf.array(), buf.position(), size - 1))) {
+            return in.readAllBytes();
+        } catch (IOException exc) {
+            return null;
+        }
+    }
+
+    /**
+     * Trains a dictionary from the added samples.
+     *
+     * @throws IllegalStateException When no samples, or only empty samples, were added
+     */
+    public CompressionDictionary train() {
+        if (sampleBytes == 0)
+            throw new IllegalStateException("No samples to train from");
+
+        byte[] data = new byte[(int) Math.min(sampleBytes, Integer.MAX_VALUE - 8)];
+        int pos = 0;
+        for (byte[] sample : samples) {
+            int n = Math.min(sample.length, data.length - pos);
+            System.arraycopy(sample, 0, data, pos, n);
+            pos += n;
+        }
+
+        // Segments are no longer than the dictionary, and too short segments hold no strings to count
+        int segment = Math.min(Math.min(segmentSize, dictionarySize), data.length);
+        if (segment < GRAM_SIZE)
+            return tail(data);
+
+        int grams = data.length - GRAM_SIZE + 1;
+
+        // Count in how many samples every string occurs: strings that occur in many chunks are worth the most
+        int[] frequency = new int[1 << HASH_BITS];
+        int[] lastSample = new int[1 << HASH_BITS];
+        int sampleStart = 0;
+        int sampleIndex = 0;
+        for (byte[] sample : samples) {
+            sampleIndex++;
+            int end = Math.min(sampleStart + sample.length, grams);
+            for (int i = sampleStart; i < end; i++) {
+                int hash = hash(data, i);
+                if (lastSample[hash] != sampleIndex) {
+                    lastSample[hash] = sampleIndex;
+                    frequency[hash]++;
+                }
+            }
+            sampleStart += sample.length;
+        }
+
+        // Split the samples into epochs and pick the best segment of every epoch. The strings of a picked segment no
+        // longer count, so that later segments add new strings to the dictionary.
+        int epochs = Math.max(1, Math.min(dictionarySize / segment, data.length / segment));
+        int epochSize = data.length / epochs;
+        int[] inSegment = new int[1 << HASH_BITS];
+
+        List<long[]> picked = new ArrayList<>(); // Pairs of score and segment start
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            int start = epoch * epochSize;
+            int end = Math.min(start + epochSize, grams);
+            int gramsPerSegment = segment - GRAM_SIZE + 1;
+
+            long score = 0;
+            long bestScore = 0;
+            int bestStart = -1;
+            for (int i = start; i < end; i++) {
+                int hash = hash(data, i);
+                if (inSegment[hash]++ == 0)
+                    score += frequency[hash];
+
+                int first = i - gramsPerSegment + 1;
+                if (first < start)
+                    continue;
+
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestStart = first;
+                }
+
+                int firstHash = hash(data, first);
+                if (--inSegment[firstHash] == 0)
+                    score -= frequency[firstHash];
+            }
+
+            // Clear the window that is left
+            for (int i = Math.max(start, end - gramsPerSegment + 1); i < end; i++)
+                inSegment[hash(data, i)] = 0;
+
+            if (bestStart >= 0) {
+                picked.add(new long[] {bestScore, bestStart});
+                for (int i = bestStart; i < bestStart + gramsPerSegment; i++)
+                    frequency[hash(data, i)] = 0;
+            }
+        }
+
+        if (picked.isEmpty())
+            return tail(data);
+
+        // Deflate encodes nearer references in fewer bits, so the best segments go at the end
+        picked.sort((a, b) -> Long.compare(a[0], b[0]));
+        int count = Math.min(picked.size(), dictionarySize / segment);
+        byte[] dict = new byte[count * segment];
+        for (int i = 0; i < count; i++) {
+            int from = (int) picked.get(picked.size() - count + i)[1];
+            System.arraycopy(data, from, dict, i * segment, segment);
+        }
+        return CompressionDictionary.of(dict);
+    }
+
+    // The last bytes of the samples, as many as fit in the dictionary
+    private CompressionDictionary tail(byte[] data) {
+        int start = Math.max(data.length - dictionarySize, 0);
+        return CompressionDictionary.of(Arrays.copyOfRange(data, start, data.length));
+    }
+
+    private static int hash(byte[] data, int off) {
+        long gram = 0;
+        for (int i = 0; i < GRAM_SIZE; i++)
+            gram = gram << 8 | data[off + i] & 0xFF;
+        return (int) (gram * 0x9E3779B97F4A7C15L >>> 64 - HASH_BITS);
+    }
+
+    /**
+     * Trains a dictionary from region files and writes it to a file. Usage: {@code DictionaryTrainer <output file>
+     * <region file or directory>...}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DictionaryTrainer <output file> <region file or directory>...");
+            System.exit(1);
+            return;
+        }
+
+        DictionaryTrainer trainer = new DictionaryTrainer();
+        for (int i = 1; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                        String name = file.getFileName().toString();
+                        if (name.endsWith(".mca") || name.endsWith(".mcr"))
+                            trainer.addRegionFile(file);
+                    }
+                }
+            } else {
+                trainer.addRegionFile(path);
+            }
+        }
+
+        if (trainer.sampleCount() == 0) {
+            System.err.println("No chunks found");
+            System.exit(1);
+            return;
+        }
+
+        CompressionDictionary dict = trainer.train();
+        Files.write(Paths.get(args[0]), dict.toByteArray());
+
+        long plain = 0, withDict = 0, raw = 0;
+        Deflater def = new Deflater();
+        byte[] out = new byte[1 << 16];
+        for (byte[] sample : trainer.samples) {
+            raw += sample.length;
+            plain += deflatedSize(def, sample, null, out);
+            withDict += deflatedSize(def, sample, dict.toByteArray(), out);
+        }
+        def.end();
+
+        System.out.println("Trained dictionary " + Integer.toHexString(dict.id()) + " of " + dict.size()
+                               + " bytes from " + trainer.sampleCount() + " chunks (" + raw + " bytes)");
+        System.out.println("Deflated without dictionary: " + plain + " bytes, with dictionary: " + withDict + " bytes");
+    }
+
+    private static long deflatedSize(Deflater def, byte[] data, byte[] dict, byte[] out) {
+        def.reset();
+        if (dict != null)
+            def.setDictionary(dict);
+        def.setInput(data);
+        def.finish();
+        long size = 0;
+        while (!def.finished())
+            size += def.deflate(out);
+        return size;
+    }
+}
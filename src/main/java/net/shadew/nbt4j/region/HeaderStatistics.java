@@ -0,0 +1,56 @@
+package net.shadew.nbt4j.region;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the header writes of region files. A region file writes only the header slots that changed, rather than
+ * the entire 8 KiB header, and writes the changes of concurrent chunk writes as one batch. The saved bytes
+ * are counted relative to writing the entire header for every header write.
+ * <p>
+ * Statistics can be shared by multiple region files, and are updated by multiple threads.
+ * </p>
+ */
+public final class HeaderStatistics {
+    private static final int HEADER_SIZE = 8192;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /**
+     * Returns the amount of times a header was written.
+     */
+    public long headerWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * Returns the total amount of header bytes written.
+     */
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Returns the amount of bytes saved by not writing the entire header on every header write.
+     */
+    public long bytesSaved() {
+        return writes.sum() * HEADER_SIZE - bytesWritten.sum();
+    }
+
+    public void reset() {
+        writes.reset();
+        bytesWritten.reset();
+    }
+
+    void recordWrite(int bytes) {
+        writes.increment();
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "HeaderStatistics[writes=" + headerWrites()
+                   + ", bytesWritten=" + bytesWritten()
+                   + ", bytesSaved=" + bytesSaved() + "]";
+    }
+}
@@ -9,11 +9,25 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 
 import net.shadew.nbt4j.Compression;
+import net.shadew.nbt4j.CompressionCodec;
+import net.shadew.nbt4j.CompressionRegistry;
+import net.shadew.nbt4j.CompressionSettings;
+import net.shadew.nbt4j.NbtWriter;
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.TagSerializer;
+import net.shadew.nbt4j.util.IOSupplier;
 import net.shadew.nbt4j.util.MalformedRegionFileException;
 import net.shadew.nbt4j.util.NullInputStream;
 
@@ -82,6 +96,39 @@ public final class RegionFile implements AutoCloseable, Flushable {
     public static final int VERBOSE = 0b1000000 | LENIENT;
     private static final int VERBOSE_RAW = 0b1000000;
 
+    /**
+     * Flag to mark that the region file should pick per chunk whether to store it compressed or uncompressed. A chunk
+     * is only stored compressed when compressing it makes it take fewer sectors, as the size of a chunk in the region
+     * file is rounded up to whole sectors anyway. Chunks that fit in one sector uncompressed are not compressed at all,
+     * which saves the time of compressing small chunks, and chunks that barely compress, e.g. with random data, are
+     * stored uncompressed. The compression type of every chunk is stored in its chunk header, so region files written
+     * adaptively can be read by any reader that supports {@linkplain Compression#UNCOMPRESSED uncompressed} chunks.
+     * <p>
+     * Chunks are compressed with the compression picked by the other flags, or with the given codec. The decisions are
+     * counted by the {@linkplain #getCompressionStatistics() compression statistics} of the region file.
+     * </p>
+     */
+    public static final int ADAPTIVE = 0b10000000;
+
+    /**
+     * Flag to mark that chunks should be read from a memory mapping of the region file rather than with a read call for
+     * every chunk. Chunk sectors are then read as read-only slices of the mapping, without locking, which suits region
+     * files that are read much more often than they are written. The mapping is replaced when a chunk is read from
+     * beyond its end, after the file has grown.
+     * <p>
+     * Only {@link #readChunk} reads chunks without copying them: chunks compressed with GZIP or zlib are inflated
+     * straight from the mapping, and uncompressed chunks are copied into the reused buffer of the inflater. As the
+     * sectors of a chunk may be reused by a write once the read has finished, {@link #openInputStream} copies the chunk
+     * into a new array, which costs the same as reading it without a mapping.
+     * </p>
+     * <p>
+     * To make sure that no slice of a mapping ever refers past the end of the file, mapped region files are never
+     * truncated, not even when closed: unused sectors at the end of the file are kept, and are reused by later writes.
+     * Opening and closing the file without this flag truncates them.
+     * </p>
+     */
+    public static final int MAPPED = 0b100000000;
+
     // Sector metrics
     private static final int SECTOR_SIZE = 4096;
     private static final long SECTOR_SIZE_L = SECTOR_SIZE;
@@ -94,21 +141,49 @@ public final class RegionFile implements AutoCloseable, Flushable {
     private static final int COMPRESSION_TYPE = 0b01111111;
     private static final int INTERNAL_SIZE_LIMIT = 256;
 
-    private static final ByteBuffer ZERO_BYTE_BUF = ByteBuffer.wrap(new byte[0]);
+    // Amount of unchanged header slots between two changed slots, from which the slots are written separately
+    private static final int MAX_HEADER_GAP = 16;
+
+    // Amount of locks that chunk writes are striped over
+    private static final int LOCK_STRIPES = 64;
+
+    private static final ByteBuffer ZERO_BYTE_BUF = ByteBuffer.wrap(new byte[1]);
 
     private final Path directory;
     private final Path file;
-    private final Compression compression;
+    private final CompressionCodec codec;
+    private final CompressionSettings compressionSettings;
     private final boolean buffered;
     private final boolean lenient;
+    private final boolean adaptive;
+    private final boolean mapped;
+    private volatile CompressionStatistics statistics = new CompressionStatistics();
 
     private final FileChannel io;
+    private volatile ByteBuffer mapping;
     private final SectorManager sectors = new SectorManager();
 
     private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
     private final IntBuffer locations;
     private final IntBuffer timestamps;
 
+    // Guards the header. Writers publish header changes under the write lock, readers read optimistically and validate
+    // afterwards that no header change was published meanwhile.
+    private final StampedLock headerLock = new StampedLock();
+    private volatile long headerVersion; // Incremented for every published header change, under the write lock
+
+    // Guards writing the header to the file. Writers that wait for another writer to write the header find their own
+    // header changes written along, so concurrent header changes are written as one batch.
+    private final Object headerWriteLock = new Object();
+    private final ByteBuffer headerCopy = ByteBuffer.allocate(HEADER_SIZE);
+    private long writtenHeaderVersion = -1;
+    private boolean headerDirty = true; // Whether the entire header needs to be written, rather than just changed slots
+    private final BitSet dirtySlots = new BitSet(SECTOR_INTS); // Set under the header write lock
+    private volatile HeaderStatistics headerStatistics = new HeaderStatistics();
+
+    // Writes to one chunk happen one at a time, writes to chunks of different stripes happen concurrently
+    private final ReentrantLock[] chunkLocks = new ReentrantLock[LOCK_STRIPES];
+
     private final RegionFileFixer fixer;
 
 
@@ -121,34 +196,84 @@ public final class RegionFile implements AutoCloseable, Flushable {
 
 
     public RegionFile(Path directory, Path file, int openFlags) throws IOException {
+        this(directory, file, openFlags, CompressionSettings.DEFAULT);
+    }
+
+    /**
+     * Opens a region file that compresses chunks with the given settings, unless other settings are given when writing
+     * a chunk.
+     */
+    public RegionFile(Path directory, Path file, int openFlags, CompressionSettings settings) throws IOException {
+        this(directory, file, openFlags, (CompressionCodec) null, settings);
+    }
+
+    /**
+     * Opens a region file that writes chunks with the given codec, rather than the codec picked by the compression
+     * flags. The codec does not need to be {@linkplain CompressionRegistry registered} for writing, but it does for
+     * reading the chunks back.
+     */
+    public RegionFile(
+        Path directory, Path file, int openFlags, CompressionCodec codec, CompressionSettings settings
+    ) throws IOException {
         this(
             directory, file, openFlags,
 
             (openFlags & VERBOSE_RAW) != 0
             ? VerboseRegionFixer.INSTANCE
-            : SilentRegionFixer.INSTANCE
+            : SilentRegionFixer.INSTANCE,
+
+            codec, settings, null
         );
     }
 
     public RegionFile(Path directory, Path file, int openFlags, RegionFileFixer fixer) throws IOException {
-        this(directory, file, openFlags | LENIENT, fixer, null);
+        this(directory, file, openFlags, fixer, CompressionSettings.DEFAULT);
+    }
+
+    public RegionFile(
+        Path directory, Path file, int openFlags, RegionFileFixer fixer, CompressionSettings settings
+    ) throws IOException {
+        this(directory, file, openFlags, fixer, null, settings);
+    }
+
+    public RegionFile(
+        Path directory, Path file, int openFlags, RegionFileFixer fixer, CompressionCodec codec,
+        CompressionSettings settings
+    ) throws IOException {
+        this(directory, file, openFlags | LENIENT, fixer, codec, settings, null);
     }
 
     @SuppressWarnings("unused") // We need the unused void parameter for the sake of method overloading
-    private RegionFile(Path directory, Path file, int openFlags, RegionFileFixer fixer, Void unused) throws IOException {
+    private RegionFile(
+        Path directory, Path file, int openFlags, RegionFileFixer fixer, CompressionCodec codec,
+        CompressionSettings settings, Void unused
+    ) throws IOException {
+        if (settings == null)
+            throw new NullPointerException("Compression settings cannot be null");
+
         this.directory = directory;
         this.file = file;
         this.fixer = fixer;
+        this.compressionSettings = settings;
 
-        int compr = (openFlags & 0b11000) >> 3;
-        if (compr >= 1 && compr <= 3) {
-            compression = Compression.byRegionTypeId(compr);
+        if (codec != null) {
+            this.codec = codec;
         } else {
-            compression = Compression.GZIPPED;
+            int compr = (openFlags & 0b11000) >> 3;
+            if (compr >= 1 && compr <= 3) {
+                this.codec = Compression.byRegionTypeId(compr);
+            } else {
+                this.codec = Compression.GZIPPED;
+            }
         }
 
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            chunkLocks[i] = new ReentrantLock();
+
         buffered = (openFlags & BUFFERED) != 0;
+        adaptive = (openFlags & ADAPTIVE) != 0 && this.codec != Compression.UNCOMPRESSED;
         lenient = (openFlags & LENIENT) != 0;
+        mapped = (openFlags & MAPPED) != 0;
 
         io = open(file, (openFlags & DSYNC) != 0);
 
@@ -214,6 +339,9 @@ public final class RegionFile implements AutoCloseable, Flushable {
             );
         }
 
+        // The header is in the file, from now on we only need to write the slots that change
+        headerDirty = false;
+
         // Mark necessary sectors as used
         long fileSize = io.size();
 
@@ -232,12 +360,14 @@ public final class RegionFile implements AutoCloseable, Flushable {
 
                     // Repair: ignore chunk and make it empty
                     locations.put(index, 0);
+                    dirtySlots.set(index);
                 } else if (len == 0) {
                     // Chunk has offset but no sectors (not critical but warn fixer, by convention only when lenient)
                     if (lenient)
                         fixer.offsetZeroSectorChunk(index);
 
                     locations.put(index, 0);
+                    dirtySlots.set(index);
                 } else if (off * SECTOR_SIZE_L > fileSize) {
                     // Chunk is out of file space
                     if (!lenient)
@@ -247,6 +377,7 @@ public final class RegionFile implements AutoCloseable, Flushable {
 
                     // Repair: ignore chunk and make it empty
                     locations.put(index, 0);
+                    dirtySlots.set(index);
                 } else {
                     // Chunk exist, mark sectors as used
                     sectors.allocate(off, len);
@@ -264,20 +395,100 @@ public final class RegionFile implements AutoCloseable, Flushable {
     // =====================================================
 
 
-    private void writeHeader() throws IOException {
-        header.position(0);
-        synchronized (io) {
-            io.write(header, 0);
+    /**
+     * Writes the header changes up to the given version to the file, unless they have been written already. Only the
+     * slots that changed are written, in both the location table and the timestamp table, rather than the entire
+     * header. Every run of changed slots is written separately, unless runs are only a few slots apart.
+     */
+    private void writeHeader(long version) throws IOException {
+        synchronized (headerWriteLock) {
+            if (writtenHeaderVersion >= version)
+                return; // Another writer wrote our header changes along with its own
+
+            // Copy the changed parts of the header so that we write a consistent header, and not one that is being
+            // changed meanwhile
+            long copiedVersion;
+            int[] runs;
+            long stamp = headerLock.readLock();
+            try {
+                runs = headerDirty ? new int[] {0, SECTOR_INTS} : dirtyRuns();
+                dirtySlots.clear();
+                copiedVersion = headerVersion;
+
+                headerCopy.clear();
+                for (int i = 0; i < runs.length; i += 2) {
+                    int from = runs[i] * 4, len = (runs[i + 1] - runs[i]) * 4;
+                    headerCopy.put(from, header, from, len);
+                    headerCopy.put(SECTOR_SIZE + from, header, SECTOR_SIZE + from, len);
+                }
+            } finally {
+                headerLock.unlockRead(stamp);
+            }
+
+            if (runs.length > 0) {
+                int slots = 0;
+                try {
+                    for (int i = 0; i < runs.length; i += 2) {
+                        int from = runs[i] * 4, to = runs[i + 1] * 4;
+                        io.write(headerCopy.limit(to).position(from), from);
+                        io.write(headerCopy.limit(SECTOR_SIZE + to).position(SECTOR_SIZE + from), SECTOR_SIZE + from);
+                        slots += runs[i + 1] - runs[i];
+                    }
+                } catch (IOException e) {
+                    // We don't know which of the changed slots made it to the file, so write everything next time
+                    headerDirty = true;
+                    throw e;
+                }
+                headerDirty = false;
+                headerStatistics.recordWrite(slots * 8);
+            }
+            writtenHeaderVersion = copiedVersion;
         }
     }
 
+    /**
+     * Returns the runs of dirty slots, as pairs of the first slot and the slot after the last slot of every run. Runs
+     * that are less than {@link #MAX_HEADER_GAP} slots apart are merged, as writing the slots in between costs less
+     * than another write.
+     */
+    private int[] dirtyRuns() {
+        int[] runs = new int[8];
+        int count = 0;
+        int from = dirtySlots.nextSetBit(0);
+        while (from >= 0) {
+            int to = dirtySlots.nextClearBit(from);
+            int next = dirtySlots.nextSetBit(to);
+            while (next >= 0 && next - to < MAX_HEADER_GAP) {
+                to = dirtySlots.nextClearBit(next);
+                next = dirtySlots.nextSetBit(to);
+            }
+
+            if (count == runs.length)
+                runs = Arrays.copyOf(runs, count * 2);
+            runs[count++] = from;
+            runs[count++] = to;
+            from = next;
+        }
+        return Arrays.copyOf(runs, count);
+    }
+
     /**
      * Adds padding to the end of the file to fill the last sector to 4096 bytes. If we don't do this before closing,
      * the file might fail to open next time (this padding is checked on opening a region file).
      */
-    private void addLastSectorPadding() throws IOException {
+    private void addLastSectorPadding(boolean truncate) throws IOException {
+        // Hold off sector allocation, so that we never cut off sectors that are allocated meanwhile
+        synchronized (sectors) {
+            addLastSectorPadding0(truncate);
+        }
+    }
+
+    private void addLastSectorPadding0(boolean truncate) throws IOException {
         long currentSize = io.size();
         long paddedSize = sectors.getSectorSpace() * SECTOR_SIZE_L;
+        if (!truncate) // Keep unused sectors at the end, but still pad the last of them
+            paddedSize = Math.max(paddedSize, sectorsL(currentSize) * SECTOR_SIZE_L);
+
         if (currentSize < paddedSize) {
             // We only need to write the last padding byte, and the file channel will automatically extend the file size
             // to the padded size
@@ -299,8 +510,11 @@ public final class RegionFile implements AutoCloseable, Flushable {
     @Override
     public void close() throws IOException {
         try {
+            // Mapped region files are not truncated here either: the mapping is only unmapped once it is collected, and
+            // some systems refuse to truncate a file that is mapped
             flush();
         } finally {
+            mapping = null;
             io.close();
         }
     }
@@ -308,8 +522,8 @@ public final class RegionFile implements AutoCloseable, Flushable {
     @Override
     public void flush() throws IOException {
         try {
-            writeHeader();
-            addLastSectorPadding();
+            writeHeader(headerVersion);
+            addLastSectorPadding(!mapped);
         } finally {
             io.force(true);
         }
@@ -343,26 +557,116 @@ public final class RegionFile implements AutoCloseable, Flushable {
      * @throws IOException                  When an I/O error occurs
      */
     public InputStream openInputStream(int x, int z) throws IOException {
+        return readConsistently(() -> {
+            ChunkPayload payload = readPayload(x, z, null);
+            if (payload.stream != null)
+                return payload.stream;
+            return openInternalIn(payload.codec, payload.payload);
+        });
+    }
+
+    /**
+     * Reads and decompresses a specific chunk in this region file into a buffer, using the given {@link ChunkInflater}
+     * instead of opening a stream. The chunk's sectors are read into a buffer of the inflater and inflated from there
+     * straight into another buffer of the inflater, so that no memory is allocated when reading many chunks. The
+     * returned buffer can be read by an {@link net.shadew.nbt4j.NbtBufferReader}, and is only valid until the inflater
+     * is used again. Chunks that are stored externally or compressed with a custom {@link CompressionCodec} are read
+     * through a stream, like {@link #openInputStream}, into a new buffer.
+     * <p>
+     * Malformed chunks are handled the same as by {@link #openInputStream}.
+     * </p>
+     *
+     * @param x        The absolute chunk X
+     * @param z        The absolute chunk Z
+     * @param inflater The inflater to decompress with
+     * @return A buffer holding the uncompressed chunk data, or null if the chunk is absent or empty
+     *
+     * @throws MalformedRegionFileException When the chunk is malformed and the region file is not lenient
+     * @throws IOException                  When an I/O error occurs
+     */
+    public ByteBuffer readChunk(int x, int z, ChunkInflater inflater) throws IOException {
+        if (inflater == null)
+            throw new NullPointerException("Inflater cannot be null");
+
+        // Mapped payloads are inflated straight from the mapping, so they must be inflated before validating the read
+        return readConsistently(() -> {
+            ChunkPayload payload = readPayload(x, z, inflater);
+            if (payload.stream == NullInputStream.INSTANCE)
+                return null;
+
+            if (payload.stream == null && payload.codec == Compression.UNCOMPRESSED && mapped)
+                // The sectors may be reused by a write once the read has been validated, so don't return the mapping
+                return inflater.copy(payload.payload);
+
+            if (payload.stream == null && payload.codec instanceof Compression)
+                return inflater.inflate(payload.payload, (Compression) payload.codec);
+
+            InputStream stream = payload.stream;
+            try (InputStream in = stream != null ? stream : openInternalIn(payload.codec, payload.payload)) {
+                return ByteBuffer.wrap(in.readAllBytes());
+            }
+        });
+    }
+
+    /**
+     * Performs a read against a consistent state of the header, without locking. Writers never overwrite sectors that
+     * are in use by a chunk in the header: they write chunks to newly allocated sectors and only free the old sectors
+     * when publishing the new location in the header. Sectors that are read can therefore only be reused after a header
+     * change was published, so the read is repeated when a header change was published while reading. To not starve
+     * readers when writers are busy, the read is repeated with the header locked.
+     */
+    private <T> T readConsistently(IOSupplier<T> read) throws IOException {
+        long stamp = headerLock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result;
+            try {
+                result = read.get();
+            } catch (IOException | RuntimeException exc) {
+                // A concurrent write may have made us read garbage, in that case we just try again
+                if (headerLock.validate(stamp))
+                    throw exc;
+                result = null;
+            }
+
+            if (headerLock.validate(stamp))
+                return result;
+            if (result instanceof Closeable)
+                ((Closeable) result).close();
+        }
+
+        stamp = headerLock.readLock();
+        try {
+            return read.get();
+        } finally {
+            headerLock.unlockRead(stamp);
+        }
+    }
+
+    private ChunkPayload readPayload(int x, int z, ChunkInflater inflater) throws IOException {
         int loc = getLocation(x, z);
 
         if (loc == 0)
-            return NullInputStream.INSTANCE;
+            return ChunkPayload.EMPTY;
 
         int off = off(loc);
         int len = len(loc);
         int offBytes = off * SECTOR_SIZE;
         int lenBytes = len * SECTOR_SIZE;
 
-        // Read all the chunk's sectors into a ByteBuffer
-        ByteBuffer buf = ByteBuffer.allocate(lenBytes);
-        synchronized (io) {
-            io.read(buf, offBytes);
+        ByteBuffer buf;
+        if (mapped) {
+            // Slice the chunk's sectors out of the mapping, this needs no copy
+            buf = mappedSectors(offBytes, lenBytes);
+        } else {
+            // Read all the chunk's sectors into a ByteBuffer, reusing the buffer of the inflater if we have one
+            buf = inflater != null ? inflater.sectorBuffer(lenBytes) : ByteBuffer.allocate(lenBytes);
+            io.read(buf, offBytes); // Positional reads are safe to do concurrently, they need no lock
+            buf.flip();
         }
-        buf.flip();
 
         if (buf.remaining() < CHUNK_HEADER_SIZE) {
             if (lenient)
-                return fixer.truncatedChunkHeader(buf.remaining(), CHUNK_HEADER_SIZE, x, z);
+                return new ChunkPayload(fixer.truncatedChunkHeader(buf.remaining(), CHUNK_HEADER_SIZE, x, z));
 
             throw new MalformedRegionFileException(
                 "Chunk [" + x + ", " + z + "] header is truncated: " +
@@ -386,12 +690,12 @@ public final class RegionFile implements AutoCloseable, Flushable {
             if (lenient) // If lenient, let the fixer know
                 fixer.zeroChunkSize(x, z);
 
-            return NullInputStream.INSTANCE;
+            return ChunkPayload.EMPTY;
         }
 
         if (unpaddedSize < 0) {
             if (lenient)
-                return fixer.negativeChunkSize(x, z, unpaddedSize);
+                return new ChunkPayload(fixer.negativeChunkSize(x, z, unpaddedSize));
 
             throw new MalformedRegionFileException(
                 "Chunk [" + x + ", " + z + "] has negative size: " + unpaddedSize
@@ -403,21 +707,19 @@ public final class RegionFile implements AutoCloseable, Flushable {
         int comprId = header & COMPRESSION_TYPE; // Compression level
         int payloadSize = unpaddedSize - 1;
 
-        Compression compr;
-        if (comprId < 1 || comprId > 3) {
-            // 'byRegionTypeId' would throw IllegalArgumentException in this situation, but since the region file is in
-            // this case responsible for providing the compression type ID, we must also throw this as a
-            // MalformedRegionFileException, hence an extra precondition check here, and in addition we can handle
-            // leniency
+        CompressionCodec compr = CompressionRegistry.byId(comprId);
+        if (compr == null) {
+            // The region file is responsible for providing the compression type ID, so an unregistered ID is a
+            // MalformedRegionFileException, unless we can handle it leniently
 
             if (lenient) {
-                compr = fixer.unknownCompression(x, z, comprId, compression);
+                compr = fixer.unknownCompression(x, z, comprId, codec);
 
                 if (compr == null)
                     // In case of leniency, we can't repair chunk data if we don't know the correct compression type.
                     // The fixer didn't provide us with any probable compression type, so the best way around is to just
                     // discard unknown chunk data and assume the chunk is empty.
-                    return NullInputStream.INSTANCE;
+                    return ChunkPayload.EMPTY;
 
                 // If we got a compression type from the fixer, we pretend nothing happened and continue as if the
                 // compression type was actually known
@@ -427,8 +729,6 @@ public final class RegionFile implements AutoCloseable, Flushable {
                     "Unknown compression type " + comprId + " for chunk [" + x + ", " + z + "]"
                 );
             }
-        } else {
-            compr = Compression.byRegionTypeId(comprId);
         }
 
         if (external) { // Payload is stored in external chunk file
@@ -440,7 +740,7 @@ public final class RegionFile implements AutoCloseable, Flushable {
 
             InputStream in = openExternalIn(x, z, compr, lenient);
             if (in != null) {
-                return in;
+                return new ChunkPayload(in);
             }
             // If 'in' is actually null that would mean we have repaired from an external file being absent. In that
             // case two scenarios are possible:
@@ -448,7 +748,7 @@ public final class RegionFile implements AutoCloseable, Flushable {
             // The most likely scenario now is that no payload is available, in that case we have to return a null
             // stream
             if (payloadSize <= 0)
-                return NullInputStream.INSTANCE;
+                return ChunkPayload.EMPTY;
 
             // A less likely scenario is that there is actually payload available (which, in case of non-leniency would
             // already have caused an error above). In this scenario we just leave this if block and pretend this chunk
@@ -459,7 +759,7 @@ public final class RegionFile implements AutoCloseable, Flushable {
             if (lenient)
                 // Chunk data may be corrupted, we can't repair from that so instead we go the safe way and assume the
                 // chunk is empty
-                return NullInputStream.INSTANCE;
+                return ChunkPayload.EMPTY;
 
             throw new MalformedRegionFileException(
                 "Chunk [" + x + ", " + z + "] payload is truncated: " +
@@ -467,22 +767,21 @@ public final class RegionFile implements AutoCloseable, Flushable {
             );
         }
 
-
-        return openInternalIn(compr, buf, payloadSize);
+        return new ChunkPayload(compr, buf.slice().limit(payloadSize));
     }
 
     /**
      * Wraps the given input stream into an uncompressing stream, given the compresion ID. If the given compression ID
      * is an unknown ID this will either open a null stream or fail upon non-leniency. The
      */
-    private InputStream wrapInStream(Compression compr, InputStream in) throws IOException {
+    private InputStream wrapInStream(CompressionCodec compr, InputStream in) throws IOException {
         InputStream wrapped = compr.createInStream(in);
         if (buffered)
             wrapped = new BufferedInputStream(wrapped);
         return wrapped;
     }
 
-    private InputStream openExternalIn(int x, int z, Compression compr, boolean lenient) throws IOException {
+    private InputStream openExternalIn(int x, int z, CompressionCodec compr, boolean lenient) throws IOException {
         Path path = externalPayloadPath(x, z);
         if (!Files.isRegularFile(path)) { // No such file, then fail
             if (lenient)
@@ -499,8 +798,68 @@ public final class RegionFile implements AutoCloseable, Flushable {
         return wrapInStream(compr, Files.newInputStream(path));
     }
 
-    private InputStream openInternalIn(Compression compr, ByteBuffer buf, int payloadSize) throws IOException {
-        return wrapInStream(compr, new ByteArrayInputStream(buf.array(), buf.position(), payloadSize));
+    private InputStream openInternalIn(CompressionCodec compr, ByteBuffer payload) throws IOException {
+        if (!payload.hasArray()) {
+            // Mapped region file: a stream reads after the read has been validated, when the sectors may have been
+            // reused by a write already, so it needs a copy of the payload
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            return wrapInStream(compr, new ByteArrayInputStream(bytes));
+        }
+        int off = payload.arrayOffset() + payload.position();
+        return wrapInStream(compr, new ByteArrayInputStream(payload.array(), off, payload.remaining()));
+    }
+
+    /**
+     * Returns a read-only slice of the mapping of this region file, holding the given range of bytes as far as the file
+     * has them. When the range exceeds the mapping, the file is mapped again first.
+     */
+    private ByteBuffer mappedSectors(int off, int len) throws IOException {
+        ByteBuffer map = mapping;
+        if (map == null || off + len > map.capacity())
+            map = remap();
+
+        int from = Math.min(off, map.capacity());
+        return map.slice(from, Math.min(len, map.capacity() - from));
+    }
+
+    private ByteBuffer remap() throws IOException {
+        synchronized (io) {
+            long size = io.size();
+            ByteBuffer map = mapping;
+            if (map != null && map.capacity() == size)
+                return map; // Another thread remapped already
+
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Region file of " + size + " bytes is too large to map");
+
+            map = io.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapping = map;
+            return map;
+        }
+    }
+
+    /**
+     * The payload of a chunk: either a stream that is ready to read from, or a compressed payload in a buffer.
+     */
+    private static final class ChunkPayload {
+        static final ChunkPayload EMPTY = new ChunkPayload(NullInputStream.INSTANCE);
+
+        final InputStream stream;
+        final CompressionCodec codec;
+        final ByteBuffer payload;
+
+        ChunkPayload(InputStream stream) {
+            this.stream = stream;
+            this.codec = null;
+            this.payload = null;
+        }
+
+        ChunkPayload(CompressionCodec codec, ByteBuffer payload) {
+            this.stream = null;
+            this.codec = codec;
+            this.payload = payload;
+        }
     }
 
 
@@ -513,6 +872,14 @@ public final class RegionFile implements AutoCloseable, Flushable {
 
 
     public boolean doesChunkExist(int x, int z) {
+        try {
+            return readConsistently(() -> chunkExists(x, z));
+        } catch (IOException e) {
+            return false; // IO error, in that case no chunk
+        }
+    }
+
+    private boolean chunkExists(int x, int z) throws IOException {
         int loc = getLocation(x, z);
 
         if (loc == 0)
@@ -524,13 +891,13 @@ public final class RegionFile implements AutoCloseable, Flushable {
         int lenBytes = len * SECTOR_SIZE;
 
         // Read chunk header
-        ByteBuffer buf = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
-        try {
-            synchronized (io) {
-                io.read(buf, offBytes);
-            }
-        } catch (IOException e) {
-            return false; // IO error, in that case no chunk
+        ByteBuffer buf;
+        if (mapped) {
+            buf = mappedSectors(offBytes, CHUNK_HEADER_SIZE);
+        } else {
+            buf = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+            io.read(buf, offBytes);
+            buf.flip();
         }
 
         if (buf.remaining() < CHUNK_HEADER_SIZE)
@@ -546,8 +913,8 @@ public final class RegionFile implements AutoCloseable, Flushable {
         int comprId = header & COMPRESSION_TYPE; // Compression level
         int payloadSize = unpaddedSize - 1;
 
-        if (comprId < 1 || comprId > 3)
-            return false; // Invalid compression type, no chunk
+        if (!CompressionRegistry.isRegistered(comprId))
+            return false; // Unknown compression type, no chunk
 
         if (external) {
             if (payloadSize > 0)
@@ -570,19 +937,134 @@ public final class RegionFile implements AutoCloseable, Flushable {
 
 
     public OutputStream openOutputStream(int x, int z) throws IOException {
-        OutputStream out = compression.createOutStream(new ChunkOutputStream(x, z));
+        return openOutputStream(x, z, compressionSettings);
+    }
+
+    /**
+     * Opens an output stream to write the data of a specific chunk, compressed with the given settings rather than the
+     * settings of this region file.
+     */
+    public OutputStream openOutputStream(int x, int z, CompressionSettings settings) throws IOException {
+        return openOutputStream(x, z, settings, null);
+    }
+
+    private OutputStream openOutputStream(
+        int x, int z, CompressionSettings settings, WriteBatch batch
+    ) throws IOException {
+        OutputStream out = adaptive
+                           ? new ChunkOutputStream(x, z, settings, batch)
+                           : codec.createOutStream(new ChunkOutputStream(x, z, null, batch), settings);
         if (buffered)
             out = new BufferedOutputStream(out);
         return out;
     }
 
+    /**
+     * Writes the given tag as the chunk data at the given chunk coordinates. Unlike writing the tag to {@link
+     * #openOutputStream}, uncompressed chunks are serialized into a buffer of exactly the right size in one go and
+     * written straight from that buffer. Compressed chunks are serialized straight into the compressor, which writes
+     * into a buffer the size of the uncompressed chunk, which is large enough in nearly all cases.
+     *
+     * @param x   The absolute chunk X
+     * @param z   The absolute chunk Z
+     * @param tag The chunk data
+     * @throws IOException When an I/O error occurs
+     */
+    public void writeChunk(int x, int z, CompoundTag tag) throws IOException {
+        writeChunk(x, z, tag, compressionSettings);
+    }
+
+    /**
+     * Writes the given tag as the chunk data at the given chunk coordinates, compressed with the given settings rather
+     * than the settings of this region file.
+     *
+     * @param x        The absolute chunk X
+     * @param z        The absolute chunk Z
+     * @param tag      The chunk data
+     * @param settings The compression settings
+     * @throws IOException When an I/O error occurs
+     */
+    public void writeChunk(int x, int z, CompoundTag tag, CompressionSettings settings) throws IOException {
+        flushChunkBuffer(x, z, encodeChunk(tag, settings));
+    }
+
+    /**
+     * Serializes and compresses the given tag into a chunk buffer, starting with the chunk header.
+     */
+    private ByteBuffer encodeChunk(CompoundTag tag, CompressionSettings settings) throws IOException {
+        if (codec == Compression.UNCOMPRESSED || adaptive) {
+            long size = TagSerializer.encodedSize(tag);
+            if (size > Integer.MAX_VALUE - 13)
+                throw new IOException("Chunk of " + size + " bytes is too large");
+
+            ByteBuffer buf = ByteBuffer.allocate(5 + (int) size);
+            buf.putInt(1 + (int) size);
+            buf.put((byte) Compression.UNCOMPRESSED.getRegionTypeId());
+            TagSerializer.write(tag, "", buf);
+            buf.flip();
+
+            return adaptive ? compressAdaptive(buf, settings) : buf;
+        } else {
+            // The tag is written straight into the compressing stream, so that only the compressed chunk is buffered
+            long size = TagSerializer.encodedSize(tag);
+            ChunkBuffer chunk = new ChunkBuffer(
+                (int) Math.min(CHUNK_HEADER_SIZE + size, Integer.MAX_VALUE - 8),
+                codec.getRegionTypeId()
+            );
+            OutputStream compressed = codec.createOutStream(chunk, settings);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(compressed))) {
+                NbtWriter writer = new NbtWriter(out);
+                tag.accept(writer);
+                writer.throwIoException();
+            }
+            return chunk.toChunk();
+        }
+    }
+
+    /**
+     * Returns an uncompressed chunk, given with its chunk header, either as it is or compressed, depending on which
+     * takes fewer sectors.
+     */
+    private ByteBuffer compressAdaptive(ByteBuffer raw, CompressionSettings settings) throws IOException {
+        int rawSize = raw.remaining();
+        int rawSectors = sectors(rawSize);
+        CompressionStatistics statistics = this.statistics;
+
+        if (rawSectors <= 1) {
+            // Compressing can't make the chunk take fewer sectors
+            statistics.recordSkipped(rawSize - CHUNK_HEADER_SIZE);
+            return raw;
+        }
+
+        long start = System.nanoTime();
+        ChunkBuffer chunk = new ChunkBuffer(rawSize, codec.getRegionTypeId());
+        try (OutputStream out = codec.createOutStream(chunk, settings)) {
+            out.write(raw.array(), raw.arrayOffset() + raw.position() + CHUNK_HEADER_SIZE, rawSize - CHUNK_HEADER_SIZE);
+        }
+        long nanos = System.nanoTime() - start;
+
+        ByteBuffer compressed = chunk.toChunk();
+        if (sectors(compressed.remaining()) < rawSectors) {
+            statistics.recordCompressed(rawSize - CHUNK_HEADER_SIZE, compressed.remaining() - CHUNK_HEADER_SIZE, nanos);
+            return compressed;
+        } else {
+            statistics.recordRejected(rawSize - CHUNK_HEADER_SIZE, nanos);
+            return raw;
+        }
+    }
+
     private void flushChunkBuffer(int x, int z, ByteBuffer buf) throws IOException {
         int index = index(x, z);
+        ReentrantLock lock = chunkLocks[index % LOCK_STRIPES];
+        lock.lock();
+        try {
+            flushChunkBuffer(x, z, index, buf);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        int loc = locations.get(index);
-        int oldOff = off(loc);
-        int oldLen = len(loc);
-
+    private void flushChunkBuffer(int x, int z, int index, ByteBuffer buf) throws IOException {
         int bufSize = buf.remaining();
 
         int newLen = sectors(bufSize);
@@ -591,39 +1073,45 @@ public final class RegionFile implements AutoCloseable, Flushable {
         // A write resource
         Closeable writeResource;
 
+        // Chunks are always written to newly allocated sectors, never over the sectors the chunk is using now, so that
+        // concurrent readers never read a partially written chunk. The old sectors are freed when publishing.
         if (newLen >= INTERNAL_SIZE_LIMIT) {
             // Chunk exceeds size limit, write it to an external file
             // Chunk's new length becomes 1 as its payload is not in the region file
-            newOff = sectors.reallocate(oldOff, oldLen, 1);
             newLen = 1;
+            newOff = sectors.findAndAllocate(newLen);
 
-            writeResource = writeExternalFile(x, z, buf);
+            byte compressionType = buf.get(buf.position() + 4);
+            try {
+                writeResource = writeExternalFile(x, z, buf);
+            } catch (IOException e) {
+                sectors.free(newOff, newLen);
+                throw e;
+            }
 
             try {
-                synchronized (io) {
-                    // In the header we specify that the chunk is written externally, so we still need to write the
-                    // chunk header
-                    io.write(makeExternalHeader(), newOff * SECTOR_SIZE_L);
-                }
+                // In the header we specify that the chunk is written externally, so we still need to write the chunk
+                // header. Positional writes to sectors that we allocated need no lock.
+                io.write(makeExternalHeader(compressionType), newOff * SECTOR_SIZE_L);
             } catch (IOException e) {
                 // Make sure we close our write resource when an IOException is thrown
+                sectors.free(newOff, newLen);
                 writeResource.close();
                 throw e;
             }
         } else {
             // Chunk can be saved internally
-            newOff = sectors.reallocate(oldOff, oldLen, newLen);
+            newOff = sectors.findAndAllocate(newLen);
 
             // Remove any old chunk file when completed
             writeResource = () -> Files.deleteIfExists(externalPayloadPath(x, z));
 
             try {
-                synchronized (io) {
-                    // Write chunk sectors
-                    io.write(buf, newOff * SECTOR_SIZE_L);
-                }
+                // Write chunk sectors, positional writes to sectors that we allocated need no lock
+                io.write(buf, newOff * SECTOR_SIZE_L);
             } catch (IOException e) {
                 // Make sure we close our write resource when an IOException is thrown
+                sectors.free(newOff, newLen);
                 writeResource.close();
                 throw e;
             }
@@ -631,19 +1119,43 @@ public final class RegionFile implements AutoCloseable, Flushable {
 
         // Use try-with-resources now to close our resource when we are done, or when an error occurs
         try (Closeable ignored = writeResource) {
-            locations.put(index, loc(newOff, newLen));
-            timestamps.put(index, secondsSinceEpoch());
-            writeHeader(); // Flush header to the FileChannel
+            long version = publish(index, loc(newOff, newLen), secondsSinceEpoch());
+            writeHeader(version); // Flush header to the FileChannel
+        }
+    }
+
+    /**
+     * Sets the location and timestamp of a chunk in the header and frees the sectors of its old location. Readers that
+     * were reading the old location are made to read again.
+     *
+     * @return The version of the header that contains the change
+     */
+    private long publish(int index, int loc, int timestamp) {
+        long stamp = headerLock.writeLock();
+        try {
+            publishSlot(index, loc, timestamp);
+            return ++headerVersion;
+        } finally {
+            headerLock.unlockWrite(stamp);
         }
     }
 
+    private void publishSlot(int index, int loc, int timestamp) {
+        int oldLoc = locations.get(index);
+        locations.put(index, loc);
+        timestamps.put(index, timestamp);
+        dirtySlots.set(index);
+        if (oldLoc != 0)
+            sectors.free(off(oldLoc), len(oldLoc));
+    }
+
     /**
      * Creates a ByteBuffer containing a header for a chunk file that is being stored in an external chunk file.
      */
-    private ByteBuffer makeExternalHeader() {
+    private ByteBuffer makeExternalHeader(byte compressionType) {
         ByteBuffer buf = ByteBuffer.allocate(5);
         buf.putInt(1); // Size = 1
-        buf.put((byte) (compression.getRegionTypeId() | EXTERNAL));
+        buf.put((byte) (compressionType | EXTERNAL));
         buf.flip();
         return buf;
     }
@@ -655,6 +1167,11 @@ public final class RegionFile implements AutoCloseable, Flushable {
         // For thread safety, write in a temporary file. We move this file into place after we have flushed the chunk
         // header and the new region header to the region file.
         Path path = externalPayloadPath(x, z);
+        Path temp = writeExternalTemp(buf);
+        return () -> Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path writeExternalTemp(ByteBuffer buf) throws IOException {
         Path temp = Files.createTempFile(directory, "tmp", null);
 
         try (FileChannel tmpChannel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
@@ -666,33 +1183,65 @@ public final class RegionFile implements AutoCloseable, Flushable {
             Files.delete(temp);
             throw e;
         }
-
-        return () -> Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        return temp;
     }
 
 
+    /**
+     * Buffer for chunk data. The buffer starts with room for the chunk header, which is completed by {@link
+     * #toChunk()}.
+     */
+    private static class ChunkBuffer extends ByteArrayOutputStream {
+        ChunkBuffer(int capacity, int compressionType) {
+            super(capacity);
+
+            count = 4; // Skip first 4 bytes, we overwrite these with the payload size later
+            write(compressionType);
+        }
+
+        ByteBuffer toChunk() {
+            ByteBuffer nioBuf = ByteBuffer.wrap(buf, 0, count);
+            nioBuf.putInt(0, count - 4); // Exclude 4 payload size bytes
+            return nioBuf;
+        }
+    }
+
     /**
      * Output stream for chunks. Chunk data is buffered in this stream until it is closed, after which it flushes all
-     * chunk data and the (possibly new) region file header to the underlying file.
+     * chunk data and the (possibly new) region file header to the underlying file. In adaptive region files, the stream
+     * receives uncompressed data, which is compressed on closing when that saves sectors.
      */
-    private class ChunkOutputStream extends ByteArrayOutputStream {
+    private class ChunkOutputStream extends ChunkBuffer {
         private final int x;
         private final int z;
-
-        ChunkOutputStream(int x, int z) {
-            super(2 * SECTOR_SIZE);
+        private final CompressionSettings adaptiveSettings;
+        private final WriteBatch batch;
+        private boolean closed;
+
+        ChunkOutputStream(int x, int z, CompressionSettings adaptiveSettings, WriteBatch batch) {
+            super(
+                2 * SECTOR_SIZE,
+                adaptiveSettings != null
+                ? Compression.UNCOMPRESSED.getRegionTypeId()
+                : codec.getRegionTypeId()
+            );
             this.x = x;
             this.z = z;
-
-            count = 4; // Skip first 4 bytes, we overwrite these with the payload size later
-            write(compression.getRegionTypeId());
+            this.adaptiveSettings = adaptiveSettings;
+            this.batch = batch;
         }
 
         @Override
         public void close() throws IOException {
-            ByteBuffer nioBuf = ByteBuffer.wrap(buf, 0, count);
-            nioBuf.putInt(0, count - 4); // Exclude 4 payload size bytes
-            flushChunkBuffer(x, z, nioBuf);
+            if (closed)
+                return;
+            closed = true;
+
+            ByteBuffer chunk = adaptiveSettings != null ? compressAdaptive(toChunk(), adaptiveSettings) : toChunk();
+            if (batch != null)
+                batch.stage(x, z, chunk);
+            else
+                flushChunkBuffer(x, z, chunk);
         }
     }
 
@@ -707,25 +1256,239 @@ public final class RegionFile implements AutoCloseable, Flushable {
     public void removeChunk(int x, int z) throws IOException {
         int idx = index(x, z);
 
-        int loc = locations.get(idx);
-        if (loc == 0) return;
-
-        int off = off(loc);
-        int len = len(loc);
-        sectors.free(off, len);
+        ReentrantLock lock = chunkLocks[idx % LOCK_STRIPES];
+        lock.lock();
+        try {
+            int loc = locations.get(idx);
+            if (loc == 0) return;
 
-        locations.put(idx, 0);
-        timestamps.put(idx, 0);
+            long version = publish(idx, 0, 0);
 
-        try {
-            Files.deleteIfExists(externalPayloadPath(x, z));
+            try {
+                Files.deleteIfExists(externalPayloadPath(x, z));
+            } finally {
+                writeHeader(version);
+            }
         } finally {
-            writeHeader();
+            lock.unlock();
         }
     }
 
 
 
+    // =====================================================
+    // WRITING IN BATCHES
+    // =====================================================
+
+
+    /**
+     * Creates a batch to write and remove many chunks of this region file at once. Chunks are staged in the batch and
+     * written when the batch is {@linkplain WriteBatch#commit() committed}: all chunks are placed in one run of sectors
+     * and written with one gathering write, after which the header is written and the file is forced to the storage
+     * device once. This is much cheaper than writing the chunks one by one and flushing the region file afterwards,
+     * which writes every chunk and header change separately.
+     */
+    public WriteBatch newWriteBatch() {
+        return new WriteBatch();
+    }
+
+    /**
+     * A batch of chunk writes and removals, created by {@link #newWriteBatch()}. Staging a chunk compresses it right
+     * away, but nothing is written to the region file until the batch is committed. When a chunk is staged more than
+     * once, only the last write or removal is committed.
+     * <p>
+     * A batch is not safe for use by multiple threads, but multiple batches and other writes can be committed to the
+     * same region file concurrently. After committing, the batch is empty and can be used again.
+     * </p>
+     */
+    public final class WriteBatch {
+        private final Map<Integer, StagedChunk> staged = new TreeMap<>(); // In header order
+
+        private WriteBatch() {
+        }
+
+        public void writeChunk(int x, int z, CompoundTag tag) throws IOException {
+            writeChunk(x, z, tag, compressionSettings);
+        }
+
+        public void writeChunk(int x, int z, CompoundTag tag, CompressionSettings settings) throws IOException {
+            stage(x, z, encodeChunk(tag, settings));
+        }
+
+        /**
+         * Opens an output stream to write the data of a specific chunk. The chunk is staged when the stream is closed.
+         */
+        public OutputStream openOutputStream(int x, int z) throws IOException {
+            return openOutputStream(x, z, compressionSettings);
+        }
+
+        public OutputStream openOutputStream(int x, int z, CompressionSettings settings) throws IOException {
+            return RegionFile.this.openOutputStream(x, z, settings, this);
+        }
+
+        public void removeChunk(int x, int z) {
+            stage(x, z, null);
+        }
+
+        /**
+         * Returns the amount of staged chunks.
+         */
+        public int size() {
+            return staged.size();
+        }
+
+        /**
+         * Discards all staged chunks.
+         */
+        public void clear() {
+            staged.clear();
+        }
+
+        void stage(int x, int z, ByteBuffer chunk) {
+            staged.put(index(x, z), new StagedChunk(x, z, chunk));
+        }
+
+        /**
+         * Writes all staged chunks to the region file, writes the header and forces the file to the storage device.
+         * When writing the chunks fails, the chunks stay staged and the header is not changed.
+         *
+         * @throws IOException When an I/O error occurs
+         */
+        public void commit() throws IOException {
+            if (staged.isEmpty())
+                return;
+
+            // Lock the stripes of all chunks in ascending order, so that concurrent batches can't deadlock
+            boolean[] stripes = new boolean[LOCK_STRIPES];
+            for (int index : staged.keySet())
+                stripes[index % LOCK_STRIPES] = true;
+
+            int locked = 0;
+            try {
+                for (; locked < LOCK_STRIPES; locked++)
+                    if (stripes[locked])
+                        chunkLocks[locked].lock();
+
+                commitLocked();
+            } finally {
+                while (locked-- > 0)
+                    if (stripes[locked])
+                        chunkLocks[locked].unlock();
+            }
+
+            staged.clear();
+            flush();
+        }
+
+        private void commitLocked() throws IOException {
+            // Plan the placement of all chunks: they get one run of sectors, in header order
+            int total = 0;
+            for (StagedChunk chunk : staged.values()) {
+                if (chunk.buf == null)
+                    continue;
+
+                chunk.len = sectors(chunk.buf.remaining());
+                if (chunk.len >= INTERNAL_SIZE_LIMIT)
+                    chunk.len = 1; // Stored externally, we only store the chunk header
+                total += chunk.len;
+            }
+
+            int off = total > 0 ? sectors.findAndAllocate(total) : 0;
+            List<Path> temps = new ArrayList<>();
+            try {
+                // Lay out all sectors in one buffer and write them in one go. A gathering write would need no copy, but
+                // the channel copies every buffer of a gathering write into a temporary direct buffer of its own.
+                ByteBuffer run = ByteBuffer.allocate(total * SECTOR_SIZE);
+                int cur = off;
+                for (StagedChunk chunk : staged.values()) {
+                    if (chunk.buf == null)
+                        continue;
+
+                    chunk.off = cur;
+                    cur += chunk.len;
+
+                    ByteBuffer data = chunk.buf.duplicate();
+                    if (chunk.len == 1 && sectors(data.remaining()) >= INTERNAL_SIZE_LIMIT) {
+                        byte compressionType = data.get(data.position() + 4);
+                        chunk.temp = writeExternalTemp(data);
+                        temps.add(chunk.temp);
+                        data = makeExternalHeader(compressionType);
+                    }
+
+                    // Every chunk starts at its own sector, the buffer is zero so that pads the chunk before
+                    run.position((chunk.off - off) * SECTOR_SIZE);
+                    run.put(data);
+                }
+
+                run.clear();
+                long position = off * SECTOR_SIZE_L;
+                while (run.hasRemaining())
+                    position += io.write(run, position);
+            } catch (IOException e) {
+                sectors.free(off, total);
+                for (Path temp : temps)
+                    Files.deleteIfExists(temp);
+                throw e;
+            }
+
+            // Publish all header changes at once
+            long version;
+            int timestamp = secondsSinceEpoch();
+            long stamp = headerLock.writeLock();
+            try {
+                for (Map.Entry<Integer, StagedChunk> entry : staged.entrySet()) {
+                    StagedChunk chunk = entry.getValue();
+                    if (chunk.buf == null)
+                        publishSlot(entry.getKey(), 0, 0);
+                    else
+                        publishSlot(entry.getKey(), loc(chunk.off, chunk.len), timestamp);
+                }
+                version = ++headerVersion;
+            } finally {
+                headerLock.unlockWrite(stamp);
+            }
+
+            try {
+                writeHeader(version);
+            } finally {
+                // Move external chunk files into place, and remove the ones of chunks that are no longer external
+                IOException exc = null;
+                for (StagedChunk chunk : staged.values()) {
+                    try {
+                        Path path = externalPayloadPath(chunk.x, chunk.z);
+                        if (chunk.temp != null)
+                            Files.move(chunk.temp, path, StandardCopyOption.REPLACE_EXISTING);
+                        else
+                            Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        if (exc == null) exc = e;
+                        else exc.addSuppressed(e);
+                    }
+                }
+                if (exc != null)
+                    throw exc;
+            }
+        }
+    }
+
+    private static final class StagedChunk {
+        final int x;
+        final int z;
+        final ByteBuffer buf; // Null when removing the chunk
+        int off;
+        int len;
+        Path temp;
+
+        StagedChunk(int x, int z, ByteBuffer buf) {
+            this.x = x;
+            this.z = z;
+            this.buf = buf;
+        }
+    }
+
+
+
+
     private Path externalPayloadPath(int x, int z) {
         String s = "c." + x + "." + z + ".mcc";
         return directory.resolve(s);
@@ -735,6 +1498,55 @@ public final class RegionFile implements AutoCloseable, Flushable {
         return locations.get(index(x, z));
     }
 
+    /**
+     * Returns the codec with which this region file writes chunks.
+     */
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
+    public CompressionSettings getCompressionSettings() {
+        return compressionSettings;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Returns the statistics of the chunks written {@linkplain #ADAPTIVE adaptively} to this region file.
+     */
+    public CompressionStatistics getCompressionStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the statistics that count the chunks written {@linkplain #ADAPTIVE adaptively} to this region file, so that
+     * they can be shared with other region files.
+     */
+    public void setCompressionStatistics(CompressionStatistics statistics) {
+        if (statistics == null)
+            throw new NullPointerException("Statistics cannot be null");
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns the statistics of the header writes of this region file.
+     */
+    public HeaderStatistics getHeaderStatistics() {
+        return headerStatistics;
+    }
+
+    /**
+     * Sets the statistics that count the header writes of this region file, so that they can be shared with other
+     * region files.
+     */
+    public void setHeaderStatistics(HeaderStatistics statistics) {
+        if (statistics == null)
+            throw new NullPointerException("Statistics cannot be null");
+        this.headerStatistics = statistics;
+    }
+
     public boolean hasChunk(int x, int z) {
         return getLocation(x, z) != 0;
     }
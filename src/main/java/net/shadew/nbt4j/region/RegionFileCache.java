@@ -4,19 +4,49 @@ import java.io.*;
 import java.nio.file.Path;
 import java.util.*;
 
+import net.shadew.nbt4j.CompressionCodec;
+import net.shadew.nbt4j.CompressionSettings;
+import net.shadew.nbt4j.tree.CompoundTag;
+
 public final class RegionFileCache implements Closeable, Flushable {
     private final Path directory;
     private final RegionFileFixer fixer;
     private final int openFlags;
+    private final CompressionCodec codec;
+    private final CompressionSettings compressionSettings;
     private final Map<RegionPos, RegionFile> fileMap = new HashMap<>();
     private final List<RegionPos> recentlyUsed = new ArrayList<>();
     private final int maxCache;
     private final boolean anvil;
+    private final CompressionStatistics statistics = new CompressionStatistics();
+    private final HeaderStatistics headerStatistics = new HeaderStatistics();
 
     public RegionFileCache(Path directory, RegionFileFixer fixer, int openFlags, int maxCache, boolean anvil) {
+        this(directory, fixer, openFlags, CompressionSettings.DEFAULT, maxCache, anvil);
+    }
+
+    public RegionFileCache(
+        Path directory, RegionFileFixer fixer, int openFlags, CompressionSettings settings, int maxCache, boolean anvil
+    ) {
+        this(directory, fixer, openFlags, null, settings, maxCache, anvil);
+    }
+
+    /**
+     * Creates a cache of region files that write chunks with the given codec, or with the codec picked by the
+     * compression flags when it is null.
+     */
+    public RegionFileCache(
+        Path directory, RegionFileFixer fixer, int openFlags, CompressionCodec codec, CompressionSettings settings,
+        int maxCache, boolean anvil
+    ) {
+        if (settings == null)
+            throw new NullPointerException("Compression settings cannot be null");
+
         this.directory = directory;
         this.fixer = fixer;
         this.openFlags = openFlags;
+        this.codec = codec;
+        this.compressionSettings = settings;
         this.maxCache = maxCache;
         this.anvil = anvil;
     }
@@ -37,6 +67,30 @@ public final class RegionFileCache implements Closeable, Flushable {
         return file.openOutputStream(x, z);
     }
 
+    public OutputStream openOutputStream(int x, int z, CompressionSettings settings) throws IOException {
+        int rx = x >> 5;
+        int rz = z >> 5;
+
+        RegionFile file = getRegionFile(new RegionPos(rx, rz));
+        return file.openOutputStream(x, z, settings);
+    }
+
+    public void writeChunk(int x, int z, CompoundTag tag) throws IOException {
+        int rx = x >> 5;
+        int rz = z >> 5;
+
+        RegionFile file = getRegionFile(new RegionPos(rx, rz));
+        file.writeChunk(x, z, tag);
+    }
+
+    public void writeChunk(int x, int z, CompoundTag tag, CompressionSettings settings) throws IOException {
+        int rx = x >> 5;
+        int rz = z >> 5;
+
+        RegionFile file = getRegionFile(new RegionPos(rx, rz));
+        file.writeChunk(x, z, tag, settings);
+    }
+
     public boolean doesChunkExist(int x, int z) {
         int rx = x >> 5;
         int rz = z >> 5;
@@ -70,11 +124,13 @@ public final class RegionFileCache implements Closeable, Flushable {
 
         RegionFile file;
         if (fixer != null) {
-            file = new RegionFile(directory, path, openFlags, fixer);
+            file = new RegionFile(directory, path, openFlags, fixer, codec, compressionSettings);
         } else {
-            file = new RegionFile(directory, path, openFlags);
+            file = new RegionFile(directory, path, openFlags, codec, compressionSettings);
         }
 
+        file.setCompressionStatistics(statistics);
+        file.setHeaderStatistics(headerStatistics);
         fileMap.put(pos, file);
         return file;
     }
@@ -96,6 +152,21 @@ public final class RegionFileCache implements Closeable, Flushable {
         return file;
     }
 
+    /**
+     * Returns the statistics of the chunks written {@linkplain RegionFile#ADAPTIVE adaptively} to all region files of
+     * this cache.
+     */
+    public CompressionStatistics getCompressionStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics of the header writes of all region files of this cache.
+     */
+    public HeaderStatistics getHeaderStatistics() {
+        return headerStatistics;
+    }
+
     @Override
     public void flush() throws IOException {
         for (RegionFile file : fileMap.values()) {
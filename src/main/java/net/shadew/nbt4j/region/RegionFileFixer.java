@@ -5,6 +5,8 @@ import java.io.InputStream;
 import java.io.PrintStream;
 
 import net.shadew.nbt4j.Compression;
+import net.shadew.nbt4j.CompressionCodec;
+import net.shadew.nbt4j.CompressionRegistry;
 
 /**
  * A fixer for a {@link RegionFile}. {@link RegionFile} handles two default strategies for handling corrupted region
@@ -32,4 +34,17 @@ public interface RegionFileFixer {
     void zeroChunkSize(int x, int z) throws IOException;
     InputStream negativeChunkSize(int x, int z, int unpaddedSize) throws IOException;
     Compression unknownCompression(int x, int z, int compression, Compression defaultCompression) throws IOException;
+
+    /**
+     * Called when a chunk has a compression type that is not registered in the {@link CompressionRegistry}, which may
+     * be a custom {@link CompressionCodec}. Returns the codec to read the chunk with, or null to treat the chunk as
+     * empty. By default, this delegates to {@link #unknownCompression(int, int, int, Compression)}, passing the codec
+     * of the region file if it is a built-in {@link Compression}, or null otherwise.
+     */
+    default CompressionCodec unknownCompression(
+        int x, int z, int compression, CompressionCodec defaultCodec
+    ) throws IOException {
+        Compression defaultCompression = defaultCodec instanceof Compression builtin ? builtin : null;
+        return unknownCompression(x, z, compression, defaultCompression);
+    }
 }
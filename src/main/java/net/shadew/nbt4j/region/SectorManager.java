@@ -4,17 +4,21 @@ import java.util.BitSet;
 
 class SectorManager {
     private final BitSet map = new BitSet();
+    private int firstFree; // All sectors before this one are in use
 
     public synchronized void allocate(int off, int len) {
         map.set(off, off + len);
+        if (off <= firstFree)
+            firstFree = map.nextClearBit(firstFree);
     }
 
     public synchronized void free(int off, int len) {
         map.clear(off, off + len);
+        firstFree = Math.min(firstFree, off);
     }
 
     public synchronized int findAndAllocate(int amount) {
-        int cur = 0;
+        int cur = firstFree;
 
         while (true) {
             int from = map.nextClearBit(cur);
@@ -29,19 +33,6 @@ class SectorManager {
         }
     }
 
-    public synchronized int reallocate(int oldOff, int oldLen, int newLen) {
-        if (newLen == oldLen)
-            return oldOff; // No need to reallocate, because the size did not change
-
-        free(oldOff, oldLen);
-        if (newLen < oldLen) {
-            allocate(oldOff, newLen);
-            return oldOff;
-        } else {
-            return findAndAllocate(newLen);
-        }
-    }
-
     public synchronized int getSectorSpace() {
         return map.previousSetBit(map.size() - 1) + 1;
     }
@@ -10,6 +10,10 @@ import net.shadew.nbt4j.TagType;
 public final class CompoundTag implements Tag {
     private LinkedHashMap<String, Tag> tags = new LinkedHashMap<>();
 
+    // Memoized for TagSerializer, which may read it from multiple threads, so it is published as one immutable value.
+    // Only valid while no entries are added or removed.
+    private volatile FlatSize flatSize;
+
     public CompoundTag() {
     }
 
@@ -89,10 +93,12 @@ public final class CompoundTag implements Tag {
 
     public Tag put(String name, Tag tag) {
         validateNewElement(name, tag);
+        flatSize = null;
         return tags.put(name, tag);
     }
 
     public Tag remove(String name) {
+        flatSize = null;
         return tags.remove(name);
     }
 
@@ -439,6 +445,33 @@ public final class CompoundTag implements Tag {
         return new CompoundTag(o);
     }
 
+    long flatSize() {
+        return flat().size;
+    }
+
+    Tag[] nested() {
+        return flat().nested;
+    }
+
+    private FlatSize flat() {
+        FlatSize flat = flatSize;
+        if (flat == null) {
+            long size = 1; // TAG_End
+            Tag[] nested = new Tag[tags.size()];
+            int count = 0;
+            for (Map.Entry<String, Tag> entry : tags.entrySet()) {
+                Tag tag = entry.getValue();
+                size += 1 + StringTag.countUtfBytes(entry.getKey());
+                if (tag instanceof CompoundTag || tag instanceof ListTag)
+                    nested[count++] = tag;
+                else
+                    size += TagSerializer.leafSize(tag);
+            }
+            flatSize = flat = new FlatSize(size, Arrays.copyOf(nested, count));
+        }
+        return flat;
+    }
+
     @Override
     public String toString() {
         return "TAG_Compound[" + tags.size() + "]";
@@ -446,12 +479,18 @@ public final class CompoundTag implements Tag {
 
     @Override
     public void accept(NbtVisitor visitor, String name) {
-        NbtVisitor v = visitor.visitCompound(name);
-        if (v == null) return;
+        TagWalker.accept(this, visitor, name);
+    }
+
+    // The encoded size of all entries except the payloads of nested compounds and lists, and those nested compounds
+    // and lists
+    private static final class FlatSize {
+        final long size;
+        final Tag[] nested;
 
-        for (Map.Entry<String, Tag> entry : tags.entrySet()) {
-            entry.getValue().accept(v, entry.getKey());
+        FlatSize(long size, Tag[] nested) {
+            this.size = size;
+            this.nested = nested;
         }
-        v.visitEnd();
     }
 }
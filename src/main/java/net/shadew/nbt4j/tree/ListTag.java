@@ -528,11 +528,6 @@ public final class ListTag implements List<Tag>, RandomAccess, Tag {
 
     @Override
     public void accept(NbtVisitor visitor, String name) {
-        NbtVisitor v = visitor.visitList(elementType, size(), name);
-        if (v == null) return;
-
-        for (Tag t : this)
-            t.accept(v);
-        v.visitListEnd();
+        TagWalker.accept(this, visitor, name);
     }
 }
@@ -0,0 +1,313 @@
+package net.shadew.nbt4j.tree;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.shadew.nbt4j.NbtBufferWriter;
+import net.shadew.nbt4j.NbtVisitor;
+import net.shadew.nbt4j.util.ModifiedUtf8;
+import net.shadew.nbt4j.util.NbtException;
+
+/**
+ * Serializes large {@link Tag} trees on multiple threads of a {@link ForkJoinPool}, into a single buffer of exactly the
+ * right size. The size of every subtree is computed up front, so every large compound entry or list element gets a
+ * fixed offset in the output and can be encoded concurrently with its siblings. Runs of small siblings are grouped into
+ * tasks of at least the split size. The output is identical to what {@link TagSerializer} and {@link
+ * net.shadew.nbt4j.NbtWriter} write for the same tree.
+ * <p>
+ * Trees smaller than the threshold are serialized on the calling thread, as splitting them costs more than it gains.
+ * The tree must not be modified while it is being serialized.
+ * </p>
+ * <pre>
+ * byte[] bytes = new ParallelTagSerializer().pool(pool).toByteArray(clipboard, "");
+ * </pre>
+ */
+public final class ParallelTagSerializer {
+    /**
+     * The default size, in bytes, from which a tree is serialized in parallel.
+     */
+    public static final long DEFAULT_THRESHOLD = 1 << 20;
+
+    /**
+     * The default size, in bytes, from which a subtree is encoded in its own task.
+     */
+    public static final long DEFAULT_SPLIT_SIZE = 64 << 10;
+
+    // Subtrees deeper than this are encoded sequentially, so that deep trees do not nest tasks on the call stack
+    private static final int MAX_SPLIT_DEPTH = 64;
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private long threshold = DEFAULT_THRESHOLD;
+    private long splitSize = DEFAULT_SPLIT_SIZE;
+
+    public ForkJoinPool pool() {
+        return pool;
+    }
+
+    public ParallelTagSerializer pool(ForkJoinPool pool) {
+        if (pool == null)
+            throw new NullPointerException("Pool cannot be null");
+        this.pool = pool;
+        return this;
+    }
+
+    public long threshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the size, in bytes, from which trees are serialized in parallel. Smaller trees are serialized by {@link
+     * TagSerializer} on the calling thread.
+     */
+    public ParallelTagSerializer threshold(long threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    public long splitSize() {
+        return splitSize;
+    }
+
+    /**
+     * Sets the size, in bytes, from which a compound or list is encoded in its own task, and up to which runs of small
+     * siblings are grouped into one task.
+     *
+     * @throws IllegalArgumentException When the split size is not positive
+     */
+    public ParallelTagSerializer splitSize(long splitSize) {
+        if (splitSize <= 0)
+            throw new IllegalArgumentException("Split size must be positive");
+        this.splitSize = splitSize;
+        return this;
+    }
+
+    /**
+     * Serializes the given tag as a root tag with the given name into a byte array of exactly the right size.
+     *
+     * @throws IOException When the tag cannot be serialized
+     */
+    public byte[] toByteArray(Tag tag, String name) throws IOException {
+        Map<Tag, Long> sizes = new IdentityHashMap<>();
+        long size = encodedSize(tag, name, sizes);
+        byte[] bytes = new byte[checkedSize(size)];
+        write(tag, name, ByteBuffer.wrap(bytes), size, sizes);
+        return bytes;
+    }
+
+    /**
+     * Serializes the given tag as a root tag with the given name into a new buffer of exactly the right size. The
+     * returned buffer is ready to be read: its position is zero and its limit is its capacity.
+     *
+     * @param direct Whether to allocate a direct buffer rather than a heap buffer
+     * @throws IOException When the tag cannot be serialized
+     */
+    public ByteBuffer toByteBuffer(Tag tag, String name, boolean direct) throws IOException {
+        Map<Tag, Long> sizes = new IdentityHashMap<>();
+        long size = encodedSize(tag, name, sizes);
+        int cap = checkedSize(size);
+        ByteBuffer buf = direct ? ByteBuffer.allocateDirect(cap) : ByteBuffer.allocate(cap);
+        write(tag, name, buf, size, sizes);
+        return buf.flip();
+    }
+
+    /**
+     * Serializes the given tag as a root tag with the given name into the given buffer, starting at its position. The
+     * position of the buffer is moved to just after the written tag.
+     *
+     * @throws IOException When the tag cannot be serialized or does not fit in the buffer
+     */
+    public void write(Tag tag, String name, ByteBuffer buf) throws IOException {
+        Map<Tag, Long> sizes = new IdentityHashMap<>();
+        write(tag, name, buf, encodedSize(tag, name, sizes), sizes);
+    }
+
+    private long encodedSize(Tag tag, String name, Map<Tag, Long> sizes) {
+        return 1 + StringTag.countUtfBytes(name) + TagSerializer.payloadSize(tag, sizes, splitSize);
+    }
+
+    private void write(Tag tag, String name, ByteBuffer buf, long size, Map<Tag, Long> sizes) throws IOException {
+        if (size > buf.remaining())
+            throw new NbtException("Tag of " + size + " bytes does not fit in " + buf.remaining() + " remaining bytes");
+
+        if (size < threshold || !TagSerializer.isContainer(tag)) {
+            TagSerializer.write(tag, name, buf);
+            return;
+        }
+
+        int start = buf.position();
+        ByteBuffer out = buf.slice(start, (int) size);
+        try {
+            pool.invoke(new ContainerTask(tag, name, out, sizes, splitSize, 0));
+        } catch (UncheckedIOException exc) {
+            throw exc.getCause();
+        }
+        buf.position(start + (int) size);
+    }
+
+    private static int checkedSize(long size) throws NbtException {
+        if (size > MAX_SIZE)
+            throw new NbtException("Tag of " + size + " bytes is too large to serialize into one buffer");
+        return (int) size;
+    }
+
+    private static long payloadSize(Tag tag, Map<Tag, Long> sizes) {
+        if (!TagSerializer.isContainer(tag))
+            return TagSerializer.leafSize(tag);
+        Long size = sizes.get(tag);
+        return size != null ? size : TagSerializer.payloadSize(tag);
+    }
+
+    /**
+     * Encodes one compound or list into the given buffer of exactly its size: as a named tag, or as a list element when
+     * the name is null. Large children are encoded in subtasks, and runs of small children in tasks of their own once
+     * they reach the split size.
+     */
+    private static final class ContainerTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Tag tag;
+        private final String name;
+        private final ByteBuffer out;
+        private final Map<Tag, Long> sizes;
+        private final long splitSize;
+        private final int depth;
+
+        ContainerTask(Tag tag, String name, ByteBuffer out, Map<Tag, Long> sizes, long splitSize, int depth) {
+            this.tag = tag;
+            this.name = name;
+            this.out = out;
+            this.sizes = sizes;
+            this.splitSize = splitSize;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth >= MAX_SPLIT_DEPTH || out.capacity() < splitSize) {
+                new RunTask(out, name == null ? null : new String[] {name}, new Tag[] {tag}, 0, 1).compute();
+                return;
+            }
+
+            try {
+                if (name != null) {
+                    out.put(tag.type().getId());
+                    writeUtf(name);
+                }
+
+                List<RecursiveAction> tasks = new ArrayList<>();
+                if (tag instanceof CompoundTag compound) {
+                    String[] keys = new String[compound.size()];
+                    Tag[] values = new Tag[keys.length];
+                    int i = 0;
+                    for (Map.Entry<String, Tag> entry : compound.entrySet()) {
+                        keys[i] = entry.getKey();
+                        values[i++] = entry.getValue();
+                    }
+                    split(keys, values, tasks);
+                    invokeAll(tasks);
+                    out.put(out.capacity() - 1, (byte) 0); // TAG_End
+                } else {
+                    ListTag list = (ListTag) tag;
+                    out.put(list.getElementType().getId());
+                    out.putInt(list.size());
+                    split(null, list.toArray(new Tag[0]), tasks);
+                    invokeAll(tasks);
+                }
+            } catch (IOException exc) {
+                throw new UncheckedIOException(exc);
+            }
+        }
+
+        /**
+         * Gives every large child its own task and groups the small children in between into runs.
+         */
+        private void split(String[] keys, Tag[] values, List<RecursiveAction> tasks) {
+            int pos = out.position();
+            int runStart = 0;
+            int runPos = pos;
+
+            for (int i = 0; i < values.length; i++) {
+                Tag value = values[i];
+                long payload = payloadSize(value, sizes);
+                long size = keys == null ? payload : 1 + StringTag.countUtfBytes(keys[i]) + payload;
+
+                if (payload >= splitSize && TagSerializer.isContainer(value)) {
+                    if (runStart < i)
+                        tasks.add(new RunTask(out.slice(runPos, pos - runPos), keys, values, runStart, i));
+                    tasks.add(new ContainerTask(
+                        value, keys == null ? null : keys[i],
+                        out.slice(pos, (int) size), sizes, splitSize, depth + 1
+                    ));
+                    pos += (int) size;
+                    runStart = i + 1;
+                    runPos = pos;
+                } else {
+                    pos += (int) size;
+                    if (pos - runPos >= splitSize) {
+                        tasks.add(new RunTask(out.slice(runPos, pos - runPos), keys, values, runStart, i + 1));
+                        runStart = i + 1;
+                        runPos = pos;
+                    }
+                }
+            }
+
+            if (runStart < values.length)
+                tasks.add(new RunTask(out.slice(runPos, pos - runPos), keys, values, runStart, values.length));
+        }
+
+        private void writeUtf(String str) throws UTFDataFormatException {
+            int len = ModifiedUtf8.encodedLength(str);
+            if (len > 65535)
+                throw new UTFDataFormatException("encoded string too long: " + len + " bytes");
+            out.putShort((short) len);
+            ModifiedUtf8.encode(str, out, out.position());
+            out.position(out.position() + len);
+        }
+    }
+
+    /**
+     * Encodes a run of consecutive compound entries, or list elements when there are no keys, on the calling thread.
+     */
+    private static final class RunTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer out;
+        private final String[] keys;
+        private final Tag[] values;
+        private final int from;
+        private final int to;
+
+        RunTask(ByteBuffer out, String[] keys, Tag[] values, int from, int to) {
+            this.out = out;
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            NbtBufferWriter writer = new NbtBufferWriter(out);
+            NbtVisitor visitor = keys == null ? writer.elementVisitor() : writer;
+            for (int i = from; i < to; i++)
+                values[i].accept(visitor, keys == null ? "" : keys[i]);
+
+            try {
+                writer.throwIoException();
+                if (writer.size() != out.capacity())
+                    throw new NbtException("Tag tree was modified while it was being serialized");
+            } catch (IOException exc) {
+                throw new UncheckedIOException(exc);
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ public final class StringTag implements Tag {
     public static final StringTag EMPTY = of("");
 
     private final String value;
+    private volatile long encodedSize = -1; // Lazily computed, racing threads compute the same value
 
     private StringTag(String value) {
         this.value = value;
@@ -33,6 +34,17 @@ public final class StringTag implements Tag {
         return value;
     }
 
+    /**
+     * Returns the amount of bytes this string takes in binary NBT, including its length prefix. This is computed once
+     * and then memoized, as the tag is immutable.
+     */
+    long encodedSize() {
+        long size = encodedSize;
+        if (size < 0)
+            encodedSize = size = countUtfBytes(value);
+        return size;
+    }
+
     public static long countUtfBytes(String data) {
         int len = data.length();
         long utfBytes = 2;
@@ -0,0 +1,228 @@
+package net.shadew.nbt4j.tree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.shadew.nbt4j.NbtBufferWriter;
+import net.shadew.nbt4j.util.NbtException;
+
+/**
+ * Serializes {@link Tag} trees into a single allocation of exactly the right size. The encoded size of the tree is
+ * computed first, after which the tree is encoded into a {@code byte[]} or {@link ByteBuffer} of that size, so the
+ * payload is never copied into a larger buffer. The output is identical to what an {@link net.shadew.nbt4j.NbtWriter}
+ * writes for the same tree.
+ * <p>
+ * Computing the size is cheap for trees that were sized before: {@link StringTag}s memoize their encoded length, and
+ * {@link CompoundTag}s memoize the size of their keys and non-nested values until an entry is added or removed. Only
+ * the nested compounds and lists are visited again, and the tree is walked without recursion, so the depth of the tree
+ * does not affect the call stack.
+ * </p>
+ * <p>
+ * The memoized sizes are safely published, so a tree that is no longer modified can be sized and serialized from
+ * multiple threads at once. Trees are not thread-safe otherwise: a tree must not be modified while it is serialized.
+ * </p>
+ */
+public final class TagSerializer {
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+    private static final int INITIAL_DEPTH = 16;
+
+    private TagSerializer() {
+    }
+
+    /**
+     * Returns the amount of bytes the given tag takes as a root tag with an empty name, as written by {@link
+     * #toByteArray}.
+     */
+    public static long encodedSize(Tag tag) {
+        return encodedSize(tag, "");
+    }
+
+    /**
+     * Returns the amount of bytes the given tag takes as a root tag with the given name, that is the tag type, the name
+     * and the payload.
+     */
+    public static long encodedSize(Tag tag, String name) {
+        return 1 + StringTag.countUtfBytes(name) + payloadSize(tag);
+    }
+
+    /**
+     * Returns the amount of bytes the payload of the given tag takes, excluding its type and name.
+     */
+    public static long payloadSize(Tag tag) {
+        return payloadSize(tag, null, 0);
+    }
+
+    /**
+     * Computes the payload size of the given tag, and records the payload size of every compound and list in the tree
+     * of at least the given size in the given map, if not null.
+     */
+    static long payloadSize(Tag tag, Map<Tag, Long> recorded, long minRecorded) {
+        if (!isContainer(tag))
+            return leafSize(tag);
+
+        Tag[] containers = new Tag[INITIAL_DEPTH];
+        Object[] children = new Object[INITIAL_DEPTH];
+        int[] indices = new int[INITIAL_DEPTH];
+        long[] sizes = new long[INITIAL_DEPTH];
+
+        containers[0] = tag;
+        children[0] = nested(tag);
+        sizes[0] = flatSize(tag);
+        int depth = 1;
+
+        while (true) {
+            int top = depth - 1;
+            Tag child = child(children[top], indices[top]++);
+            if (child != null) {
+                if (depth == containers.length) {
+                    int len = depth * 2;
+                    containers = Arrays.copyOf(containers, len);
+                    children = Arrays.copyOf(children, len);
+                    indices = Arrays.copyOf(indices, len);
+                    sizes = Arrays.copyOf(sizes, len);
+                }
+                containers[depth] = child;
+                children[depth] = nested(child);
+                indices[depth] = 0;
+                sizes[depth] = flatSize(child);
+                depth++;
+            } else {
+                long size = sizes[top];
+                if (recorded != null && size >= minRecorded)
+                    recorded.put(containers[top], size);
+                containers[top] = null;
+                children[top] = null;
+                depth--;
+                if (depth == 0)
+                    return size;
+                sizes[depth - 1] += size;
+            }
+        }
+    }
+
+    /**
+     * Serializes the given tag as a root tag with an empty name into a byte array of exactly the right size.
+     *
+     * @throws IOException When the tag cannot be serialized
+     */
+    public static byte[] toByteArray(Tag tag) throws IOException {
+        return toByteArray(tag, "");
+    }
+
+    /**
+     * Serializes the given tag as a root tag with the given name into a byte array of exactly the right size.
+     *
+     * @throws IOException When the tag cannot be serialized
+     */
+    public static byte[] toByteArray(Tag tag, String name) throws IOException {
+        byte[] bytes = new byte[checkedSize(tag, name)];
+        write(tag, name, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Serializes the given tag as a root tag with the given name into a new buffer of exactly the right size. The
+     * returned buffer is ready to be read: its position is zero and its limit is its capacity.
+     *
+     * @param direct Whether to allocate a direct buffer rather than a heap buffer
+     * @throws IOException When the tag cannot be serialized
+     */
+    public static ByteBuffer toByteBuffer(Tag tag, String name, boolean direct) throws IOException {
+        int size = checkedSize(tag, name);
+        ByteBuffer buf = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        write(tag, name, buf);
+        return buf.flip();
+    }
+
+    /**
+     * Serializes the given tag as a root tag with the given name into the given buffer, starting at its position. The
+     * position of the buffer is moved to just after the written tag. The buffer must have at least {@link
+     * #encodedSize(Tag, String)} bytes remaining.
+     *
+     * @throws IOException When the tag cannot be serialized or does not fit in the buffer
+     */
+    public static void write(Tag tag, String name, ByteBuffer buf) throws IOException {
+        long size = encodedSize(tag, name);
+        if (size > buf.remaining())
+            throw new NbtException("Tag of " + size + " bytes does not fit in " + buf.remaining() + " remaining bytes");
+
+        // The buffer has room for the whole tag, so the writer never replaces it with a larger buffer
+        int start = buf.position();
+        NbtBufferWriter writer = new NbtBufferWriter(buf.duplicate());
+        tag.accept(writer, name);
+        writer.throwIoException();
+        buf.position(start + writer.size());
+    }
+
+    private static int checkedSize(Tag tag, String name) throws NbtException {
+        long size = encodedSize(tag, name);
+        if (size > MAX_SIZE)
+            throw new NbtException("Tag of " + size + " bytes is too large to serialize into one buffer");
+        return (int) size;
+    }
+
+    /**
+     * Returns the payload size of a tag that is not a compound or list.
+     */
+    static long leafSize(Tag tag) {
+        return switch (tag.type()) {
+            case END -> 0;
+            case BYTE -> 1;
+            case SHORT -> 2;
+            case INT, FLOAT -> 4;
+            case LONG, DOUBLE -> 8;
+            case STRING -> ((StringTag) tag).encodedSize();
+            case BYTE_ARRAY -> 4L + ((ByteArrayTag) tag).length();
+            case INT_ARRAY -> 4L + ((IntArrayTag) tag).length() * 4L;
+            case LONG_ARRAY -> 4L + ((LongArrayTag) tag).length() * 8L;
+            default -> throw new IllegalArgumentException("Not a leaf tag: " + tag.type());
+        };
+    }
+
+    private static long flatSize(Tag tag) {
+        if (tag instanceof CompoundTag compound)
+            return compound.flatSize();
+
+        ListTag list = (ListTag) tag;
+        long size = 5; // Element type and length
+        switch (list.getElementType()) {
+            case COMPOUND, LIST, END -> {
+            }
+            case BYTE -> size += list.size();
+            case SHORT -> size += list.size() * 2L;
+            case INT, FLOAT -> size += list.size() * 4L;
+            case LONG, DOUBLE -> size += list.size() * 8L;
+            default -> {
+                for (Tag element : list)
+                    size += leafSize(element);
+            }
+        }
+        return size;
+    }
+
+    static boolean isContainer(Tag tag) {
+        return tag instanceof CompoundTag || tag instanceof ListTag;
+    }
+
+    private static Object nested(Tag tag) {
+        if (tag instanceof CompoundTag compound)
+            return compound.nested();
+
+        ListTag list = (ListTag) tag;
+        return switch (list.getElementType()) {
+            case COMPOUND, LIST -> list;
+            default -> null;
+        };
+    }
+
+    private static Tag child(Object children, int index) {
+        if (children instanceof Tag[] array)
+            return index < array.length ? array[index] : null;
+        if (children instanceof List<?> list)
+            return index < list.size() ? (Tag) list.get(index) : null;
+        return null;
+    }
+}
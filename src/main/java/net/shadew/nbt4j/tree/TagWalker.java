@@ -0,0 +1,97 @@
+package net.shadew.nbt4j.tree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import net.shadew.nbt4j.NbtVisitor;
+
+/**
+ * Replays a tree of {@link CompoundTag}s and {@link ListTag}s to a visitor without recursion. Open compounds and lists
+ * are kept on a frame stack together with an iterator over their contents, so the depth of the tree does not affect
+ * the call stack.
+ */
+final class TagWalker {
+    private static final int INITIAL_DEPTH = 16;
+
+    private NbtVisitor[] visitors = new NbtVisitor[INITIAL_DEPTH];
+    private Iterator<?>[] iterators = new Iterator<?>[INITIAL_DEPTH];
+    private boolean[] lists = new boolean[INITIAL_DEPTH];
+    private int depth;
+
+    private TagWalker() {
+    }
+
+    static void accept(CompoundTag tag, NbtVisitor visitor, String name) {
+        NbtVisitor v = visitor.visitCompound(name);
+        if (v == null) return;
+
+        TagWalker walker = new TagWalker();
+        walker.push(v, tag.entrySet().iterator(), false);
+        walker.walk();
+    }
+
+    static void accept(ListTag tag, NbtVisitor visitor, String name) {
+        NbtVisitor v = visitor.visitList(tag.getElementType(), tag.size(), name);
+        if (v == null) return;
+
+        TagWalker walker = new TagWalker();
+        walker.push(v, tag.iterator(), true);
+        walker.walk();
+    }
+
+    private void walk() {
+        while (depth > 0) {
+            int top = depth - 1;
+            NbtVisitor v = visitors[top];
+            Iterator<?> iterator = iterators[top];
+
+            if (!iterator.hasNext()) {
+                depth--;
+                visitors[top] = null;
+                iterators[top] = null;
+                if (lists[top])
+                    v.visitListEnd();
+                else
+                    v.visitEnd();
+                continue;
+            }
+
+            Tag element;
+            String name;
+            if (lists[top]) {
+                element = (Tag) iterator.next();
+                name = ""; // List elements are visited with an empty name, like NbtAcceptor.accept(NbtVisitor) does
+            } else {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) iterator.next();
+                element = (Tag) entry.getValue();
+                name = (String) entry.getKey();
+            }
+
+            if (element instanceof CompoundTag compound) {
+                NbtVisitor ev = v.visitCompound(name);
+                if (ev != null)
+                    push(ev, compound.entrySet().iterator(), false);
+            } else if (element instanceof ListTag list) {
+                NbtVisitor ev = v.visitList(list.getElementType(), list.size(), name);
+                if (ev != null)
+                    push(ev, list.iterator(), true);
+            } else {
+                element.accept(v, name);
+            }
+        }
+    }
+
+    private void push(NbtVisitor visitor, Iterator<?> iterator, boolean list) {
+        if (depth == visitors.length) {
+            int newDepth = depth * 2;
+            visitors = Arrays.copyOf(visitors, newDepth);
+            iterators = Arrays.copyOf(iterators, newDepth);
+            lists = Arrays.copyOf(lists, newDepth);
+        }
+        visitors[depth] = visitor;
+        iterators[depth] = iterator;
+        lists[depth] = list;
+        depth++;
+    }
+}
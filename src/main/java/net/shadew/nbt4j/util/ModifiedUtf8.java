@@ -0,0 +1,138 @@
+package net.shadew.nbt4j.util;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utilities for the modified UTF-8 encoding used by {@link java.io.DataInput#readUTF} and {@link
+ * java.io.DataOutput#writeUTF}, which is the encoding NBT uses for all names and string values. The methods in this
+ * class work on {@link ByteBuffer}s at absolute offsets, so that they can be used by readers and writers that do not go
+ * through {@link java.io.DataInput} or {@link java.io.DataOutput}.
+ */
+public final class ModifiedUtf8 {
+    private ModifiedUtf8() {
+    }
+
+    /**
+     * Decodes a modified UTF-8 string of {@code len} bytes, starting at absolute index {@code off} in the given buffer.
+     * The position of the buffer is not modified. The given character array is used as scratch space for decoding and
+     * must be at least {@code len} characters long. Decoding is equivalent to {@link java.io.DataInput#readUTF},
+     * excluding the length prefix.
+     *
+     * @param buf   The buffer to decode from
+     * @param off   The absolute index of the first encoded byte
+     * @param len   The amount of encoded bytes
+     * @param chars Scratch space of at least {@code len} characters
+     * @return The decoded string
+     *
+     * @throws UTFDataFormatException When the bytes are not valid modified UTF-8
+     */
+    public static String decode(ByteBuffer buf, int off, int len, char[] chars) throws UTFDataFormatException {
+        int end = off + len;
+        int i = off;
+
+        // Fast path: plain ASCII, which is what nearly all NBT names and most string values are
+        while (i < end && buf.get(i) >= 0)
+            i++;
+
+        if (i == end) {
+            if (buf.hasArray())
+                return new String(buf.array(), buf.arrayOffset() + off, len, StandardCharsets.ISO_8859_1);
+            for (int j = 0; j < len; j++)
+                chars[j] = (char) buf.get(off + j);
+            return new String(chars, 0, len);
+        }
+
+        int count = i - off;
+        for (int j = 0; j < count; j++)
+            chars[j] = (char) buf.get(off + j);
+
+        while (i < end) {
+            int c = buf.get(i) & 0xFF;
+            switch (c >> 4) {
+                case 0, 1, 2, 3, 4, 5, 6, 7 -> {
+                    i++;
+                    chars[count++] = (char) c;
+                }
+                case 12, 13 -> {
+                    i += 2;
+                    if (i > end)
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    int c2 = buf.get(i - 1);
+                    if ((c2 & 0xC0) != 0x80)
+                        throw new UTFDataFormatException("malformed input around byte " + (i - off));
+                    chars[count++] = (char) ((c & 0x1F) << 6 | c2 & 0x3F);
+                }
+                case 14 -> {
+                    i += 3;
+                    if (i > end)
+                        throw new UTFDataFormatException("malformed input: partial character at end");
+                    int c2 = buf.get(i - 2);
+                    int c3 = buf.get(i - 1);
+                    if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80)
+                        throw new UTFDataFormatException("malformed input around byte " + (i - 1 - off));
+                    chars[count++] = (char) ((c & 0x0F) << 12 | (c2 & 0x3F) << 6 | c3 & 0x3F);
+                }
+                default -> throw new UTFDataFormatException("malformed input around byte " + (i - off));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Returns the amount of bytes the modified UTF-8 encoding of the given string takes, excluding the length prefix.
+     */
+    public static int encodedLength(String str) {
+        int len = str.length();
+        int utflen = len;
+        for (int i = 0; i < len; i++) {
+            int c = str.charAt(i);
+            if (c >= 0x80 || c == 0)
+                utflen += c >= 0x800 ? 2 : 1;
+        }
+        return utflen;
+    }
+
+    /**
+     * Encodes the given string in modified UTF-8, starting at absolute index {@code off} in the given buffer. The
+     * position of the buffer is not modified. The buffer must have room for up to three bytes per character. Encoding
+     * is equivalent to {@link java.io.DataOutput#writeUTF}, excluding the length prefix.
+     *
+     * @param str The string to encode
+     * @param buf The buffer to encode into
+     * @param off The absolute index to write the first encoded byte at
+     * @return The amount of bytes written
+     */
+    public static int encode(String str, ByteBuffer buf, int off) {
+        int len = str.length();
+        int i = 0;
+
+        // Fast path: plain ASCII, which encodes as one byte per character
+        if (buf.hasArray()) {
+            byte[] array = buf.array();
+            int base = buf.arrayOffset() + off;
+            for (int c; i < len && (c = str.charAt(i)) < 0x80 && c != 0; i++)
+                array[base + i] = (byte) c;
+        } else {
+            for (int c; i < len && (c = str.charAt(i)) < 0x80 && c != 0; i++)
+                buf.put(off + i, (byte) c);
+        }
+
+        int pos = off + i;
+        for (; i < len; i++) {
+            int c = str.charAt(i);
+            if (c < 0x80 && c != 0) {
+                buf.put(pos++, (byte) c);
+            } else if (c >= 0x800) {
+                buf.put(pos++, (byte) (0xE0 | c >> 12 & 0x0F));
+                buf.put(pos++, (byte) (0x80 | c >> 6 & 0x3F));
+                buf.put(pos++, (byte) (0x80 | c & 0x3F));
+            } else {
+                buf.put(pos++, (byte) (0xC0 | c >> 6 & 0x1F));
+                buf.put(pos++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+        return pos - off;
+    }
+}
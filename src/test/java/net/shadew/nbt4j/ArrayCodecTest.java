@@ -0,0 +1,130 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.IntArrayTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.LongArrayTag;
+import net.shadew.nbt4j.tree.Tag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayCodecTest {
+    // Empty, single element and sizes around the scratch block, which holds 2048 ints or 1024 longs
+    private static final int[] SIZES = {0, 1, 3, 1023, 1024, 1025, 2047, 2048, 2049, 5000, 70000};
+
+    // The encoding NbtWriter produced before arrays were converted in bulk, one element at a time
+    private static byte[] elementWise(int[] ints, long[] longs) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeByte(TagType.COMPOUND.getId());
+        out.writeUTF("");
+
+        out.writeByte(TagType.INT_ARRAY.getId());
+        out.writeUTF("Ints");
+        out.writeInt(ints.length);
+        for (int i : ints) out.writeInt(i);
+
+        out.writeByte(TagType.LONG_ARRAY.getId());
+        out.writeUTF("Longs");
+        out.writeInt(longs.length);
+        for (long l : longs) out.writeLong(l);
+
+        out.writeByte(TagType.LIST.getId());
+        out.writeUTF("IntList");
+        out.writeByte(TagType.INT_ARRAY.getId());
+        out.writeInt(1);
+        out.writeInt(ints.length);
+        for (int i : ints) out.writeInt(i);
+
+        out.writeByte(TagType.LIST.getId());
+        out.writeUTF("LongList");
+        out.writeByte(TagType.LONG_ARRAY.getId());
+        out.writeInt(1);
+        out.writeInt(longs.length);
+        for (long l : longs) out.writeLong(l);
+
+        out.writeByte(TagType.END.getId());
+        return bout.toByteArray();
+    }
+
+    private static CompoundTag tree(int[] ints, long[] longs) {
+        CompoundTag root = new CompoundTag();
+        root.putIntArray("Ints", ints);
+        root.putLongArray("Longs", longs);
+        ListTag intList = new ListTag(TagType.INT_ARRAY);
+        intList.add(IntArrayTag.of(ints));
+        root.put("IntList", intList);
+        ListTag longList = new ListTag(TagType.LONG_ARRAY);
+        longList.add(LongArrayTag.of(longs));
+        root.put("LongList", longList);
+        return root;
+    }
+
+    private static Tag read(byte[] bytes) throws IOException {
+        TagBuilder builder = new TagBuilder();
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+        reader.accept(builder);
+        reader.throwIoException();
+        return builder.tag();
+    }
+
+    private static Tag readBuffer(byte[] bytes) throws IOException {
+        TagBuilder builder = new TagBuilder();
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        reader.accept(builder);
+        reader.throwIoException();
+        return builder.tag();
+    }
+
+    @Test
+    void writesArraysLikeElementWiseEncoding() throws IOException {
+        Random random = new Random(0);
+        for (int size : SIZES) {
+            int[] ints = random.ints(size).toArray();
+            long[] longs = random.longs(size).toArray();
+            assertArrayEquals(elementWise(ints, longs), NbtSamples.bytes(tree(ints, longs)), "size " + size);
+        }
+    }
+
+    @Test
+    void readsArraysWrittenElementWise() throws IOException {
+        Random random = new Random(1);
+        for (int size : SIZES) {
+            int[] ints = random.ints(size).toArray();
+            long[] longs = random.longs(size).toArray();
+            byte[] bytes = elementWise(ints, longs);
+
+            for (Tag tag : new Tag[] {read(bytes), readBuffer(bytes)}) {
+                CompoundTag root = (CompoundTag) tag;
+                assertArrayEquals(ints, root.getIntArray("Ints"), "size " + size);
+                assertArrayEquals(longs, root.getLongArray("Longs"), "size " + size);
+                assertArrayEquals(bytes, TagSerializer.toByteArray(root), "size " + size);
+            }
+        }
+    }
+
+    @Test
+    void writesRootArrays() throws IOException {
+        int[] ints = new Random(2).ints(5000).toArray();
+        byte[] bytes = NbtSamples.bytes(IntArrayTag.of(ints));
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeByte(TagType.INT_ARRAY.getId());
+        out.writeUTF("");
+        out.writeInt(ints.length);
+        for (int i : ints) out.writeInt(i);
+        assertArrayEquals(bout.toByteArray(), bytes);
+    }
+}
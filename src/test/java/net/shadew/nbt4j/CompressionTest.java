@@ -0,0 +1,207 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+    private static byte[] data(int size) {
+        Random random = new Random(size);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) (random.nextInt(16) + 'a');
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return stream.readAllBytes();
+        }
+    }
+
+    @Test
+    void roundTripsAllCompressions() throws IOException {
+        byte[] data = data(100000);
+        for (Compression compression : Compression.values()) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            try (OutputStream out = compression.createOutStream(bout)) {
+                out.write(data);
+            }
+            InputStream in = compression.createInStream(new ByteArrayInputStream(bout.toByteArray()));
+            assertArrayEquals(data, readAll(in), compression.name());
+        }
+    }
+
+    @Test
+    void readsConcatenatedGzipMembers() throws IOException {
+        byte[] data = data(600000);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(bout)) {
+            out.write(data);
+        }
+        byte[] compressed = bout.toByteArray();
+
+        assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        assertArrayEquals(data, readAll(Compression.GZIPPED.createInStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    void readsConcatenatedSmallGzipMembers() throws IOException {
+        // Members that are small enough for the next member to be in the buffer already
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; i++) {
+            byte[] data = data(10 + i * 100);
+            expected.write(data);
+            try (OutputStream out = new GZIPOutputStream(bout) {
+                @Override
+                public void close() throws IOException {
+                    finish(); // Don't close the underlying stream
+                }
+            }) {
+                out.write(data);
+            }
+        }
+
+        InputStream in = Compression.GZIPPED.createInStream(new ByteArrayInputStream(bout.toByteArray()));
+        assertArrayEquals(expected.toByteArray(), readAll(in));
+    }
+
+    @Test
+    void ignoresGarbageAfterGzipMember() throws IOException {
+        byte[] data = data(1000);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = Compression.GZIPPED.createOutStream(bout)) {
+            out.write(data);
+        }
+        bout.write(new byte[] {1, 2, 3});
+
+        InputStream in = Compression.GZIPPED.createInStream(new ByteArrayInputStream(bout.toByteArray()));
+        assertArrayEquals(data, readAll(in));
+    }
+
+    private static byte[] parallelGzip(byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(bout, ForkJoinPool.commonPool(), blockSize,
+                                                             CompressionSettings.FASTEST)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    @Test
+    void readsParallelGzipMembersOfAnySize() throws IOException {
+        // Members larger than MAX_MEMBER_SIZE uncompressed, and compressed as well
+        int blockSize = ParallelGzipInputStream.MAX_MEMBER_SIZE + 1;
+        byte[] zeros = new byte[2 * blockSize + 100];
+        byte[] noise = new byte[2 * blockSize + 100];
+        new Random(1).nextBytes(noise);
+
+        for (byte[] data : new byte[][] {data(600000), zeros, noise}) {
+            for (int size : new int[] {ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, blockSize}) {
+                byte[] compressed = parallelGzip(data, size);
+                assertArrayEquals(data, readAll(new ParallelGzipInputStream(new ByteArrayInputStream(compressed))));
+            }
+        }
+    }
+
+    @Test
+    void ignoresCorruptParallelGzipMemberSize() throws IOException {
+        byte[] data = data(100000);
+        byte[] compressed = parallelGzip(data, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+
+        // The size in the NB subfield claims the member is almost 2 GiB, which must not be allocated
+        compressed[16] = (byte) 0xF0;
+        compressed[17] = (byte) 0xFF;
+        compressed[18] = (byte) 0xFF;
+        compressed[19] = 0x7F;
+        assertArrayEquals(data, readAll(new ParallelGzipInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    // Compresses in one go with a new deflater, as a reference for the pooled deflaters
+    private static byte[] deflate(byte[] data, CompressionSettings settings, boolean raw) {
+        Deflater def = new Deflater(settings.level(), raw);
+        def.setStrategy(settings.strategy());
+        def.setInput(data);
+        def.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        while (!def.finished())
+            out.write(buf, 0, def.deflate(buf));
+        def.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] compress(Compression compression, byte[] data, CompressionSettings settings)
+        throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = compression.createOutStream(bout, settings)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    @Test
+    void compressesWithGivenSettings() throws IOException {
+        byte[] data = data(200000);
+
+        // Alternate the settings, so that pooled deflaters are reused with other settings than they had before
+        CompressionSettings[] settings = {
+            CompressionSettings.ARCHIVAL,
+            CompressionSettings.FASTEST,
+            CompressionSettings.of(9, Deflater.FILTERED),
+            CompressionSettings.of(0, Deflater.DEFAULT_STRATEGY),
+            CompressionSettings.DEFAULT,
+            CompressionSettings.of(6, Deflater.HUFFMAN_ONLY),
+            CompressionSettings.ARCHIVAL
+        };
+        for (CompressionSettings s : settings) {
+            byte[] deflated = compress(Compression.DEFLATED, data, s);
+            assertArrayEquals(deflate(data, s, false), deflated, s.toString());
+            assertArrayEquals(data, readAll(Compression.DEFLATED.createInStream(new ByteArrayInputStream(deflated))));
+
+            // A GZIP member is a header of 10 bytes, raw deflate data and a trailer of 8 bytes
+            byte[] gzipped = compress(Compression.GZIPPED, data, s);
+            byte[] member = Arrays.copyOfRange(gzipped, 10, gzipped.length - 8);
+            assertArrayEquals(deflate(data, s, true), member, s.toString());
+            assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(gzipped))));
+        }
+
+        byte[] fastest = compress(Compression.DEFLATED, data, CompressionSettings.FASTEST);
+        byte[] archival = compress(Compression.DEFLATED, data, CompressionSettings.ARCHIVAL);
+        assertTrue(archival.length < fastest.length);
+    }
+
+    @Test
+    void reconfiguresPooledDeflaters() throws IOException {
+        byte[] data = data(100000);
+        CompressionPool pool = new CompressionPool(1);
+
+        Deflater archival = pool.borrowDeflater(false, CompressionSettings.ARCHIVAL);
+        pool.release(archival, false);
+        Deflater fastest = pool.borrowDeflater(false, CompressionSettings.FASTEST);
+        assertSame(archival, fastest);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bout, fastest)) {
+            out.write(data);
+        }
+        assertArrayEquals(deflate(data, CompressionSettings.FASTEST, false), bout.toByteArray());
+        pool.release(fastest, false);
+        pool.clear();
+    }
+}
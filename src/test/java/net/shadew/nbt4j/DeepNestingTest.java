@@ -0,0 +1,105 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.Tag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeepNestingTest {
+    private static final int DEPTH = 10000;
+
+    // Far too small for a recursive reader or walker to get through DEPTH levels
+    private static final long STACK_SIZE = 128 * 1024;
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private static void runOnSmallStack(Body body) throws Throwable {
+        Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                body.run();
+            } catch (Throwable exc) {
+                error[0] = exc;
+            }
+        }, "small-stack", STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (error[0] != null)
+            throw error[0];
+    }
+
+    // Alternates compounds and lists, with a value at every level so that the order of events is checked as well
+    private static CompoundTag deep() {
+        CompoundTag root = new CompoundTag();
+        CompoundTag compound = root;
+        for (int i = 0; i < DEPTH; i++) {
+            ListTag list = new ListTag(TagType.COMPOUND);
+            CompoundTag inner = new CompoundTag();
+            list.add(inner);
+            compound.put("List", list);
+            compound.putInt("Depth", i);
+            compound = inner;
+        }
+        compound.putString("Bottom", "reached");
+        return root;
+    }
+
+    private static Tag build(NbtAcceptor acceptor) {
+        TagBuilder builder = new TagBuilder();
+        acceptor.accept(builder);
+        return builder.tag();
+    }
+
+    @Test
+    void readsWritesAndWalksDeepTrees() throws Throwable {
+        runOnSmallStack(() -> {
+            CompoundTag deep = deep();
+            byte[] bytes = NbtSamples.bytes(deep);
+            assertEquals(bytes.length, TagSerializer.encodedSize(deep));
+            assertArrayEquals(bytes, TagSerializer.toByteArray(deep));
+
+            NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+            Tag read = build(reader);
+            reader.throwIoException();
+            assertArrayEquals(bytes, NbtSamples.bytes(read));
+
+            NbtBufferReader bufferReader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+            Tag bufferRead = build(bufferReader);
+            bufferReader.throwIoException();
+            assertArrayEquals(bytes, NbtSamples.bytes(bufferRead));
+        });
+    }
+
+    @Test
+    void skipsDeepTrees() throws Throwable {
+        runOnSmallStack(() -> {
+            CompoundTag root = new CompoundTag();
+            root.put("Deep", deep());
+            root.putInt("After", 1);
+            byte[] bytes = NbtSamples.bytes(root);
+
+            EventRecorder recorder = new EventRecorder() {
+                @Override
+                public NbtVisitor visitCompound(String name) {
+                    return "Deep".equals(name) ? null : super.visitCompound(name);
+                }
+            };
+            NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+            reader.accept(recorder);
+            reader.throwIoException();
+            assertEquals(List.of("compound ", "int After 1", "end"), recorder.events);
+        });
+    }
+}
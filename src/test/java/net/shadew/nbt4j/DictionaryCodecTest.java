@@ -0,0 +1,84 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DictionaryCodecTest {
+    private static final CompressionDictionary OLD = dictionary("xPos zPos Status LastUpdate InhabitedTime ");
+    private static final CompressionDictionary NEW = dictionary("Sections Palette BlockStates SkyLight Heightmaps ");
+
+    private static CompressionDictionary dictionary(String text) {
+        return CompressionDictionary.of(text.repeat(20).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // A small payload of the strings in the dictionaries, as a small chunk would be
+    private static byte[] payload() {
+        return "xPos Sections zPos Palette Status BlockStates".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] compress(CompressionCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = codec.createOutStream(bout, CompressionSettings.DEFAULT)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] decompress(CompressionCodec codec, byte[] data) throws IOException {
+        try (InputStream in = codec.createInStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void roundTripsWithDictionary() throws IOException {
+        DictionaryCodec codec = new DictionaryCodec(70, NEW);
+        assertEquals(70, codec.getRegionTypeId());
+        assertSame(NEW, codec.dictionary());
+
+        byte[] data = payload();
+        byte[] compressed = compress(codec, data);
+        assertArrayEquals(data, decompress(codec, compressed));
+        assertTrue(compressed.length < compress(Compression.DEFLATED, data).length);
+
+        // The FDICT flag is set in the zlib header, followed by the ID of the dictionary
+        assertEquals(0x20, compressed[1] & 0x20);
+        assertEquals(NEW.id(), (compressed[2] & 0xFF) << 24 | (compressed[3] & 0xFF) << 16
+                                   | (compressed[4] & 0xFF) << 8 | compressed[5] & 0xFF);
+    }
+
+    @Test
+    void readsWithOlderDictionaries() throws IOException {
+        byte[] data = payload();
+        byte[] compressed = compress(new DictionaryCodec(70, OLD), data);
+
+        assertArrayEquals(data, decompress(new DictionaryCodec(70, NEW, OLD), compressed));
+        assertThrows(ZipException.class, () -> decompress(new DictionaryCodec(70, NEW), compressed));
+    }
+
+    @Test
+    void rejectsDictionaryStreamsWithoutDictionary() throws IOException {
+        byte[] compressed = compress(new DictionaryCodec(70, NEW), payload());
+        assertThrows(ZipException.class, () -> decompress(Compression.DEFLATED, compressed));
+    }
+
+    @Test
+    void rejectsInvalidIds() {
+        assertThrows(IllegalArgumentException.class, () -> new DictionaryCodec(0, NEW));
+        assertThrows(IllegalArgumentException.class, () -> new DictionaryCodec(CompressionRegistry.ID_COUNT, NEW));
+        assertThrows(IllegalArgumentException.class, () -> CompressionDictionary.of(new byte[0]));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> CompressionDictionary.of(new byte[CompressionDictionary.MAX_SIZE + 1])
+        );
+    }
+}
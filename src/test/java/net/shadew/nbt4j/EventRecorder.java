@@ -0,0 +1,93 @@
+package net.shadew.nbt4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records every visitor event as a line of text, so that the events of different readers can be compared. Nested
+ * compounds and lists are recorded into the same list.
+ */
+class EventRecorder implements NbtVisitor {
+    final List<String> events;
+
+    EventRecorder() {
+        this(new ArrayList<>());
+    }
+
+    EventRecorder(List<String> events) {
+        this.events = events;
+    }
+
+    @Override
+    public void visitByte(byte value, String name) {
+        events.add("byte " + name + " " + value);
+    }
+
+    @Override
+    public void visitShort(short value, String name) {
+        events.add("short " + name + " " + value);
+    }
+
+    @Override
+    public void visitInt(int value, String name) {
+        events.add("int " + name + " " + value);
+    }
+
+    @Override
+    public void visitLong(long value, String name) {
+        events.add("long " + name + " " + value);
+    }
+
+    @Override
+    public void visitFloat(float value, String name) {
+        events.add("float " + name + " " + value);
+    }
+
+    @Override
+    public void visitDouble(double value, String name) {
+        events.add("double " + name + " " + value);
+    }
+
+    @Override
+    public void visitString(String value, String name) {
+        events.add("string " + name + " " + value);
+    }
+
+    @Override
+    public void visitByteArray(byte[] value, String name) {
+        events.add("byte[] " + name + " " + Arrays.toString(value));
+    }
+
+    @Override
+    public void visitIntArray(int[] value, String name) {
+        events.add("int[] " + name + " " + Arrays.toString(value));
+    }
+
+    @Override
+    public void visitLongArray(long[] value, String name) {
+        events.add("long[] " + name + " " + Arrays.toString(value));
+    }
+
+    @Override
+    public NbtVisitor visitList(TagType type, int length, String name) {
+        events.add("list " + name + " " + type + " " + length);
+        return this;
+    }
+
+    @Override
+    public NbtVisitor visitCompound(String name) {
+        events.add("compound " + name);
+        return this;
+    }
+
+    @Override
+    public void visitListEnd() {
+        events.add("list end");
+    }
+
+    @Override
+    public void visitEnd() {
+        events.add("end");
+    }
+}
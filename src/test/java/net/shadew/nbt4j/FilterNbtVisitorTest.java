@@ -0,0 +1,130 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.IntArrayTag;
+import net.shadew.nbt4j.tree.Tag;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterNbtVisitorTest {
+    private static CompoundTag tree() {
+        CompoundTag root = new CompoundTag();
+        root.putByteArray("Bytes", new byte[20000]);
+        root.putIntArray("Ints", new int[] {1, 2, 3});
+        root.putLongArray("Longs", new long[5000]);
+        return root;
+    }
+
+    private static byte[] bytes(Tag tag) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        tag.accept(writer);
+        writer.throwIoException();
+        return bout.toByteArray();
+    }
+
+    // A filter only sees the events of its own level, so the array it should see is the root tag, which lenient
+    // readers accept
+    private static Tag intArray() {
+        return IntArrayTag.of(new int[20000]);
+    }
+
+    // Records whole int arrays, while passing everything on to a writer that would take streamed arrays
+    private static class IntArrayRecorder extends FilterNbtVisitor {
+        final List<String> names = new ArrayList<>();
+
+        IntArrayRecorder(NbtVisitor visitor) {
+            super(visitor);
+        }
+
+        @Override
+        public void visitIntArray(int[] value, String name) {
+            names.add(name);
+            super.visitIntArray(value, name);
+        }
+    }
+
+    @Test
+    void subclassReceivesWholeArraysFromReader() throws IOException {
+        byte[] bytes = bytes(intArray());
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        IntArrayRecorder recorder = new IntArrayRecorder(writer);
+
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes))).lenient(true);
+        reader.accept(recorder);
+        reader.throwIoException();
+        writer.throwIoException();
+
+        assertEquals(List.of(""), recorder.names);
+        assertArrayEquals(bytes, bout.toByteArray());
+    }
+
+    @Test
+    void subclassReceivesWholeArraysFromBufferReader() throws IOException {
+        byte[] bytes = bytes(intArray());
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        IntArrayRecorder recorder = new IntArrayRecorder(writer);
+
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes)).lenient(true);
+        reader.accept(recorder);
+        reader.throwIoException();
+        writer.throwIoException();
+
+        assertEquals(List.of(""), recorder.names);
+        assertArrayEquals(bytes, bout.toByteArray());
+    }
+
+    @Test
+    void subclassReceivesWholeArraysFromPooledReaders() throws IOException {
+        byte[] bytes = bytes(intArray());
+        NbtArrayPool pool = new NbtArrayPool();
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        IntArrayRecorder recorder = new IntArrayRecorder(writer);
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)))
+                               .lenient(true)
+                               .arrayPool(pool);
+        reader.accept(recorder);
+        reader.throwIoException();
+        assertEquals(List.of(""), recorder.names);
+        assertArrayEquals(bytes, bout.toByteArray());
+
+        bout = new ByteArrayOutputStream();
+        writer = new NbtWriter(new DataOutputStream(bout));
+        recorder = new IntArrayRecorder(writer);
+        NbtBufferReader bufferReader = new NbtBufferReader(ByteBuffer.wrap(bytes)).lenient(true).arrayPool(pool);
+        bufferReader.accept(recorder);
+        bufferReader.throwIoException();
+        assertEquals(List.of(""), recorder.names);
+        assertArrayEquals(bytes, bout.toByteArray());
+    }
+
+    @Test
+    void byteCounterCountsStreamedWholeAndBorrowedArrays() throws IOException {
+        byte[] bytes = bytes(tree());
+        NbtWriter writer = new NbtWriter(new DataOutputStream(new ByteArrayOutputStream()));
+        for (NbtArrayPool pool : new NbtArrayPool[] {null, new NbtArrayPool()}) {
+            for (NbtVisitor delegate : new NbtVisitor[] {null, writer}) {
+                ByteCounter counter = new ByteCounter(delegate, true);
+                NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes))).arrayPool(pool);
+                reader.accept(counter);
+                reader.throwIoException();
+                assertEquals(bytes.length, counter.bytes());
+            }
+        }
+    }
+}
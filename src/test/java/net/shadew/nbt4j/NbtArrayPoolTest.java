@@ -0,0 +1,188 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtArrayPoolTest {
+    private interface Reader {
+        void read(byte[] bytes, NbtVisitor visitor, NbtArrayPool pool) throws IOException;
+    }
+
+    private static void streamReader(byte[] bytes, NbtVisitor visitor, NbtArrayPool pool) throws IOException {
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes))).arrayPool(pool);
+        reader.accept(visitor);
+        reader.throwIoException();
+    }
+
+    private static void bufferReader(byte[] bytes, NbtVisitor visitor, NbtArrayPool pool) throws IOException {
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes)).arrayPool(pool);
+        reader.accept(visitor);
+        reader.throwIoException();
+    }
+
+    private static void pushParser(byte[] bytes, NbtVisitor visitor, NbtArrayPool pool) throws IOException {
+        NbtPushParser parser = new NbtPushParser(visitor).arrayPool(pool);
+        for (int off = 0; off < bytes.length; off += 1000)
+            parser.feed(ByteBuffer.wrap(bytes, off, Math.min(1000, bytes.length - off)));
+        parser.finish();
+    }
+
+    private static final List<Reader> READERS = List.of(
+        NbtArrayPoolTest::streamReader,
+        NbtArrayPoolTest::bufferReader,
+        NbtArrayPoolTest::pushParser
+    );
+
+    // Records the borrowed buffers, to check they are reused, and only inspects them during the call
+    private static class BorrowRecorder extends EventRecorder {
+        final List<Object> buffers = new ArrayList<>();
+
+        @Override
+        public void visitBorrowedByteArray(byte[] buffer, int length, String name) {
+            assertTrue(length <= buffer.length);
+            buffers.add(buffer);
+            events.add("byte[] " + name + " " + Arrays.toString(Arrays.copyOf(buffer, length)));
+        }
+
+        @Override
+        public void visitBorrowedIntArray(int[] buffer, int length, String name) {
+            assertTrue(length <= buffer.length);
+            buffers.add(buffer);
+            events.add("int[] " + name + " " + Arrays.toString(Arrays.copyOf(buffer, length)));
+        }
+
+        @Override
+        public void visitBorrowedLongArray(long[] buffer, int length, String name) {
+            assertTrue(length <= buffer.length);
+            buffers.add(buffer);
+            events.add("long[] " + name + " " + Arrays.toString(Arrays.copyOf(buffer, length)));
+        }
+    }
+
+    @Test
+    void readsSameEventsWithPool() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        List<String> expected = NbtSamples.events(bytes);
+
+        NbtArrayPool pool = new NbtArrayPool();
+        for (Reader reader : READERS) {
+            EventRecorder recorder = new EventRecorder();
+            reader.read(bytes, recorder, pool);
+            assertEquals(expected, recorder.events);
+
+            BorrowRecorder borrowRecorder = new BorrowRecorder();
+            reader.read(bytes, borrowRecorder, pool);
+            assertEquals(expected, borrowRecorder.events);
+        }
+    }
+
+    @Test
+    void reusesPooledArrays() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        for (Reader reader : READERS) {
+            NbtArrayPool pool = new NbtArrayPool();
+            reader.read(bytes, new BorrowRecorder(), pool);
+            long borrows = pool.borrows();
+            assertTrue(borrows > 0);
+            assertTrue(pool.allocations() > 0 && pool.allocations() < borrows);
+
+            // Every size class has been allocated already, so a second read allocates nothing
+            pool.resetStatistics();
+            BorrowRecorder recorder = new BorrowRecorder();
+            reader.read(bytes, recorder, pool);
+            assertEquals(borrows, pool.borrows());
+            assertEquals(0, pool.allocations());
+
+            // The SkyLight arrays of sections 1 to 3 are in the same size class, and are read into the same array
+            List<Object> skyLights = new ArrayList<>();
+            for (int i = 0; i < recorder.events.size(); i++) {
+                if (recorder.events.get(i).startsWith("byte[] SkyLight"))
+                    skyLights.add(recorder.buffers.get(bufferIndex(recorder.events, i)));
+            }
+            assertEquals(4, skyLights.size());
+            assertTrue(skyLights.get(1) == skyLights.get(2) && skyLights.get(2) == skyLights.get(3));
+            assertTrue(skyLights.get(0) != skyLights.get(1));
+        }
+    }
+
+    // The index among the array events of the event at the given index
+    private static int bufferIndex(List<String> events, int index) {
+        int arrays = 0;
+        for (int i = 0; i < index; i++) {
+            String event = events.get(i);
+            if (event.startsWith("byte[]") || event.startsWith("int[]") || event.startsWith("long[]"))
+                arrays++;
+        }
+        return arrays;
+    }
+
+    @Test
+    void allocatesArraysOverMaxLength() throws IOException {
+        CompoundTag root = new CompoundTag();
+        root.putIntArray("Large", new int[300]);
+        byte[] bytes = NbtSamples.bytes(root);
+        NbtArrayPool pool = new NbtArrayPool(256);
+        assertEquals(256, pool.maxLength());
+
+        for (Reader reader : READERS) {
+            pool.resetStatistics();
+            for (int i = 0; i < 3; i++)
+                reader.read(bytes, new BorrowRecorder(), pool);
+            assertEquals(3, pool.borrows());
+            assertEquals(3, pool.allocations());
+        }
+    }
+
+    @Test
+    void buildsSameTreeWithPool() throws IOException {
+        CompoundTag chunk = NbtSamples.chunk();
+        byte[] bytes = NbtSamples.bytes(chunk);
+        NbtArrayPool pool = new NbtArrayPool();
+
+        for (Reader reader : READERS) {
+            TagBuilder builder = new TagBuilder();
+            reader.read(bytes, builder, pool);
+            assertArrayEquals(bytes, TagSerializer.toByteArray(builder.tag()));
+        }
+    }
+
+    @Test
+    void poolsBySizeClass() {
+        NbtArrayPool pool = new NbtArrayPool(1000);
+        assertEquals(1024, pool.maxLength());
+        assertEquals(64, new NbtArrayPool(1).maxLength());
+        assertThrows(IllegalArgumentException.class, () -> new NbtArrayPool(0));
+
+        int[] ints = pool.borrowInts(100);
+        assertEquals(128, ints.length);
+        pool.release(ints);
+        assertSame(ints, pool.borrowInts(65));
+        assertNotSame(ints, pool.borrowInts(100));
+
+        // Arrays the pool did not allocate itself are not taken in
+        pool.release(new long[100]);
+        assertEquals(128, pool.borrowLongs(100).length);
+
+        byte[] large = pool.borrowBytes(2000);
+        assertEquals(2000, large.length);
+        pool.release(large);
+        assertNotSame(large, pool.borrowBytes(2000));
+
+        byte[] small = pool.borrowBytes(10);
+        pool.release(small);
+        pool.clear();
+        assertNotSame(small, pool.borrowBytes(10));
+    }
+}
@@ -0,0 +1,192 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtArrayVisitorTest {
+    private interface Reader {
+        void read(byte[] bytes, NbtVisitor visitor) throws IOException;
+    }
+
+    private static void streamReader(byte[] bytes, NbtVisitor visitor) throws IOException {
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+        reader.accept(visitor);
+        reader.throwIoException();
+    }
+
+    private static void bufferReader(byte[] bytes, NbtVisitor visitor) throws IOException {
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        reader.accept(visitor);
+        reader.throwIoException();
+    }
+
+    private static Reader pushParser(int fragmentSize) {
+        return (bytes, visitor) -> {
+            NbtPushParser parser = new NbtPushParser(visitor);
+            for (int off = 0; off < bytes.length; off += fragmentSize)
+                parser.feed(ByteBuffer.wrap(bytes, off, Math.min(fragmentSize, bytes.length - off)));
+            parser.finish();
+        };
+    }
+
+    private static List<Reader> readers() {
+        return List.of(
+            NbtArrayVisitorTest::streamReader,
+            NbtArrayVisitorTest::bufferReader,
+            pushParser(1),
+            pushParser(100),
+            pushParser(5000)
+        );
+    }
+
+    // Glues streamed chunks back together and records them as if the array was passed as a whole
+    private static class ChunkCollector extends EventRecorder {
+        int chunks;
+
+        @Override
+        public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+            return new NbtArrayVisitor() {
+                final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                final DataOutputStream out = new DataOutputStream(bout);
+                int received;
+
+                @Override
+                public void visitBytes(byte[] chunk, int len) {
+                    assertEquals(TagType.BYTE_ARRAY, type);
+                    assertChunk(len, ArrayCodec.CHUNK_SIZE);
+                    bout.write(chunk, 0, len);
+                }
+
+                @Override
+                public void visitInts(int[] chunk, int len) {
+                    assertEquals(TagType.INT_ARRAY, type);
+                    assertChunk(len, ArrayCodec.CHUNK_SIZE / 4);
+                    try {
+                        for (int i = 0; i < len; i++)
+                            out.writeInt(chunk[i]);
+                    } catch (IOException exc) {
+                        throw new AssertionError(exc);
+                    }
+                }
+
+                @Override
+                public void visitLongs(long[] chunk, int len) {
+                    assertEquals(TagType.LONG_ARRAY, type);
+                    assertChunk(len, ArrayCodec.CHUNK_SIZE / 8);
+                    try {
+                        for (int i = 0; i < len; i++)
+                            out.writeLong(chunk[i]);
+                    } catch (IOException exc) {
+                        throw new AssertionError(exc);
+                    }
+                }
+
+                private void assertChunk(int len, int max) {
+                    assertTrue(len > 0 && len <= max, "chunk of " + len);
+                    received += len;
+                    chunks++;
+                }
+
+                @Override
+                public void visitArrayEnd() {
+                    assertEquals(length, received);
+                    ByteBuffer buf = ByteBuffer.wrap(bout.toByteArray());
+                    switch (type) {
+                        case BYTE_ARRAY -> visitByteArray(buf.array(), name);
+                        case INT_ARRAY -> {
+                            int[] ints = new int[length];
+                            buf.asIntBuffer().get(ints);
+                            visitIntArray(ints, name);
+                        }
+                        default -> {
+                            long[] longs = new long[length];
+                            buf.asLongBuffer().get(longs);
+                            visitLongArray(longs, name);
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    private static CompoundTag large() {
+        CompoundTag root = NbtSamples.chunk();
+        root.putByteArray("LargeBytes", new byte[ArrayCodec.CHUNK_SIZE * 3 + 1]);
+        root.putLongArray("LargeLongs", new long[ArrayCodec.CHUNK_SIZE + 5]);
+        return root;
+    }
+
+    @Test
+    void streamsSameArraysInChunks() throws IOException {
+        byte[] bytes = NbtSamples.bytes(large());
+        List<String> expected = NbtSamples.events(bytes);
+
+        for (Reader reader : readers()) {
+            ChunkCollector collector = new ChunkCollector();
+            reader.read(bytes, collector);
+            assertEquals(expected, collector.events);
+            assertTrue(collector.chunks > 10);
+        }
+    }
+
+    @Test
+    void skipsArrays() throws IOException {
+        byte[] bytes = NbtSamples.bytes(large());
+        List<String> expected = new ArrayList<>(NbtSamples.events(bytes));
+        expected.removeIf(event -> event.startsWith("byte[]") || event.startsWith("int[]")
+                                       || event.startsWith("long[]"));
+
+        for (Reader reader : readers()) {
+            EventRecorder recorder = new EventRecorder() {
+                @Override
+                public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+                    return NbtArrayVisitor.SKIP;
+                }
+            };
+            reader.read(bytes, recorder);
+            assertEquals(expected, recorder.events);
+        }
+    }
+
+    @Test
+    void pipesReadersIntoWriterUnchanged() throws IOException {
+        byte[] bytes = NbtSamples.bytes(large());
+        for (Reader reader : readers()) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+            reader.read(bytes, writer);
+            writer.throwIoException();
+            assertArrayEquals(bytes, bout.toByteArray());
+        }
+    }
+
+    @Test
+    void streamsCorruptLengthWithoutAllocatingIt() {
+        // An int array claiming a billion elements, of which only two are there
+        byte[] bytes = {10, 0, 0, 11, 0, 1, 'A', 0x3B, (byte) 0x9A, (byte) 0xCA, 0, 0, 0, 0, 1, 0, 0, 0, 2};
+        for (NbtArrayVisitor arrayVisitor : new NbtArrayVisitor[] {new NbtArrayVisitor() { }, NbtArrayVisitor.SKIP}) {
+            for (Reader reader : readers()) {
+                EventRecorder recorder = new EventRecorder() {
+                    @Override
+                    public NbtArrayVisitor visitArray(TagType type, int length, String name) {
+                        assertEquals(1_000_000_000, length);
+                        return arrayVisitor;
+                    }
+                };
+                assertThrows(IOException.class, () -> reader.read(bytes, recorder));
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.IntTag;
+import net.shadew.nbt4j.tree.TagSerializer;
+import net.shadew.nbt4j.util.NbtException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtBufferReaderTest {
+    private static List<String> events(ByteBuffer buf) throws IOException {
+        EventRecorder recorder = new EventRecorder();
+        NbtBufferReader reader = new NbtBufferReader(buf);
+        reader.accept(recorder);
+        reader.throwIoException();
+        return recorder.events;
+    }
+
+    @Test
+    void emitsSameEventsAsNbtReader() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        List<String> expected = NbtSamples.events(bytes);
+
+        assertEquals(expected, events(ByteBuffer.wrap(bytes)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(expected, events(direct));
+
+        assertEquals(expected, events(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)));
+    }
+
+    @Test
+    void readsFromPositionAndMovesPastTag() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        byte[] padded = new byte[bytes.length + 20];
+        System.arraycopy(bytes, 0, padded, 7, bytes.length);
+
+        ByteBuffer buf = ByteBuffer.wrap(padded);
+        buf.position(7);
+        assertEquals(NbtSamples.events(bytes), events(buf));
+        assertEquals(7 + bytes.length, buf.position());
+
+        ByteBuffer slice = ByteBuffer.wrap(padded, 7, bytes.length).slice();
+        assertEquals(NbtSamples.events(bytes), events(slice));
+        assertFalse(slice.hasRemaining());
+    }
+
+    @Test
+    void buildsSameTree() throws IOException {
+        CompoundTag chunk = NbtSamples.chunk();
+        byte[] bytes = NbtSamples.bytes(chunk);
+
+        TagBuilder builder = new TagBuilder();
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        reader.accept(builder);
+        reader.throwIoException();
+
+        assertArrayEquals(bytes, TagSerializer.toByteArray(builder.tag()));
+    }
+
+    @Test
+    void rejectsNonCompoundRootUnlessLenient() throws IOException {
+        byte[] bytes = NbtSamples.bytes(IntTag.of(42));
+
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        reader.accept(new EventRecorder());
+        assertThrows(NbtException.class, reader::throwIoException);
+
+        EventRecorder recorder = new EventRecorder();
+        reader = new NbtBufferReader(ByteBuffer.wrap(bytes)).lenient(true);
+        reader.accept(recorder);
+        reader.throwIoException();
+        assertEquals(List.of("int  42"), recorder.events);
+    }
+
+    @Test
+    void reportsTruncatedInput() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        for (int length : new int[] {0, 1, 5, bytes.length / 2, bytes.length - 1}) {
+            NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(Arrays.copyOf(bytes, length)));
+            reader.accept(new EventRecorder());
+            assertThrows(IOException.class, reader::throwIoException);
+        }
+    }
+
+    @Test
+    void reportsUnknownTagId() {
+        byte[] bytes = {10, 0, 0, 42, 0, 0, 0};
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        reader.accept(new EventRecorder());
+        assertThrows(NbtException.class, reader::throwIoException);
+    }
+
+    @Test
+    void resolvesTagTypesById() {
+        for (TagType type : TagType.values()) {
+            assertSame(type, TagType.forId(type.getId()));
+            assertTrue(TagType.isValidId(type.getId()));
+        }
+        assertFalse(TagType.isValidId(-1));
+        assertFalse(TagType.isValidId(13));
+        assertThrows(IllegalArgumentException.class, () -> TagType.forId(13));
+    }
+}
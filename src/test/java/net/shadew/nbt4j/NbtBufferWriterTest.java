@@ -0,0 +1,135 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.StringTag;
+import net.shadew.nbt4j.tree.Tag;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtBufferWriterTest {
+    // More names than the writer caches, some too long to cache and some non-ASCII
+    private static CompoundTag names() {
+        CompoundTag root = NbtSamples.chunk();
+        for (int i = 0; i < 600; i++)
+            root.putInt("name" + i, i);
+        root.putString("n".repeat(100), "long name");
+        root.putString("Gr\u00f6\u00dfe \u20ac", "non-ASCII name");
+        root.putString("Value", "\u00e4\u00f6\u00fc \u0000 \ud83d\ude00".repeat(50));
+        return root;
+    }
+
+    private static byte[] write(Tag tag, NbtBufferWriter writer) throws IOException {
+        tag.accept(writer);
+        writer.throwIoException();
+        return writer.toByteArray();
+    }
+
+    @Test
+    void writesSameBytesAsNbtWriter() throws IOException {
+        for (Tag tag : new Tag[] {NbtSamples.chunk(), names()}) {
+            byte[] expected = NbtSamples.bytes(tag);
+            assertArrayEquals(expected, write(tag, new NbtBufferWriter()));
+            assertArrayEquals(expected, write(tag, new NbtBufferWriter(1, false)));
+            assertArrayEquals(expected, write(tag, new NbtBufferWriter(1, true)));
+            assertArrayEquals(expected, write(tag, new NbtBufferWriter(expected.length, true)));
+        }
+    }
+
+    @Test
+    void writesAfterPositionOfGivenBuffer() throws IOException {
+        CompoundTag chunk = NbtSamples.chunk();
+        byte[] expected = NbtSamples.bytes(chunk);
+
+        // Large enough, so the writer stays in the given buffer
+        ByteBuffer buf = ByteBuffer.allocate(expected.length + 10);
+        buf.position(10);
+        NbtBufferWriter writer = new NbtBufferWriter(buf);
+        assertArrayEquals(expected, write(chunk, writer));
+        assertEquals(expected.length, writer.size());
+        assertEquals(10 + expected.length, buf.position());
+
+        ByteBuffer written = writer.buffer();
+        assertEquals(0, written.position());
+        assertEquals(expected.length, written.limit());
+        assertEquals(expected[0], written.get(0));
+
+        // Too small, so the writer continues in a larger copy
+        ByteBuffer small = ByteBuffer.allocateDirect(16);
+        small.position(3);
+        writer = new NbtBufferWriter(small);
+        assertArrayEquals(expected, write(chunk, writer));
+        assertEquals(expected.length, writer.buffer().remaining());
+    }
+
+    @Test
+    void writesAgainAfterReset() throws IOException {
+        NbtBufferWriter writer = new NbtBufferWriter(64, false);
+        byte[] first = write(names(), writer);
+        writer.reset();
+        assertEquals(0, writer.size());
+
+        CompoundTag chunk = NbtSamples.chunk();
+        assertArrayEquals(NbtSamples.bytes(chunk), write(chunk, writer));
+        writer.reset();
+        assertArrayEquals(first, write(names(), writer));
+    }
+
+    @Test
+    void pipesReadersIntoWriterUnchanged() throws IOException {
+        byte[] bytes = NbtSamples.bytes(names());
+
+        NbtBufferWriter writer = new NbtBufferWriter();
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+        reader.accept(writer);
+        reader.throwIoException();
+        writer.throwIoException();
+        assertArrayEquals(bytes, writer.toByteArray());
+
+        writer = new NbtBufferWriter(1, true);
+        NbtBufferReader bufferReader = new NbtBufferReader(ByteBuffer.wrap(bytes)).arrayPool(new NbtArrayPool());
+        bufferReader.accept(writer);
+        bufferReader.throwIoException();
+        writer.throwIoException();
+        assertArrayEquals(bytes, writer.toByteArray());
+    }
+
+    @Test
+    void writesListElementsSeparately() throws IOException {
+        ListTag list = new ListTag(TagType.STRING);
+        for (int i = 0; i < 100; i++)
+            list.add(StringTag.of("element " + i));
+        CompoundTag root = new CompoundTag();
+        root.put("List", list);
+        byte[] expected = NbtSamples.bytes(root);
+
+        NbtBufferWriter writer = new NbtBufferWriter(1, false);
+        NbtVisitor compound = writer.visitCompound("");
+        compound.visitList(TagType.STRING, list.size(), "List");
+        NbtVisitor elements = writer.elementVisitor();
+        for (int i = 0; i < 100; i++)
+            elements.visitString("element " + i, null);
+        compound.visitEnd();
+        writer.throwIoException();
+        assertArrayEquals(expected, writer.toByteArray());
+    }
+
+    @Test
+    void rejectsWhatNbtWriterRejects() {
+        NbtBufferWriter writer = new NbtBufferWriter();
+        writer.visitString("x".repeat(65536), "");
+        assertThrows(UTFDataFormatException.class, writer::throwIoException);
+
+        writer.reset();
+        writer.visitList(TagType.END, 1, "");
+        assertThrows(IOException.class, writer::throwIoException);
+    }
+}
@@ -0,0 +1,189 @@
+package net.shadew.nbt4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.IntTag;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtCursorTest {
+    // Moves the cursor through everything and records the same events an NbtReader would emit
+    private static List<String> replay(NbtCursor cursor) throws IOException {
+        EventRecorder recorder = new EventRecorder();
+        Deque<Boolean> lists = new ArrayDeque<>();
+        TagType type = cursor.next();
+        do {
+            if (type == TagType.END) {
+                recorder.events.add(lists.pop() ? "list end" : "end");
+            } else {
+                String name = cursor.name();
+                switch (type) {
+                    case BYTE -> recorder.visitByte(cursor.byteValue(), name);
+                    case SHORT -> recorder.visitShort(cursor.shortValue(), name);
+                    case INT -> recorder.visitInt(cursor.intValue(), name);
+                    case LONG -> recorder.visitLong(cursor.longValue(), name);
+                    case FLOAT -> recorder.visitFloat(cursor.floatValue(), name);
+                    case DOUBLE -> recorder.visitDouble(cursor.doubleValue(), name);
+                    case STRING -> recorder.visitString(cursor.stringValue(), name);
+                    case BYTE_ARRAY -> recorder.visitByteArray(cursor.byteArrayValue(), name);
+                    case INT_ARRAY -> recorder.visitIntArray(cursor.intArrayValue(), name);
+                    case LONG_ARRAY -> recorder.visitLongArray(cursor.longArrayValue(), name);
+                    case LIST -> {
+                        recorder.visitList(cursor.listElementType(), cursor.listLength(), name);
+                        cursor.enterList();
+                        lists.push(true);
+                    }
+                    case COMPOUND -> {
+                        recorder.visitCompound(name);
+                        cursor.enterCompound();
+                        lists.push(false);
+                    }
+                    default -> fail("Unexpected " + type);
+                }
+            }
+            type = cursor.next();
+        } while (!lists.isEmpty());
+        assertEquals(TagType.END, type);
+        return recorder.events;
+    }
+
+    @Test
+    void replaysSameEventsAsNbtReader() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        NbtCursor cursor = new NbtCursor(ByteBuffer.wrap(bytes));
+        assertEquals(NbtSamples.events(bytes), replay(cursor));
+        assertEquals(bytes.length, cursor.position());
+        assertEquals(0, cursor.depth());
+        assertEquals(TagType.END, cursor.next());
+
+        NbtKeyCache cache = new NbtKeyCache();
+        for (int i = 0; i < 2; i++)
+            assertEquals(NbtSamples.events(bytes), replay(new NbtCursor(ByteBuffer.wrap(bytes)).keyCache(cache)));
+        assertTrue(cache.hits() > 0);
+    }
+
+    @Test
+    void extractsFieldsInStraightLine() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        NbtCursor cursor = new NbtCursor(buf);
+
+        int xPos = 0, zPos = 0, sections = 0;
+        assertEquals(TagType.COMPOUND, cursor.next());
+        cursor.enterCompound();
+        while (cursor.next() != TagType.END) {
+            if (!cursor.name().equals("Level"))
+                continue;
+            cursor.enterCompound();
+            while (cursor.next() != TagType.END) {
+                switch (cursor.name()) {
+                    case "xPos" -> xPos = cursor.intValue();
+                    case "zPos" -> zPos = cursor.intValue();
+                    case "Sections" -> sections = cursor.listLength();
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        assertEquals(3, xPos);
+        assertEquals(-7, zPos);
+        assertEquals(4, sections);
+        assertEquals(bytes.length, cursor.position());
+        assertEquals(0, buf.position());
+    }
+
+    @Test
+    void skipsAndExits() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+
+        NbtCursor cursor = new NbtCursor(ByteBuffer.wrap(bytes));
+        cursor.next();
+        cursor.skipValue();
+        assertEquals(bytes.length, cursor.position());
+        assertEquals(TagType.END, cursor.next());
+
+        // Leave Level right after its first entry, and continue with the entry after it
+        cursor = new NbtCursor(ByteBuffer.wrap(bytes));
+        cursor.next();
+        cursor.enterCompound();
+        assertEquals(TagType.COMPOUND, cursor.next());
+        cursor.enterCompound();
+        assertEquals(TagType.INT, cursor.next());
+        assertEquals("xPos", cursor.name());
+        cursor.exit();
+        assertEquals(1, cursor.depth());
+        assertNull(cursor.type());
+        assertEquals(TagType.INT, cursor.next());
+        assertEquals("DataVersion", cursor.name());
+        assertEquals(2586, cursor.intValue());
+        assertEquals(TagType.END, cursor.next());
+        assertEquals(bytes.length, cursor.position());
+    }
+
+    @Test
+    void peeksPrimitivesAndLengths() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        NbtCursor cursor = new NbtCursor(ByteBuffer.wrap(bytes));
+        cursor.next();
+        cursor.enterCompound();
+        cursor.next();
+        cursor.enterCompound();
+
+        while (cursor.next() != TagType.END) {
+            switch (cursor.name()) {
+                case "xPos" -> {
+                    assertEquals(3, cursor.intValue());
+                    assertEquals(3, cursor.intValue());
+                    assertThrows(IllegalStateException.class, cursor::longValue);
+                }
+                case "Ints" -> {
+                    assertEquals(3000, cursor.arrayLength());
+                    int[] ints = cursor.intArrayValue();
+                    assertEquals(3000, ints.length);
+                    assertEquals(7919 - 5, ints[1]);
+                    assertThrows(IllegalStateException.class, cursor::intArrayValue);
+                }
+                case "Bytes" -> assertArrayEquals(new byte[] {1, -2, 3}, cursor.byteArrayValue());
+                case "Sections" -> {
+                    assertEquals(TagType.COMPOUND, cursor.listElementType());
+                    assertEquals(4, cursor.listLength());
+                    assertThrows(IllegalStateException.class, cursor::enterCompound);
+                }
+                case "Status" -> assertThrows(IllegalStateException.class, cursor::arrayLength);
+                default -> {
+                }
+            }
+        }
+        assertThrows(IllegalStateException.class, cursor::intValue);
+        assertThrows(IllegalStateException.class, cursor::skipValue);
+    }
+
+    @Test
+    void rejectsMalformedInput() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+
+        NbtCursor truncated = new NbtCursor(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length / 2)));
+        assertThrows(IOException.class, () -> replay(truncated));
+
+        NbtCursor skipped = new NbtCursor(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1)));
+        skipped.next();
+        assertThrows(IOException.class, skipped::skipValue);
+
+        byte[] intRoot = NbtSamples.bytes(IntTag.of(5));
+        assertThrows(IOException.class, () -> new NbtCursor(ByteBuffer.wrap(intRoot)).next());
+        NbtCursor lenient = new NbtCursor(ByteBuffer.wrap(intRoot)).lenient(true);
+        assertEquals(TagType.INT, lenient.next());
+        assertEquals(5, lenient.intValue());
+
+        NbtCursor outside = new NbtCursor(ByteBuffer.wrap(bytes));
+        assertThrows(IllegalStateException.class, outside::exit);
+    }
+}
@@ -0,0 +1,142 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtKeyCacheTest {
+    // Keys the reader hands out, to check that a cached key is the same instance every time
+    private static class KeyRecorder extends EventRecorder {
+        final List<String> keys = new ArrayList<>();
+
+        @Override
+        public void visitInt(int value, String name) {
+            if (name != null)
+                keys.add(name);
+            super.visitInt(value, name);
+        }
+    }
+
+    private static CompoundTag keys() {
+        CompoundTag root = NbtSamples.chunk();
+        root.putInt("x".repeat(NbtKeyCache.MAX_KEY_LENGTH), 1);
+        root.putInt("x".repeat(NbtKeyCache.MAX_KEY_LENGTH + 1), 2);
+        root.putInt("Schl\u00fcssel \u20ac", 3);
+        return root;
+    }
+
+    private static KeyRecorder read(byte[] bytes, NbtKeyCache cache) throws IOException {
+        KeyRecorder recorder = new KeyRecorder();
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes))).keyCache(cache);
+        reader.accept(recorder);
+        reader.throwIoException();
+        return recorder;
+    }
+
+    private static KeyRecorder readBuffer(byte[] bytes, NbtKeyCache cache) throws IOException {
+        KeyRecorder recorder = new KeyRecorder();
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes)).keyCache(cache);
+        reader.accept(recorder);
+        reader.throwIoException();
+        return recorder;
+    }
+
+    @Test
+    void readsSameEventsWithCache() throws IOException {
+        byte[] bytes = NbtSamples.bytes(keys());
+        List<String> expected = NbtSamples.events(bytes);
+
+        NbtKeyCache cache = new NbtKeyCache();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, read(bytes, cache).events);
+            assertEquals(expected, readBuffer(bytes, cache).events);
+        }
+
+        // A tiny cache evicts all the time, which must not change the keys
+        NbtKeyCache tiny = new NbtKeyCache(2);
+        assertEquals(expected, read(bytes, tiny).events);
+        assertEquals(expected, readBuffer(bytes, tiny).events);
+    }
+
+    @Test
+    void reusesCachedKeys() throws IOException {
+        byte[] bytes = NbtSamples.bytes(keys());
+        NbtKeyCache cache = new NbtKeyCache();
+
+        List<String> first = read(bytes, cache).keys;
+        long misses = cache.misses();
+        assertTrue(misses > 0);
+
+        List<String> second = readBuffer(bytes, cache).keys;
+        assertEquals(first, second);
+        for (int i = 0; i < first.size(); i++) {
+            String key = first.get(i);
+            if (key.getBytes(StandardCharsets.UTF_8).length <= NbtKeyCache.MAX_KEY_LENGTH)
+                assertSame(key, second.get(i), key);
+            else
+                assertNotSame(key, second.get(i), key);
+        }
+
+        // Only the key that is too long to cache is decoded again
+        assertEquals(misses + 1, cache.misses());
+        assertTrue(cache.hits() > 0);
+        assertTrue(cache.hitRate() > 0 && cache.hitRate() < 1);
+
+        cache.resetStatistics();
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.misses());
+
+        cache.clear();
+        List<String> third = read(bytes, cache).keys;
+        assertNotSame(first.get(0), third.get(0));
+        assertEquals(misses, cache.misses());
+    }
+
+    @Test
+    void roundsCapacityToPowerOfTwo() {
+        assertEquals(1, new NbtKeyCache(1).capacity());
+        assertEquals(64, new NbtKeyCache(33).capacity());
+        assertEquals(64, new NbtKeyCache(64).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new NbtKeyCache(0));
+    }
+
+    @Test
+    void sharesCacheAcrossThreads() throws Exception {
+        byte[] bytes = NbtSamples.bytes(keys());
+        List<String> expected = NbtSamples.events(bytes);
+        NbtKeyCache cache = new NbtKeyCache(16);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        Throwable[] error = new Throwable[1];
+        for (int i = 0; i < 4; i++) {
+            boolean buffer = i % 2 == 0;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < 100; j++)
+                        assertEquals(expected, (buffer ? readBuffer(bytes, cache) : read(bytes, cache)).events);
+                } catch (Throwable exc) {
+                    error[0] = exc;
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertNull(error[0]);
+    }
+}
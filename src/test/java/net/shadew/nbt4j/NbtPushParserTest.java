@@ -0,0 +1,193 @@
+package net.shadew.nbt4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.IntTag;
+import net.shadew.nbt4j.util.NbtException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtPushParserTest {
+    // Every size up to 64 hits every possible split of tag headers, names and fixed-width values, the larger ones
+    // split arrays around the 8K chunk size
+    private static final int[] LARGE_FRAGMENT_SIZES = {100, 1000, 4096, 8191, 8192, 8193, 20000};
+
+    private static List<String> feedFragments(NbtPushParser parser, EventRecorder recorder, byte[] bytes, int size)
+        throws IOException {
+        for (int off = 0; off < bytes.length; off += size) {
+            int len = Math.min(size, bytes.length - off);
+            ByteBuffer fragment = ByteBuffer.wrap(bytes, off, len);
+            boolean last = off + len == bytes.length;
+            assertEquals(last, parser.feed(fragment), "fragment size " + size + " at " + off);
+            assertFalse(fragment.hasRemaining());
+        }
+        parser.finish();
+        assertTrue(parser.isDone());
+        assertEquals(0, parser.bufferedBytes());
+        return recorder.events;
+    }
+
+    private static List<String> parse(byte[] bytes, int size) throws IOException {
+        EventRecorder recorder = new EventRecorder();
+        return feedFragments(new NbtPushParser(recorder), recorder, bytes, size);
+    }
+
+    @Test
+    void emitsSameEventsForAnyFragmentSize() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        List<String> expected = NbtSamples.events(bytes);
+
+        for (int size = 1; size <= 64; size++)
+            assertEquals(expected, parse(bytes, size), "fragment size " + size);
+        for (int size : LARGE_FRAGMENT_SIZES)
+            assertEquals(expected, parse(bytes, size), "fragment size " + size);
+        assertEquals(expected, parse(bytes, bytes.length));
+    }
+
+    @Test
+    void emitsSameEventsForRandomSplits() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        List<String> expected = NbtSamples.events(bytes);
+
+        for (int seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            EventRecorder recorder = new EventRecorder();
+            NbtPushParser parser = new NbtPushParser(recorder);
+            int off = 0;
+            while (off < bytes.length) {
+                // Empty fragments included, they must be harmless
+                int len = Math.min(random.nextInt(random.nextBoolean() ? 16 : 10000), bytes.length - off);
+                parser.feed(ByteBuffer.wrap(bytes, off, len));
+                off += len;
+            }
+            parser.finish();
+            assertEquals(expected, recorder.events, "seed " + seed);
+        }
+    }
+
+    @Test
+    void emitsSameEventsWithPoolAndKeyCache() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        List<String> expected = NbtSamples.events(bytes);
+        NbtArrayPool pool = new NbtArrayPool();
+        NbtKeyCache cache = new NbtKeyCache();
+
+        for (int size : new int[] {1, 7, 100, 8193}) {
+            EventRecorder recorder = new EventRecorder();
+            NbtPushParser parser = new NbtPushParser(recorder).arrayPool(pool).keyCache(cache);
+            assertEquals(expected, feedFragments(parser, recorder, bytes, size), "fragment size " + size);
+        }
+        assertTrue(cache.hits() > 0);
+    }
+
+    @Test
+    void skipsDeclinedSubtreesInFragments() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        for (int size : new int[] {1, 2, 3, 13, 1000}) {
+            EventRecorder recorder = new EventRecorder() {
+                @Override
+                public NbtVisitor visitCompound(String name) {
+                    return "Level".equals(name) ? null : super.visitCompound(name);
+                }
+            };
+            NbtPushParser parser = new NbtPushParser(recorder);
+            feedFragments(parser, recorder, bytes, size);
+            assertEquals(List.of("compound ", "int DataVersion 2586", "end"), recorder.events);
+        }
+    }
+
+    @Test
+    void leavesBytesAfterRootTag() throws IOException {
+        byte[] first = NbtSamples.bytes(NbtSamples.chunk());
+        byte[] second = NbtSamples.bytes(IntTag.of(5));
+        byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        List<String> expected = NbtSamples.events(first);
+
+        for (int size : new int[] {1, 5, 64, 4096, both.length}) {
+            EventRecorder recorder = new EventRecorder();
+            NbtPushParser parser = new NbtPushParser(recorder);
+            int off = 0;
+            ByteBuffer fragment;
+            do {
+                fragment = ByteBuffer.wrap(both, off, Math.min(size, both.length - off));
+                off += fragment.remaining();
+            } while (!parser.feed(fragment));
+            assertEquals(expected, recorder.events);
+            assertEquals(first.length, fragment.position(), "fragment size " + size);
+
+            // The rest goes to the next root tag, after a reset
+            recorder.events.clear();
+            parser.reset();
+            parser.lenient(true);
+            parser.feed(fragment);
+            while (!parser.isDone()) {
+                fragment = ByteBuffer.wrap(both, off, Math.min(size, both.length - off));
+                off += fragment.remaining();
+                parser.feed(fragment);
+            }
+            assertEquals(both.length, off);
+            assertFalse(fragment.hasRemaining());
+            assertEquals(List.of("int  5"), recorder.events);
+        }
+    }
+
+    @Test
+    void rejectsNonCompoundRootUnlessLenient() throws IOException {
+        byte[] bytes = NbtSamples.bytes(IntTag.of(5));
+
+        NbtPushParser parser = new NbtPushParser(new EventRecorder());
+        assertThrows(NbtException.class, () -> parser.feed(ByteBuffer.wrap(bytes)));
+
+        EventRecorder recorder = new EventRecorder();
+        assertEquals(List.of("int  5"), feedFragments(new NbtPushParser(recorder).lenient(true), recorder, bytes, 1));
+    }
+
+    @Test
+    void reportsIncompleteAndMalformedInput() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        NbtPushParser parser = new NbtPushParser(new EventRecorder());
+        assertFalse(parser.feed(ByteBuffer.wrap(bytes, 0, bytes.length - 1)));
+        assertThrows(EOFException.class, parser::finish);
+        assertThrows(EOFException.class, () -> parser.feed(ByteBuffer.wrap(bytes, bytes.length - 1, 1)));
+
+        // The failure sticks until the parser is reset
+        NbtPushParser malformed = new NbtPushParser(new EventRecorder());
+        byte[] unknownId = {10, 0, 0, 42, 0, 0, 0};
+        assertThrows(NbtException.class, () -> malformed.feed(ByteBuffer.wrap(unknownId)));
+        assertThrows(NbtException.class, () -> malformed.feed(ByteBuffer.wrap(bytes)));
+        assertThrows(NbtException.class, malformed::finish);
+
+        malformed.reset();
+        assertTrue(malformed.feed(ByteBuffer.wrap(bytes)));
+        malformed.finish();
+    }
+
+    @Test
+    void parsesAgainAfterReset() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        List<String> expected = NbtSamples.events(bytes);
+        EventRecorder recorder = new EventRecorder();
+        NbtPushParser parser = new NbtPushParser(recorder);
+
+        // Reset halfway through a value, then parse a whole payload
+        parser.feed(ByteBuffer.wrap(bytes, 0, bytes.length / 2));
+        parser.reset();
+        assertFalse(parser.isDone());
+        assertEquals(0, parser.bufferedBytes());
+
+        recorder.events.clear();
+        assertEquals(expected, feedFragments(parser, recorder, bytes, 33));
+
+        parser.reset();
+        recorder.events.clear();
+        assertEquals(expected, feedFragments(parser, recorder, bytes, 8192));
+    }
+}
@@ -0,0 +1,138 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.Tag;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtReaderTest {
+    // Declines the compounds and lists with the given names, recording all other events
+    private static class Decliner extends EventRecorder {
+        final Set<String> declined;
+
+        Decliner(Set<String> declined) {
+            this.declined = declined;
+        }
+
+        @Override
+        public NbtVisitor visitList(TagType type, int length, String name) {
+            return declined.contains(name) ? null : super.visitList(type, length, name);
+        }
+
+        @Override
+        public NbtVisitor visitCompound(String name) {
+            return declined.contains(name) ? null : super.visitCompound(name);
+        }
+    }
+
+    private static CompoundTag withoutDeclined() {
+        CompoundTag chunk = NbtSamples.chunk();
+        CompoundTag level = chunk.getCompoundTag("Level");
+        level.remove("Sections");
+        level.remove("Lists");
+        level.remove("NoTag");
+        return chunk;
+    }
+
+    // Picks a value of the given type from the sample chunk, which has one of every type
+    private static Tag sample(TagType type) {
+        CompoundTag level = NbtSamples.chunk().getCompoundTag("Level");
+        for (String name : level.keySet()) {
+            if (level.get(name).type() == type)
+                return level.get(name);
+        }
+        throw new AssertionError("No sample of type " + type);
+    }
+
+    @Test
+    void skipsDeclinedSubtrees() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        List<String> expected = NbtSamples.events(NbtSamples.bytes(withoutDeclined()));
+        Set<String> declined = Set.of("Sections", "Lists", "NoTag");
+
+        // Trailing bytes tell whether the stream reader stopped right after the root tag
+        byte[] trailed = new byte[bytes.length + 3];
+        System.arraycopy(bytes, 0, trailed, 0, bytes.length);
+        ByteArrayInputStream in = new ByteArrayInputStream(trailed);
+        Decliner decliner = new Decliner(declined);
+        NbtReader reader = new NbtReader(new DataInputStream(in));
+        reader.accept(decliner);
+        reader.throwIoException();
+        assertEquals(expected, decliner.events);
+        assertEquals(3, in.available());
+
+        ByteBuffer buf = ByteBuffer.wrap(trailed);
+        decliner = new Decliner(declined);
+        NbtBufferReader bufferReader = new NbtBufferReader(buf);
+        bufferReader.accept(decliner);
+        bufferReader.throwIoException();
+        assertEquals(expected, decliner.events);
+        assertEquals(bytes.length, buf.position());
+    }
+
+    @Test
+    void skipsDeclinedRoot() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        Decliner decliner = new Decliner(Set.of(""));
+        NbtReader reader = new NbtReader(new DataInputStream(in));
+        reader.accept(decliner);
+        reader.throwIoException();
+        assertEquals(List.of(), decliner.events);
+        assertEquals(0, in.available());
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        NbtBufferReader bufferReader = new NbtBufferReader(buf);
+        bufferReader.accept(new Decliner(Set.of("")));
+        bufferReader.throwIoException();
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    void skipsEveryElementType() throws IOException {
+        // One declined list for every element type, each followed by a marker that must still be read
+        CompoundTag root = new CompoundTag();
+        List<String> expected = new ArrayList<>();
+        expected.add("compound ");
+        int i = 0;
+        for (TagType type : TagType.values()) {
+            if (type == TagType.END)
+                continue;
+            ListTag list = new ListTag(type);
+            Tag element = sample(type);
+            list.add(element);
+            list.add(element.copy());
+            root.put("skip" + i, list);
+            root.putInt("marker" + i, i);
+            expected.add("int marker" + i + " " + i);
+            i++;
+        }
+        expected.add("end");
+
+        byte[] bytes = NbtSamples.bytes(root);
+        Decliner decliner = new Decliner(Set.of("skip0", "skip1", "skip2", "skip3", "skip4", "skip5", "skip6",
+                                                "skip7", "skip8", "skip9", "skip10", "skip11"));
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+        reader.accept(decliner);
+        reader.throwIoException();
+        assertEquals(expected, decliner.events);
+
+        decliner = new Decliner(decliner.declined);
+        NbtBufferReader bufferReader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        bufferReader.accept(decliner);
+        bufferReader.throwIoException();
+        assertEquals(expected, decliner.events);
+    }
+}
@@ -0,0 +1,87 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.Tag;
+
+/**
+ * Sample NBT for the reader and writer tests, covering every tag type, nested and empty lists and compounds, non-ASCII
+ * strings and arrays of several sizes.
+ */
+final class NbtSamples {
+    private NbtSamples() {
+    }
+
+    static CompoundTag chunk() {
+        CompoundTag root = new CompoundTag();
+        CompoundTag level = new CompoundTag();
+        root.put("Level", level);
+        root.putInt("DataVersion", 2586);
+
+        level.putInt("xPos", 3);
+        level.putInt("zPos", -7);
+        level.putLong("InhabitedTime", 123456789L);
+        level.putString("Status", "full");
+        level.putString("Unicode", "h\u00e9llo \u20ac \u0000 \ud83d\ude00");
+        level.putByte("Byte", (byte) -5);
+        level.putShort("Short", (short) -300);
+        level.putFloat("Float", 1.5f);
+        level.putDouble("Double", -2.25);
+        level.putByteArray("Bytes", new byte[] {1, -2, 3});
+
+        int[] ints = new int[3000];
+        for (int i = 0; i < ints.length; i++)
+            ints[i] = i * 7919 - 5;
+        long[] longs = new long[1037];
+        for (int i = 0; i < longs.length; i++)
+            longs[i] = i * 0x123456789ABL;
+        level.putIntArray("Ints", ints);
+        level.putLongArray("Longs", longs);
+        level.putIntArray("NoInts", new int[0]);
+
+        ListTag sections = new ListTag(TagType.COMPOUND);
+        for (int y = 0; y < 4; y++) {
+            CompoundTag section = new CompoundTag();
+            section.putByte("Y", (byte) y);
+            section.put("Palette", ListTag.of("minecraft:stone", "minecraft:air"));
+            section.putLongArray("BlockStates", new long[] {y, -y, Long.MIN_VALUE});
+            section.putByteArray("SkyLight", new byte[2048 + y]);
+            sections.add(section);
+        }
+        level.put("Sections", sections);
+
+        ListTag lists = new ListTag(TagType.LIST);
+        lists.add(ListTag.of(1, 2));
+        lists.add(new ListTag());
+        level.put("Lists", lists);
+        level.put("NoEntities", new ListTag());
+        level.put("NoTag", new CompoundTag());
+        return root;
+    }
+
+    static byte[] bytes(Tag tag) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        tag.accept(writer);
+        writer.throwIoException();
+        return bout.toByteArray();
+    }
+
+    /**
+     * Returns the events an {@link NbtReader} emits for the given bytes, which the other readers must match.
+     */
+    static List<String> events(byte[] bytes) throws IOException {
+        EventRecorder recorder = new EventRecorder();
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+        reader.accept(recorder);
+        reader.throwIoException();
+        return recorder.events;
+    }
+}
@@ -0,0 +1,120 @@
+package net.shadew.nbt4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.tree.ByteTag;
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.IntTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.StringTag;
+import net.shadew.nbt4j.tree.Tag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NbtSelectorTest {
+    private static void assertTagEquals(Tag expected, Tag actual) throws IOException {
+        assertNotNull(actual);
+        assertArrayEquals(TagSerializer.toByteArray(expected), TagSerializer.toByteArray(actual));
+    }
+
+    private static NbtReader reader(ByteArrayInputStream in) {
+        return new NbtReader(new DataInputStream(in));
+    }
+
+    @Test
+    void selectsPaths() throws IOException {
+        CompoundTag chunk = NbtSamples.chunk();
+        CompoundTag level = chunk.getCompoundTag("Level");
+        byte[] bytes = NbtSamples.bytes(chunk);
+        NbtSelector selector = NbtSelector.compile(
+            "Level.xPos", "Level.Status", "Level.Sections[*].Palette", "Level.Sections[*].Y", "Level.Lists[0][1]",
+            "Level.Longs", "Level.Missing", "DataVersion"
+        );
+
+        List<NbtSelection> selections = new ArrayList<>();
+        NbtReader reader = reader(new ByteArrayInputStream(bytes));
+        selections.add(selector.select(reader));
+        reader.throwIoException();
+        NbtBufferReader bufferReader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        selections.add(selector.select(bufferReader));
+        bufferReader.throwIoException();
+
+        for (NbtSelection selection : selections) {
+            assertEquals(3, ((IntTag) selection.get("Level.xPos")).asInt());
+            assertEquals("full", ((StringTag) selection.get("Level.Status")).asString());
+            assertEquals(2, ((ByteTag) selection.getAll("Level.Sections[*].Y").get(2)).asByte());
+            assertEquals(2, ((IntTag) selection.get("Level.Lists[0][1]")).asInt());
+            assertEquals(2586, ((IntTag) selection.get("DataVersion")).asInt());
+            assertTagEquals(level.get("Longs"), selection.get("Level.Longs"));
+
+            List<Tag> palettes = selection.getAll("Level.Sections[*].Palette");
+            ListTag sections = (ListTag) level.get("Sections");
+            assertEquals(sections.size(), palettes.size());
+            for (int i = 0; i < palettes.size(); i++)
+                assertTagEquals(((CompoundTag) sections.get(i)).get("Palette"), palettes.get(i));
+
+            assertFalse(selection.contains("Level.Missing"));
+            assertNull(selection.get("Level.Missing"));
+            assertTrue(selection.contains("Level.xPos"));
+            assertThrows(IllegalArgumentException.class, () -> selection.get("Level.zPos"));
+        }
+    }
+
+    @Test
+    void stopsReadingWhenAllPathsAreSeen() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        NbtSelector selector = NbtSelector.compile("Level.xPos", "Level.zPos");
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        NbtReader reader = reader(in);
+        NbtSelection selection = selector.select(reader);
+        reader.throwIoException();
+        assertEquals(-7, ((IntTag) selection.get("Level.zPos")).asInt());
+        assertTrue(in.available() > bytes.length / 2);
+
+        // A wildcard can match any amount of elements, so the whole list is read
+        in = new ByteArrayInputStream(bytes);
+        reader = reader(in);
+        selection = NbtSelector.compile("Level.Sections[*].Y").select(reader);
+        reader.throwIoException();
+        assertEquals(4, selection.getAll("Level.Sections[*].Y").size());
+    }
+
+    @Test
+    void selectsNothingFromMismatchingTypes() throws IOException {
+        byte[] bytes = NbtSamples.bytes(NbtSamples.chunk());
+        NbtSelector selector = NbtSelector.compile("Level.xPos.Nested", "Level.Status[0]", "Level.Sections.Y");
+
+        NbtReader reader = reader(new ByteArrayInputStream(bytes));
+        NbtSelection selection = selector.select(reader);
+        reader.throwIoException();
+        for (String path : selector.paths())
+            assertFalse(selection.contains(path), path);
+    }
+
+    @Test
+    void rejectsMalformedPaths() {
+        String[][] malformed = {
+            {""},
+            {"Level..xPos"},
+            {"Level."},
+            {"Level.Sections[0"},
+            {"Level.Sections[-1]"},
+            {"Level.Sections[x]"},
+            {"Level.Sections[0]Y"},
+            {"Level.Sections[*]", "Level.Sections[0]"},
+            {"Level.Sections[0]", "Level.Sections.Y"}
+        };
+        for (String[] paths : malformed)
+            assertThrows(IllegalArgumentException.class, () -> NbtSelector.compile(paths), String.join(", ", paths));
+        assertThrows(NullPointerException.class, () -> NbtSelector.compile("Level", null));
+    }
+}
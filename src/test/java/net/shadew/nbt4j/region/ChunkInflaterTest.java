@@ -0,0 +1,165 @@
+package net.shadew.nbt4j.region;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.shadew.nbt4j.Compression;
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static net.shadew.nbt4j.region.RegionFileTest.*;
+
+class ChunkInflaterTest {
+    private static final int[] COMPRESSIONS = {
+        RegionFile.GZIP,
+        RegionFile.DEFLATE,
+        RegionFile.UNCOMPRESSED
+    };
+
+    @TempDir
+    Path dir;
+
+    private static byte[] bytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] readStream(RegionFile file, int x, int z) throws IOException {
+        try (InputStream in = file.openInputStream(x, z)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] compress(Compression compression, byte[] data) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = compression.createOutStream(bout)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    @Test
+    void readsSameBytesAsStream() throws IOException {
+        // Chunks of one sector, of a few sectors, that inflate far beyond the initial buffer, and that are external
+        CompoundTag large = chunk(new Random(3), 0);
+        large.putLongArray("Zeros", new long[200000]);
+        CompoundTag[] chunks = {
+            chunk(new Random(0), 0),
+            chunk(new Random(1), 20000),
+            large,
+            chunk(new Random(2), 1_200_000)
+        };
+
+        for (int flags : COMPRESSIONS) {
+            for (int mapped : new int[] {0, RegionFile.MAPPED}) {
+                Path path = dir.resolve("r." + (flags | mapped) + ".mca");
+                try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | flags | mapped);
+                     ChunkInflater heap = new ChunkInflater();
+                     ChunkInflater direct = new ChunkInflater(true)) {
+                    for (int x = 0; x < chunks.length; x++)
+                        file.writeChunk(x, 0, chunks[x]);
+
+                    // Read twice, so that the buffers of the inflaters are reused by chunks of other sizes
+                    for (int round = 0; round < 2; round++) {
+                        for (int x = 0; x < chunks.length; x++) {
+                            byte[] expected = TagSerializer.toByteArray(chunks[x]);
+                            assertArrayEquals(expected, readStream(file, x, 0));
+                            assertArrayEquals(expected, bytes(file.readChunk(x, 0, heap)));
+                            assertArrayEquals(expected, bytes(file.readChunk(x, 0, direct)));
+                        }
+                    }
+                    assertNull(file.readChunk(31, 31, heap));
+                }
+            }
+        }
+    }
+
+    @Test
+    void growsOutputBuffer() throws IOException {
+        // Inflates to much more than four times the compressed size and than the initial size of the buffer
+        byte[] data = new byte[1 << 20];
+        for (int i = 0; i < data.length; i += 1000)
+            data[i] = (byte) i;
+
+        try (ChunkInflater inflater = new ChunkInflater()) {
+            for (Compression compression : new Compression[] {Compression.GZIPPED, Compression.DEFLATED}) {
+                byte[] compressed = compress(compression, data);
+                assertTrue(compressed.length * 4 < data.length);
+                assertArrayEquals(data, bytes(inflater.inflate(ByteBuffer.wrap(compressed), compression)));
+
+                byte[] small = compress(compression, new byte[] {1, 2, 3});
+                assertArrayEquals(new byte[] {1, 2, 3}, bytes(inflater.inflate(ByteBuffer.wrap(small), compression)));
+            }
+        }
+    }
+
+    @Test
+    void leavesSourcePositionUnchanged() throws IOException {
+        byte[] data = TagSerializer.toByteArray(chunk(new Random(0), 100));
+        byte[] compressed = compress(Compression.DEFLATED, data);
+        ByteBuffer src = ByteBuffer.allocateDirect(compressed.length + 10);
+        src.position(10);
+        src.put(compressed).position(10);
+
+        try (ChunkInflater inflater = new ChunkInflater()) {
+            assertArrayEquals(data, bytes(inflater.inflate(src, Compression.DEFLATED)));
+            assertEquals(10, src.position());
+            assertArrayEquals(data, bytes(inflater.inflate(ByteBuffer.wrap(data), Compression.UNCOMPRESSED)));
+        }
+    }
+
+    @Test
+    void rejectsCorruptPayloads() throws IOException {
+        byte[] data = TagSerializer.toByteArray(chunk(new Random(0), 100));
+        byte[] gzip = compress(Compression.GZIPPED, data);
+        byte[] zlib = compress(Compression.DEFLATED, data);
+
+        try (ChunkInflater inflater = new ChunkInflater()) {
+            // CRC32 and ISIZE of the GZIP trailer
+            byte[] crc = gzip.clone();
+            crc[crc.length - 8] ^= 1;
+            assertThrows(ZipException.class, () -> inflater.inflate(ByteBuffer.wrap(crc), Compression.GZIPPED));
+            byte[] size = gzip.clone();
+            size[size.length - 4] ^= 1;
+            assertThrows(ZipException.class, () -> inflater.inflate(ByteBuffer.wrap(size), Compression.GZIPPED));
+            byte[] trailer = Arrays.copyOf(gzip, gzip.length - 3);
+            assertThrows(EOFException.class, () -> inflater.inflate(ByteBuffer.wrap(trailer), Compression.GZIPPED));
+
+            byte[] magic = gzip.clone();
+            magic[0] = 0;
+            assertThrows(ZipException.class, () -> inflater.inflate(ByteBuffer.wrap(magic), Compression.GZIPPED));
+            byte[] header = Arrays.copyOf(gzip, 5);
+            assertThrows(EOFException.class, () -> inflater.inflate(ByteBuffer.wrap(header), Compression.GZIPPED));
+
+            // Truncated and corrupt deflate streams
+            byte[] truncated = Arrays.copyOf(zlib, zlib.length / 2);
+            assertThrows(EOFException.class, () -> inflater.inflate(ByteBuffer.wrap(truncated), Compression.DEFLATED));
+            byte[] rawTruncated = Arrays.copyOf(gzip, gzip.length / 2);
+            assertThrows(IOException.class, () -> inflater.inflate(ByteBuffer.wrap(rawTruncated), Compression.GZIPPED));
+            byte[] corrupt = zlib.clone();
+            corrupt[0] = 0;
+            assertThrows(ZipException.class, () -> inflater.inflate(ByteBuffer.wrap(corrupt), Compression.DEFLATED));
+
+            // The inflater can still be used after failing
+            assertArrayEquals(data, bytes(inflater.inflate(ByteBuffer.wrap(gzip), Compression.GZIPPED)));
+            assertArrayEquals(data, bytes(inflater.inflate(ByteBuffer.wrap(zlib), Compression.DEFLATED)));
+        }
+
+        ChunkInflater closed = new ChunkInflater();
+        closed.close();
+        assertThrows(IOException.class, () -> closed.inflate(ByteBuffer.wrap(zlib), Compression.DEFLATED));
+    }
+}
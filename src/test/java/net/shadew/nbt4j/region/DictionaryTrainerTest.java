@@ -0,0 +1,188 @@
+package net.shadew.nbt4j.region;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.shadew.nbt4j.CompressionCodec;
+import net.shadew.nbt4j.CompressionDictionary;
+import net.shadew.nbt4j.CompressionRegistry;
+import net.shadew.nbt4j.CompressionSettings;
+import net.shadew.nbt4j.DictionaryCodec;
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static net.shadew.nbt4j.region.RegionFileTest.*;
+
+class DictionaryTrainerTest {
+    @TempDir
+    Path dir;
+
+    // A small chunk, of which most bytes are keys and values that all chunks share
+    private static CompoundTag smallChunk(Random random) {
+        CompoundTag chunk = new CompoundTag();
+        chunk.putInt("xPos", random.nextInt(32));
+        chunk.putInt("zPos", random.nextInt(32));
+        chunk.putString("Status", "minecraft:full");
+        chunk.putLong("InhabitedTime", random.nextInt(1000));
+        chunk.putString("Biome", "minecraft:plains");
+        chunk.putLongArray("BlockStates", random.longs(8, 0, 4).toArray());
+        return chunk;
+    }
+
+    private static DictionaryTrainer trainer(long seed, int chunks) throws IOException {
+        DictionaryTrainer trainer = new DictionaryTrainer();
+        Random random = new Random(seed);
+        for (int i = 0; i < chunks; i++)
+            assertTrue(trainer.addSample(TagSerializer.toByteArray(smallChunk(random))));
+        return trainer;
+    }
+
+    @Test
+    void roundTripsThroughRegionFile() throws IOException {
+        DictionaryCodec codec = new DictionaryCodec(66, trainer(1, 200).train());
+        CompressionRegistry.register(codec);
+
+        Path plainPath = dir.resolve("r.plain.mca");
+        Path path = dir.resolve("r.0.0.mca");
+        CompoundTag[] chunks = new CompoundTag[32];
+        Random random = new Random(2);
+        try (RegionFile plain = new RegionFile(dir, plainPath, RegionFile.CREATE | RegionFile.DEFLATE);
+             RegionFile file = new RegionFile(dir, path, RegionFile.CREATE, codec, CompressionSettings.DEFAULT)) {
+            for (int x = 0; x < 32; x++) {
+                chunks[x] = smallChunk(random);
+                plain.writeChunk(x, 0, chunks[x]);
+                file.writeChunk(x, 0, chunks[x]);
+            }
+        }
+
+        int plainSize = 0, size = 0;
+        for (int x = 0; x < 32; x++) {
+            byte[] stored = storedChunk(path, x, 0);
+            assertEquals(66, stored[0]);
+            size += stored.length;
+            plainSize += storedChunk(plainPath, x, 0).length;
+        }
+        assertTrue(size < plainSize, size + " >= " + plainSize);
+
+        // Chunks are read with the registered codec, whatever codec the file is opened with
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.DEFLATE)) {
+            for (int x = 0; x < 32; x++)
+                assertTagEquals(chunks[x], read(file, x, 0));
+        }
+    }
+
+    @Test
+    void readsChunksOfOlderDictionary() throws IOException {
+        CompressionDictionary older = trainer(3, 100).train();
+        CompressionDictionary newer = trainer(4, 100).dictionarySize(1000).train();
+        assertNotEquals(older.id(), newer.id());
+        CompressionRegistry.register(new DictionaryCodec(67, newer, older));
+
+        // Written before retraining, with only the older dictionary
+        Path path = dir.resolve("r.0.0.mca");
+        CompoundTag oldChunk = smallChunk(new Random(5));
+        CompoundTag newChunk = smallChunk(new Random(6));
+        DictionaryCodec oldCodec = new DictionaryCodec(67, older);
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE, oldCodec, CompressionSettings.DEFAULT)) {
+            file.writeChunk(0, 0, oldChunk);
+        }
+        CompressionCodec codec = CompressionRegistry.byId(67);
+        try (RegionFile file = new RegionFile(dir, path, 0, codec, CompressionSettings.DEFAULT)) {
+            assertTagEquals(oldChunk, read(file, 0, 0));
+            file.writeChunk(1, 0, newChunk);
+            assertTagEquals(newChunk, read(file, 1, 0));
+        }
+    }
+
+    @Test
+    void trainsFromEdgeCaseSamples() throws IOException {
+        assertThrows(IllegalStateException.class, () -> new DictionaryTrainer().train());
+
+        DictionaryTrainer empty = new DictionaryTrainer();
+        empty.addSample(new byte[0]);
+        assertThrows(IllegalStateException.class, empty::train);
+
+        // Samples shorter than the strings that are counted
+        DictionaryTrainer tiny = new DictionaryTrainer();
+        tiny.addSample(new byte[] {1, 2, 3});
+        assertArrayEquals(new byte[] {1, 2, 3}, tiny.train().toByteArray());
+        for (int i = 0; i < 10; i++)
+            tiny.addSample(new byte[] {4, 5, 6, 7});
+        assertTrue(tiny.train().size() <= 43);
+
+        // Dictionaries shorter than a segment, or even than the strings that are counted
+        for (int size : new int[] {1, 5, 100, 1000, 5000, CompressionDictionary.MAX_SIZE}) {
+            DictionaryTrainer trainer = trainer(7, 300).dictionarySize(size);
+            int trained = trainer.train().size();
+            assertTrue(trained > 0 && trained <= size, "trained " + trained + " of at most " + size);
+        }
+
+        DictionaryTrainer limited = new DictionaryTrainer().maxSampleBytes(10);
+        assertTrue(limited.addSample(new byte[6]));
+        assertFalse(limited.addSample(new byte[6]));
+        assertEquals(1, limited.sampleCount());
+        assertEquals(6, limited.sampleBytes());
+        assertThrows(IllegalArgumentException.class, () -> limited.dictionarySize(0));
+        assertThrows(IllegalArgumentException.class, () -> limited.segmentSize(15));
+    }
+
+    @Test
+    void skipsExternalAndUnknownChunksOfRegionFile() throws IOException {
+        // Stores chunks as they are, under a compression type that is not registered
+        CompressionCodec unregistered = new CompressionCodec() {
+            @Override
+            public String name() {
+                return "UNREGISTERED";
+            }
+
+            @Override
+            public int getRegionTypeId() {
+                return 101;
+            }
+
+            @Override
+            public InputStream createInStream(InputStream in) {
+                return in;
+            }
+
+            @Override
+            public OutputStream createOutStream(OutputStream out, CompressionSettings settings) {
+                return out;
+            }
+        };
+
+        Path path = dir.resolve("r.0.0.mca");
+        long expectedBytes = 0;
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | RegionFile.GZIP)) {
+            for (int x = 0; x < 3; x++) {
+                CompoundTag chunk = chunk(new Random(x), 100);
+                file.writeChunk(x, 0, chunk);
+                expectedBytes += TagSerializer.toByteArray(chunk).length;
+            }
+        }
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.DEFLATE)) {
+            CompoundTag chunk = chunk(new Random(3), 0);
+            file.writeChunk(3, 0, chunk);
+            expectedBytes += TagSerializer.toByteArray(chunk).length;
+        }
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.UNCOMPRESSED)) {
+            // Incompressible and too large to store in the region file
+            file.writeChunk(4, 0, chunk(new Random(4), 1_200_000));
+        }
+        try (RegionFile file = new RegionFile(dir, path, 0, unregistered, CompressionSettings.DEFAULT)) {
+            file.writeChunk(5, 0, chunk(new Random(5), 100));
+        }
+
+        DictionaryTrainer trainer = new DictionaryTrainer();
+        assertEquals(4, trainer.addRegionFile(path));
+        assertEquals(4, trainer.sampleCount());
+        assertEquals(expectedBytes, trainer.sampleBytes());
+    }
+}
@@ -0,0 +1,597 @@
+package net.shadew.nbt4j.region;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.shadew.nbt4j.Compression;
+import net.shadew.nbt4j.CompressionCodec;
+import net.shadew.nbt4j.CompressionSettings;
+import net.shadew.nbt4j.NbtReader;
+import net.shadew.nbt4j.TagBuilder;
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.IntTag;
+import net.shadew.nbt4j.tree.Tag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionFileTest {
+    private static final int[] COMPRESSIONS = {
+        RegionFile.GZIP,
+        RegionFile.DEFLATE,
+        RegionFile.UNCOMPRESSED,
+        RegionFile.DEFLATE | RegionFile.ADAPTIVE
+    };
+
+    @TempDir
+    Path dir;
+
+    static CompoundTag chunk(Random random, int noise) {
+        CompoundTag chunk = new CompoundTag();
+        chunk.putInt("xPos", random.nextInt());
+        chunk.putInt("zPos", random.nextInt());
+        chunk.putString("Status", "full");
+        chunk.putLongArray("BlockStates", random.longs(1024, 0, 16).toArray());
+        byte[] bytes = new byte[noise];
+        random.nextBytes(bytes);
+        chunk.putByteArray("Noise", bytes);
+        return chunk;
+    }
+
+    static Tag read(RegionFile file, int x, int z) throws IOException {
+        try (InputStream in = file.openInputStream(x, z)) {
+            NbtReader reader = new NbtReader(new DataInputStream(in));
+            TagBuilder builder = new TagBuilder();
+            reader.accept(builder);
+            reader.throwIoException();
+            return builder.tag();
+        }
+    }
+
+    static void assertTagEquals(Tag expected, Tag actual) throws IOException {
+        assertArrayEquals(TagSerializer.toByteArray(expected), TagSerializer.toByteArray(actual));
+    }
+
+    // Returns the compression type byte followed by the payload of a chunk, as it is stored in the region file
+    static byte[] storedChunk(Path path, int x, int z) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        int loc = buf.getInt(((x & 31) + (z & 31) * 32) * 4);
+        int off = (loc >>> 8) * 4096;
+        return Arrays.copyOfRange(buf.array(), off + 4, off + 4 + buf.getInt(off));
+    }
+
+    private static byte[] compress(Compression compression, byte[] data, CompressionSettings settings)
+        throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        bout.write(compression.getRegionTypeId());
+        try (OutputStream out = compression.createOutStream(bout, settings)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    // Runs all tasks at the same time, and rethrows the first failure
+    static void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception exc)
+                        throw exc;
+                    throw new AssertionError(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // A chunk of which the contents follow from its version, with a size that varies between versions
+    private static CompoundTag version(int version) {
+        CompoundTag chunk = chunk(new Random(version), version % 3 * 6000);
+        chunk.putInt("Version", version);
+        return chunk;
+    }
+
+    @Test
+    void readsCompleteChunksWhileWritingThem() throws Exception {
+        for (int flags : new int[] {RegionFile.UNCOMPRESSED, RegionFile.UNCOMPRESSED | RegionFile.MAPPED}) {
+            Path path = dir.resolve("r." + flags + ".mca");
+            try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | flags)) {
+                file.writeChunk(0, 0, version(0));
+                file.writeChunk(1, 0, version(0));
+
+                AtomicBoolean writing = new AtomicBoolean(true);
+                List<Callable<Void>> tasks = new ArrayList<>();
+                tasks.add(() -> {
+                    try {
+                        for (int v = 1; v <= 300; v++) {
+                            file.writeChunk(0, 0, version(v));
+                            if (v % 10 == 0)
+                                file.writeChunk(1, 0, version(v));
+                        }
+                    } finally {
+                        writing.set(false);
+                    }
+                    return null;
+                });
+                for (int i = 0; i < 4; i++) {
+                    tasks.add(() -> {
+                        int last = 0;
+                        while (writing.get()) {
+                            assertTrue(file.doesChunkExist(0, 0));
+                            Tag tag = read(file, 0, 0);
+                            int v = ((IntTag) ((CompoundTag) tag).get("Version")).asInt();
+                            assertTrue(v >= last, "read version " + v + " after " + last);
+                            assertTagEquals(version(v), tag);
+                            last = v;
+                        }
+                        return null;
+                    });
+                }
+                runConcurrently(tasks);
+
+                assertTagEquals(version(300), read(file, 0, 0));
+                assertTagEquals(version(300), read(file, 1, 0));
+            }
+            try (RegionFile file = new RegionFile(dir, path, flags)) {
+                assertTagEquals(version(300), read(file, 0, 0));
+            }
+        }
+    }
+
+    @Test
+    void writesDistinctChunksConcurrently() throws Exception {
+        Path path = dir.resolve("r.0.0.mca");
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | RegionFile.DEFLATE)) {
+            // Every thread writes every chunk in its row a few times, and removes the odd chunks in the end
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int z = t;
+                tasks.add(() -> {
+                    for (int round = 0; round < 3; round++) {
+                        for (int x = 0; x < 32; x++)
+                            file.writeChunk(x, z, chunk(new Random(x * 32 + z + round), round * 3000));
+                    }
+                    for (int x = 1; x < 32; x += 2)
+                        file.removeChunk(x, z);
+                    return null;
+                });
+            }
+            runConcurrently(tasks);
+        }
+
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.DEFLATE)) {
+            for (int z = 0; z < 8; z++) {
+                for (int x = 0; x < 32; x++) {
+                    if (x % 2 == 0)
+                        assertTagEquals(chunk(new Random(x * 32 + z + 2), 6000), read(file, x, z));
+                    else
+                        assertFalse(file.hasChunk(x, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    void writesOnlyChangedHeaderSlots() throws IOException {
+        Path path = dir.resolve("r.0.0.mca");
+        HeaderStatistics statistics = new HeaderStatistics();
+        int timestamp;
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE)) {
+            file.setHeaderStatistics(statistics);
+            file.flush();
+            statistics.reset();
+
+            // One location and one timestamp
+            file.writeChunk(5, 3, chunk(new Random(1), 100));
+            assertEquals(1, statistics.headerWrites());
+            assertEquals(8, statistics.bytesWritten());
+            assertEquals(8192 - 8, statistics.bytesSaved());
+
+            file.writeChunk(7, 3, chunk(new Random(2), 100));
+            file.removeChunk(5, 3);
+            assertEquals(3, statistics.headerWrites());
+            assertEquals(24, statistics.bytesWritten());
+
+            // Nothing changed since the last header write
+            file.flush();
+            assertEquals(3, statistics.headerWrites());
+
+            // Far apart slots are written separately, slots that are close together are written along with the slots
+            // in between
+            RegionFile.WriteBatch batch = file.newWriteBatch();
+            batch.writeChunk(0, 0, chunk(new Random(3), 100));
+            batch.writeChunk(31, 31, chunk(new Random(4), 100));
+            batch.writeChunk(0, 1, chunk(new Random(5), 100));
+            batch.writeChunk(2, 1, chunk(new Random(6), 100));
+            batch.commit();
+            assertEquals(4, statistics.headerWrites());
+            assertEquals(24 + 5 * 8, statistics.bytesWritten());
+            timestamp = file.getTimestamp(7, 3);
+        }
+
+        try (RegionFile file = new RegionFile(dir, path, 0)) {
+            assertFalse(file.hasChunk(5, 3));
+            assertFalse(file.hasChunk(1, 1));
+            assertEquals(timestamp, file.getTimestamp(7, 3));
+            assertTagEquals(chunk(new Random(2), 100), read(file, 7, 3));
+            assertTagEquals(chunk(new Random(3), 100), read(file, 0, 0));
+            assertTagEquals(chunk(new Random(4), 100), read(file, 31, 31));
+            assertTagEquals(chunk(new Random(5), 100), read(file, 0, 1));
+            assertTagEquals(chunk(new Random(6), 100), read(file, 2, 1));
+        }
+    }
+
+    @Test
+    void commitsWriteBatch() throws IOException {
+        Path path = dir.resolve("r.0.0.mca");
+        HeaderStatistics statistics = new HeaderStatistics();
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | RegionFile.DEFLATE)) {
+            for (int x = 0; x < 4; x++)
+                file.writeChunk(x, 0, chunk(new Random(x), 100));
+            file.flush();
+            file.setHeaderStatistics(statistics);
+
+            RegionFile.WriteBatch batch = file.newWriteBatch();
+            for (int x = 0; x < 10; x++)
+                batch.writeChunk(x, 0, chunk(new Random(x + 100), x * 3000));
+            batch.removeChunk(3, 0);
+            try (OutputStream out = batch.openOutputStream(0, 1)) {
+                out.write(TagSerializer.toByteArray(chunk(new Random(200), 0)));
+            }
+            batch.writeChunk(31, 31, chunk(new Random(300), 1_200_000), CompressionSettings.DEFAULT);
+            assertEquals(12, batch.size());
+
+            // Nothing is written before committing
+            assertFalse(file.hasChunk(9, 0));
+            assertTagEquals(chunk(new Random(0), 100), read(file, 0, 0));
+
+            batch.commit();
+            assertEquals(0, batch.size());
+            assertEquals(1, statistics.headerWrites());
+            assertFalse(file.hasChunk(3, 0));
+
+            batch.writeChunk(4, 4, chunk(new Random(400), 0));
+            batch.clear();
+            batch.commit();
+            assertFalse(file.hasChunk(4, 4));
+        }
+
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.DEFLATE)) {
+            for (int x = 0; x < 10; x++) {
+                if (x == 3)
+                    assertFalse(file.hasChunk(x, 0));
+                else
+                    assertTagEquals(chunk(new Random(x + 100), x * 3000), read(file, x, 0));
+            }
+            assertTagEquals(chunk(new Random(200), 0), read(file, 0, 1));
+            assertTagEquals(chunk(new Random(300), 1_200_000), read(file, 31, 31));
+        }
+    }
+
+    @Test
+    void keepsChunksStagedWhenCommitFails() throws IOException {
+        // External chunks can't be written as long as their directory doesn't exist
+        Path external = dir.resolve("external");
+        Path path = dir.resolve("r.0.0.mca");
+        HeaderStatistics statistics = new HeaderStatistics();
+        try (RegionFile file = new RegionFile(external, path, RegionFile.CREATE | RegionFile.UNCOMPRESSED)) {
+            file.writeChunk(0, 0, chunk(new Random(0), 100));
+            file.flush();
+            file.setHeaderStatistics(statistics);
+            int timestamp = file.getTimestamp(0, 0);
+
+            RegionFile.WriteBatch batch = file.newWriteBatch();
+            batch.writeChunk(0, 0, chunk(new Random(1), 100));
+            batch.writeChunk(1, 0, chunk(new Random(2), 1_200_000));
+            batch.removeChunk(2, 0);
+            assertThrows(IOException.class, batch::commit);
+
+            assertEquals(3, batch.size());
+            assertEquals(0, statistics.headerWrites());
+            assertEquals(timestamp, file.getTimestamp(0, 0));
+            assertFalse(file.hasChunk(1, 0));
+            assertTagEquals(chunk(new Random(0), 100), read(file, 0, 0));
+
+            // The same batch commits once the failure is gone
+            Files.createDirectories(external);
+            batch.commit();
+            assertEquals(0, batch.size());
+            assertTagEquals(chunk(new Random(1), 100), read(file, 0, 0));
+            assertTagEquals(chunk(new Random(2), 1_200_000), read(file, 1, 0));
+        }
+
+        try (RegionFile file = new RegionFile(external, path, RegionFile.UNCOMPRESSED)) {
+            assertTagEquals(chunk(new Random(1), 100), read(file, 0, 0));
+            assertTagEquals(chunk(new Random(2), 1_200_000), read(file, 1, 0));
+        }
+    }
+
+    @Test
+    void writesTagsInAllCompressions() throws IOException {
+        // Small chunks, chunks of a few sectors and incompressible chunks that are stored externally
+        int[] noise = {0, 20000, 1_200_000};
+        for (int flags : COMPRESSIONS) {
+            Path path = dir.resolve("r." + flags + ".mca");
+            CompoundTag[] chunks = new CompoundTag[noise.length];
+            try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | flags)) {
+                for (int i = 0; i < noise.length; i++) {
+                    chunks[i] = chunk(new Random(i), noise[i]);
+                    file.writeChunk(i, 0, chunks[i]);
+                }
+            }
+            try (RegionFile file = new RegionFile(dir, path, flags)) {
+                for (int i = 0; i < noise.length; i++)
+                    assertTagEquals(chunks[i], read(file, i, 0));
+            }
+        }
+    }
+
+    @Test
+    void compressesWithGivenSettings() throws IOException {
+        CompoundTag chunk = chunk(new Random(1), 0);
+        byte[] raw = TagSerializer.toByteArray(chunk);
+        CompressionSettings filtered = CompressionSettings.of(9, Deflater.FILTERED);
+
+        Path path = dir.resolve("r.0.0.mca");
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | RegionFile.DEFLATE,
+                                              CompressionSettings.FASTEST)) {
+            file.writeChunk(0, 0, chunk);
+            file.writeChunk(1, 0, chunk, CompressionSettings.ARCHIVAL);
+            try (OutputStream out = file.openOutputStream(2, 0)) {
+                out.write(raw);
+            }
+            try (OutputStream out = file.openOutputStream(3, 0, filtered)) {
+                out.write(raw);
+            }
+        }
+
+        byte[] fastest = compress(Compression.DEFLATED, raw, CompressionSettings.FASTEST);
+        byte[] archival = compress(Compression.DEFLATED, raw, CompressionSettings.ARCHIVAL);
+        assertFalse(Arrays.equals(fastest, archival));
+        assertArrayEquals(fastest, storedChunk(path, 0, 0));
+        assertArrayEquals(archival, storedChunk(path, 1, 0));
+        assertArrayEquals(fastest, storedChunk(path, 2, 0));
+        assertArrayEquals(compress(Compression.DEFLATED, raw, filtered), storedChunk(path, 3, 0));
+
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.DEFLATE)) {
+            for (int x = 0; x < 4; x++)
+                assertTagEquals(chunk, read(file, x, 0));
+        }
+    }
+
+    @Test
+    void countsAdaptiveCompressionDecisions() throws IOException {
+        CompoundTag small = new CompoundTag();
+        small.putInt("xPos", 1);
+        small.putString("Status", "full");
+        CompoundTag compressible = chunk(new Random(1), 0);
+        CompoundTag incompressible = new CompoundTag();
+        byte[] noise = new byte[20000];
+        new Random(2).nextBytes(noise);
+        incompressible.putByteArray("Noise", noise);
+
+        Path path = dir.resolve("r.0.0.mca");
+        CompressionStatistics statistics = new CompressionStatistics();
+        int flags = RegionFile.DEFLATE | RegionFile.ADAPTIVE;
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | flags)) {
+            file.setCompressionStatistics(statistics);
+            file.writeChunk(0, 0, small);
+            file.writeChunk(1, 0, compressible);
+            file.writeChunk(2, 0, incompressible);
+        }
+
+        assertEquals(1, statistics.skippedChunks());
+        assertEquals(1, statistics.compressedChunks());
+        assertEquals(1, statistics.rejectedChunks());
+        assertTrue(statistics.compressionNanos() > 0);
+
+        byte[] skipped = storedChunk(path, 0, 0);
+        byte[] compressed = storedChunk(path, 1, 0);
+        byte[] rejected = storedChunk(path, 2, 0);
+        assertEquals(Compression.UNCOMPRESSED.getRegionTypeId(), skipped[0]);
+        assertEquals(Compression.DEFLATED.getRegionTypeId(), compressed[0]);
+        assertEquals(Compression.UNCOMPRESSED.getRegionTypeId(), rejected[0]);
+
+        int compressibleSize = TagSerializer.toByteArray(compressible).length;
+        assertEquals(compressibleSize - (compressed.length - 1), statistics.bytesSaved());
+        assertEquals(skipped.length - 1 + compressibleSize + rejected.length - 1, statistics.rawBytes());
+
+        try (RegionFile file = new RegionFile(dir, path, flags)) {
+            assertTagEquals(small, read(file, 0, 0));
+            assertTagEquals(compressible, read(file, 1, 0));
+            assertTagEquals(incompressible, read(file, 2, 0));
+        }
+    }
+
+    @Test
+    void readsChunksThroughMapping() throws IOException {
+        int[] noise = {0, 20000, 1_200_000};
+        for (int flags : COMPRESSIONS) {
+            Path path = dir.resolve("r." + flags + ".mca");
+            CompoundTag[] chunks = new CompoundTag[noise.length];
+            try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | RegionFile.MAPPED | flags);
+                 ChunkInflater inflater = new ChunkInflater()) {
+                for (int i = 0; i < noise.length; i++) {
+                    chunks[i] = chunk(new Random(i), noise[i]);
+                    file.writeChunk(i, 0, chunks[i]);
+                    assertTagEquals(chunks[i], read(file, i, 0));
+                }
+                for (int i = 0; i < noise.length; i++) {
+                    byte[] expected = TagSerializer.toByteArray(chunks[i]);
+                    assertEquals(ByteBuffer.wrap(expected), file.readChunk(i, 0, inflater));
+                }
+            }
+            try (RegionFile file = new RegionFile(dir, path, RegionFile.MAPPED | flags)) {
+                for (int i = 0; i < noise.length; i++) {
+                    assertTrue(file.doesChunkExist(i, 0));
+                    assertTagEquals(chunks[i], read(file, i, 0));
+                }
+            }
+        }
+    }
+
+    @Test
+    void remapsAfterFileGrows() throws IOException {
+        Path path = dir.resolve("r.0.0.mca");
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | RegionFile.MAPPED | RegionFile.GZIP);
+             ChunkInflater inflater = new ChunkInflater()) {
+            CompoundTag first = chunk(new Random(0), 100);
+            file.writeChunk(0, 0, first);
+            assertTagEquals(first, read(file, 0, 0));
+
+            // Every chunk is written past the end of the mapping of the previous read
+            for (int x = 1; x < 20; x++) {
+                long size = Files.size(path);
+                CompoundTag chunk = chunk(new Random(x), x * 2000);
+                file.writeChunk(x, 0, chunk);
+                assertTrue(Files.size(path) > size);
+
+                assertTrue(file.doesChunkExist(x, 0));
+                assertTagEquals(chunk, read(file, x, 0));
+                assertEquals(ByteBuffer.wrap(TagSerializer.toByteArray(chunk)), file.readChunk(x, 0, inflater));
+            }
+            assertTagEquals(first, read(file, 0, 0));
+        }
+    }
+
+    @Test
+    void keepsTrailingSectorsOfMappedFiles() throws IOException {
+        Path path = dir.resolve("r.0.0.mca");
+        CompoundTag small = chunk(new Random(0), 0);
+        int flags = RegionFile.MAPPED | RegionFile.UNCOMPRESSED;
+        long size;
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | flags)) {
+            file.writeChunk(0, 0, small);
+            file.writeChunk(1, 0, chunk(new Random(1), 200000));
+            assertTagEquals(small, read(file, 0, 0));
+            file.flush();
+            size = Files.size(path);
+            file.removeChunk(1, 0);
+        }
+        assertEquals(size, Files.size(path));
+        assertEquals(0, size % 4096);
+
+        // The trailing sectors are reused
+        CompoundTag large = chunk(new Random(2), 200000);
+        try (RegionFile file = new RegionFile(dir, path, flags)) {
+            assertTagEquals(small, read(file, 0, 0));
+            assertFalse(file.hasChunk(1, 0));
+            file.writeChunk(2, 0, large);
+            assertTagEquals(large, read(file, 2, 0));
+        }
+        assertEquals(size, Files.size(path));
+
+        // Without mapping, they are truncated
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.UNCOMPRESSED)) {
+            assertTagEquals(large, read(file, 2, 0));
+            file.removeChunk(2, 0);
+        }
+        assertTrue(Files.size(path) < size);
+        assertEquals(0, Files.size(path) % 4096);
+        try (RegionFile file = new RegionFile(dir, path, flags)) {
+            assertTagEquals(small, read(file, 0, 0));
+        }
+    }
+
+    @Test
+    void delegatesUnknownCodecToCompressionFixer() throws IOException {
+        // Stores chunks as they are, under a compression type that is not registered
+        CompressionCodec unregistered = new CompressionCodec() {
+            @Override
+            public String name() {
+                return "UNREGISTERED";
+            }
+
+            @Override
+            public int getRegionTypeId() {
+                return 100;
+            }
+
+            @Override
+            public InputStream createInStream(InputStream in) {
+                return in;
+            }
+
+            @Override
+            public OutputStream createOutStream(OutputStream out, CompressionSettings settings) {
+                return out;
+            }
+        };
+
+        Path path = dir.resolve("r.0.0.mca");
+        CompoundTag chunk = chunk(new Random(1), 100);
+        CompressionSettings settings = CompressionSettings.DEFAULT;
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE, unregistered, settings)) {
+            file.writeChunk(0, 0, chunk);
+        }
+
+        List<Compression> defaults = new ArrayList<>();
+        RegionFileFixer fixer = new RegionFileFixer() {
+            @Override
+            public void truncatedHeader(int foundBytes, int requiredBytes) {
+            }
+
+            @Override
+            public void chunkOverlapsHeader(int index) {
+            }
+
+            @Override
+            public void chunkOutOfFileSize(int index) {
+            }
+
+            @Override
+            public void offsetZeroSectorChunk(int index) {
+            }
+
+            @Override
+            public InputStream truncatedChunkHeader(int foundBytes, int requiredBytes, int x, int z) {
+                return null;
+            }
+
+            @Override
+            public void zeroChunkSize(int x, int z) {
+            }
+
+            @Override
+            public InputStream negativeChunkSize(int x, int z, int unpaddedSize) {
+                return null;
+            }
+
+            @Override
+            public Compression unknownCompression(int x, int z, int compression, Compression defaultCompression) {
+                assertEquals(100, compression);
+                defaults.add(defaultCompression);
+                return Compression.UNCOMPRESSED;
+            }
+        };
+
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.DEFLATE, fixer)) {
+            assertTagEquals(chunk, read(file, 0, 0));
+        }
+        assertEquals(List.of(Compression.DEFLATED), defaults);
+    }
+}
@@ -0,0 +1,202 @@
+package net.shadew.nbt4j.test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.shadew.nbt4j.NbtBufferReader;
+import net.shadew.nbt4j.NbtReader;
+import net.shadew.nbt4j.NbtVisitor;
+import net.shadew.nbt4j.NbtWriter;
+
+/**
+ * Measures the throughput of reading and writing {@code TAG_Int_Array} and {@code TAG_Long_Array} payloads of 4K and
+ * 64K elements, comparing the bulk conversion paths of {@link NbtReader}, {@link NbtBufferReader} and {@link
+ * NbtWriter} against the old one-element-per-call loop over {@link DataInput} and {@link DataOutput}.
+ */
+public class ArrayBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final long ROUND_NANOS = 200_000_000L;
+
+    private static long blackhole;
+
+    public static void main(String[] args) throws IOException {
+        for (int size : new int[] {4096, 65536}) {
+            int[] ints = new Random(size).ints(size).toArray();
+            long[] longs = new Random(size).longs(size).toArray();
+
+            byte[] intBytes = write(ints);
+            byte[] longBytes = write(longs);
+            verify(ints, longs, intBytes, longBytes);
+
+            System.out.println("== " + size + " elements ==");
+            run("int[]  read  per-element", intBytes.length, () -> readIntsPerElement(intBytes));
+            run("int[]  read  NbtReader", intBytes.length, () -> readStream(intBytes));
+            run("int[]  read  NbtBufferReader", intBytes.length, () -> readBuffer(intBytes));
+            run("int[]  write per-element", intBytes.length, () -> writeIntsPerElement(ints));
+            run("int[]  write NbtWriter", intBytes.length, () -> write(ints).length);
+            run("long[] read  per-element", longBytes.length, () -> readLongsPerElement(longBytes));
+            run("long[] read  NbtReader", longBytes.length, () -> readStream(longBytes));
+            run("long[] read  NbtBufferReader", longBytes.length, () -> readBuffer(longBytes));
+            run("long[] write per-element", longBytes.length, () -> writeLongsPerElement(longs));
+            run("long[] write NbtWriter", longBytes.length, () -> write(longs).length);
+        }
+        System.out.println("(blackhole " + blackhole + ")");
+    }
+
+    private static void run(String name, long bytesPerOp, Op op) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            round(op);
+
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++)
+            best = Math.max(best, round(op));
+
+        System.out.printf("%-32s %10.1f MiB/s%n", name, best * bytesPerOp / (1024 * 1024));
+    }
+
+    /** Runs the operation for one round and returns the amount of operations per second */
+    private static double round(Op op) throws IOException {
+        long ops = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            blackhole += op.run();
+            ops++;
+        } while ((now = System.nanoTime()) - start < ROUND_NANOS);
+        return ops * 1e9 / (now - start);
+    }
+
+    private static void verify(int[] ints, long[] longs, byte[] intBytes, byte[] longBytes) throws IOException {
+        if (!Arrays.equals(intBytes, writeIntsPerElementBytes(ints))
+                || !Arrays.equals(longBytes, writeLongsPerElementBytes(longs)))
+            throw new AssertionError("NbtWriter output differs from per-element output");
+
+        ArrayCapture capture = new ArrayCapture();
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(intBytes)));
+        reader.accept(capture);
+        reader.throwIoException();
+        NbtBufferReader bufferReader = new NbtBufferReader(ByteBuffer.wrap(longBytes));
+        bufferReader.accept(capture);
+        bufferReader.throwIoException();
+        if (!Arrays.equals(ints, capture.ints) || !Arrays.equals(longs, capture.longs))
+            throw new AssertionError("Read arrays differ from written arrays");
+    }
+
+    // A compound with a single array, which is how these arrays mostly appear in chunk data
+
+    private static byte[] write(int[] value) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(value.length * 4 + 32);
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        NbtVisitor compound = writer.visitCompound("");
+        compound.visitIntArray(value, "BlockStates");
+        compound.visitEnd();
+        writer.throwIoException();
+        return bout.toByteArray();
+    }
+
+    private static byte[] write(long[] value) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(value.length * 8 + 32);
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        NbtVisitor compound = writer.visitCompound("");
+        compound.visitLongArray(value, "BlockStates");
+        compound.visitEnd();
+        writer.throwIoException();
+        return bout.toByteArray();
+    }
+
+    private static int readStream(byte[] bytes) throws IOException {
+        ArrayCapture capture = new ArrayCapture();
+        NbtReader reader = new NbtReader(new DataInputStream(new ByteArrayInputStream(bytes)));
+        reader.accept(capture);
+        reader.throwIoException();
+        return capture.hash();
+    }
+
+    private static int readBuffer(byte[] bytes) throws IOException {
+        ArrayCapture capture = new ArrayCapture();
+        NbtBufferReader reader = new NbtBufferReader(ByteBuffer.wrap(bytes));
+        reader.accept(capture);
+        reader.throwIoException();
+        return capture.hash();
+    }
+
+    // Reference implementations of the old per-element loops
+
+    private static int readIntsPerElement(byte[] bytes) throws IOException {
+        DataInput in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.skipBytes(3 + 3 + 11); // Compound header, array header
+        int[] value = new int[in.readInt()];
+        for (int i = 0; i < value.length; i++)
+            value[i] = in.readInt();
+        return value[value.length - 1];
+    }
+
+    private static int readLongsPerElement(byte[] bytes) throws IOException {
+        DataInput in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.skipBytes(3 + 3 + 11);
+        long[] value = new long[in.readInt()];
+        for (int i = 0; i < value.length; i++)
+            value[i] = in.readLong();
+        return (int) value[value.length - 1];
+    }
+
+    private static int writeIntsPerElement(int[] value) throws IOException {
+        return writeIntsPerElementBytes(value).length;
+    }
+
+    private static int writeLongsPerElement(long[] value) throws IOException {
+        return writeLongsPerElementBytes(value).length;
+    }
+
+    private static byte[] writeIntsPerElementBytes(int[] value) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(value.length * 4 + 32);
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(11);
+        out.writeUTF("BlockStates");
+        out.writeInt(value.length);
+        for (int i : value) out.writeInt(i);
+        out.writeByte(0);
+        return bout.toByteArray();
+    }
+
+    private static byte[] writeLongsPerElementBytes(long[] value) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(value.length * 8 + 32);
+        DataOutputStream out = new DataOutputStream(bout);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(12);
+        out.writeUTF("BlockStates");
+        out.writeInt(value.length);
+        for (long i : value) out.writeLong(i);
+        out.writeByte(0);
+        return bout.toByteArray();
+    }
+
+    private interface Op {
+        int run() throws IOException;
+    }
+
+    private static class ArrayCapture implements NbtVisitor {
+        int[] ints;
+        long[] longs;
+
+        @Override
+        public void visitIntArray(int[] value, String name) {
+            ints = value;
+        }
+
+        @Override
+        public void visitLongArray(long[] value, String name) {
+            longs = value;
+        }
+
+        int hash() {
+            return ints != null ? ints[ints.length - 1] : (int) longs[longs.length - 1];
+        }
+    }
+}
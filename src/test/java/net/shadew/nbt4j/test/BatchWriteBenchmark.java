@@ -0,0 +1,77 @@
+package net.shadew.nbt4j.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import net.shadew.nbt4j.CompressionSettings;
+import net.shadew.nbt4j.region.RegionFile;
+import net.shadew.nbt4j.tree.CompoundTag;
+
+/**
+ * Measures the time to save all 1024 chunks of a region file, like an autosave does, comparing writing the chunks one
+ * by one and flushing afterwards against staging them in a {@link RegionFile.WriteBatch} and committing it. Both are
+ * measured on a plain region file and on a region file opened with {@link RegionFile#DSYNC}.
+ */
+public class BatchWriteBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("nbt4j-bench");
+        Path path = dir.resolve("r.0.0.mca");
+
+        CompoundTag[] chunks = new CompoundTag[1024];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = chunk(new Random(i));
+
+        for (int flags : new int[] {0, RegionFile.DSYNC}) {
+            int openFlags = RegionFile.CREATE | RegionFile.DEFLATE | flags;
+            try (RegionFile file = new RegionFile(dir, path, openFlags, CompressionSettings.FASTEST)) {
+                String mode = flags == 0 ? "" : " dsync";
+                run("one by one" + mode, () -> {
+                    for (int i = 0; i < chunks.length; i++)
+                        file.writeChunk(i & 31, i >> 5, chunks[i]);
+                    file.flush();
+                });
+                run("batch" + mode, () -> {
+                    RegionFile.WriteBatch batch = file.newWriteBatch();
+                    for (int i = 0; i < chunks.length; i++)
+                        batch.writeChunk(i & 31, i >> 5, chunks[i]);
+                    batch.commit();
+                });
+                System.out.println("(" + file.getHeaderStatistics() + ")");
+            }
+        }
+    }
+
+    private static void run(String name, Op op) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            op.run();
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            op.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("%-32s %10.1f ms per region%n", name, best / 1e6);
+    }
+
+    // A small chunk-like compound of a few sectors
+    private static CompoundTag chunk(Random random) {
+        CompoundTag chunk = new CompoundTag();
+        chunk.putInt("xPos", random.nextInt());
+        chunk.putInt("zPos", random.nextInt());
+        chunk.putString("Status", "full");
+        chunk.putLongArray("BlockStates", random.longs(1024, 0, 16).toArray());
+        chunk.putByteArray("SkyLight", new byte[2048]);
+        return chunk;
+    }
+
+    private interface Op {
+        void run() throws IOException;
+    }
+}
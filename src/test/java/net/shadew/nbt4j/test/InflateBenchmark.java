@@ -0,0 +1,181 @@
+package net.shadew.nbt4j.test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.shadew.nbt4j.Compression;
+import net.shadew.nbt4j.NbtBufferReader;
+import net.shadew.nbt4j.NbtReader;
+import net.shadew.nbt4j.TagBuilder;
+import net.shadew.nbt4j.TagType;
+import net.shadew.nbt4j.region.ChunkInflater;
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.Tag;
+import net.shadew.nbt4j.tree.TagSerializer;
+
+/**
+ * Measures the throughput of decompressing and parsing a chunk-like compound, comparing the stream chain that region
+ * files open ({@link Compression#createInStream}, a {@link BufferedInputStream} and {@link NbtReader}) against {@link
+ * ChunkInflater} inflating into a buffer that is parsed by {@link NbtBufferReader}. Before measuring, it checks that
+ * both paths inflate identical bytes and produce identical tags.
+ */
+public class InflateBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final long ROUND_NANOS = 200_000_000L;
+
+    private static long blackhole;
+
+    public static void main(String[] args) throws IOException {
+        byte[] raw = TagSerializer.toByteArray(chunk());
+
+        try (ChunkInflater heap = new ChunkInflater(); ChunkInflater direct = new ChunkInflater(true)) {
+            for (Compression compression : new Compression[] {Compression.DEFLATED, Compression.GZIPPED}) {
+                byte[] compressed = compress(raw, compression);
+                ByteBuffer src = ByteBuffer.allocateDirect(compressed.length).put(compressed).flip();
+
+                byte[] inflated = new byte[raw.length];
+                heap.inflate(src, compression).get(inflated);
+                if (!Arrays.equals(raw, inflated))
+                    throw new AssertionError("ChunkInflater output differs from the uncompressed chunk");
+
+                byte[] expected = TagSerializer.toByteArray(readStream(compressed, compression));
+                if (!Arrays.equals(expected, TagSerializer.toByteArray(readBuffer(heap, src, compression)))
+                        || !Arrays.equals(expected, TagSerializer.toByteArray(readBuffer(direct, src, compression))))
+                    throw new AssertionError("NbtBufferReader tags differ from NbtReader tags");
+
+                System.out.println(
+                    "== " + compression + " chunk of " + raw.length + " bytes, " + compressed.length + " compressed =="
+                );
+                run("stream + NbtReader", raw.length, () -> count(readStream(compressed, compression)));
+                run("ChunkInflater heap", raw.length, () -> count(readBuffer(heap, src, compression)));
+                run("ChunkInflater direct", raw.length, () -> count(readBuffer(direct, src, compression)));
+            }
+        }
+        System.out.println("(blackhole " + blackhole + ")");
+    }
+
+    private static void run(String name, long bytesPerOp, Op op) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            round(op);
+
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++)
+            best = Math.max(best, round(op));
+
+        System.out.printf("%-32s %10.1f MiB/s%n", name, best * bytesPerOp / (1024 * 1024));
+    }
+
+    /** Runs the operation for one round and returns the amount of operations per second */
+    private static double round(Op op) throws IOException {
+        long ops = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            blackhole += op.run();
+            ops++;
+        } while ((now = System.nanoTime()) - start < ROUND_NANOS);
+        return ops * 1e9 / (now - start);
+    }
+
+    private static byte[] compress(byte[] raw, Compression compression) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (OutputStream out = compression.createOutStream(bout)) {
+            out.write(raw);
+        }
+        return bout.toByteArray();
+    }
+
+    // The same chain of streams that RegionFile.openInputStream opens for a buffered region file
+    private static Tag readStream(byte[] compressed, Compression compression) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            compression.createInStream(new ByteArrayInputStream(compressed))
+        ));
+        NbtReader reader = new NbtReader(in);
+        TagBuilder builder = new TagBuilder();
+        reader.accept(builder);
+        reader.throwIoException();
+        in.close();
+        return builder.tag();
+    }
+
+    // The inflater is reused, like it would be on a hot path, so its buffers have grown to fit after the first run
+    private static Tag readBuffer(
+        ChunkInflater inflater, ByteBuffer compressed, Compression compression
+    ) throws IOException {
+        NbtBufferReader reader = new NbtBufferReader(inflater.inflate(compressed, compression));
+        TagBuilder builder = new TagBuilder();
+        reader.accept(builder);
+        reader.throwIoException();
+        return builder.tag();
+    }
+
+    private static int count(Tag tag) {
+        return ((CompoundTag) tag).size();
+    }
+
+    // A compound shaped like chunk data: sections with palettes and block states, and a list of block entities
+
+    private static CompoundTag chunk() {
+        Random random = new Random(42);
+        CompoundTag level = new CompoundTag();
+        level.putInt("xPos", 12);
+        level.putInt("zPos", -4);
+        level.putLong("LastUpdate", 9876543L);
+        level.putString("Status", "full");
+
+        ListTag sections = new ListTag(TagType.COMPOUND);
+        for (int y = 0; y < 16; y++) {
+            CompoundTag section = new CompoundTag();
+            section.putByte("Y", (byte) y);
+            ListTag palette = new ListTag(TagType.COMPOUND);
+            for (int i = 0; i < 8; i++) {
+                CompoundTag state = new CompoundTag();
+                state.putString("Name", "minecraft:block_" + i);
+                palette.add(state);
+            }
+            section.put("Palette", palette);
+            section.putLongArray("BlockStates", random.longs(256, 0, 8).toArray());
+            section.putByteArray("SkyLight", new byte[2048]);
+            sections.add(section);
+        }
+        level.put("Sections", sections);
+
+        ListTag entities = new ListTag(TagType.COMPOUND);
+        for (int i = 0; i < 64; i++) {
+            CompoundTag entity = new CompoundTag();
+            entity.putString("id", "minecraft:chest");
+            entity.putInt("x", random.nextInt(16));
+            entity.putInt("y", random.nextInt(256));
+            entity.putInt("z", random.nextInt(16));
+            ListTag items = new ListTag(TagType.COMPOUND);
+            for (int j = 0; j < 4; j++) {
+                CompoundTag item = new CompoundTag();
+                item.putString("id", "minecraft:stone");
+                item.putByte("Count", (byte) 64);
+                item.putByte("Slot", (byte) j);
+                items.add(item);
+            }
+            entity.put("Items", items);
+            entities.add(entity);
+        }
+        level.put("TileEntities", entities);
+
+        CompoundTag root = new CompoundTag();
+        root.put("Level", level);
+        root.putInt("DataVersion", 2586);
+        return root;
+    }
+
+    private interface Op {
+        int run() throws IOException;
+    }
+}
@@ -0,0 +1,145 @@
+package net.shadew.nbt4j.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.shadew.nbt4j.region.ChunkInflater;
+import net.shadew.nbt4j.region.RegionFile;
+import net.shadew.nbt4j.tree.CompoundTag;
+
+/**
+ * Measures how chunk reads from one {@link RegionFile} scale with the amount of reading threads, with and without a
+ * thread that keeps rewriting chunks meanwhile, for a plain and a {@linkplain RegionFile#MAPPED mapped} region file.
+ * Every reading thread reads random chunks, through streams or through its own {@link ChunkInflater}.
+ */
+public class ReadContentionBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+    private static final long ROUND_NANOS = 200_000_000L;
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    private static final LongAdder blackhole = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("nbt4j-bench");
+        Path path = dir.resolve("r.0.0.mca");
+        try (RegionFile file = new RegionFile(dir, path, RegionFile.CREATE | RegionFile.DEFLATE)) {
+            for (int x = 0; x < 32; x++)
+                for (int z = 0; z < 32; z++)
+                    file.writeChunk(x, z, chunk(new Random(x * 32 + z)));
+        }
+
+        for (int flags : new int[] {0, RegionFile.MAPPED}) {
+            try (RegionFile file = new RegionFile(dir, path, RegionFile.DEFLATE | flags)) {
+                String mode = flags == 0 ? "" : " mapped";
+                for (boolean writing : new boolean[] {false, true}) {
+                    System.out.println("== " + (writing ? "with" : "without") + " a writer ==");
+                    for (int threads : THREADS) {
+                        String suffix = mode + ", " + threads + " threads";
+                        run("streams" + suffix, file, threads, writing, ReadContentionBenchmark::readStream);
+                        run("inflater" + suffix, file, threads, writing, ReadContentionBenchmark::readInflater);
+                    }
+                }
+            }
+        }
+        System.out.println("(blackhole " + blackhole.sum() + ")");
+    }
+
+    private static void run(String name, RegionFile file, int threads, boolean writing, Op op) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            round(file, threads, writing, op);
+
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++)
+            best = Math.max(best, round(file, threads, writing, op));
+
+        System.out.printf("%-32s %12.0f reads/s%n", name, best);
+    }
+
+    /** Runs the operation on all threads for one round and returns the total amount of reads per second */
+    private static double round(RegionFile file, int threads, boolean writing, Op op) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder reads = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        IOException[] error = new IOException[1];
+
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Thread(() -> {
+                try (ChunkInflater inflater = new ChunkInflater()) {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long n = 0;
+                    while (!stop.get()) {
+                        blackhole.add(op.run(file, inflater, random.nextInt(32), random.nextInt(32)));
+                        n++;
+                    }
+                    reads.add(n);
+                } catch (IOException exc) {
+                    error[0] = exc;
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        if (writing) {
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    Random random = new Random(1);
+                    while (!stop.get())
+                        file.writeChunk(random.nextInt(32), random.nextInt(32), chunk(random));
+                } catch (IOException exc) {
+                    error[0] = exc;
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+
+        workers.forEach(Thread::start);
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(ROUND_NANOS / 1_000_000);
+        stop.set(true);
+        for (Thread worker : workers)
+            worker.join();
+        long nanos = System.nanoTime() - begin;
+
+        if (error[0] != null)
+            throw error[0];
+        return reads.sum() * 1e9 / nanos;
+    }
+
+    private static int readStream(RegionFile file, ChunkInflater inflater, int x, int z) throws IOException {
+        try (InputStream in = file.openInputStream(x, z)) {
+            return in.readAllBytes().length;
+        }
+    }
+
+    private static int readInflater(RegionFile file, ChunkInflater inflater, int x, int z) throws IOException {
+        return file.readChunk(x, z, inflater).remaining();
+    }
+
+    // A small chunk-like compound of a few sectors, so that the benchmark is dominated by reading rather than inflating
+    private static CompoundTag chunk(Random random) {
+        CompoundTag chunk = new CompoundTag();
+        chunk.putInt("xPos", random.nextInt());
+        chunk.putInt("zPos", random.nextInt());
+        chunk.putString("Status", "full");
+        chunk.putLongArray("BlockStates", random.longs(1024, 0, 16).toArray());
+        chunk.putByteArray("SkyLight", new byte[2048]);
+        return chunk;
+    }
+
+    private interface Op {
+        int run(RegionFile file, ChunkInflater inflater, int x, int z) throws IOException;
+    }
+}
@@ -0,0 +1,104 @@
+package net.shadew.nbt4j.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.shadew.nbt4j.CompressionSettings;
+import net.shadew.nbt4j.region.RegionFile;
+import net.shadew.nbt4j.tree.CompoundTag;
+
+/**
+ * Measures how chunk writes to one {@link RegionFile} scale with the amount of writing threads. Every thread writes its
+ * own chunks, so that writers never wait for each other to write the same chunk.
+ */
+public class WriteContentionBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+    private static final long ROUND_NANOS = 200_000_000L;
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("nbt4j-bench");
+        Path path = dir.resolve("r.0.0.mca");
+
+        CompoundTag[] chunks = new CompoundTag[16];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = chunk(new Random(i));
+
+        int flags = RegionFile.CREATE | RegionFile.DEFLATE;
+        try (RegionFile file = new RegionFile(dir, path, flags, CompressionSettings.FASTEST)) {
+            for (int threads : THREADS)
+                run(threads + " threads", file, threads, chunks);
+        }
+    }
+
+    private static void run(String name, RegionFile file, int threads, CompoundTag[] chunks) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            round(file, threads, chunks);
+
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++)
+            best = Math.max(best, round(file, threads, chunks));
+
+        System.out.printf("%-32s %12.0f writes/s%n", name, best);
+    }
+
+    /** Runs all threads for one round and returns the total amount of writes per second */
+    private static double round(RegionFile file, int threads, CompoundTag[] chunks) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder writes = new LongAdder();
+        List<Thread> workers = new ArrayList<>();
+        IOException[] error = new IOException[1];
+
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    long n = 0;
+                    while (!stop.get()) {
+                        // Thread i writes the chunks of column i, spread over rows
+                        file.writeChunk(thread, (int) (n & 31), chunks[(int) (n % chunks.length)]);
+                        n++;
+                    }
+                    writes.add(n);
+                } catch (IOException exc) {
+                    error[0] = exc;
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+
+        workers.forEach(Thread::start);
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(ROUND_NANOS / 1_000_000);
+        stop.set(true);
+        for (Thread worker : workers)
+            worker.join();
+        long nanos = System.nanoTime() - begin;
+
+        if (error[0] != null)
+            throw error[0];
+        return writes.sum() * 1e9 / nanos;
+    }
+
+    // A small chunk-like compound of a few sectors
+    private static CompoundTag chunk(Random random) {
+        CompoundTag chunk = new CompoundTag();
+        chunk.putInt("xPos", random.nextInt());
+        chunk.putInt("zPos", random.nextInt());
+        chunk.putString("Status", "full");
+        chunk.putLongArray("BlockStates", random.longs(1024, 0, 16).toArray());
+        chunk.putByteArray("SkyLight", new byte[2048]);
+        return chunk;
+    }
+}
@@ -0,0 +1,147 @@
+package net.shadew.nbt4j.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.shadew.nbt4j.NbtBufferWriter;
+import net.shadew.nbt4j.NbtWriter;
+import net.shadew.nbt4j.TagType;
+import net.shadew.nbt4j.tree.CompoundTag;
+import net.shadew.nbt4j.tree.ListTag;
+import net.shadew.nbt4j.tree.StringTag;
+
+/**
+ * Measures the throughput of serializing a chunk-like compound, comparing {@link NbtWriter} over a {@link
+ * DataOutputStream} against {@link NbtBufferWriter} writing into a heap buffer and into a direct buffer. Before
+ * measuring, it checks that both writers produce identical bytes.
+ */
+public class WriterBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final long ROUND_NANOS = 200_000_000L;
+
+    private static long blackhole;
+
+    public static void main(String[] args) throws IOException {
+        CompoundTag chunk = chunk();
+        byte[] expected = writeStream(chunk);
+
+        NbtBufferWriter heap = new NbtBufferWriter();
+        NbtBufferWriter direct = new NbtBufferWriter(1024, true);
+        if (!Arrays.equals(expected, writeBuffer(heap, chunk)) || !Arrays.equals(expected, writeBuffer(direct, chunk)))
+            throw new AssertionError("NbtBufferWriter output differs from NbtWriter output");
+
+        System.out.println("== chunk of " + expected.length + " bytes ==");
+        run("NbtWriter", expected.length, () -> writeStream(chunk).length);
+        run("NbtBufferWriter heap", expected.length, () -> writeBufferSize(heap, chunk));
+        run("NbtBufferWriter direct", expected.length, () -> writeBufferSize(direct, chunk));
+        System.out.println("(blackhole " + blackhole + ")");
+    }
+
+    private static void run(String name, long bytesPerOp, Op op) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            round(op);
+
+        double best = 0;
+        for (int i = 0; i < ROUNDS; i++)
+            best = Math.max(best, round(op));
+
+        System.out.printf("%-32s %10.1f MiB/s%n", name, best * bytesPerOp / (1024 * 1024));
+    }
+
+    /** Runs the operation for one round and returns the amount of operations per second */
+    private static double round(Op op) throws IOException {
+        long ops = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            blackhole += op.run();
+            ops++;
+        } while ((now = System.nanoTime()) - start < ROUND_NANOS);
+        return ops * 1e9 / (now - start);
+    }
+
+    private static byte[] writeStream(CompoundTag tag) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        tag.accept(writer);
+        writer.throwIoException();
+        return bout.toByteArray();
+    }
+
+    private static byte[] writeBuffer(NbtBufferWriter writer, CompoundTag tag) throws IOException {
+        writeBufferSize(writer, tag);
+        return writer.toByteArray();
+    }
+
+    // The writer is reused, like a writer would be on a hot path, so its buffer has grown to fit after the first run
+    private static int writeBufferSize(NbtBufferWriter writer, CompoundTag tag) throws IOException {
+        writer.reset();
+        tag.accept(writer);
+        writer.throwIoException();
+        return writer.size();
+    }
+
+    // A compound shaped like chunk data: sections with palettes and block states, and a list of block entities
+
+    private static CompoundTag chunk() {
+        Random random = new Random(42);
+        CompoundTag level = new CompoundTag();
+        level.putInt("xPos", 12);
+        level.putInt("zPos", -4);
+        level.putLong("LastUpdate", 9876543L);
+        level.putString("Status", "full");
+
+        ListTag sections = new ListTag(TagType.COMPOUND);
+        for (int y = 0; y < 16; y++) {
+            CompoundTag section = new CompoundTag();
+            section.putByte("Y", (byte) y);
+            ListTag palette = new ListTag(TagType.COMPOUND);
+            for (int i = 0; i < 8; i++) {
+                CompoundTag state = new CompoundTag();
+                state.putString("Name", "minecraft:block_" + i);
+                palette.add(state);
+            }
+            section.put("Palette", palette);
+            section.putLongArray("BlockStates", random.longs(256).toArray());
+            section.putByteArray("SkyLight", new byte[2048]);
+            sections.add(section);
+        }
+        level.put("Sections", sections);
+
+        ListTag entities = new ListTag(TagType.COMPOUND);
+        for (int i = 0; i < 64; i++) {
+            CompoundTag entity = new CompoundTag();
+            entity.putString("id", "minecraft:chest");
+            entity.putInt("x", random.nextInt(16));
+            entity.putInt("y", random.nextInt(256));
+            entity.putInt("z", random.nextInt(16));
+            entity.putString("CustomName", "Kiste Nr. " + i + " \u00e4\u00f6\u00fc");
+            ListTag items = new ListTag(TagType.COMPOUND);
+            for (int j = 0; j < 4; j++) {
+                CompoundTag item = new CompoundTag();
+                item.putString("id", "minecraft:stone");
+                item.putByte("Count", (byte) 64);
+                item.putByte("Slot", (byte) j);
+                items.add(item);
+            }
+            entity.put("Items", items);
+            entities.add(entity);
+        }
+        level.put("TileEntities", entities);
+        level.put("Entities", new ListTag(TagType.COMPOUND));
+        level.put("Tags", ListTag.of(StringTag.of("a"), StringTag.of("b")));
+
+        CompoundTag root = new CompoundTag();
+        root.put("Level", level);
+        root.putInt("DataVersion", 2586);
+        return root;
+    }
+
+    private interface Op {
+        int run() throws IOException;
+    }
+}
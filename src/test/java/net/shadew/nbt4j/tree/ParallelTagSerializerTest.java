@@ -0,0 +1,117 @@
+package net.shadew.nbt4j.tree;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.TagType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelTagSerializerTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    // A list of many subtrees, nested in a compound, so that both containers get split
+    private static CompoundTag large(Random random, int count) {
+        ListTag entities = new ListTag(TagType.COMPOUND);
+        for (int i = 0; i < count; i++)
+            entities.add(TagSerializerTest.tree(random));
+        CompoundTag root = new CompoundTag();
+        root.putString("Name", "clipboard");
+        root.put("Entities", entities);
+        root.put("Nested", TagSerializerTest.tree(random));
+        return root;
+    }
+
+    private static CompoundTag deep(int depth) {
+        CompoundTag root = new CompoundTag();
+        CompoundTag compound = root;
+        for (int i = 0; i < depth; i++) {
+            CompoundTag inner = new CompoundTag();
+            compound.putLongArray("Filler", new long[16]);
+            compound.put("Inner", inner);
+            compound = inner;
+        }
+        return root;
+    }
+
+    @Test
+    void matchesNbtWriter() throws IOException {
+        long[] splitSizes = {1, 64, 1000, ParallelTagSerializer.DEFAULT_SPLIT_SIZE};
+        for (int seed = 0; seed < 5; seed++) {
+            CompoundTag tree = large(new Random(seed), 50);
+            byte[] expected = TagSerializerTest.written(tree, "root");
+
+            for (long splitSize : splitSizes) {
+                ParallelTagSerializer serializer = new ParallelTagSerializer().pool(pool);
+                serializer.threshold(0).splitSize(splitSize);
+                assertArrayEquals(expected, serializer.toByteArray(tree, "root"), "split size " + splitSize);
+
+                ByteBuffer direct = serializer.toByteBuffer(tree, "root", true);
+                byte[] directBytes = new byte[direct.remaining()];
+                direct.get(directBytes);
+                assertArrayEquals(expected, directBytes, "split size " + splitSize);
+
+                ByteBuffer buf = ByteBuffer.allocate(expected.length + 20);
+                buf.position(7);
+                serializer.write(tree, "root", buf);
+                assertEquals(7 + expected.length, buf.position());
+                byte[] written = new byte[expected.length];
+                buf.get(7, written);
+                assertArrayEquals(expected, written, "split size " + splitSize);
+            }
+        }
+    }
+
+    @Test
+    void matchesNbtWriterWithDefaults() throws IOException {
+        CompoundTag tree = large(new Random(10), 3000);
+        byte[] expected = TagSerializerTest.written(tree, "");
+        assertTrue(expected.length > ParallelTagSerializer.DEFAULT_THRESHOLD);
+        assertArrayEquals(expected, new ParallelTagSerializer().pool(pool).toByteArray(tree, ""));
+
+        // Below the threshold, everything happens on the calling thread
+        CompoundTag small = TagSerializerTest.tree(new Random(11));
+        assertArrayEquals(TagSerializerTest.written(small, ""), new ParallelTagSerializer().toByteArray(small, ""));
+    }
+
+    @Test
+    void matchesNbtWriterForDeepTrees() throws IOException {
+        CompoundTag tree = deep(1000);
+        ParallelTagSerializer serializer = new ParallelTagSerializer().pool(pool).threshold(0).splitSize(1);
+        assertArrayEquals(TagSerializerTest.written(tree, ""), serializer.toByteArray(tree, ""));
+    }
+
+    @Test
+    void serializesLeafRoot() throws IOException {
+        Tag tag = LongArrayTag.of(new long[1000]);
+        ParallelTagSerializer serializer = new ParallelTagSerializer().pool(pool).threshold(0);
+        assertArrayEquals(TagSerializerTest.written(tag, "leaf"), serializer.toByteArray(tag, "leaf"));
+    }
+
+    @Test
+    void reportsErrorsFromTasks() {
+        CompoundTag tree = large(new Random(20), 50);
+        ((CompoundTag) ((ListTag) tree.get("Entities")).get(30)).putString("Huge", "x".repeat(70000));
+        ParallelTagSerializer serializer = new ParallelTagSerializer().pool(pool).threshold(0).splitSize(64);
+        assertThrows(UTFDataFormatException.class, () -> serializer.toByteArray(tree, ""));
+
+        CompoundTag fine = large(new Random(21), 10);
+        ByteBuffer tooSmall = ByteBuffer.allocate((int) TagSerializer.encodedSize(fine) - 1);
+        assertThrows(IOException.class, () -> serializer.write(fine, "", tooSmall));
+        assertEquals(0, tooSmall.position());
+
+        assertThrows(IllegalArgumentException.class, () -> serializer.splitSize(0));
+        assertThrows(NullPointerException.class, () -> serializer.pool(null));
+    }
+}
@@ -0,0 +1,112 @@
+package net.shadew.nbt4j.tree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import net.shadew.nbt4j.NbtWriter;
+import net.shadew.nbt4j.TagType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagSerializerTest {
+    static CompoundTag tree(Random random) {
+        CompoundTag root = new CompoundTag();
+        root.putInt("DataVersion", random.nextInt());
+        root.putString("Name", "Kiste Nr. " + random.nextInt() + " \u00e4\u00f6\u00fc \u0000");
+        root.putByteArray("Bytes", new byte[random.nextInt(100)]);
+        root.putLongArray("Longs", random.longs(random.nextInt(300)).toArray());
+
+        ListTag sections = new ListTag(TagType.COMPOUND);
+        for (int i = 0; i < 8; i++) {
+            CompoundTag section = new CompoundTag();
+            section.putByte("Y", (byte) i);
+            section.putIntArray("Ints", random.ints(random.nextInt(50)).toArray());
+            ListTag palette = new ListTag(TagType.STRING);
+            for (int j = 0; j < 4; j++)
+                palette.add(StringTag.of("minecraft:block_" + random.nextInt(100)));
+            section.put("Palette", palette);
+            sections.add(section);
+        }
+        root.put("Sections", sections);
+        root.put("Empty", new CompoundTag());
+        return root;
+    }
+
+    static byte[] written(Tag tag, String name) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        NbtWriter writer = new NbtWriter(new DataOutputStream(bout));
+        tag.accept(writer, name);
+        writer.throwIoException();
+        return bout.toByteArray();
+    }
+
+    @Test
+    void matchesNbtWriter() throws IOException {
+        for (int seed = 0; seed < 20; seed++) {
+            CompoundTag tree = tree(new Random(seed));
+            byte[] expected = written(tree, "root");
+
+            assertEquals(expected.length, TagSerializer.encodedSize(tree, "root"));
+            assertArrayEquals(expected, TagSerializer.toByteArray(tree, "root"));
+
+            ByteBuffer buf = TagSerializer.toByteBuffer(tree, "root", true);
+            byte[] direct = new byte[buf.remaining()];
+            buf.get(direct);
+            assertArrayEquals(expected, direct);
+        }
+    }
+
+    @Test
+    void resizesAfterModification() throws IOException {
+        CompoundTag tree = tree(new Random(1));
+        TagSerializer.encodedSize(tree);
+
+        tree.putString("Added", "a longer value than before");
+        assertArrayEquals(written(tree, ""), TagSerializer.toByteArray(tree));
+
+        tree.remove("Bytes");
+        assertArrayEquals(written(tree, ""), TagSerializer.toByteArray(tree));
+    }
+
+    @Test
+    void rejectsTooSmallBuffer() {
+        CompoundTag tree = tree(new Random(2));
+        ByteBuffer buf = ByteBuffer.allocate((int) TagSerializer.encodedSize(tree) - 1);
+        assertThrows(IOException.class, () -> TagSerializer.write(tree, "", buf));
+    }
+
+    @Test
+    void sizesSharedTreeFromMultipleThreads() throws Exception {
+        CompoundTag tree = tree(new Random(3));
+        byte[] expected = written(tree, "");
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        Throwable[] error = new Throwable[1];
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < 200; j++)
+                        assertArrayEquals(expected, TagSerializer.toByteArray(tree));
+                } catch (Throwable exc) {
+                    error[0] = exc;
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertNull(error[0]);
+    }
+}
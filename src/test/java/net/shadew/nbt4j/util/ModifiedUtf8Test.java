@@ -0,0 +1,94 @@
+package net.shadew.nbt4j.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModifiedUtf8Test {
+    private static final String[] STRINGS = {
+        "",
+        "Level",
+        "minecraft:stone",
+        "\u0000",
+        "h\u00e9llo",
+        "\u20ac \u0800 \u07ff \u007f \u0080",
+        "\ud83d\ude00",
+        "\ud800 unpaired surrogate",
+        "ascii prefix then \u00e4\u00f6\u00fc"
+    };
+
+    // DataOutput.writeUTF without its length prefix, which is what ModifiedUtf8 must match
+    private static byte[] writeUTF(String str) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        new DataOutputStream(bout).writeUTF(str);
+        byte[] bytes = bout.toByteArray();
+        return Arrays.copyOfRange(bytes, 2, bytes.length);
+    }
+
+    private static String random(Random random) {
+        char[] chars = new char[random.nextInt(200)];
+        for (int i = 0; i < chars.length; i++) {
+            switch (random.nextInt(3)) {
+                case 0: chars[i] = (char) random.nextInt(0x80); break;
+                case 1: chars[i] = (char) random.nextInt(0x800); break;
+                default: chars[i] = (char) random.nextInt(0x10000); break;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static void assertRoundTrip(String str) throws IOException {
+        byte[] expected = writeUTF(str);
+        assertEquals(expected.length, ModifiedUtf8.encodedLength(str));
+
+        for (ByteBuffer buf : new ByteBuffer[] {ByteBuffer.allocate(str.length() * 3 + 5),
+                                                ByteBuffer.allocateDirect(str.length() * 3 + 5)}) {
+            int len = ModifiedUtf8.encode(str, buf, 5);
+            assertEquals(expected.length, len);
+            assertEquals(0, buf.position());
+
+            byte[] encoded = new byte[len];
+            buf.get(5, encoded);
+            assertArrayEquals(expected, encoded);
+
+            assertEquals(str, ModifiedUtf8.decode(buf, 5, len, new char[len]));
+            assertEquals(0, buf.position());
+        }
+    }
+
+    @Test
+    void matchesDataOutput() throws IOException {
+        for (String str : STRINGS)
+            assertRoundTrip(str);
+
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++)
+            assertRoundTrip(random(random));
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        byte[][] malformed = {
+            {(byte) 0xC3},                           // Truncated two-byte sequence
+            {(byte) 0xE2, (byte) 0x82},              // Truncated three-byte sequence
+            {(byte) 0xC3, 0x41},                     // Continuation byte missing its high bit
+            {(byte) 0x80},                           // Stray continuation byte
+            {(byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80} // Four-byte sequences are not modified UTF-8
+        };
+        for (byte[] bytes : malformed) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            assertThrows(
+                UTFDataFormatException.class,
+                () -> ModifiedUtf8.decode(buf, 0, bytes.length, new char[bytes.length])
+            );
+        }
+    }
+}